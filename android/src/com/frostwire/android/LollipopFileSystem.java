@@ -30,6 +30,7 @@ import android.util.LruCache;
 import com.frostwire.android.core.Constants;
 import com.frostwire.android.gui.util.UIUtils;
 import com.frostwire.util.Logger;
+import com.frostwire.platform.CopyListener;
 import com.frostwire.platform.DefaultFileSystem;
 import com.frostwire.platform.FileFilter;
 import com.frostwire.platform.FileSystem;
@@ -234,6 +235,27 @@ public final class LollipopFileSystem implements FileSystem {
         return copy(app, srcF, destF);
     }
 
+    @Override
+    public boolean move(File src, File dest, CopyListener listener) {
+        try {
+            DefaultFileSystem.moveFile(src, dest, listener);
+            return true;
+        } catch (Throwable e) {
+            // ignore
+        }
+
+        // the destination is only reachable with the storage access framework
+        if (!copy(src, dest)) {
+            return false;
+        }
+
+        if (!delete(src)) {
+            LOG.warn("Error deleting source file while moving: " + src);
+        }
+
+        return true;
+    }
+
     @Override
     public boolean write(File file, byte[] data) {
         try {
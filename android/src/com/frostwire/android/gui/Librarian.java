@@ -37,6 +37,7 @@ import com.frostwire.android.core.providers.TableFetchers;
 import com.frostwire.android.gui.transfers.Transfers;
 import com.frostwire.android.gui.util.UIUtils;
 import com.frostwire.android.util.SystemUtils;
+import com.frostwire.platform.FileWalker;
 import com.frostwire.platform.Platforms;
 import org.apache.commons.io.FilenameUtils;
 
@@ -364,42 +365,32 @@ public final class Librarian {
      * Given a folder path it'll return all the files contained within it and it's subfolders
      * as a flat set of Files.
      * <p>
-     * Non-recursive implementation, up to 20% faster in tests than recursive implementation. :)
+     * The folders are listed in parallel, see {@link FileWalker}.
      *
      * @param folder
      * @param extensions If you only need certain files filtered by their extensions, use this string array (without the "."). or set to null if you want all files. e.g. ["txt","jpg"] if you only want text files and jpegs.
      * @return The set of files.
      * @author gubatron
      */
-    private static Collection<File> getAllFolderFiles(File folder, String[] extensions) {
-        Set<File> results = new HashSet<File>();
-        Stack<File> subFolders = new Stack<File>();
-        File currentFolder = folder;
-        while (currentFolder != null && currentFolder.isDirectory() && currentFolder.canRead()) {
-            File[] fs = null;
-            try {
-                fs = currentFolder.listFiles();
-            } catch (SecurityException e) {
+    private static Collection<File> getAllFolderFiles(File folder, final String[] extensions) {
+        // the walk calls the filter from several threads
+        final Set<File> results = Collections.synchronizedSet(new HashSet<File>());
+        if (folder == null || !folder.isDirectory() || !folder.canRead()) {
+            return results;
+        }
+        new FileWalker(Platforms.fileSystem(), new FileWalker.Filter() {
+            @Override
+            public boolean accept(File file, boolean directory) {
+                return directory || extensions == null || FilenameUtils.isExtension(file.getName(), extensions);
             }
 
-            if (fs != null && fs.length > 0) {
-                for (File f : fs) {
-                    if (!f.isDirectory()) {
-                        if (extensions == null || FilenameUtils.isExtension(f.getName(), extensions)) {
-                            results.add(f);
-                        }
-                    } else {
-                        subFolders.push(f);
-                    }
+            @Override
+            public void file(File file, boolean directory) {
+                if (!directory) {
+                    results.add(file);
                 }
             }
-
-            if (!subFolders.isEmpty()) {
-                currentFolder = subFolders.pop();
-            } else {
-                currentFolder = null;
-            }
-        }
+        }).walk(folder);
         return results;
     }
 
@@ -59,12 +59,17 @@ public final class LocalSearchEngine {
 
     private LocalSearchEngine() {
         this.manager = SearchManager.getInstance();
-        this.manager.setListener(new SearchListener() {
+        this.manager.setListener(new SearchMergeListener() {
             @Override
             public void onResults(long token, List<? extends SearchResult> results) {
                 LocalSearchEngine.this.onResults(token, results);
             }
 
+            @Override
+            public void onMerged(long token, List<MergedSearchResult> merged) {
+                LocalSearchEngine.this.onMerged(token, merged);
+            }
+
             @Override
             public void onError(long token, SearchError error) {
 
@@ -154,6 +159,12 @@ public final class LocalSearchEngine {
         }
     }
 
+    private void onMerged(long token, List<MergedSearchResult> merged) {
+        if (token == currentSearchToken && listener instanceof SearchMergeListener) {
+            ((SearchMergeListener) listener).onMerged(token, merged);
+        }
+    }
+
     private void onFinished(long token) {
         if (token == currentSearchToken) {
             searchFinished = true;
@@ -404,6 +404,7 @@ public final class SoftwareUpdater {
             int maxEntries = update.config.uxMaxEntries;
 
             UXStatsConf uxStatsContext = new UXStatsConf(url, os, fwversion, fwbuild, period, minEntries, maxEntries);
+            UXStats.instance().setSpoolFile(new File(activityContext.getFilesDir(), "uxstats.spool"));
             UXStats.instance().setContext(uxStatsContext);
         }
     }
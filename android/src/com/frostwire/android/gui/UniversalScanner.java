@@ -26,7 +26,7 @@ import android.os.SystemClock;
 import com.frostwire.android.core.Constants;
 import com.frostwire.android.core.MediaType;
 import com.frostwire.util.Logger;
-import com.frostwire.platform.FileFilter;
+import com.frostwire.platform.FileWalker;
 import com.frostwire.platform.Platforms;
 import org.apache.commons.io.FilenameUtils;
 
@@ -214,16 +214,17 @@ final class UniversalScanner {
     }
 
     public void scanDir(File privateDir) {
-        final List<File> files = new LinkedList<>();
-        Platforms.fileSystem().walk(privateDir, new FileFilter() {
+        // the walk calls the filter from several threads
+        final List<File> files = Collections.synchronizedList(new LinkedList<File>());
+        Platforms.fileSystem().walk(privateDir, new FileWalker.Filter() {
             @Override
-            public boolean accept(File file) {
+            public boolean accept(File file, boolean directory) {
                 return true;
             }
 
             @Override
-            public void file(File file) {
-                if (!file.isDirectory()) {
+            public void file(File file, boolean directory) {
+                if (!directory) {
                     files.add(file);
                 }
             }
@@ -41,6 +41,7 @@ import com.frostwire.android.util.ImageLoader;
 import com.frostwire.licenses.Licenses;
 import com.frostwire.search.FileSearchResult;
 import com.frostwire.search.KeywordFilter;
+import com.frostwire.search.MergedSearchResult;
 import com.frostwire.search.SearchResult;
 import com.frostwire.search.StreamableSearchResult;
 import com.frostwire.search.soundcloud.SoundcloudSearchResult;
@@ -56,8 +57,10 @@ import org.apache.commons.io.FilenameUtils;
 
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author gubatron
@@ -73,6 +76,8 @@ public abstract class SearchResultListAdapter extends AbstractListAdapter<Search
 
     private ImageLoader thumbLoader;
     private final List<KeywordFilter> keywordFiltersPipeline;
+    // the max of the seeds of the same torrent found by other engines
+    private final Map<SearchResult, Integer> mergedSeeds;
 
     protected SearchResultListAdapter(Context context) {
         super(context, R.layout.view_bittorrent_search_result_list_item);
@@ -81,6 +86,7 @@ public abstract class SearchResultListAdapter extends AbstractListAdapter<Search
         this.fileType = NO_FILE_TYPE;
         this.thumbLoader = ImageLoader.getInstance(context);
         this.keywordFiltersPipeline = new LinkedList<>();
+        this.mergedSeeds = new IdentityHashMap<>();
     }
 
     public int getFileType() {
@@ -98,6 +104,30 @@ public abstract class SearchResultListAdapter extends AbstractListAdapter<Search
         notifyDataSetChanged();
     }
 
+    /**
+     * Shows the seeds of the torrents found again by other engines,
+     * call it in the UI thread.
+     */
+    public void updateMerged(List<MergedSearchResult> merged) {
+        boolean changed = false;
+        for (MergedSearchResult m : merged) {
+            SearchResult sr = m.getFirst();
+            if (sr instanceof TorrentSearchResult && m.getSeeds() > seeds((TorrentSearchResult) sr)) {
+                mergedSeeds.put(sr, m.getSeeds());
+                changed = true;
+            }
+        }
+        if (changed) {
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void clear() {
+        mergedSeeds.clear();
+        super.clear();
+    }
+
     @Override
     public void clear() {
         super.clear();
@@ -188,13 +218,19 @@ public abstract class SearchResultListAdapter extends AbstractListAdapter<Search
 
     private void populateTorrentPart(View view, TorrentSearchResult sr) {
         TextView seeds = findView(view, R.id.view_bittorrent_search_result_list_item_text_seeds);
-        if (sr.getSeeds() > 0) {
-            seeds.setText(getContext().getResources().getQuantityString(R.plurals.count_seeds_source, sr.getSeeds(), sr.getSeeds()));
+        int n = seeds(sr);
+        if (n > 0) {
+            seeds.setText(getContext().getResources().getQuantityString(R.plurals.count_seeds_source, n, n));
         } else {
             seeds.setText("");
         }
     }
 
+    private int seeds(TorrentSearchResult sr) {
+        Integer n = mergedSeeds.get(sr);
+        return n != null ? Math.max(n, sr.getSeeds()) : sr.getSeeds();
+    }
+
     @Override
     protected void onItemClicked(View v) {
         SearchResult sr = (SearchResult) v.getTag();
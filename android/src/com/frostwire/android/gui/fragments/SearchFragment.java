@@ -76,8 +76,9 @@ import com.frostwire.search.FileSearchResult;
 import com.frostwire.search.HttpSearchResult;
 import com.frostwire.search.KeywordDetector;
 import com.frostwire.search.KeywordFilter;
+import com.frostwire.search.MergedSearchResult;
 import com.frostwire.search.SearchError;
-import com.frostwire.search.SearchListener;
+import com.frostwire.search.SearchMergeListener;
 import com.frostwire.search.SearchResult;
 import com.frostwire.search.torrent.AbstractTorrentSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
@@ -267,12 +268,22 @@ public final class SearchFragment extends AbstractFragment implements
                 }
             };
 
-            LocalSearchEngine.instance().setListener(new SearchListener() {
+            LocalSearchEngine.instance().setListener(new SearchMergeListener() {
                 @Override
                 public void onResults(long token, final List<? extends SearchResult> results) {
                     onSearchResults(results);
                 }
 
+                @Override
+                public void onMerged(long token, final List<MergedSearchResult> merged) {
+                    getActivity().runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            adapter.updateMerged(merged);
+                        }
+                    });
+                }
+
                 @Override
                 public void onError(long token, SearchError error) {
                     LOG.error("Some error in search stream: " + error);
@@ -1,8 +1,8 @@
 package com.frostwire.android.gui.transfers;
 
 import com.frostwire.bittorrent.BTDownload;
+import com.frostwire.bittorrent.BTEngine;
 import com.frostwire.util.Logger;
-import com.frostwire.transfers.Transfer;
 import com.frostwire.transfers.TransferItem;
 
 import java.io.File;
@@ -21,19 +21,6 @@ public final class Transfers {
     private Transfers() {
     }
 
-    public static Set<File> getSkipedFiles() {
-        Set<File> set = new HashSet<File>();
-        List<Transfer> transfers = TransferManager.instance().getTransfers();
-
-        for (Transfer t : transfers) {
-            if (t instanceof UIBittorrentDownload) {
-                set.addAll(getSkippedFiles(((UIBittorrentDownload) t).getDl()));
-            }
-        }
-
-        return set;
-    }
-
     public static Set<File> getSkippedFiles(BTDownload dl) {
         Set<File> set = new HashSet<File>();
         List<TransferItem> items = dl.getItems();
@@ -49,22 +36,15 @@ public final class Transfers {
         return set;
     }
 
+    /**
+     * Returns a live, read only, view of the files still being downloaded
+     * or skipped, backed by the engine index.
+     */
     public static Set<File> getIncompleteFiles() {
-        Set<File> set = new HashSet<File>();
-        List<Transfer> transfers = TransferManager.instance().getTransfers();
-
-        for (Transfer t : transfers) {
-            if (t instanceof UIBittorrentDownload) {
-                set.addAll(((UIBittorrentDownload) t).getDl().getIncompleteFiles());
-            }
-        }
-
-        return set;
+        return BTEngine.getInstance().incompleteFiles();
     }
 
     public static Set<File> getIgnorableFiles() {
-        Set<File> set = getIncompleteFiles();
-        set.addAll(getSkipedFiles());
-        return set;
+        return getIncompleteFiles();
     }
 }
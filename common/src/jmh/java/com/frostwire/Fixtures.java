@@ -0,0 +1,144 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire;
+
+import com.frostwire.search.AbstractFileSearchResult;
+import com.frostwire.search.FileSearchResult;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The inputs of the benchmarks, the files under {@code com/frostwire} in
+ * the resources and search results made up from a seed, always the same.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class Fixtures {
+
+    private static final String[] WORDS = {
+            "frostwire", "creative", "commons", "ubuntu", "linux", "live", "concert", "remix", "album", "deluxe",
+            "edition", "episode", "season", "documentary", "lecture", "physics", "history", "open", "source", "jazz",
+            "piano", "guitar", "trailer", "official", "video", "audio", "lossless", "flac", "1080p", "720p",
+            "x264", "hevc", "aac", "mp3", "ebook", "collection", "archive", "public", "domain", "classic"};
+
+    private static final String[] EXTENSIONS = {"mp3", "mp4", "mkv", "flac", "avi", "pdf", "zip", "torrent", "m4a", "epub"};
+
+    private static final String[] SOURCES = {"TPB", "Zooqle", "Torlock", "Eztv", "Limetorrents", "Monova", "YouTube", "Archive.org"};
+
+    private Fixtures() {
+    }
+
+    public static byte[] bytes(String name) throws IOException {
+        InputStream is = Fixtures.class.getResourceAsStream("/com/frostwire/" + name);
+        if (is == null) {
+            throw new IOException("Missing fixture: " + name);
+        }
+        try {
+            return IOUtils.toByteArray(is);
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    public static String string(String name) throws IOException {
+        return new String(bytes(name), "UTF-8");
+    }
+
+    /**
+     * Copies the fixture to a temporary file, for the code reading files.
+     */
+    public static File file(String name) throws IOException {
+        String ext = name.substring(name.lastIndexOf('.'));
+        File f = File.createTempFile("fixture", ext);
+        f.deleteOnExit();
+        FileUtils.writeByteArrayToFile(f, bytes(name));
+        return f;
+    }
+
+    public static List<FileSearchResult> results(int n, long seed) {
+        Random r = new Random(seed);
+        List<FileSearchResult> results = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            StringBuilder name = new StringBuilder();
+            int words = 3 + r.nextInt(6);
+            for (int j = 0; j < words; j++) {
+                if (j > 0) {
+                    name.append(r.nextBoolean() ? ' ' : '.');
+                }
+                name.append(WORDS[r.nextInt(WORDS.length)]);
+            }
+            String displayName = name.toString();
+            String filename = displayName.replace(' ', '_') + "." + EXTENSIONS[r.nextInt(EXTENSIONS.length)];
+            String source = SOURCES[r.nextInt(SOURCES.length)];
+            long size = 1024L + (long) (r.nextDouble() * 4L * 1024 * 1024 * 1024);
+            results.add(new SyntheticSearchResult(displayName, filename, source, size, i));
+        }
+        return results;
+    }
+
+    private static final class SyntheticSearchResult extends AbstractFileSearchResult {
+
+        private final String displayName;
+        private final String filename;
+        private final String source;
+        private final long size;
+        private final String detailsUrl;
+
+        SyntheticSearchResult(String displayName, String filename, String source, long size, int id) {
+            this.displayName = displayName;
+            this.filename = filename;
+            this.source = source;
+            this.size = size;
+            this.detailsUrl = "http://" + source.toLowerCase() + ".example.com/details/" + id;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return detailsUrl;
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.mp4;
+
+import com.frostwire.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The extraction of the audio of a small AAC file, reading the boxes,
+ * the sample tables and writing a new file with the tags.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Mp4DemuxerBenchmark {
+
+    private File input;
+    private File output;
+    private Mp4Info info;
+
+    @Setup
+    public void setup() throws IOException {
+        input = Fixtures.file("media/audio.m4a");
+        output = File.createTempFile("demuxed", ".m4a");
+        output.deleteOnExit();
+        info = Mp4Info.audio("Benchmark Tone", "FrostWire", "Fixtures", null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        input.delete();
+        output.delete();
+    }
+
+    @Benchmark
+    public long audio() throws IOException {
+        Mp4Demuxer.audio(input, output, info, null);
+        return output.length();
+    }
+}
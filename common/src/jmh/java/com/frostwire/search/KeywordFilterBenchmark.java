@@ -0,0 +1,67 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The keyword filters applied to every result of a search, like when
+ * the user adds or removes a filter.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordFilterBenchmark {
+
+    @Param({"10000", "100000"})
+    public int results;
+
+    @Param({"+:keyword:live", "+:keyword:live +:keyword:1080p -:keyword:trailer -:keyword:remix"})
+    public String query;
+
+    private List<FileSearchResult> list;
+    private List<KeywordFilter> filters;
+
+    @Setup
+    public void setup() {
+        list = Fixtures.results(results, 46);
+        filters = KeywordFilter.parseKeywordFilters(query);
+    }
+
+    @Benchmark
+    public int passesFilterPipeline() {
+        int passed = 0;
+        for (int i = 0; i < list.size(); i++) {
+            if (KeywordFilter.passesFilterPipeline(list.get(i), filters)) {
+                passed++;
+            }
+        }
+        return passed;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.Fixtures;
+import com.frostwire.search.btjunkie.BtjunkieSearchPerformer;
+import com.frostwire.search.eztv.EztvSearchPerformer;
+import com.frostwire.search.limetorrents.LimeTorrentsSearchPerformer;
+import com.frostwire.search.monova.MonovaSearchPerformer;
+import com.frostwire.search.torlock.TorLockSearchPerformer;
+import com.frostwire.search.torrentdownloads.TorrentDownloadsSearchPerformer;
+import com.frostwire.search.tpb.TPBSearchPerformer;
+import com.frostwire.search.yify.YifySearchPerformer;
+import com.frostwire.search.youtube.YouTubeSearchPerformer;
+import com.frostwire.search.zooqle.ZooqleSearchPerformer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parsing of a results page of every engine, the preliminary
+ * offsets and {@link PerformersHelper#searchPageHelper}, from the pages in
+ * {@code com/frostwire/search/pages}, no network involved.
+ * <p>
+ * The pages are synthetic, not saved from the sites: generated results
+ * in the markup the patterns of each performer expect, padded with made up
+ * filler like the ad blocks. The numbers are good to compare changes of the
+ * parsing between them, not to tell the time of a real page. Replace a page
+ * with a saved one to measure the real thing.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchPageBenchmark {
+
+    @Param({"btjunkie", "eztv", "limetorrents", "monova", "torlock", "torrentdownloads", "tpb", "yify", "youtube", "zooqle"})
+    public String engine;
+
+    private PagedWebSearchPerformer performer;
+    private String page;
+
+    @Setup
+    public void setup() throws IOException {
+        performer = newPerformer(engine);
+        page = Fixtures.string("search/pages/" + engine + ".html");
+        if (performer.searchPage(page).isEmpty()) {
+            throw new IllegalStateException("No results in the page of " + engine);
+        }
+    }
+
+    @Benchmark
+    public List<? extends SearchResult> searchPage() {
+        return performer.searchPage(page);
+    }
+
+    private static PagedWebSearchPerformer newPerformer(String engine) {
+        String keywords = "frostwire";
+        int timeout = 5000;
+        switch (engine) {
+            case "btjunkie":
+                return new BtjunkieSearchPerformer("btjunkie.eu", 1, keywords, timeout);
+            case "eztv":
+                return new EztvSearchPerformer("eztv.ag", 1, keywords, timeout);
+            case "limetorrents":
+                return new LimeTorrentsSearchPerformer("www.limetorrents.cc", 1, keywords, timeout);
+            case "monova":
+                return new MonovaSearchPerformer("monova.org", 1, keywords, timeout);
+            case "torlock":
+                return new TorLockSearchPerformer("www.torlock.com", 1, keywords, timeout);
+            case "torrentdownloads":
+                return new TorrentDownloadsSearchPerformer("www.torrentdownloads.me", 1, keywords, timeout);
+            case "tpb":
+                return new TPBSearchPerformer("thepiratebay.se", 1, keywords, timeout);
+            case "yify":
+                return new YifySearchPerformer("www.yify-torrent.org", 1, keywords, timeout);
+            case "youtube":
+                return new YouTubeSearchPerformer("www.youtube.com", 1, keywords, timeout);
+            case "zooqle":
+                return new ZooqleSearchPerformer("zooqle.com", 1, keywords, timeout);
+            default:
+                throw new IllegalArgumentException("Unknown engine: " + engine);
+        }
+    }
+}
@@ -28,6 +28,9 @@ import com.frostwire.transfers.BittorrentDownload;
 import com.frostwire.transfers.TransferItem;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.Logger;
+import com.frostwire.util.metrics.Histogram;
+import com.frostwire.util.metrics.Meter;
+import com.frostwire.util.metrics.Metrics;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
@@ -42,6 +45,9 @@ public final class BTDownload implements BittorrentDownload {
 
     private static final Logger LOG = Logger.getLogger(BTDownload.class);
 
+    private static final Meter ALERT_DISPATCHES = Metrics.getInstance().meter("bt.alert.dispatches");
+    private static final Histogram ALERT_DISPATCH_TIME = Metrics.getInstance().histogram("bt.alert.dispatch.download.us");
+
     private static final long SAVE_RESUME_RESOLUTION_MILLIS = 10000;
 
     private static final int[] ALERT_TYPES = {
@@ -73,6 +79,9 @@ public final class BTDownload implements BittorrentDownload {
 
     private final InnerListener innerListener;
 
+    // file index to the sources being streamed
+    private final Map<Integer, BTStreamSource> streams;
+
     public BTDownload(BTEngine engine, TorrentHandle th) {
         this.engine = engine;
         this.th = th;
@@ -84,6 +93,7 @@ public final class BTDownload implements BittorrentDownload {
         this.extra = createExtra();
         this.paymentOptions = loadPaymentOptions(ti);
         this.innerListener = new InnerListener();
+        this.streams = new HashMap<>();
         engine.addListener(innerListener);
     }
 
@@ -372,6 +382,8 @@ public final class BTDownload implements BittorrentDownload {
     public void remove(boolean deleteTorrent, boolean deleteData) {
         String infoHash = this.getInfoHash();
 
+        stopStreams();
+
         incompleteFilesToRemove = getIncompleteFiles();
 
         if (th.isValid()) {
@@ -414,6 +426,7 @@ public final class BTDownload implements BittorrentDownload {
 
     private void torrentRemoved() {
         engine.removeListener(innerListener);
+        stopStreams();
 
         if (parts != null) {
             parts.delete();
@@ -444,11 +457,51 @@ public final class BTDownload implements BittorrentDownload {
             if (piecesTracker != null) {
                 piecesTracker.setComplete(alert.pieceIndex(), true);
             }
+            synchronized (streams) {
+                for (BTStreamSource s : streams.values()) {
+                    s.pieceFinished();
+                }
+            }
         } catch (Throwable e) {
             LOG.warn("Error handling piece finished logic", e);
         }
     }
 
+    /**
+     * Serves the file from a local HTTP server, while it downloads, asking
+     * for the pieces ahead of what the player reads first.
+     *
+     * @return the loopback URL for the player, or null if not possible
+     */
+    public String streamUrl(int fileIndex) {
+        if (!th.isValid() || th.torrentFile() == null) {
+            return null;
+        }
+        try {
+            synchronized (streams) {
+                BTStreamSource source = streams.get(fileIndex);
+                if (source != null) {
+                    StreamServer.instance().unregister(source);
+                }
+                source = new BTStreamSource(th, fileIndex);
+                streams.put(fileIndex, source);
+                return StreamServer.instance().register(source);
+            }
+        } catch (Throwable e) {
+            LOG.error("Error starting the stream of file " + fileIndex, e);
+            return null;
+        }
+    }
+
+    private void stopStreams() {
+        synchronized (streams) {
+            for (BTStreamSource s : streams.values()) {
+                StreamServer.instance().unregister(s);
+            }
+            streams.clear();
+        }
+    }
+
     public boolean isPartial() {
         if (th.isValid()) {
             Priority[] priorities = th.filePriorities();
@@ -547,28 +600,10 @@ public final class BTDownload implements BittorrentDownload {
             if (!th.isValid()) {
                 return s;
             }
-            long[] progress = th.fileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
-            TorrentInfo ti = th.torrentFile();
-            if (ti == null) {
-                // still downloading the info (from magnet)
-                return s;
-            }
-            FileStorage fs = ti.files();
-            String prefix = savePath.getAbsolutePath();
-            long createdTime = created.getTime();
-            for (int i = 0; i < progress.length; i++) {
-                String fePath = fs.filePath(i);
-                long feSize = fs.fileSize(i);
-                if (progress[i] < feSize) {
-                    // lets see if indeed the file is incomplete
-                    File f = new File(prefix, fePath);
-                    if (!f.exists()) {
-                        continue; // nothing to do here
-                    }
-                    if (f.lastModified() >= createdTime) {
-                        // we have a file modified (supposedly) by this transfer
-                        s.add(f);
-                    }
+            for (File f : IncompleteFilesIndex.incompleteFiles(th, savePath, created.getTime())) {
+                // lets see if indeed the file is incomplete
+                if (f.exists()) {
+                    s.add(f);
                 }
             }
         } catch (Throwable e) {
@@ -684,6 +719,16 @@ public final class BTDownload implements BittorrentDownload {
 
         @Override
         public void alert(Alert<?> alert) {
+            long start = System.nanoTime();
+            try {
+                onAlert(alert);
+            } finally {
+                ALERT_DISPATCHES.mark();
+                ALERT_DISPATCH_TIME.recordMicrosSince(start);
+            }
+        }
+
+        private void onAlert(Alert<?> alert) {
             if (!(alert instanceof TorrentAlert<?>)) {
                 return;
             }
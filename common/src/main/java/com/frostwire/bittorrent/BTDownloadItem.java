@@ -51,6 +51,10 @@ public class BTDownloadItem implements TransferItem {
         this.piecesTracker = piecesTracker;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
     @Override
     public String getName() {
         return name;
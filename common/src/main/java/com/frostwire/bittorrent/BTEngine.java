@@ -19,6 +19,7 @@ package com.frostwire.bittorrent;
 
 import com.frostwire.jlibtorrent.AlertListener;
 import com.frostwire.jlibtorrent.Entry;
+import com.frostwire.jlibtorrent.LibTorrent;
 import com.frostwire.jlibtorrent.Priority;
 import com.frostwire.jlibtorrent.SessionManager;
 import com.frostwire.jlibtorrent.SessionParams;
@@ -31,9 +32,12 @@ import com.frostwire.jlibtorrent.alerts.Alert;
 import com.frostwire.jlibtorrent.alerts.AlertType;
 import com.frostwire.jlibtorrent.alerts.ExternalIpAlert;
 import com.frostwire.jlibtorrent.alerts.FastresumeRejectedAlert;
+import com.frostwire.jlibtorrent.alerts.FileCompletedAlert;
 import com.frostwire.jlibtorrent.alerts.ListenFailedAlert;
 import com.frostwire.jlibtorrent.alerts.ListenSucceededAlert;
+import com.frostwire.jlibtorrent.alerts.SessionStatsAlert;
 import com.frostwire.jlibtorrent.alerts.TorrentAlert;
+import com.frostwire.jlibtorrent.alerts.TorrentRemovedAlert;
 import com.frostwire.jlibtorrent.swig.bdecode_node;
 import com.frostwire.jlibtorrent.swig.byte_vector;
 import com.frostwire.jlibtorrent.swig.entry;
@@ -44,7 +48,12 @@ import com.frostwire.jlibtorrent.swig.settings_pack;
 import com.frostwire.platform.FileSystem;
 import com.frostwire.platform.Platforms;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
+import com.frostwire.transfers.TransferScheduler;
 import com.frostwire.util.Logger;
+import com.frostwire.util.metrics.Counter;
+import com.frostwire.util.metrics.Histogram;
+import com.frostwire.util.metrics.Meter;
+import com.frostwire.util.metrics.Metrics;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -56,14 +65,23 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 import static com.frostwire.jlibtorrent.alerts.AlertType.ADD_TORRENT;
+import static com.frostwire.jlibtorrent.alerts.AlertType.ALERTS_DROPPED;
 import static com.frostwire.jlibtorrent.alerts.AlertType.EXTERNAL_IP;
 import static com.frostwire.jlibtorrent.alerts.AlertType.FASTRESUME_REJECTED;
+import static com.frostwire.jlibtorrent.alerts.AlertType.FILE_COMPLETED;
 import static com.frostwire.jlibtorrent.alerts.AlertType.LISTEN_FAILED;
 import static com.frostwire.jlibtorrent.alerts.AlertType.LISTEN_SUCCEEDED;
+import static com.frostwire.jlibtorrent.alerts.AlertType.METADATA_RECEIVED;
 import static com.frostwire.jlibtorrent.alerts.AlertType.PEER_LOG;
+import static com.frostwire.jlibtorrent.alerts.AlertType.SESSION_STATS;
+import static com.frostwire.jlibtorrent.alerts.AlertType.STATE_CHANGED;
+import static com.frostwire.jlibtorrent.alerts.AlertType.STORAGE_MOVED;
+import static com.frostwire.jlibtorrent.alerts.AlertType.TORRENT_FINISHED;
 import static com.frostwire.jlibtorrent.alerts.AlertType.TORRENT_LOG;
+import static com.frostwire.jlibtorrent.alerts.AlertType.TORRENT_REMOVED;
 
 /**
  * @author gubatron
@@ -73,15 +91,30 @@ public final class BTEngine extends SessionManager {
 
     private static final Logger LOG = Logger.getLogger(BTEngine.class);
 
+    private static final Meter ALERT_DISPATCHES = Metrics.getInstance().meter("bt.alert.dispatches");
+    private static final Histogram ALERT_DISPATCH_TIME = Metrics.getInstance().histogram("bt.alert.dispatch.engine.us");
+    private static final Counter SETTINGS_TUNED = Metrics.getInstance().counter("bt.settings.tuned");
+
+    // the session posts its stats every second, the tuner looks at them less often
+    private static final long TUNING_INTERVAL_MILLIS = 10000;
+
     private static final int[] INNER_LISTENER_TYPES = new int[]{
             ADD_TORRENT.swig(),
             LISTEN_SUCCEEDED.swig(),
             LISTEN_FAILED.swig(),
             EXTERNAL_IP.swig(),
             FASTRESUME_REJECTED.swig(),
+            FILE_COMPLETED.swig(),
+            METADATA_RECEIVED.swig(),
+            TORRENT_FINISHED.swig(),
+            TORRENT_REMOVED.swig(),
+            STORAGE_MOVED.swig(),
+            STATE_CHANGED.swig(),
             TORRENT_LOG.swig(),
             PEER_LOG.swig(),
-            AlertType.LOG.swig()
+            AlertType.LOG.swig(),
+            SESSION_STATS.swig(),
+            ALERTS_DROPPED.swig()
     };
 
     private static final String TORRENT_ORIG_PATH_KEY = "torrent_orig_path";
@@ -94,13 +127,36 @@ public final class BTEngine extends SessionManager {
 
     private final InnerListener innerListener;
     private final Queue<RestoreDownloadTask> restoreDownloadsQueue;
+    private final IncompleteFilesIndex incompleteFiles;
 
     private BTEngineListener listener;
 
+    // serializes the settings applied by the user and by the engine,
+    // and guards the tuner and the fields below
+    private final Object settingsLock = new Object();
+    private SettingsTuner tuner;
+    // the limits configured by the user, the session may have lower ones
+    private int configuredActiveDownloads;
+    private int configuredConnectionsLimit;
+    // the download limit of the user is a budget shared with the HTTP
+    // transfers, the session only gets a part of it
+    private int configuredDownloadRateLimit;
+    private int sessionDownloadRateLimit;
+    private boolean sharingBudget;
+    // the settings being applied come from the engine, not from the user
+    private boolean internalApply;
+
+    private StatsIndexes statsIndexes;
+    private long lastTuning;
+    private long droppedAlerts;
+    private long lastRecvPayloadBytes;
+    private long lastStatsTime;
+
     private BTEngine() {
         super(false);
         this.innerListener = new InnerListener();
         this.restoreDownloadsQueue = new LinkedList<>();
+        this.incompleteFiles = new IncompleteFilesIndex();
     }
 
     private static class Loader {
@@ -122,6 +178,19 @@ public final class BTEngine extends SessionManager {
         this.listener = listener;
     }
 
+    /**
+     * Live, read only, set of the files that are still being
+     * downloaded (or skipped) by any transfer, plus the ".parts" files.
+     * It's safe to call {@code contains} on it from any thread.
+     */
+    public Set<File> incompleteFiles() {
+        return incompleteFiles.files();
+    }
+
+    public boolean isIncompleteFile(File file) {
+        return incompleteFiles.contains(file);
+    }
+
     @Override
     public void start() {
         SessionParams params = loadSettings();
@@ -144,17 +213,21 @@ public final class BTEngine extends SessionManager {
 
     @Override
     protected void onAfterStart() {
+        startSharingBudget();
+        startTuner();
         fireStarted();
     }
 
     @Override
     protected void onBeforeStop() {
         removeListener(innerListener);
+        stopTuning();
         saveSettings();
     }
 
     @Override
     protected void onAfterStop() {
+        incompleteFiles.clear();
         fireStopped();
     }
 
@@ -207,21 +280,167 @@ public final class BTEngine extends SessionManager {
         return params;
     }
 
+    @Override
+    public void applySettings(SettingsPack sp) {
+        synchronized (settingsLock) {
+            super.applySettings(sp);
+        }
+    }
+
+    /**
+     * Called from {@link #applySettings(SettingsPack)}, holding the
+     * settings lock.
+     */
     @Override
     protected void onApplySettings(SettingsPack sp) {
+        if (internalApply) {
+            // only load dependent values, nothing to save
+            return;
+        }
+        settings_pack p = sp.swig();
+        boolean limits = false;
+        if (p.has_val(settings_pack.int_types.active_downloads.swigValue())) {
+            configuredActiveDownloads = p.get_int(settings_pack.int_types.active_downloads.swigValue());
+            limits = true;
+        }
+        if (p.has_val(settings_pack.int_types.connections_limit.swigValue())) {
+            configuredConnectionsLimit = p.get_int(settings_pack.int_types.connections_limit.swigValue());
+            limits = true;
+        }
+        if (p.has_val(settings_pack.int_types.download_rate_limit.swigValue())) {
+            configuredDownloadRateLimit = p.get_int(settings_pack.int_types.download_rate_limit.swigValue());
+            sessionDownloadRateLimit = configuredDownloadRateLimit;
+        }
+        if (tuner != null && limits) {
+            tuner.configure(configuredActiveDownloads, configuredConnectionsLimit);
+        }
+        syncTransferScheduler();
         saveSettings();
     }
 
+    /**
+     * The limit configured by the user, the session may be running with
+     * a lower one for a while.
+     */
+    @Override
+    public int maxActiveDownloads() {
+        synchronized (settingsLock) {
+            return tuner != null ? configuredActiveDownloads : super.maxActiveDownloads();
+        }
+    }
+
+    /**
+     * The limit configured by the user, the session may be running with
+     * a lower one for a while.
+     */
+    @Override
+    public int maxConnections() {
+        synchronized (settingsLock) {
+            return tuner != null ? configuredConnectionsLimit : super.maxConnections();
+        }
+    }
+
+    /**
+     * The limit configured by the user, shared by the session and the
+     * HTTP transfers.
+     */
+    @Override
+    public int downloadRateLimit() {
+        synchronized (settingsLock) {
+            return sharingBudget ? configuredDownloadRateLimit : super.downloadRateLimit();
+        }
+    }
+
+    /**
+     * The state saved has the settings configured by the user, the
+     * tuned ones are only put back in the session after saving it.
+     */
     @Override
     public byte[] saveState() {
         if (swig() == null) {
             return null;
         }
 
-        entry e = new entry();
-        swig().save_state(e);
-        e.set(STATE_VERSION_KEY, STATE_VERSION_VALUE);
-        return Vectors.byte_vector2bytes(e.bencode());
+        synchronized (settingsLock) {
+            applyInternal(configuredSettings());
+            try {
+                entry e = new entry();
+                swig().save_state(e);
+                e.set(STATE_VERSION_KEY, STATE_VERSION_VALUE);
+                return Vectors.byte_vector2bytes(e.bencode());
+            } finally {
+                applyInternal(sessionSettings());
+            }
+        }
+    }
+
+    private void startSharingBudget() {
+        synchronized (settingsLock) {
+            // the saved state has the value configured by the user
+            configuredDownloadRateLimit = super.downloadRateLimit();
+            sessionDownloadRateLimit = configuredDownloadRateLimit;
+            sharingBudget = true;
+        }
+        syncTransferScheduler();
+    }
+
+    /**
+     * The global download limit configured by the user is a budget
+     * split between the session and the HTTP transfers by the transfer
+     * scheduler.
+     */
+    private void syncTransferScheduler() {
+        try {
+            synchronized (settingsLock) {
+                if (sharingBudget) {
+                    applySessionDownloadRateLimit(TransferScheduler.getInstance().downloadBudget(configuredDownloadRateLimit));
+                }
+            }
+        } catch (Throwable e) {
+            LOG.error("Error applying the global download limit to the transfer scheduler", e);
+        }
+    }
+
+    /**
+     * Called from the alerts thread, with the session stats of every
+     * second.
+     */
+    private void rebalanceDownloadBudget(SessionStatsAlert alert) {
+        StatsIndexes idx = statsIndexes;
+        if (idx == null) {
+            return;
+        }
+        try {
+            long bytes = stat(alert, idx.recvPayloadBytes);
+            long now = System.currentTimeMillis();
+            long rate = 0;
+            if (lastStatsTime > 0 && now > lastStatsTime) {
+                rate = (bytes - lastRecvPayloadBytes) * 1000 / (now - lastStatsTime);
+            }
+            lastRecvPayloadBytes = bytes;
+            lastStatsTime = now;
+
+            synchronized (settingsLock) {
+                if (sharingBudget) {
+                    applySessionDownloadRateLimit(TransferScheduler.getInstance().rebalance(rate));
+                }
+            }
+        } catch (Throwable e) {
+            LOG.error("Error sharing the global download limit", e);
+        }
+    }
+
+    // LOCKING: settingsLock
+    private void applySessionDownloadRateLimit(int limit) {
+        int current = sessionDownloadRateLimit;
+        // a change of less than 5% is not worth a settings update every second
+        if (limit == current || (limit > 0 && current > 0 && Math.abs(limit - current) < limit / 20)) {
+            return;
+        }
+        sessionDownloadRateLimit = limit;
+        SettingsPack sp = new SettingsPack();
+        sp.downloadRateLimit(limit);
+        applyInternal(sp);
     }
 
     private void saveSettings() {
@@ -244,7 +463,26 @@ public final class BTEngine extends SessionManager {
 
         SettingsPack sp = defaultSettings();
 
-        applySettings(sp);
+        synchronized (settingsLock) {
+            SettingsTuner t = tuner;
+            if (t != null) {
+                t.reset();
+            }
+            // the session back to the configured values, in case the
+            // defaults don't have them
+            applyInternal(configuredSettings());
+            applySettings(sp);
+            if (t != null) {
+                configuredActiveDownloads = super.maxActiveDownloads();
+                configuredConnectionsLimit = super.maxConnections();
+                t.configure(configuredActiveDownloads, configuredConnectionsLimit);
+            }
+            if (sharingBudget) {
+                configuredDownloadRateLimit = super.downloadRateLimit();
+                sessionDownloadRateLimit = configuredDownloadRateLimit;
+            }
+        }
+        syncTransferScheduler();
     }
 
     public void download(File torrent, File saveDir, boolean[] selection) {
@@ -540,6 +778,7 @@ public final class BTEngine extends SessionManager {
         try {
             TorrentHandle th = find(alert.handle().infoHash());
             if (th != null) {
+                incompleteFiles.update(th);
                 BTDownload dl = new BTDownload(this, th);
                 if (listener != null) {
                     listener.downloadAdded(this, dl);
@@ -702,7 +941,16 @@ public final class BTEngine extends SessionManager {
 
         @Override
         public void alert(Alert<?> alert) {
+            long start = System.nanoTime();
+            try {
+                onAlert(alert);
+            } finally {
+                ALERT_DISPATCHES.mark();
+                ALERT_DISPATCH_TIME.recordMicrosSince(start);
+            }
+        }
 
+        private void onAlert(Alert<?> alert) {
             AlertType type = alert.type();
 
             switch (type) {
@@ -723,15 +971,189 @@ public final class BTEngine extends SessionManager {
                 case FASTRESUME_REJECTED:
                     onFastresumeRejected((FastresumeRejectedAlert) alert);
                     break;
+                case FILE_COMPLETED:
+                    FileCompletedAlert fileCompletedAlert = (FileCompletedAlert) alert;
+                    incompleteFiles.complete(fileCompletedAlert.handle(), fileCompletedAlert.index());
+                    break;
+                case METADATA_RECEIVED:
+                case TORRENT_FINISHED:
+                case STORAGE_MOVED:
+                case STATE_CHANGED:
+                    incompleteFiles.update(((TorrentAlert<?>) alert).handle());
+                    break;
+                case TORRENT_REMOVED:
+                    incompleteFiles.remove(((TorrentRemovedAlert) alert).infoHash().toString());
+                    break;
                 case TORRENT_LOG:
                 case PEER_LOG:
                 case LOG:
                     printAlert(alert);
                     break;
+                case SESSION_STATS:
+                    onSessionStats((SessionStatsAlert) alert);
+                    break;
+                case ALERTS_DROPPED:
+                    droppedAlerts++;
+                    break;
             }
         }
     }
 
+    private void startTuner() {
+        try {
+            statsIndexes = new StatsIndexes();
+            SettingsPack profile = defaultSettings();
+            int cacheSize = profile.swig().get_int(settings_pack.int_types.cache_size.swigValue());
+            synchronized (settingsLock) {
+                // the saved state has the values configured by the user
+                configuredActiveDownloads = super.maxActiveDownloads();
+                configuredConnectionsLimit = super.maxConnections();
+                tuner = new SettingsTuner(cacheSize, profile.maxQueuedDiskBytes(), profile.sendBufferWatermark(),
+                        configuredActiveDownloads, configuredConnectionsLimit);
+            }
+        } catch (Throwable e) {
+            LOG.error("Error starting the tuning of the session settings", e);
+        }
+    }
+
+    /**
+     * Puts back what the user configured, not what the load asked for.
+     */
+    private void stopTuning() {
+        synchronized (settingsLock) {
+            applyInternal(configuredSettings());
+            tuner = null;
+            sharingBudget = false;
+        }
+    }
+
+    /**
+     * Called from the alerts thread.
+     */
+    private void onSessionStats(SessionStatsAlert alert) {
+        rebalanceDownloadBudget(alert);
+
+        long now = System.currentTimeMillis();
+        if (now - lastTuning < TUNING_INTERVAL_MILLIS) {
+            return;
+        }
+        lastTuning = now;
+
+        synchronized (settingsLock) {
+            tune(tuner, alert);
+        }
+    }
+
+    private void tune(SettingsTuner t, SessionStatsAlert alert) {
+        if (t == null) {
+            return;
+        }
+        try {
+            StatsIndexes idx = statsIndexes;
+            SettingsTuner.Sample s = new SettingsTuner.Sample(
+                    (int) stat(alert, idx.queuedDiskJobs),
+                    (int) stat(alert, idx.peers),
+                    (int) (stat(alert, idx.downloadingTorrents) + stat(alert, idx.seedingTorrents)),
+                    (int) stat(alert, idx.unchokedPeers),
+                    (int) stat(alert, idx.unchokeSlots),
+                    stat(alert, idx.blocksRead),
+                    stat(alert, idx.cacheHits),
+                    droppedAlerts);
+
+            if (t.update(s)) {
+                applyInternal(tunedSettings(t));
+                SETTINGS_TUNED.inc();
+                LOG.info("Session settings tuned, cache_size=" + t.cacheSize() +
+                        ", max_queued_disk_bytes=" + t.maxQueuedDiskBytes() +
+                        ", send_buffer_watermark=" + t.sendBufferWatermark() +
+                        ", active_downloads=" + t.activeDownloads() +
+                        ", connections_limit=" + t.connectionsLimit());
+            }
+        } catch (Throwable e) {
+            LOG.error("Error tuning the session settings", e);
+        }
+    }
+
+    // LOCKING: settingsLock
+    private SettingsPack sessionSettings() {
+        SettingsPack sp = tuner != null ? tunedSettings(tuner) : new SettingsPack();
+        if (sharingBudget) {
+            sp.downloadRateLimit(sessionDownloadRateLimit);
+        }
+        return sp;
+    }
+
+    // LOCKING: settingsLock
+    private SettingsPack configuredSettings() {
+        SettingsPack sp = tuner != null ? configuredSettings(tuner) : new SettingsPack();
+        if (sharingBudget) {
+            sp.downloadRateLimit(configuredDownloadRateLimit);
+        }
+        return sp;
+    }
+
+    private static SettingsPack tunedSettings(SettingsTuner t) {
+        SettingsPack sp = new SettingsPack();
+        sp.cacheSize(t.cacheSize());
+        sp.maxQueuedDiskBytes(t.maxQueuedDiskBytes());
+        sp.sendBufferWatermark(t.sendBufferWatermark());
+        sp.activeDownloads(t.activeDownloads());
+        sp.connectionsLimit(t.connectionsLimit());
+        return sp;
+    }
+
+    private static SettingsPack configuredSettings(SettingsTuner t) {
+        SettingsPack sp = new SettingsPack();
+        sp.cacheSize(t.configuredCacheSize());
+        sp.maxQueuedDiskBytes(t.configuredMaxQueuedDiskBytes());
+        sp.sendBufferWatermark(t.configuredSendBufferWatermark());
+        sp.activeDownloads(t.configuredActiveDownloads());
+        sp.connectionsLimit(t.configuredConnectionsLimit());
+        return sp;
+    }
+
+    /**
+     * Applies settings that come from the engine, not from the user, so
+     * they are not saved nor taken as the limits of the user.
+     */
+    private void applyInternal(SettingsPack sp) {
+        if (swig() == null) {
+            return;
+        }
+
+        synchronized (settingsLock) {
+            boolean nested = internalApply;
+            internalApply = true;
+            try {
+                applySettings(sp);
+            } finally {
+                internalApply = nested;
+            }
+        }
+    }
+
+    private static long stat(SessionStatsAlert alert, int index) {
+        return index >= 0 ? alert.value(index) : 0;
+    }
+
+    /**
+     * Where the counters of the tuner (and the download rate of the
+     * session) are in the session stats, -1 if
+     * this libtorrent doesn't have them.
+     */
+    private static final class StatsIndexes {
+
+        final int queuedDiskJobs = LibTorrent.findMetricIdx("disk.queued_disk_jobs");
+        final int peers = LibTorrent.findMetricIdx("peer.num_peers_connected");
+        final int downloadingTorrents = LibTorrent.findMetricIdx("ses.num_downloading_torrents");
+        final int seedingTorrents = LibTorrent.findMetricIdx("ses.num_seeding_torrents");
+        final int unchokedPeers = LibTorrent.findMetricIdx("peer.num_peers_up_unchoked");
+        final int unchokeSlots = LibTorrent.findMetricIdx("ses.num_unchoke_slots");
+        final int blocksRead = LibTorrent.findMetricIdx("disk.num_blocks_read");
+        final int cacheHits = LibTorrent.findMetricIdx("disk.num_blocks_cache_hits");
+        final int recvPayloadBytes = LibTorrent.findMetricIdx("net.recv_payload_bytes");
+    }
+
     private void onExternalIpAlert(ExternalIpAlert alert) {
         try {
             // libtorrent perform all kind of tests
@@ -0,0 +1,240 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.FileStorage;
+import com.frostwire.jlibtorrent.TorrentHandle;
+import com.frostwire.jlibtorrent.TorrentInfo;
+import com.frostwire.util.MimeDetector;
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A file of a torrent being downloaded, read straight from the partial file.
+ * <p>
+ * Every read asks libtorrent for the pieces ahead of it with increasing
+ * deadlines, so they are downloaded before anything else, and waits for
+ * the piece under the read to finish. The lock is only held to update the
+ * window and while waiting, so a read waiting for a piece doesn't hold back
+ * the reads of a seek, and every read has its own timeout.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class BTStreamSource implements StreamSource {
+
+    private static final int READAHEAD_BYTES = 8 * 1024 * 1024;
+    private static final int MIN_READAHEAD_PIECES = 4;
+    private static final int DEADLINE_STEP = 200; // ms
+    private static final long PIECE_TIMEOUT = 5 * 60 * 1000; // ms
+    private static final long PIECE_CHECK_INTERVAL = 1000; // ms
+    private static final long FLUSH_RETRY_WAIT = 100; // ms
+
+    private final TorrentHandle th;
+    private final File file;
+    private final long fileOffset;
+    private final long length;
+    private final int pieceLength;
+    private final int lastPiece;
+    private final int window;
+
+    private final Object lock;
+
+    // guarded by lock
+    private int windowStart;
+    private long piecesFinished;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private boolean closed;
+
+    BTStreamSource(TorrentHandle th, int index) {
+        TorrentInfo ti = th.torrentFile();
+        FileStorage fs = ti.files();
+
+        this.th = th;
+        this.file = new File(th.savePath(), fs.filePath(index));
+        this.fileOffset = fs.fileOffset(index);
+        this.length = fs.fileSize(index);
+        this.pieceLength = ti.pieceLength();
+        this.lastPiece = ti.numPieces() - 1;
+        this.window = Math.max(MIN_READAHEAD_PIECES, READAHEAD_BYTES / pieceLength);
+
+        this.lock = new Object();
+        this.windowStart = -1;
+    }
+
+    @Override
+    public String name() {
+        return file.getName();
+    }
+
+    @Override
+    public String contentType() {
+        return MimeDetector.getMimeType(FilenameUtils.getExtension(file.getName()));
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read(long position, byte[] b, int off, int len) throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+
+        long torrentOffset = fileOffset + position;
+        int piece = (int) (torrentOffset / pieceLength);
+        // don't read past the piece we waited for
+        long pieceEnd = (long) (piece + 1) * pieceLength;
+        int n = (int) Math.min(len, Math.min(length - position, pieceEnd - torrentOffset));
+
+        long deadline = System.currentTimeMillis() + PIECE_TIMEOUT;
+        prioritize(piece);
+        awaitPiece(piece, deadline);
+
+        while (true) {
+            int r = channel().read(ByteBuffer.wrap(b, off, n), position);
+            // a short read is fine, the caller asks for the rest
+            if (r > 0) {
+                return r;
+            }
+            // the piece is finished but the file is not written that far yet
+            synchronized (lock) {
+                waitLock(piece, deadline, FLUSH_RETRY_WAIT);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+                raf = null;
+                channel = null;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Called from the alerts thread when any piece of the torrent finishes.
+     */
+    void pieceFinished() {
+        synchronized (lock) {
+            piecesFinished++;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Sets increasing deadlines for the pieces ahead of the playhead, only
+     * when it gets out of the last window, so the players opening several
+     * connections at once don't keep resetting each other. The newest read
+     * out of the window moves it, the deadlines are set without the lock.
+     */
+    private void prioritize(int piece) {
+        synchronized (lock) {
+            if (windowStart >= 0 && piece >= windowStart && piece < windowStart + window / 2) {
+                return;
+            }
+            windowStart = piece;
+        }
+        if (!th.isValid()) {
+            return;
+        }
+        int end = Math.min(lastPiece, piece + window - 1);
+        int deadline = 0;
+        for (int i = piece; i <= end; i++) {
+            if (!th.havePiece(i)) {
+                th.setPieceDeadline(i, deadline);
+                deadline += DEADLINE_STEP;
+            }
+        }
+    }
+
+    private void awaitPiece(int piece, long deadline) throws IOException {
+        while (true) {
+            long finished;
+            synchronized (lock) {
+                checkOpen();
+                finished = piecesFinished;
+            }
+            if (!th.isValid()) {
+                throw new IOException("Torrent removed");
+            }
+            if (th.havePiece(piece)) {
+                return;
+            }
+            synchronized (lock) {
+                // don't miss a piece finished since the check
+                if (piecesFinished == finished) {
+                    waitLock(piece, deadline, PIECE_CHECK_INTERVAL);
+                }
+            }
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        synchronized (lock) {
+            checkOpen();
+            if (channel == null) {
+                raf = new RandomAccessFile(file, "r");
+                channel = raf.getChannel();
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * Waits at most {@code millis}, or until the deadline of the read.
+     * Must be called holding the lock.
+     */
+    private void waitLock(int piece, long deadline, long millis) throws IOException {
+        checkOpen();
+        long left = deadline - System.currentTimeMillis();
+        if (left <= 0) {
+            throw new IOException("Timeout waiting for piece " + piece);
+        }
+        try {
+            lock.wait(Math.min(left, millis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for piece");
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.FileStorage;
+import com.frostwire.jlibtorrent.TorrentHandle;
+import com.frostwire.jlibtorrent.TorrentInfo;
+import com.frostwire.util.Logger;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Engine wide index of the files that are still being downloaded
+ * (or are parts of a partial download), kept up to date from the
+ * alerts loop. It allows the library code to ask "is this file
+ * still downloading" without scanning every transfer.
+ * <p>
+ * Writes are only performed from the alerts thread, when a torrent is
+ * added, changes state or completes a file, reads can happen from any
+ * thread.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class IncompleteFilesIndex {
+
+    private static final Logger LOG = Logger.getLogger(IncompleteFilesIndex.class);
+
+    // file -> info hash of the torrent owning it
+    private final ConcurrentMap<File, String> files;
+    // info hash -> files owned by the torrent
+    private final ConcurrentMap<String, File[]> torrents;
+
+    private final Set<File> view;
+
+    IncompleteFilesIndex() {
+        this.files = new ConcurrentHashMap<>();
+        this.torrents = new ConcurrentHashMap<>();
+        this.view = Collections.unmodifiableSet(files.keySet());
+    }
+
+    public boolean contains(File file) {
+        return file != null && files.containsKey(file);
+    }
+
+    /**
+     * Returns a live, read only, view of the incomplete files.
+     */
+    public Set<File> files() {
+        return view;
+    }
+
+    void update(TorrentHandle th) {
+        try {
+            if (!th.isValid()) {
+                return;
+            }
+            String infoHash = th.infoHash().toString();
+            Set<File> s = incompleteFiles(th, new File(th.savePath()), th.status().addedTime());
+
+            TorrentInfo ti = th.torrentFile();
+            if (ti != null) {
+                s.add(new File(th.savePath(), "." + infoHash + ".parts"));
+            }
+
+            // add the new files before dropping the old ones, so a
+            // file still incomplete is never missing from the index
+            File[] arr = s.toArray(new File[0]);
+            for (File f : arr) {
+                files.put(f, infoHash);
+            }
+            File[] old = torrents.put(infoHash, arr);
+            if (old != null) {
+                for (File f : old) {
+                    if (!s.contains(f)) {
+                        files.remove(f, infoHash);
+                    }
+                }
+            }
+        } catch (Throwable e) {
+            LOG.error("Error updating the incomplete files index", e);
+        }
+    }
+
+    void complete(TorrentHandle th, int index) {
+        try {
+            if (!th.isValid()) {
+                return;
+            }
+            TorrentInfo ti = th.torrentFile();
+            if (ti == null || index < 0 || index >= ti.numFiles()) {
+                return;
+            }
+            File f = new File(th.savePath(), ti.files().filePath(index));
+            files.remove(f, th.infoHash().toString());
+        } catch (Throwable e) {
+            LOG.error("Error updating the incomplete files index", e);
+        }
+    }
+
+    void remove(String infoHash) {
+        File[] arr = torrents.remove(infoHash);
+        if (arr != null) {
+            for (File f : arr) {
+                files.remove(f, infoHash);
+            }
+        }
+    }
+
+    void clear() {
+        torrents.clear();
+        files.clear();
+    }
+
+    static Set<File> incompleteFiles(TorrentHandle th, File savePath, long createdTime) {
+        Set<File> s = new HashSet<>();
+        long[] progress = th.fileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
+        TorrentInfo ti = th.torrentFile();
+        if (ti == null) {
+            // still downloading the info (from magnet)
+            return s;
+        }
+        FileStorage fs = ti.files();
+        String prefix = savePath.getAbsolutePath();
+        for (int i = 0; i < progress.length; i++) {
+            String fePath = fs.filePath(i);
+            long feSize = fs.fileSize(i);
+            if (progress[i] < feSize) {
+                File f = new File(prefix, fePath);
+                // files that already existed before this transfer
+                // are not considered as (supposedly) modified by it
+                if (!f.exists() || f.lastModified() >= createdTime) {
+                    s.add(f);
+                }
+            }
+        }
+        return s;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.util.ThreadPool;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes the SHA-1 piece hashes of a list of files laid out one after the
+ * other, as in a torrent, using all the cores.
+ * <p>
+ * The calling thread reads the files sequentially, a whole piece per read,
+ * into a small pool of piece buffers and the pieces are hashed in parallel.
+ * Every hash goes to the slot of its piece, whatever the order they finish
+ * in, and reading never gets further ahead than the buffers in the pool.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class PieceHasher {
+
+    private static final long PROGRESS_INTERVAL = 500; // ms
+
+    private static final ThreadLocal<MessageDigest> SHA1 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    private final int pieceLength;
+    private final List<Source> sources;
+
+    private long totalSize;
+    private int threads;
+    private Listener listener;
+    private volatile boolean cancelled;
+
+    public PieceHasher(int pieceLength) {
+        if (pieceLength <= 0) {
+            throw new IllegalArgumentException("Invalid piece length: " + pieceLength);
+        }
+        this.pieceLength = pieceLength;
+        this.sources = new ArrayList<>();
+        this.threads = Runtime.getRuntime().availableProcessors();
+    }
+
+    public PieceHasher addFile(File file, long size) {
+        sources.add(new Source(file, size));
+        totalSize += size;
+        return this;
+    }
+
+    /**
+     * Adds a pad file, hashed as zeros.
+     */
+    public PieceHasher addPadding(long size) {
+        sources.add(new Source(null, size));
+        totalSize += size;
+        return this;
+    }
+
+    /**
+     * Threads hashing pieces, by default the number of cores. With
+     * only one the pieces are hashed in the calling thread.
+     */
+    public PieceHasher threads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    public PieceHasher listener(Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    public int getNumPieces() {
+        return (int) ((totalSize + pieceLength - 1) / pieceLength);
+    }
+
+    /**
+     * Stops the hashing as soon as possible, could be called from the listener.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Hashes all the pieces, the last one could be shorter.
+     *
+     * @return the hash of every piece, or null if cancelled
+     */
+    public byte[][] hash() throws IOException {
+        final byte[][] hashes = new byte[getNumPieces()][];
+        Progress progress = new Progress(totalSize);
+
+        int window = threads == 1 ? 1 : threads * 2;
+        BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<>(window);
+        for (int i = 0; i < window; i++) {
+            buffers.add(new byte[pieceLength]);
+        }
+        ExecutorService executor = threads > 1 ? ThreadPool.newThreadPool("PieceHasher", threads, true) : null;
+
+        try {
+            Reader reader = new Reader(hashes, buffers, executor, progress);
+            for (Source s : sources) {
+                if (cancelled || progress.error.get() != null) {
+                    break;
+                }
+                if (s.file != null) {
+                    reader.read(s);
+                } else {
+                    reader.pad(s.size);
+                }
+            }
+            reader.finish();
+
+            // all the buffers are back once all the pieces are hashed
+            for (int i = 0; i < window; i++) {
+                take(buffers, progress);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+
+        Throwable error = progress.error.get();
+        if (error != null) {
+            throw error instanceof IOException ? (IOException) error : new IOException(error);
+        }
+        if (cancelled) {
+            return null;
+        }
+        report(progress, true);
+        return hashes;
+    }
+
+    private byte[] take(BlockingQueue<byte[]> buffers, Progress progress) throws IOException {
+        try {
+            while (true) {
+                byte[] buffer = buffers.poll(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                report(progress, false);
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+            throw new IOException("Interrupted while hashing pieces", e);
+        }
+    }
+
+    private void report(Progress progress, boolean done) {
+        Listener l = listener;
+        if (l == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (!done && now - progress.lastReport < PROGRESS_INTERVAL) {
+            return;
+        }
+        progress.lastReport = now;
+
+        long hashed = progress.hashed.get();
+        long elapsed = Math.max(1, now - progress.start);
+        long bytesPerSecond = hashed * 1000 / elapsed;
+        long eta = bytesPerSecond > 0 ? (progress.total - hashed) / bytesPerSecond : -1;
+        l.onProgress(this, hashed, progress.total, bytesPerSecond, eta);
+    }
+
+    private static void hash(byte[][] hashes, int index, byte[] buffer, int length) {
+        MessageDigest md = SHA1.get();
+        md.update(buffer, 0, length);
+        hashes[index] = md.digest();
+    }
+
+    public interface Listener {
+
+        /**
+         * Called from the thread calling {@link #hash()}, at most twice a second
+         * and once at the end.
+         *
+         * @param etaSeconds -1 if still unknown
+         */
+        void onProgress(PieceHasher hasher, long hashedBytes, long totalBytes, long bytesPerSecond, long etaSeconds);
+    }
+
+    /**
+     * Fills the piece buffers in order and hands the full ones to the executor.
+     */
+    private final class Reader {
+
+        private final byte[][] hashes;
+        private final BlockingQueue<byte[]> buffers;
+        private final ExecutorService executor;
+        private final Progress progress;
+
+        private int piece;
+        private byte[] buffer;
+        private int fill;
+
+        Reader(byte[][] hashes, BlockingQueue<byte[]> buffers, ExecutorService executor, Progress progress) throws IOException {
+            this.hashes = hashes;
+            this.buffers = buffers;
+            this.executor = executor;
+            this.progress = progress;
+            this.buffer = take(buffers, progress);
+        }
+
+        void read(Source s) throws IOException {
+            FileInputStream in = new FileInputStream(s.file);
+            try {
+                FileChannel ch = in.getChannel();
+                long remaining = s.size;
+                while (remaining > 0) {
+                    if (cancelled || progress.error.get() != null) {
+                        return;
+                    }
+                    int n = ch.read(ByteBuffer.wrap(buffer, fill, (int) Math.min(pieceLength - fill, remaining)));
+                    if (n < 0) {
+                        throw new EOFException("File is shorter than expected: " + s.file);
+                    }
+                    fill += n;
+                    remaining -= n;
+                    if (fill == pieceLength) {
+                        submit();
+                    }
+                }
+            } finally {
+                in.close();
+            }
+        }
+
+        void pad(long size) throws IOException {
+            long remaining = size;
+            while (remaining > 0 && !cancelled) {
+                int n = (int) Math.min(pieceLength - fill, remaining);
+                Arrays.fill(buffer, fill, fill + n, (byte) 0);
+                fill += n;
+                remaining -= n;
+                if (fill == pieceLength) {
+                    submit();
+                }
+            }
+        }
+
+        void finish() throws IOException {
+            if (fill > 0 && !cancelled && progress.error.get() == null) {
+                submit();
+            }
+            buffers.add(buffer);
+            buffer = null;
+        }
+
+        private void submit() throws IOException {
+            final int index = piece++;
+            final byte[] b = buffer;
+            final int length = fill;
+
+            if (executor == null) {
+                hash(hashes, index, b, length);
+                progress.hashed.addAndGet(length);
+                report(progress, false);
+            } else {
+                buffer = null;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            hash(hashes, index, b, length);
+                            progress.hashed.addAndGet(length);
+                        } catch (Throwable e) {
+                            progress.error.compareAndSet(null, e);
+                        } finally {
+                            buffers.add(b);
+                        }
+                    }
+                });
+                buffer = take(buffers, progress);
+            }
+            fill = 0;
+        }
+    }
+
+    private static final class Source {
+
+        final File file; // null for padding
+        final long size;
+
+        Source(File file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    private static final class Progress {
+
+        final long total;
+        final long start;
+        final AtomicLong hashed;
+        final AtomicReference<Throwable> error;
+        long lastReport;
+
+        Progress(long total) {
+            this.total = total;
+            this.start = System.currentTimeMillis();
+            this.hashed = new AtomicLong();
+            this.error = new AtomicReference<>();
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+/**
+ * Decides the session settings that depend on the load, from the
+ * counters of the periodic session stats, one sample at a time.
+ * <p>
+ * A knob moves only when its signal holds for {@link #HYSTERESIS}
+ * samples in a row, and then it rests for {@link #COOLDOWN} samples, the
+ * thresholds to go up and down are apart, so a noisy load never makes
+ * the settings flap. The memory knobs move between the profile values
+ * and four times them, the active downloads and the connections never
+ * go over what the user configured.
+ * <p>
+ * No libtorrent in here, not thread safe.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SettingsTuner {
+
+    static final int HYSTERESIS = 3;
+    static final int COOLDOWN = 6;
+
+    // disk jobs waiting
+    static final int DISK_CONGESTED = 64;
+    static final int DISK_IDLE = 4;
+
+    // blocks read between samples, and the ratio of them from the cache
+    static final int CACHE_MIN_READS = 256;
+    static final double CACHE_MISSING = 0.40;
+    static final double CACHE_ENOUGH = 0.90;
+
+    // unchoked peers of the upload slots
+    static final double UPLOAD_SATURATED = 0.95;
+    static final double UPLOAD_SPARE = 0.50;
+
+    // connected peers of the limit, and per active torrent
+    static final double CONNECTIONS_SATURATED = 0.90;
+    static final double CONNECTIONS_SPARE = 0.70;
+    static final int FEW_PEERS_PER_TORRENT = 10;
+
+    private static final int MEMORY_FACTOR = 4;
+    private static final int MIN_CONNECTIONS = 20;
+
+    private final Knob cacheSize;
+    private final Knob maxQueuedDiskBytes;
+    private final Knob sendBufferWatermark;
+    private final Knob activeDownloads;
+    private final Knob connectionsLimit;
+
+    private Sample last;
+
+    SettingsTuner(int cacheSize, int maxQueuedDiskBytes, int sendBufferWatermark, int activeDownloads, int connectionsLimit) {
+        this.cacheSize = new Knob(cacheSize, cacheSize, cacheSize * MEMORY_FACTOR);
+        this.maxQueuedDiskBytes = new Knob(maxQueuedDiskBytes, maxQueuedDiskBytes, maxQueuedDiskBytes * MEMORY_FACTOR);
+        this.sendBufferWatermark = new Knob(sendBufferWatermark, sendBufferWatermark, sendBufferWatermark * MEMORY_FACTOR);
+        this.activeDownloads = new Knob(activeDownloads, 1, activeDownloads);
+        this.connectionsLimit = new Knob(connectionsLimit, minConnections(connectionsLimit), connectionsLimit);
+    }
+
+    int cacheSize() {
+        return cacheSize.value;
+    }
+
+    int maxQueuedDiskBytes() {
+        return maxQueuedDiskBytes.value;
+    }
+
+    int sendBufferWatermark() {
+        return sendBufferWatermark.value;
+    }
+
+    int activeDownloads() {
+        return activeDownloads.value;
+    }
+
+    int connectionsLimit() {
+        return connectionsLimit.value;
+    }
+
+    int configuredCacheSize() {
+        return cacheSize.min;
+    }
+
+    int configuredMaxQueuedDiskBytes() {
+        return maxQueuedDiskBytes.min;
+    }
+
+    int configuredSendBufferWatermark() {
+        return sendBufferWatermark.min;
+    }
+
+    int configuredActiveDownloads() {
+        return activeDownloads.max;
+    }
+
+    int configuredConnectionsLimit() {
+        return connectionsLimit.max;
+    }
+
+    /**
+     * The user changed the limits, they are the new ceilings, and the
+     * values again.
+     */
+    void configure(int activeDownloads, int connectionsLimit) {
+        this.activeDownloads.reset(activeDownloads, 1, activeDownloads);
+        this.connectionsLimit.reset(connectionsLimit, minConnections(connectionsLimit), connectionsLimit);
+    }
+
+    /**
+     * Back to the profile and the limits of the user, like when the
+     * settings are reverted or saved.
+     */
+    void reset() {
+        cacheSize.reset(cacheSize.min, cacheSize.min, cacheSize.max);
+        maxQueuedDiskBytes.reset(maxQueuedDiskBytes.min, maxQueuedDiskBytes.min, maxQueuedDiskBytes.max);
+        sendBufferWatermark.reset(sendBufferWatermark.min, sendBufferWatermark.min, sendBufferWatermark.max);
+        activeDownloads.reset(activeDownloads.max, activeDownloads.min, activeDownloads.max);
+        connectionsLimit.reset(connectionsLimit.max, connectionsLimit.min, connectionsLimit.max);
+        last = null;
+    }
+
+    /**
+     * @return true if any of the settings changed
+     */
+    boolean update(Sample s) {
+        Sample prev = last;
+        last = s;
+        if (prev == null) {
+            return false;
+        }
+
+        long reads = s.blocksRead - prev.blocksRead;
+        long hits = s.cacheHits - prev.cacheHits;
+        long dropped = s.droppedAlerts - prev.droppedAlerts;
+        if (reads < 0 || hits < 0 || dropped < 0) {
+            // counters restarted, wait for the next one
+            return false;
+        }
+
+        boolean changed = false;
+
+        // reads that the cache misses, a bigger one; barely any reads or
+        // most of them hits, back to the profile
+        int cacheSignal = 0;
+        if (reads >= CACHE_MIN_READS && hits < reads * CACHE_MISSING) {
+            cacheSignal = 1;
+        } else if (reads < CACHE_MIN_READS / 4 || hits > reads * CACHE_ENOUGH) {
+            cacheSignal = -1;
+        }
+        changed |= cacheSize.update(cacheSignal, 2.0);
+
+        // the disk doesn't keep up, room for the bursts of writes
+        int diskSignal = s.queuedDiskJobs >= DISK_CONGESTED ? 1 : (s.queuedDiskJobs <= DISK_IDLE ? -1 : 0);
+        changed |= maxQueuedDiskBytes.update(diskSignal, 2.0);
+
+        // every upload slot busy, more buffer per peer to keep them full
+        int uploadSignal = 0;
+        if (s.unchokeSlots > 0) {
+            double saturation = (double) s.unchokedPeers / s.unchokeSlots;
+            uploadSignal = saturation >= UPLOAD_SATURATED ? 1 : (saturation < UPLOAD_SPARE ? -1 : 0);
+        }
+        changed |= sendBufferWatermark.update(uploadSignal, 1.5);
+
+        // the connections are shared by too many torrents to get anywhere,
+        // fewer at the same time
+        int limit = connectionsLimit.value;
+        int peersPerTorrent = s.peers / Math.max(1, s.torrents);
+        int downloadsSignal = 0;
+        if (s.peers >= limit * CONNECTIONS_SATURATED && peersPerTorrent < FEW_PEERS_PER_TORRENT) {
+            downloadsSignal = -1;
+        } else if (s.peers < limit * CONNECTIONS_SPARE) {
+            downloadsSignal = 1;
+        }
+        changed |= activeDownloads.step(downloadsSignal);
+
+        // the alerts don't fit in the queue, fewer peers to hear from
+        changed |= connectionsLimit.update(dropped > 0 ? -1 : 1, 1.25);
+
+        return changed;
+    }
+
+    private static int minConnections(int connectionsLimit) {
+        return Math.min(connectionsLimit, Math.max(MIN_CONNECTIONS, connectionsLimit / 4));
+    }
+
+    /**
+     * The counters and gauges of one session stats.
+     */
+    static final class Sample {
+
+        // gauges
+        final int queuedDiskJobs;
+        final int peers;
+        final int torrents;
+        final int unchokedPeers;
+        final int unchokeSlots;
+
+        // counters, since the session started
+        final long blocksRead;
+        final long cacheHits;
+        final long droppedAlerts;
+
+        Sample(int queuedDiskJobs, int peers, int torrents, int unchokedPeers, int unchokeSlots,
+               long blocksRead, long cacheHits, long droppedAlerts) {
+            this.queuedDiskJobs = queuedDiskJobs;
+            this.peers = peers;
+            this.torrents = torrents;
+            this.unchokedPeers = unchokedPeers;
+            this.unchokeSlots = unchokeSlots;
+            this.blocksRead = blocksRead;
+            this.cacheHits = cacheHits;
+            this.droppedAlerts = droppedAlerts;
+        }
+    }
+
+    private static final class Knob {
+
+        int value;
+        int min;
+        int max;
+
+        private int up;
+        private int down;
+        private int rest;
+
+        Knob(int value, int min, int max) {
+            reset(value, min, max);
+        }
+
+        void reset(int value, int min, int max) {
+            this.value = value;
+            this.min = min;
+            this.max = max;
+            this.up = 0;
+            this.down = 0;
+            this.rest = 0;
+        }
+
+        /**
+         * Multiplies or divides the value by the factor.
+         */
+        boolean update(int signal, double factor) {
+            int direction = hold(signal);
+            if (direction > 0) {
+                return set((int) Math.min(max, Math.ceil(value * factor)));
+            } else if (direction < 0) {
+                return set((int) Math.max(min, Math.floor(value / factor)));
+            }
+            return false;
+        }
+
+        /**
+         * Adds or subtracts one.
+         */
+        boolean step(int signal) {
+            int direction = hold(signal);
+            return direction != 0 && set(Math.max(min, Math.min(max, value + direction)));
+        }
+
+        /**
+         * @return the signal once it held long enough, 0 otherwise
+         */
+        private int hold(int signal) {
+            up = signal > 0 ? up + 1 : 0;
+            down = signal < 0 ? down + 1 : 0;
+            if (rest > 0) {
+                rest--;
+                return 0;
+            }
+            if (up >= HYSTERESIS && value < max) {
+                return 1;
+            }
+            if (down >= HYSTERESIS && value > min) {
+                return -1;
+            }
+            return 0;
+        }
+
+        private boolean set(int v) {
+            up = 0;
+            down = 0;
+            if (v == value) {
+                return false;
+            }
+            value = v;
+            rest = COOLDOWN;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal HTTP server, bound to the loopback interface, serving
+ * {@link StreamSource}s with support for range requests, so that a media
+ * player can play and seek content that is still downloading.
+ * <p>
+ * Every source is served under a random path, only known by whoever
+ * registered it.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class StreamServer {
+
+    private static final Logger LOG = Logger.getLogger(StreamServer.class);
+
+    private static final int MAX_CONNECTIONS = 8;
+    private static final int REQUEST_TIMEOUT = 30000; // ms
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Pattern REQUEST_LINE = Pattern.compile("^(GET|HEAD) /([0-9a-f]+)(/[^ ]*)? HTTP/1\\.[01]$");
+    private static final Pattern RANGE = Pattern.compile("^bytes=(\\d*)-(\\d*)$");
+
+    private final Map<String, StreamSource> sources;
+    private final SecureRandom random;
+
+    // guarded by this
+    private ServerSocket server;
+    private ExecutorService executor;
+
+    StreamServer() {
+        this.sources = new ConcurrentHashMap<>();
+        this.random = new SecureRandom();
+    }
+
+    private static class Loader {
+        static final StreamServer INSTANCE = new StreamServer();
+    }
+
+    public static StreamServer instance() {
+        return Loader.INSTANCE;
+    }
+
+    /**
+     * Starts serving the source, starting the server if needed.
+     *
+     * @return the loopback URL of the source
+     */
+    public String register(StreamSource source) throws IOException {
+        int port = start();
+        byte[] token = new byte[16];
+        random.nextBytes(token);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : token) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        String id = sb.toString();
+        sources.put(id, source);
+        return "http://127.0.0.1:" + port + "/" + id + "/" + URLEncoder.encode(source.name(), "UTF-8").replace("+", "%20");
+    }
+
+    public void unregister(StreamSource source) {
+        if (sources.values().remove(source)) {
+            source.close();
+        }
+    }
+
+    /**
+     * Stops the server, the sources are kept for when it starts again.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException ignored) {
+            }
+            server = null;
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private synchronized int start() throws IOException {
+        if (server == null) {
+            final ServerSocket s = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            final ExecutorService e = ThreadPool.newThreadPool("StreamServer", MAX_CONNECTIONS, true);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    acceptLoop(s, e);
+                }
+            }, "StreamServer-Accept");
+            t.setDaemon(true);
+            t.start();
+            server = s;
+            executor = e;
+        }
+        return server.getLocalPort();
+    }
+
+    private void acceptLoop(ServerSocket s, ExecutorService e) {
+        while (!s.isClosed()) {
+            try {
+                final Socket socket = s.accept();
+                e.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (Throwable t) {
+                if (!s.isClosed()) {
+                    LOG.warn("Error accepting stream connection", t);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            socket.setSoTimeout(REQUEST_TIMEOUT);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+            String range = null;
+            String header;
+            while ((header = in.readLine()) != null && header.length() > 0) {
+                int colon = header.indexOf(':');
+                if (colon > 0 && header.substring(0, colon).trim().equalsIgnoreCase("Range")) {
+                    range = header.substring(colon + 1).trim();
+                }
+            }
+
+            Matcher m = REQUEST_LINE.matcher(line);
+            if (!m.matches()) {
+                status(out, "400 Bad Request");
+                return;
+            }
+            StreamSource source = sources.get(m.group(2));
+            if (source == null) {
+                status(out, "404 Not Found");
+                return;
+            }
+            respond(out, source, range, m.group(1).equals("HEAD"));
+        } catch (Throwable e) {
+            // the player closes the connection when it seeks or stops
+            LOG.debug("Stream connection closed: " + e.getMessage());
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private static void respond(OutputStream out, StreamSource source, String range, boolean head) throws IOException {
+        long length = source.length();
+        long start = 0;
+        long end = length - 1;
+        boolean partial = false;
+
+        if (range != null) {
+            Matcher m = RANGE.matcher(range.toLowerCase(Locale.US));
+            if (m.matches() && (m.group(1).length() > 0 || m.group(2).length() > 0)) {
+                if (m.group(1).length() == 0) {
+                    // the last n bytes
+                    start = Math.max(0, length - Long.parseLong(m.group(2)));
+                } else {
+                    start = Long.parseLong(m.group(1));
+                    if (m.group(2).length() > 0) {
+                        end = Math.min(end, Long.parseLong(m.group(2)));
+                    }
+                }
+                if (start >= length || start > end) {
+                    writeHead(out, "416 Range Not Satisfiable", "Content-Range: bytes */" + length, "Content-Length: 0");
+                    out.flush();
+                    return;
+                }
+                partial = true;
+            }
+        }
+
+        long count = end - start + 1;
+        if (partial) {
+            writeHead(out, "206 Partial Content",
+                    "Content-Type: " + source.contentType(),
+                    "Content-Length: " + count,
+                    "Content-Range: bytes " + start + "-" + end + "/" + length,
+                    "Accept-Ranges: bytes");
+        } else {
+            writeHead(out, "200 OK",
+                    "Content-Type: " + source.contentType(),
+                    "Content-Length: " + length,
+                    "Accept-Ranges: bytes");
+        }
+
+        if (!head) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long position = start;
+            while (position <= end) {
+                int n = source.read(position, buffer, 0, (int) Math.min(buffer.length, end - position + 1));
+                if (n < 0) {
+                    throw new EOFException("Stream source ended before its length");
+                }
+                out.write(buffer, 0, n);
+                // flush as soon as possible, the player could be waiting for this
+                out.flush();
+                position += n;
+            }
+        }
+        out.flush();
+    }
+
+    private static void status(OutputStream out, String status) throws IOException {
+        writeHead(out, status, "Content-Length: 0");
+        out.flush();
+    }
+
+    private static void writeHead(OutputStream out, String status, String... headers) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.1 ").append(status).append("\r\n");
+        for (String h : headers) {
+            sb.append(h).append("\r\n");
+        }
+        sb.append("Connection: close\r\n\r\n");
+        out.write(sb.toString().getBytes("ISO-8859-1"));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import java.io.IOException;
+
+/**
+ * The content served by the {@link StreamServer}, which could still be
+ * arriving while it is read.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public interface StreamSource {
+
+    String name();
+
+    String contentType();
+
+    long length();
+
+    /**
+     * Reads from {@code position}, waiting for the data to be available, the
+     * reads of the same request come with increasing positions.
+     *
+     * @return the number of bytes read, at least one, or -1 at the end
+     */
+    int read(long position, byte[] b, int off, int len) throws IOException;
+
+    /**
+     * Called once the source is unregistered from the server.
+     */
+    void close();
+}
@@ -0,0 +1,92 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.Vectors;
+import com.frostwire.jlibtorrent.swig.create_torrent;
+import com.frostwire.jlibtorrent.swig.file_storage;
+import com.frostwire.jlibtorrent.swig.sha1_hash;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Sets the piece hashes of a {@code create_torrent} with a {@link PieceHasher},
+ * in place of {@code libtorrent.set_piece_hashes}, which hashes one piece at
+ * a time in a single thread.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TorrentBuilder {
+
+    private final create_torrent torrent;
+    private final PieceHasher hasher;
+
+    /**
+     * @param parentDir the folder containing the files of the torrent
+     */
+    public TorrentBuilder(create_torrent torrent, File parentDir) {
+        this.torrent = torrent;
+
+        file_storage fs = torrent.files();
+        this.hasher = new PieceHasher(fs.piece_length());
+        int numFiles = fs.num_files();
+        for (int i = 0; i < numFiles; i++) {
+            long size = fs.file_size(i);
+            if (fs.pad_file_at(i)) {
+                hasher.addPadding(size);
+            } else {
+                hasher.addFile(new File(fs.file_path(i, parentDir.getAbsolutePath())), size);
+            }
+        }
+    }
+
+    public TorrentBuilder listener(PieceHasher.Listener listener) {
+        hasher.listener(listener);
+        return this;
+    }
+
+    public void cancel() {
+        hasher.cancel();
+    }
+
+    public boolean isCancelled() {
+        return hasher.isCancelled();
+    }
+
+    /**
+     * Hashes the pieces and sets them in the torrent.
+     *
+     * @return false if cancelled
+     */
+    public boolean setPieceHashes() throws IOException {
+        if (hasher.getNumPieces() != torrent.num_pieces()) {
+            throw new IOException("Files don't match the torrent pieces");
+        }
+        byte[][] hashes = hasher.hash();
+        if (hashes == null) {
+            return false;
+        }
+        for (int i = 0; i < hashes.length; i++) {
+            torrent.set_hash(i, new sha1_hash(Vectors.bytes2byte_vector(hashes[i])));
+        }
+        return true;
+    }
+}
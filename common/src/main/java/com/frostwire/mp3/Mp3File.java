@@ -2,6 +2,8 @@ package com.frostwire.mp3;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +14,20 @@ public class Mp3File extends FileWrapper {
 	private static final int XING_MARKER_OFFSET_1 = 13;
 	private static final int XING_MARKER_OFFSET_2 = 21;
 	private static final int XING_MARKER_OFFSET_3 = 36;
+	private static final int VBRI_MARKER_OFFSET = 36;
+	private static final int XING_FLAG_FRAMES = 0x1;
+	private static final int XING_FLAG_BYTES = 0x2;
+	private static final int PROBE_HEAD_LENGTH = 16384;
+	private static final int PROBE_FRAMES_LENGTH = 4096;
+	private static final int FRAME_HEADER_MASK = 0xFFFE0C00;
+
+	// reused by the probes running in the same thread, scanning a library allocates once
+	private static final ThreadLocal<ByteBuffer> SCAN_BUFFER = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocate(DEFAULT_BUFFER_LENGTH);
+		}
+	};
 
 	protected int bufferLength;
 	private int xingOffset = -1;
@@ -33,6 +49,8 @@ public class Mp3File extends FileWrapper {
 	private ID3v2 id3v2Tag;
 	private byte[] customTag;
 	private boolean scanFile;
+	private boolean probe;
+	private boolean vbr;
 	
 	protected Mp3File() {
 	}
@@ -50,16 +68,38 @@ public class Mp3File extends FileWrapper {
 	}
 	
 	public Mp3File(String filename, int bufferLength, boolean scanFile) throws IOException, UnsupportedTagException, InvalidDataException {		
+		this(filename, bufferLength, scanFile, false);
+	}
+
+	private Mp3File(String filename, int bufferLength, boolean scanFile, boolean probe) throws IOException, UnsupportedTagException, InvalidDataException {
 		super(filename);
 		if (bufferLength < MINIMUM_BUFFER_LENGTH + 1) throw new IllegalArgumentException("Buffer too small");
 		this.bufferLength = bufferLength;
 		this.scanFile = scanFile;
+		this.probe = probe;
 		init();
 	}
 
+	/**
+	 * Reads the tags, duration and bitrate from the headers only: the ID3v2 tag,
+	 * the first frame with its Xing/Info or VBRI header and the ID3v1 tag, in at
+	 * most three reads. Only files without a Xing/Info or VBRI header, usually
+	 * CBR, are scanned frame by frame.
+	 * <p>
+	 * The duration and bitrate come from the headers, {@link #getBitrates()} is
+	 * empty and there is no custom tag.
+	 */
+	public static Mp3File probe(String filename) throws IOException, UnsupportedTagException, InvalidDataException {
+		return new Mp3File(filename, DEFAULT_BUFFER_LENGTH, false, true);
+	}
+
 	private void init() throws IOException, UnsupportedTagException, InvalidDataException {
 		RandomAccessFile file = new RandomAccessFile(filename, "r");
 		try {
+			if (probe) {
+				probeFile(file.getChannel());
+				return;
+			}
 			initId3v1Tag(file);
 			scanFile(file);
 			if (startOffset < 0) {
@@ -229,6 +269,206 @@ public class Mp3File extends FileWrapper {
 		this.bitrate = ((this.bitrate * (frameCount - 1)) + bitrate) / frameCount;
 	}
 	
+	private void probeFile(FileChannel channel) throws IOException, UnsupportedTagException, InvalidDataException {
+		if (length >= ID3v1Tag.TAG_LENGTH) {
+			byte[] tail = new byte[ID3v1Tag.TAG_LENGTH];
+			if (read(channel, ByteBuffer.wrap(tail), length - ID3v1Tag.TAG_LENGTH) == ID3v1Tag.TAG_LENGTH) {
+				try {
+					id3v1Tag = new ID3v1Tag(tail);
+				} catch (NoSuchTagException e) {
+					id3v1Tag = null;
+				}
+			}
+		}
+
+		byte[] head = new byte[(int) Math.min(length, PROBE_HEAD_LENGTH)];
+		int bytesRead = read(channel, ByteBuffer.wrap(head), 0);
+		int tagLength = id3v2Length(head, bytesRead);
+		if (tagLength + PROBE_FRAMES_LENGTH > bytesRead && bytesRead < length) {
+			// a tag bigger than the head, usually because of the album image
+			byte[] bytes = new byte[(int) Math.min(length, tagLength + PROBE_FRAMES_LENGTH)];
+			System.arraycopy(head, 0, bytes, 0, bytesRead);
+			head = bytes;
+			bytesRead += read(channel, ByteBuffer.wrap(head, bytesRead, head.length - bytesRead), bytesRead);
+		}
+
+		int offset = findFirstFrame(head, bytesRead, tagLength);
+		if (offset < 0) {
+			throw new InvalidDataException("No mpegs frames found");
+		}
+		if (tagLength > 0 && tagLength <= bytesRead) {
+			try {
+				id3v2Tag = ID3v2TagFactory.createTag(head);
+			} catch (NoSuchTagException e) {
+				id3v2Tag = null;
+			}
+		}
+
+		int header = unpackHeader(head, offset);
+		MpegFrame frame = new MpegFrame(head[offset], head[offset + 1], head[offset + 2], head[offset + 3]);
+		channelMode = frame.getChannelMode();
+		emphasis = frame.getEmphasis();
+		layer = frame.getLayer();
+		modeExtension = frame.getModeExtension();
+		sampleRate = frame.getSampleRate();
+		version = frame.getVersion();
+		copyright = frame.isCopyright();
+		original = frame.isOriginal();
+
+		int frameLength = MpegFrame.lengthInBytes(header);
+		boolean info = false;
+		int frames = -1;
+		int audioBytes = -1;
+		int xing = offset + 4 + sideInfoLength(header);
+		int vbri = offset + VBRI_MARKER_OFFSET;
+		if (xing + 16 <= bytesRead && (isMarker(head, xing, "Xing") || isMarker(head, xing, "Info"))) {
+			info = true;
+			vbr = isMarker(head, xing, "Xing");
+			int flags = unpackInt(head, xing + 4);
+			int position = xing + 8;
+			if ((flags & XING_FLAG_FRAMES) != 0) {
+				frames = unpackInt(head, position);
+				position += 4;
+			}
+			if ((flags & XING_FLAG_BYTES) != 0) {
+				audioBytes = unpackInt(head, position);
+			}
+		} else if (vbri + 18 <= bytesRead && isMarker(head, vbri, "VBRI")) {
+			info = true;
+			vbr = true;
+			audioBytes = unpackInt(head, vbri + 10);
+			frames = unpackInt(head, vbri + 14);
+		}
+
+		int maxEndOffset = maxEndOffset();
+		if (frames > 0) {
+			xingOffset = offset;
+			xingBitrate = MpegFrame.bitrate(header);
+			startOffset = offset + frameLength;
+			frameCount = frames;
+			// the header counts the bytes from its own frame
+			if (audioBytes > frameLength && offset + audioBytes <= maxEndOffset) {
+				endOffset = offset + audioBytes - 1;
+			} else {
+				endOffset = maxEndOffset - 1;
+			}
+			long milliseconds = (long) frames * MpegFrame.samplesPerFrame(header) * 1000 / MpegFrame.sampleRate(header);
+			if (milliseconds > 0 && endOffset > startOffset) {
+				bitrate = 8.0 * (endOffset - startOffset) / milliseconds;
+			} else {
+				bitrate = MpegFrame.bitrate(header);
+			}
+		} else {
+			if (info) {
+				// a header without the frame count, its frame is not audio
+				xingOffset = offset;
+				xingBitrate = MpegFrame.bitrate(header);
+				offset += frameLength;
+			}
+			startOffset = offset;
+			scanFrames(channel, header, maxEndOffset);
+		}
+	}
+
+	/**
+	 * Counts the frames from {@code startOffset} up to the first one that
+	 * doesn't match the first header, without allocating per frame.
+	 */
+	private void scanFrames(FileChannel channel, int firstHeader, int maxEndOffset) throws IOException {
+		ByteBuffer buffer = SCAN_BUFFER.get();
+		byte[] bytes = buffer.array();
+		int expected = firstHeader & FRAME_HEADER_MASK;
+		int firstBitrate = MpegFrame.bitrate(firstHeader);
+		long bitrateSum = 0;
+		int count = 0;
+		int position = startOffset;
+		int bufferOffset = 0;
+		int bufferLength = 0;
+		endOffset = startOffset - 1;
+		while (true) {
+			if (position + 4 > bufferOffset + bufferLength) {
+				if (position + 4 > maxEndOffset) break;
+				buffer.clear();
+				bufferOffset = position;
+				bufferLength = read(channel, buffer, position);
+				if (bufferLength < 4) break;
+			}
+			int header = unpackHeader(bytes, position - bufferOffset);
+			if ((header & FRAME_HEADER_MASK) != expected) break;
+			int frameLength = MpegFrame.lengthInBytes(header);
+			if (frameLength == 0 || position + frameLength > maxEndOffset) break;
+			int frameBitrate = MpegFrame.bitrate(header);
+			if (frameBitrate != firstBitrate) vbr = true;
+			bitrateSum += frameBitrate;
+			count++;
+			position += frameLength;
+			endOffset = position - 1;
+		}
+		frameCount = count;
+		bitrate = count > 0 ? (double) bitrateSum / count : firstBitrate;
+	}
+
+	/**
+	 * Finds the first frame header followed by a matching one, the same check
+	 * the full scan does before trusting a frame sync.
+	 */
+	private static int findFirstFrame(byte[] bytes, int bytesRead, int offset) {
+		for (; offset + 4 <= bytesRead; offset++) {
+			if (bytes[offset] != (byte) 0xFF || (bytes[offset + 1] & 0xE0) != 0xE0) continue;
+			int header = unpackHeader(bytes, offset);
+			int frameLength = MpegFrame.lengthInBytes(header);
+			if (frameLength == 0) continue;
+			int next = offset + frameLength;
+			if (next + 4 > bytesRead) {
+				// can't check, trust it only if it fits in the file
+				return next <= bytesRead ? offset : -1;
+			}
+			if ((unpackHeader(bytes, next) & FRAME_HEADER_MASK) == (header & FRAME_HEADER_MASK)) {
+				return offset;
+			}
+		}
+		return -1;
+	}
+
+	private static int sideInfoLength(int header) {
+		boolean mono = ((header >>> 6) & 3) == 3;
+		if (((header >>> 19) & 3) == 3) return mono ? 17 : 32;
+		return mono ? 9 : 17;
+	}
+
+	private static int id3v2Length(byte[] bytes, int bytesRead) {
+		if (bytesRead < AbstractID3v2Tag.HEADER_LENGTH || bytes[0] != 'I' || bytes[1] != 'D' || bytes[2] != '3') {
+			return 0;
+		}
+		int offset = AbstractID3v2Tag.DATA_LENGTH_OFFSET;
+		return AbstractID3v2Tag.HEADER_LENGTH + BufferTools.unpackSynchsafeInteger(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3]);
+	}
+
+	private static boolean isMarker(byte[] bytes, int offset, String marker) {
+		for (int i = 0; i < 4; i++) {
+			if (bytes[offset + i] != marker.charAt(i)) return false;
+		}
+		return true;
+	}
+
+	private static int unpackHeader(byte[] bytes, int offset) {
+		return unpackInt(bytes, offset);
+	}
+
+	private static int unpackInt(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8) | (bytes[offset + 3] & 0xFF);
+	}
+
+	private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int n = channel.read(buffer, position + total);
+			if (n < 0) break;
+			total += n;
+		}
+		return total;
+	}
+
 	private void initId3v1Tag(RandomAccessFile file) throws IOException {
 		byte[] bytes = new byte[ID3v1Tag.TAG_LENGTH];
 		file.seek(getLength() - ID3v1Tag.TAG_LENGTH);
@@ -296,6 +536,7 @@ public class Mp3File extends FileWrapper {
 	}
 	
 	public boolean isVbr() {
+		if (probe) return vbr;
 		return bitrates.size() > 1;
 	}
 	
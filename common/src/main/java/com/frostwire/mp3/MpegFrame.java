@@ -41,6 +41,22 @@ public class MpegFrame {
 	private static final long BITMASK_COPYRIGHT = 0x8L;
 	private static final long BITMASK_ORIGINAL = 0x4L;
 	private static final long BITMASK_EMPHASIS = 0x3L;
+
+	// by table: MPEG 1 layer I, II and III, MPEG 2/2.5 layer I, layer II and III
+	private static final int[][] BITRATES = {
+		{0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+		{0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+		{0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+		{0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+		{0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+	};
+	// by version bits: MPEG 2.5, reserved, MPEG 2, MPEG 1
+	private static final int[][] SAMPLE_RATES = {
+		{11025, 12000, 8000},
+		null,
+		{22050, 24000, 16000},
+		{44100, 48000, 32000}
+	};
 	
 	private String version;
 	private int layer;
@@ -342,6 +358,54 @@ public class MpegFrame {
 		return version;
 	}
 	
+	/**
+	 * Bitrate in kbps of a packed frame header, or 0 if it is not a valid header.
+	 * Unlike the constructors, the static helpers don't allocate, they are meant
+	 * for scanning many frames.
+	 */
+	static int bitrate(int header) {
+		if ((header & 0xFFE00000) != 0xFFE00000) return 0;
+		int version = (header >>> 19) & 3;
+		int layer = (header >>> 17) & 3;
+		int index = (header >>> 12) & 0xF;
+		if (version == 1 || layer == 0 || index == 0 || index == 15) return 0;
+		if (((header >>> 10) & 3) == 3 || (header & 3) == 2) return 0;
+		int table;
+		if (version == 3) table = 3 - layer;
+		else table = layer == 3 ? 3 : 4;
+		return BITRATES[table][index];
+	}
+
+	/**
+	 * Sample rate of a packed frame header already validated with {@link #bitrate(int)}.
+	 */
+	static int sampleRate(int header) {
+		return SAMPLE_RATES[(header >>> 19) & 3][(header >>> 10) & 3];
+	}
+
+	/**
+	 * Samples per frame of a packed frame header already validated with {@link #bitrate(int)}.
+	 */
+	static int samplesPerFrame(int header) {
+		int layer = (header >>> 17) & 3;
+		if (layer == 3) return 384;
+		if (layer == 2 || ((header >>> 19) & 3) == 3) return 1152;
+		return 576;
+	}
+
+	/**
+	 * Length in bytes of the frame with the packed header, or 0 if it is not a valid header.
+	 */
+	static int lengthInBytes(int header) {
+		int bitrate = bitrate(header);
+		if (bitrate == 0) return 0;
+		int padding = (header >>> 9) & 1;
+		if (((header >>> 17) & 3) == 3) {
+			return (12000 * bitrate / sampleRate(header) + padding) * 4;
+		}
+		return samplesPerFrame(header) / 8 * 1000 * bitrate / sampleRate(header) + padding;
+	}
+
 	public int getLengthInBytes() {
 		long length;
 		int pad;
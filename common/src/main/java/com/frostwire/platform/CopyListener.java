@@ -0,0 +1,34 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.platform;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public interface CopyListener {
+
+    /**
+     * Called from the copying thread after every chunk of data.
+     *
+     * @param copied the number of bytes copied so far
+     * @param total  the total number of bytes to copy
+     */
+    void onProgress(long copied, long total);
+}
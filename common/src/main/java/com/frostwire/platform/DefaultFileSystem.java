@@ -20,11 +20,13 @@ package com.frostwire.platform;
 
 import com.frostwire.util.Logger;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.util.Arrays;
-import java.util.Deque;
-import java.util.LinkedList;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 
 /**
  * @author gubatron
@@ -34,6 +36,9 @@ public class DefaultFileSystem implements FileSystem {
 
     private static final Logger LOG = Logger.getLogger(DefaultFileSystem.class);
 
+    // big enough to let the kernel do the work, small enough for a smooth progress
+    private static final long MOVE_CHUNK_SIZE = 8 * 1024 * 1024;
+
     @Override
     public boolean isDirectory(File file) {
         return file.isDirectory();
@@ -96,6 +101,18 @@ public class DefaultFileSystem implements FileSystem {
         return false;
     }
 
+    @Override
+    public boolean move(File src, File dest, CopyListener listener) {
+        try {
+            moveFile(this, src, dest, listener);
+            return true;
+        } catch (Throwable e) {
+            LOG.error("Error in move file: " + src + " -> " + dest, e);
+        }
+
+        return false;
+    }
+
     @Override
     public boolean write(File file, byte[] data) {
         try {
@@ -115,27 +132,102 @@ public class DefaultFileSystem implements FileSystem {
 
     @Override
     public void walk(File file, FileFilter filter) {
-        walkFiles(Platforms.fileSystem(), file, filter);
+        walkFiles(this, file, filter);
     }
 
+    /**
+     * Walks the tree under {@code file} with a parallel {@link FileWalker}.
+     */
     public static void walkFiles(FileSystem fs, File file, FileFilter filter) {
-        File[] arr = fs.listFiles(file, filter);
-        if (arr == null) {
+        new FileWalker(fs, filter).walk(file);
+    }
+
+    /**
+     * Moves {@code src} to {@code dest} with a rename if possible, falling back
+     * to a {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+     * copy when the files are in different volumes.
+     */
+    public static void moveFile(File src, File dest, CopyListener listener) throws IOException {
+        moveFile(null, src, dest, listener);
+    }
+
+    /**
+     * Renames the file, replacing the destination. This is common code,
+     * compiled for old android too, only {@link File#renameTo(File)} is
+     * used here, platforms with a better option override it.
+     *
+     * @return false if the file can't be renamed, for example because the
+     * destination is in a different volume.
+     */
+    protected boolean rename(File src, File dest) {
+        return renameFile(src, dest);
+    }
+
+    private static void moveFile(DefaultFileSystem fs, File src, File dest, CopyListener listener) throws IOException {
+        if (!src.isFile()) {
+            throw new IOException("Source '" + src + "' is not a file");
+        }
+        if (src.getCanonicalFile().equals(dest.getCanonicalFile())) {
             return;
         }
-        Deque<File> q = new LinkedList<>(Arrays.asList(arr));
-
-        while (!q.isEmpty()) {
-            File child = q.pollFirst();
-            filter.file(child);
-            if (fs.isDirectory(child)) {
-                arr = fs.listFiles(child, filter);
-                if (arr != null) {
-                    for (int i = arr.length - 1; i >= 0; i--) {
-                        q.addFirst(arr[i]);
-                    }
+
+        File parent = dest.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory '" + parent + "'");
+        }
+
+        boolean renamed = fs != null ? fs.rename(src, dest) : renameFile(src, dest);
+        if (renamed) {
+            return;
+        }
+
+        transferFile(src, dest, listener);
+
+        if (!src.delete()) {
+            LOG.warn("Error deleting source file while moving: " + src);
+        }
+    }
+
+    private static boolean renameFile(File src, File dest) {
+        return (!dest.exists() || dest.delete()) && src.renameTo(dest);
+    }
+
+    private static void transferFile(File src, File dest, CopyListener listener) throws IOException {
+        FileInputStream in = null;
+        FileOutputStream out = null;
+        long size = 0;
+        long pos = 0;
+        try {
+            in = new FileInputStream(src);
+            out = new FileOutputStream(dest);
+            FileChannel input = in.getChannel();
+            FileChannel output = out.getChannel();
+
+            size = input.size();
+            while (pos < size) {
+                long n = input.transferTo(pos, Math.min(size - pos, MOVE_CHUNK_SIZE), output);
+                if (n <= 0) {
+                    break;
+                }
+                pos += n;
+                if (listener != null) {
+                    listener.onProgress(pos, size);
                 }
             }
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            dest.delete();
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(in);
+            IOUtils.closeQuietly(out);
+        }
+
+        if (pos != size || dest.length() != size) {
+            dest.delete();
+            throw new IOException("Failed to copy full contents from '" + src + "' to '" + dest + "'");
         }
+
+        dest.setLastModified(src.lastModified());
     }
 }
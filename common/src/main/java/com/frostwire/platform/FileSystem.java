@@ -48,6 +48,19 @@ public interface FileSystem {
 
     boolean copy(File src, File dest);
 
+    /**
+     * Moves the file, replacing the destination if it exists. When both
+     * paths are in the same file system this is a cheap atomic rename,
+     * otherwise the data is copied and the source deleted.
+     *
+     * @param src      the file to move.
+     * @param dest     the new location.
+     * @param listener notified of the progress of the copy, if one is
+     *                 needed, could be null.
+     * @return true if the file is at the new location.
+     */
+    boolean move(File src, File dest, CopyListener listener);
+
     boolean write(File file, byte[] data);
 
     /**
@@ -60,5 +73,9 @@ public interface FileSystem {
      */
     void scan(File file);
 
+    /**
+     * Walks the tree under {@code file}, see {@link FileWalker} for the
+     * details and for depth limits and cancellation.
+     */
     void walk(File file, FileFilter filter);
 }
@@ -0,0 +1,263 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.platform;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Walks a directory tree, listing the directories in parallel when the
+ * platform has a {@link ForkJoinPool}.
+ * <p>
+ * Every entry is passed to {@link FileFilter#accept(File)}, an accepted entry
+ * is reported to {@link FileFilter#file(File)} and, if it is a directory,
+ * walked. In a parallel walk the filter is called from several threads at
+ * the same time, with no lock, so it must be thread safe; the order of the
+ * calls is not defined. A parallel walk is faster when the listing of the
+ * directories is slow (big trees, network or cold disks), a filter that does
+ * heavy work on every file is better off handing it to its own executor.
+ * <p>
+ * The entries are plain files. The walk itself only needs to know which ones
+ * are directories, it gets that from the {@link FileSystem}, or from one call
+ * per directory when the file system is a {@link Lister}. A {@link Filter}
+ * gets it too, so the entries are not stat'ed again.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class FileWalker {
+
+    private final FileSystem fs;
+    private final FileFilter filter;
+
+    private int maxDepth;
+    private boolean parallel;
+    private volatile boolean cancelled;
+
+    public FileWalker(FileSystem fs, FileFilter filter) {
+        this.fs = fs;
+        this.filter = filter;
+        this.maxDepth = Integer.MAX_VALUE;
+        this.parallel = true;
+    }
+
+    /**
+     * The direct children of the root are at depth 1, directories at
+     * {@code maxDepth} are reported but not walked.
+     */
+    public FileWalker maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public FileWalker parallel(boolean parallel) {
+        this.parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Stops the walk as soon as possible, could be called from the filter.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Walks the tree under {@code root}, not including it, and returns when
+     * it is done or cancelled.
+     */
+    public void walk(File root) {
+        if (parallel) {
+            try {
+                ParallelWalk.walk(this, root);
+                return;
+            } catch (NoClassDefFoundError e) {
+                // no fork/join, old android
+                parallel = false;
+            }
+        }
+
+        Deque<Entry> q = new LinkedList<>();
+        q.add(new Entry(root, 0));
+        while (!q.isEmpty() && !cancelled) {
+            Entry e = q.pollFirst();
+            List<File> dirs = visit(e.dir, e.depth + 1);
+            for (int i = dirs.size() - 1; i >= 0; i--) {
+                q.addFirst(new Entry(dirs.get(i), e.depth + 1));
+            }
+        }
+    }
+
+    /**
+     * Lists {@code dir} and reports its accepted children.
+     *
+     * @return the accepted directories to walk
+     */
+    private List<File> visit(File dir, int depth) {
+        List<File> children = new ArrayList<>();
+        BitSet directories = new BitSet();
+        if (cancelled || !list(dir, children, directories)) {
+            return new ArrayList<>(0);
+        }
+
+        List<File> dirs = new ArrayList<>();
+        for (int i = 0; i < children.size() && !cancelled; i++) {
+            File child = children.get(i);
+            boolean directory = directories.get(i);
+            if (report(child, directory) && depth < maxDepth && directory) {
+                dirs.add(child);
+            }
+        }
+        return dirs;
+    }
+
+    private boolean report(File file, boolean directory) {
+        if (filter instanceof Filter) {
+            Filter f = (Filter) filter;
+            if (f.accept(file, directory)) {
+                f.file(file, directory);
+                return true;
+            }
+        } else if (filter.accept(file)) {
+            filter.file(file);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean list(File dir, List<File> children, BitSet directories) {
+        if (fs instanceof Lister && ((Lister) fs).list(dir, children, directories)) {
+            return true;
+        }
+
+        children.clear();
+        directories.clear();
+        File[] arr = fs.listFiles(dir, null);
+        if (arr == null) {
+            return false;
+        }
+        for (int i = 0; i < arr.length; i++) {
+            children.add(arr[i]);
+            if (fs.isDirectory(arr[i])) {
+                directories.set(i);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A {@link FileSystem} that can list a directory and tell the type of
+     * the children in one go, for example with the attributes some
+     * platforms return while listing.
+     */
+    public interface Lister {
+
+        /**
+         * Adds the children of {@code dir} to {@code children}, setting in
+         * {@code directories} the indexes of the ones that are directories.
+         *
+         * @return false if the directory can't be listed this way, the
+         * walk falls back to {@link FileSystem#listFiles(File, FileFilter)}
+         */
+        boolean list(File dir, List<File> children, BitSet directories);
+    }
+
+    /**
+     * A {@link FileFilter} that gets from the walk whether the entry is a
+     * directory. Used as a plain {@link FileFilter}, for example in
+     * {@link FileSystem#listFiles(File, FileFilter)}, it asks the file.
+     */
+    public static abstract class Filter implements FileFilter {
+
+        public abstract boolean accept(File file, boolean directory);
+
+        public abstract void file(File file, boolean directory);
+
+        @Override
+        public final boolean accept(File file) {
+            return accept(file, file.isDirectory());
+        }
+
+        @Override
+        public final void file(File file) {
+            file(file, file.isDirectory());
+        }
+    }
+
+    private static final class Entry {
+
+        final File dir;
+        final int depth;
+
+        Entry(File dir, int depth) {
+            this.dir = dir;
+            this.depth = depth;
+        }
+    }
+
+    /**
+     * Keeps the fork/join references out of {@link FileWalker}
+     * so the class still loads where they are not available.
+     */
+    private static final class ParallelWalk {
+
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        static void walk(FileWalker walker, File root) {
+            POOL.invoke(new WalkTask(walker, root, 0));
+        }
+
+        private static final class WalkTask extends RecursiveAction {
+
+            private final FileWalker walker;
+            private final File dir;
+            private final int depth;
+
+            WalkTask(FileWalker walker, File dir, int depth) {
+                this.walker = walker;
+                this.dir = dir;
+                this.depth = depth;
+            }
+
+            @Override
+            protected void compute() {
+                List<File> dirs = walker.visit(dir, depth + 1);
+                if (dirs.isEmpty() || walker.cancelled) {
+                    return;
+                }
+                WalkTask[] tasks = new WalkTask[dirs.size()];
+                for (int i = 0; i < tasks.length; i++) {
+                    tasks[i] = new WalkTask(walker, dirs.get(i), depth + 1);
+                }
+                invokeAll(Arrays.<WalkTask>asList(tasks));
+            }
+        }
+    }
+}
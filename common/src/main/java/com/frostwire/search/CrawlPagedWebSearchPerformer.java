@@ -37,9 +37,12 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     private static final int DEFAULT_CRAWL_TIMEOUT = 10000; // 10 seconds.
     private static final int FAILED_CRAWL_URL_CACHE_LIFETIME = 600000; // 10 minutes.
     private static final int DEFAULT_MAGNET_DOWNLOAD_TIMEOUT_SECS = 20; // 20 seconds.
+    private static final int DEFAULT_MAGNET_PREFETCH_CONCURRENCY = 4;
 
     private static CrawlCache cache = null;
     private static MagnetDownloader magnetDownloader = null;
+    private static MagnetPrefetcher magnetPrefetcher = null;
+    private static int magnetPrefetchConcurrency = DEFAULT_MAGNET_PREFETCH_CONCURRENCY;
 
     private int numCrawls;
 
@@ -61,6 +64,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     public static void setCache(CrawlCache cache) {
         CrawlPagedWebSearchPerformer.cache = cache;
+        resetMagnetPrefetcher();
     }
 
     public static MagnetDownloader getMagnetDownloader() {
@@ -69,6 +73,70 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     public static void setMagnetDownloader(MagnetDownloader magnetDownloader) {
         CrawlPagedWebSearchPerformer.magnetDownloader = magnetDownloader;
+        resetMagnetPrefetcher();
+    }
+
+    /**
+     * How many magnets are resolved at once, for all the searches.
+     */
+    public static synchronized void setMagnetPrefetchConcurrency(int concurrency) {
+        magnetPrefetchConcurrency = concurrency;
+        if (magnetPrefetcher != null) {
+            magnetPrefetcher.setMaxConcurrent(concurrency);
+        }
+    }
+
+    private static synchronized MagnetPrefetcher getMagnetPrefetcher() {
+        if (magnetPrefetcher == null && magnetDownloader != null) {
+            magnetPrefetcher = new MagnetPrefetcher(magnetDownloader, cache, magnetPrefetchConcurrency, DEFAULT_MAGNET_DOWNLOAD_TIMEOUT_SECS);
+        }
+        return magnetPrefetcher;
+    }
+
+    private static synchronized void resetMagnetPrefetcher() {
+        if (magnetPrefetcher != null) {
+            magnetPrefetcher.shutdown();
+            magnetPrefetcher = null;
+        }
+    }
+
+    @Override
+    public void stop() {
+        super.stop();
+        MagnetPrefetcher prefetcher = getMagnetPrefetcher();
+        if (prefetcher != null) {
+            prefetcher.cancel(getToken());
+        }
+    }
+
+    /**
+     * Starts resolving the magnets of the results to crawl before their
+     * crawl tasks run, the ones with more seeds first.
+     */
+    @Override
+    protected void onResults(List<? extends SearchResult> results) {
+        MagnetPrefetcher prefetcher = getMagnetPrefetcher();
+        if (prefetcher != null && results != null && !isStopped()) {
+            int n = numCrawls;
+            for (SearchResult sr : results) {
+                if (n <= 0) {
+                    break;
+                }
+                if (sr instanceof CrawlableSearchResult && sr instanceof TorrentSearchResult) {
+                    try {
+                        String url = getCrawlUrl(cast((CrawlableSearchResult) sr));
+                        if (url != null && url.startsWith("magnet")) {
+                            TorrentSearchResult tsr = (TorrentSearchResult) sr;
+                            prefetcher.prefetch(getToken(), tsr.getHash(), url, tsr.getSeeds());
+                            n--;
+                        }
+                    } catch (Throwable e) {
+                        LOG.warn("Error prefetching magnet of: " + sr + ", e=" + e.getMessage());
+                    }
+                }
+            }
+        }
+        super.onResults(results);
     }
 
     @Override
@@ -114,7 +182,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                         //LOG.debug("Downloading data for: " + url);
 
                         if (url.startsWith("magnet")) {
-                            data = fetchMagnet(url);
+                            data = fetchMagnet(url, sr);
                         } else {
                             data = fetchBytes(url, sr.getDetailsUrl(), DEFAULT_CRAWL_TIMEOUT);
                         }
@@ -132,7 +200,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
                                 String infohash = ((TorrentSearchResult) sr).getHash();
                                 cachePut(infohash, data);
                             }
-                        } else {
+                        } else if (!isStopped()) {
                             //LOG.warn("Failed to download data: " + url);
                             cachePut("failed:" + url, long2array(System.currentTimeMillis()));
                         }
@@ -167,8 +235,12 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     protected abstract List<? extends SearchResult> crawlResult(T sr, byte[] data) throws Exception;
 
-    private byte[] fetchMagnet(String magnet) {
-        if (magnetDownloader != null) {
+    private byte[] fetchMagnet(String magnet, CrawlableSearchResult sr) {
+        MagnetPrefetcher prefetcher = getMagnetPrefetcher();
+        if (prefetcher != null && sr instanceof TorrentSearchResult) {
+            TorrentSearchResult tsr = (TorrentSearchResult) sr;
+            return prefetcher.fetch(getToken(), tsr.getHash(), magnet, tsr.getSeeds());
+        } else if (magnetDownloader != null) {
             return magnetDownloader.download(magnet, DEFAULT_MAGNET_DOWNLOAD_TIMEOUT_SECS);
         } else {
             LOG.warn("Magnet downloader not set, download not supported: " + magnet);
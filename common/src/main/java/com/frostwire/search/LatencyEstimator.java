@@ -0,0 +1,152 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Response times of a search engine, as a moving average and a small
+ * histogram of exponential buckets, the old samples weighting less and
+ * less.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class LatencyEstimator {
+
+    /**
+     * Below this there is not enough to tell, the engine gets the
+     * maximum timeout.
+     */
+    static final int MIN_SAMPLES = 5;
+
+    private static final int BUCKETS = 40;
+    private static final double FIRST_BUCKET = 50; // ms
+    private static final double BUCKET_GROWTH = 1.2; // the last one is about a minute
+    private static final double MAX_WEIGHT = 100; // then all the counts are halved
+    private static final double ALPHA = 0.2;
+
+    private final double[] counts;
+    private double total;
+    private double ewma;
+
+    LatencyEstimator() {
+        this.counts = new double[BUCKETS];
+    }
+
+    public synchronized void record(long ms) {
+        ms = Math.max(0, ms);
+        ewma = total == 0 ? ms : ewma + ALPHA * (ms - ewma);
+        if (total >= MAX_WEIGHT) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] /= 2;
+            }
+            total /= 2;
+        }
+        counts[bucket(ms)]++;
+        total++;
+    }
+
+    /**
+     * The request didn't answer in time, all it's known is that it takes
+     * more than that, counted as twice as much to make the timeout grow.
+     */
+    public void recordTimeout(long timeout) {
+        record(2 * timeout);
+    }
+
+    public synchronized long ewma() {
+        return Math.round(ewma);
+    }
+
+    /**
+     * @return the upper bound of the bucket of the 95th percentile, 0 if
+     * there are no samples
+     */
+    public synchronized long p95() {
+        if (total == 0) {
+            return 0;
+        }
+        double target = 0.95 * total;
+        double sum = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            sum += counts[i];
+            if (sum >= target) {
+                return bound(i);
+            }
+        }
+        return bound(BUCKETS - 1);
+    }
+
+    public synchronized double samples() {
+        return total;
+    }
+
+    /**
+     * Enough for almost all the requests, twice the 95th percentile or
+     * three times the average, whatever is more.
+     */
+    public synchronized int timeout(int floor, int ceiling) {
+        if (total < MIN_SAMPLES) {
+            return ceiling;
+        }
+        long t = Math.max(2 * p95(), 3 * ewma());
+        return (int) Math.max(floor, Math.min(ceiling, t));
+    }
+
+    synchronized State state() {
+        State s = new State();
+        s.ewma = ewma;
+        s.counts = counts.clone();
+        return s;
+    }
+
+    synchronized void state(State s) {
+        if (s == null || s.counts == null || s.counts.length != BUCKETS) {
+            return;
+        }
+        double t = 0;
+        for (double c : s.counts) {
+            if (c < 0 || Double.isNaN(c) || Double.isInfinite(c)) {
+                return;
+            }
+            t += c;
+        }
+        System.arraycopy(s.counts, 0, counts, 0, BUCKETS);
+        total = t;
+        ewma = s.ewma;
+    }
+
+    private static int bucket(long ms) {
+        int i = 0;
+        double b = FIRST_BUCKET;
+        while (ms > b && i < BUCKETS - 1) {
+            b *= BUCKET_GROWTH;
+            i++;
+        }
+        return i;
+    }
+
+    private static long bound(int i) {
+        return Math.round(FIRST_BUCKET * Math.pow(BUCKET_GROWTH, i));
+    }
+
+    static final class State {
+        double ewma;
+        double[] counts;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the metadata of the magnets of search results in the background,
+ * a few at a time, the highest priority first, and saves it in the crawl
+ * cache by infohash.
+ * <p>
+ * Every infohash is fetched once, whatever the searches asking for it, and
+ * a magnet not started yet is forgotten once all its searches stop.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class MagnetPrefetcher {
+
+    private static final Logger LOG = Logger.getLogger(MagnetPrefetcher.class);
+
+    private final MagnetDownloader downloader;
+    private final CrawlCache cache;
+    private final int timeout;
+    private final ExecutorService executor;
+
+    // guarded by this
+    private final Map<String, Request> requests;
+    private final PriorityQueue<Request> queue;
+    private int maxConcurrent;
+    private int running;
+    private long sequence;
+
+    /**
+     * @param cache   where the metadata goes, could be null
+     * @param timeout seconds to resolve every magnet
+     */
+    public MagnetPrefetcher(MagnetDownloader downloader, CrawlCache cache, int maxConcurrent, int timeout) {
+        this.downloader = downloader;
+        this.cache = cache;
+        this.timeout = timeout;
+        // idle threads go away, the queue here decides how many run
+        this.executor = new ThreadPool("MagnetPrefetcher", 0, Integer.MAX_VALUE, 30, new SynchronousQueue<Runnable>(), true);
+        this.requests = new HashMap<>();
+        this.queue = new PriorityQueue<>();
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+    }
+
+    public synchronized void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        dispatch();
+    }
+
+    public synchronized int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * Queues the magnet, or raises the priority of the pending one with
+     * the same infohash.
+     *
+     * @param token    the search asking for it
+     * @param priority higher first, like the seeds of the result
+     */
+    public void prefetch(long token, String infohash, String magnet, int priority) {
+        if (cacheGet(infohash) == null) {
+            request(token, infohash, magnet, priority);
+        }
+    }
+
+    /**
+     * Prefetches the magnet and waits for its metadata.
+     *
+     * @return the metadata, or null if it could not be fetched, the search
+     * stopped or it took too long
+     */
+    public byte[] fetch(long token, String infohash, String magnet, int priority) {
+        byte[] data = cacheGet(infohash);
+        if (data != null) {
+            return data;
+        }
+        Request r = request(token, infohash, magnet, priority);
+        try {
+            // time in the queue plus time downloading
+            if (r.done.await(2L * timeout, TimeUnit.SECONDS)) {
+                return r.data;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Forgets the magnets only asked for by this search and not started yet.
+     */
+    public synchronized void cancel(long token) {
+        Iterator<Request> it = queue.iterator();
+        while (it.hasNext()) {
+            Request r = it.next();
+            r.tokens.remove(token);
+            if (r.tokens.isEmpty()) {
+                it.remove();
+                requests.remove(r.infohash);
+                r.done.countDown();
+            }
+        }
+    }
+
+    public void shutdown() {
+        synchronized (this) {
+            for (Request r : queue) {
+                requests.remove(r.infohash);
+                r.done.countDown();
+            }
+            queue.clear();
+        }
+        executor.shutdown();
+    }
+
+    private synchronized Request request(long token, String infohash, String magnet, int priority) {
+        Request r = requests.get(infohash);
+        if (r == null) {
+            r = new Request(infohash, magnet, priority, sequence++);
+            requests.put(infohash, r);
+            queue.add(r);
+        } else if (priority > r.priority && queue.remove(r)) {
+            r.priority = priority;
+            queue.add(r);
+        }
+        r.tokens.add(token);
+        dispatch();
+        return r;
+    }
+
+    private void dispatch() {
+        while (running < maxConcurrent && !queue.isEmpty()) {
+            final Request r = queue.poll();
+            running++;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    download(r);
+                }
+            });
+        }
+    }
+
+    private void download(Request r) {
+        byte[] data = null;
+        try {
+            data = downloader.download(r.magnet, timeout);
+            if (data != null) {
+                cachePut(r.infohash, data);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error fetching magnet: " + r.magnet + ", e=" + e.getMessage());
+        } finally {
+            r.data = data;
+            synchronized (this) {
+                requests.remove(r.infohash);
+                running--;
+                dispatch();
+            }
+            r.done.countDown();
+        }
+    }
+
+    private byte[] cacheGet(String key) {
+        if (cache != null) {
+            synchronized (cache) {
+                return cache.get(key);
+            }
+        }
+        return null;
+    }
+
+    private void cachePut(String key, byte[] data) {
+        if (cache != null) {
+            synchronized (cache) {
+                cache.put(key, data);
+            }
+        }
+    }
+
+    private static final class Request implements Comparable<Request> {
+
+        final String infohash;
+        final String magnet;
+        final long sequence;
+        final Set<Long> tokens;
+        final CountDownLatch done;
+
+        int priority;
+        volatile byte[] data;
+
+        Request(String infohash, String magnet, int priority, long sequence) {
+            this.infohash = infohash;
+            this.magnet = magnet;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.tokens = new HashSet<>();
+            this.done = new CountDownLatch(1);
+        }
+
+        @Override
+        public int compareTo(Request o) {
+            if (priority != o.priority) {
+                return priority > o.priority ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
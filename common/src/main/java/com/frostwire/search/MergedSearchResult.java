@@ -0,0 +1,152 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The same result found by several engines, like a torrent with the
+ * same info hash, collapsed in one.
+ * <p>
+ * The first result is the one already sent as a new result, the merged
+ * values do not depend on the order the engines answered.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class MergedSearchResult {
+
+    private final String key;
+    private final SearchResult first;
+    private final TreeSet<String> sources;
+
+    private SearchResult best;
+    private int seeds;
+    private int count;
+
+    // the last merge this was reported in, to report it once per merge
+    int reported;
+
+    MergedSearchResult(String key, SearchResult sr) {
+        this.key = key;
+        this.first = sr;
+        this.sources = new TreeSet<>();
+        this.best = sr;
+        this.seeds = seeds(sr);
+        this.count = 1;
+        this.reported = -1;
+
+        if (sr.getSource() != null) {
+            sources.add(sr.getSource());
+        }
+    }
+
+    String key() {
+        return key;
+    }
+
+    /**
+     * The result sent to the listener as a new result, the one to update.
+     */
+    public SearchResult getFirst() {
+        return first;
+    }
+
+    /**
+     * The result with the most seeds, by source and details url when
+     * they have the same.
+     */
+    public synchronized SearchResult getBest() {
+        return best;
+    }
+
+    /**
+     * The names of the engines, sorted.
+     */
+    public synchronized List<String> getSources() {
+        return new ArrayList<>(sources);
+    }
+
+    /**
+     * The max of the seeds, -1 if not torrents.
+     */
+    public synchronized int getSeeds() {
+        return seeds;
+    }
+
+    /**
+     * How many results were merged in this one.
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if the sources or the seeds changed
+     */
+    synchronized boolean merge(SearchResult sr) {
+        count++;
+        boolean changed = false;
+        if (sr.getSource() != null && sources.add(sr.getSource())) {
+            changed = true;
+        }
+        int s = seeds(sr);
+        if (s > seeds) {
+            seeds = s;
+            changed = true;
+        }
+        if (better(sr, best)) {
+            best = sr;
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "Merged(" + key + ", sources=" + sources + ", seeds=" + seeds + ", count=" + count + ")";
+    }
+
+    private static int seeds(SearchResult sr) {
+        return sr instanceof TorrentSearchResult ? ((TorrentSearchResult) sr).getSeeds() : -1;
+    }
+
+    private static boolean better(SearchResult a, SearchResult b) {
+        int sa = seeds(a);
+        int sb = seeds(b);
+        if (sa != sb) {
+            return sa > sb;
+        }
+        int c = compare(a.getSource(), b.getSource());
+        if (c == 0) {
+            c = compare(a.getDetailsUrl(), b.getDetailsUrl());
+        }
+        return c < 0;
+    }
+
+    private static int compare(String a, String b) {
+        if (a == null) {
+            return b == null ? 0 : -1;
+        }
+        return b == null ? 1 : a.compareTo(b);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.platform.Platforms;
+import com.frostwire.util.JsonUtils;
+import com.frostwire.util.Logger;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The response times of every search engine, by domain name, kept from
+ * one run to the next. The timeout of the searches of an engine, and if
+ * its first page is requested twice, come from here.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchLatency {
+
+    private static final Logger LOG = Logger.getLogger(SearchLatency.class);
+
+    private static final int DEFAULT_MIN_TIMEOUT = 2000;
+    private static final int MIN_HEDGE_DELAY = 250;
+
+    private final File file;
+    private final Map<String, LatencyEstimator> estimators;
+
+    private volatile int minTimeout;
+    private volatile boolean hedging;
+    private volatile boolean dirty;
+
+    /**
+     * @param file where the estimators are kept, could be null
+     */
+    SearchLatency(File file) {
+        this.file = file;
+        this.estimators = new HashMap<>();
+        this.minTimeout = DEFAULT_MIN_TIMEOUT;
+        this.hedging = true;
+        load();
+    }
+
+    private static class Loader {
+        static final SearchLatency INSTANCE = new SearchLatency(defaultFile());
+    }
+
+    public static SearchLatency getInstance() {
+        return Loader.INSTANCE;
+    }
+
+    public int getMinTimeout() {
+        return minTimeout;
+    }
+
+    public void setMinTimeout(int minTimeout) {
+        this.minTimeout = minTimeout;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    /**
+     * If the first page of a search takes longer than almost all the
+     * previous ones, it's requested once more and the first to answer
+     * is used.
+     */
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    /**
+     * @param ceiling the timeout of an engine not known yet
+     */
+    public int timeout(String domainName, int ceiling) {
+        return estimator(domainName).timeout(Math.min(minTimeout, ceiling), ceiling);
+    }
+
+    /**
+     * @return how long to wait for the first request before sending the
+     * second one, or -1 to not send it
+     */
+    long hedgeDelay(String domainName) {
+        LatencyEstimator e = estimator(domainName);
+        if (!hedging || e.samples() < LatencyEstimator.MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(MIN_HEDGE_DELAY, e.p95());
+    }
+
+    void record(String domainName, long ms) {
+        estimator(domainName).record(ms);
+        dirty = true;
+    }
+
+    void recordTimeout(String domainName, long timeout) {
+        estimator(domainName).recordTimeout(timeout);
+        dirty = true;
+    }
+
+    LatencyEstimator estimator(String domainName) {
+        synchronized (estimators) {
+            LatencyEstimator e = estimators.get(domainName);
+            if (e == null) {
+                e = new LatencyEstimator();
+                estimators.put(domainName, e);
+            }
+            return e;
+        }
+    }
+
+    /**
+     * Saves the estimators if anything changed since the last time.
+     */
+    public void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+        dirty = false;
+        State s = new State();
+        synchronized (estimators) {
+            for (Map.Entry<String, LatencyEstimator> e : estimators.entrySet()) {
+                s.engines.put(e.getKey(), e.getValue().state());
+            }
+        }
+        try {
+            synchronized (file) {
+                FileUtils.writeStringToFile(file, JsonUtils.toJson(s), "UTF-8");
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error saving search latencies: " + e.getMessage());
+        }
+    }
+
+    private void load() {
+        if (file == null || !file.exists()) {
+            return;
+        }
+        try {
+            State s = JsonUtils.toObject(FileUtils.readFileToString(file, "UTF-8"), State.class);
+            if (s != null && s.engines != null) {
+                for (Map.Entry<String, LatencyEstimator.State> e : s.engines.entrySet()) {
+                    estimator(e.getKey()).state(e.getValue());
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error loading search latencies, starting over: " + e.getMessage());
+        }
+    }
+
+    private static File defaultFile() {
+        try {
+            return new File(Platforms.data(), "search_latency.json");
+        } catch (Throwable e) {
+            // platform not ready, keep them in memory only
+            return null;
+        }
+    }
+
+    private static final class State {
+        HashMap<String, LatencyEstimator.State> engines = new HashMap<>();
+    }
+}
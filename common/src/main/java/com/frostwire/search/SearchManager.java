@@ -35,9 +35,14 @@ import com.frostwire.search.zooqle.ZooqleSearchPerformer;
 import com.frostwire.util.Logger;
 import com.frostwire.util.Ref;
 import com.frostwire.util.ThreadPool;
+import com.frostwire.util.metrics.Counter;
+import com.frostwire.util.metrics.Histogram;
+import com.frostwire.util.metrics.Metrics;
 
 import java.lang.ref.WeakReference;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -49,9 +54,17 @@ public final class SearchManager {
 
     private static final Logger LOG = Logger.getLogger(SearchManager.class);
 
+    private static final Histogram QUEUE_WAIT = Metrics.getInstance().histogram("search.queue_wait.ms");
+    private static final Histogram RESULTS_PER_PAGE = Metrics.getInstance().histogram("search.results_per_page");
+    private static final Counter RESULTS_MERGED = Metrics.getInstance().counter("search.results_merged");
+    // by performer class, to not build the name of the metric every time
+    private static final ConcurrentMap<Class<?>, Histogram> PERFORM_TIMES = new ConcurrentHashMap<>();
+
     private final ExecutorService executor;
     private final List<SearchTask> tasks;
     private final List<WeakReference<SearchTable>> tables;
+    // by search token, while the search runs
+    private final ConcurrentMap<Long, SearchMerge> merges;
 
     private SearchListener listener;
 
@@ -59,6 +72,7 @@ public final class SearchManager {
         this.executor = new ThreadPool("SearchManager", nThreads, nThreads, 1L, new PriorityBlockingQueue<Runnable>(), true);
         this.tasks = Collections.synchronizedList(new LinkedList<SearchTask>());
         this.tables = Collections.synchronizedList(new LinkedList<WeakReference<SearchTable>>());
+        this.merges = new ConcurrentHashMap<>();
     }
 
     private static class Loader {
@@ -124,28 +138,88 @@ public final class SearchManager {
 
     private void submit(SearchTask task) {
         tasks.add(task);
+        // after the task is added, a search is finished only once this
+        // task stops, and then it removes the entry
+        if (!merges.containsKey(task.token())) {
+            merges.putIfAbsent(task.token(), new SearchMerge());
+        }
         executor.execute(task);
     }
 
     private void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
+        RESULTS_PER_PAGE.record(results.size());
         List<SearchResult> list = new LinkedList<>();
 
         for (SearchResult sr : results) {
             if (sr instanceof CrawlableSearchResult) {
-                CrawlableSearchResult csr = (CrawlableSearchResult) sr;
-
-                if (csr.isComplete()) {
+                if (((CrawlableSearchResult) sr).isComplete()) {
                     list.add(sr);
                 }
-
-                crawl(performer, csr);
             } else {
                 list.add(sr);
             }
         }
 
-        if (!list.isEmpty()) {
-            onResults(performer.getToken(), list);
+        long token = performer.getToken();
+        SearchMerge merge = merges.get(token);
+        if (merge == null) {
+            // a late page of a search already finished, nothing to merge with
+            onResults(token, list);
+            for (SearchResult sr : results) {
+                if (sr instanceof CrawlableSearchResult) {
+                    crawl(performer, (CrawlableSearchResult) sr);
+                }
+            }
+            return;
+        }
+
+        SearchResultMerger.Batch batch;
+        boolean deliver = false;
+        // one at a time per search, queued in order so the new results
+        // always go before their merges, the listeners are called without the lock
+        synchronized (merge) {
+            batch = merge.merger.merge(list);
+            merge.pending.add(new Delivery(batch.added, batch.updated));
+            if (!merge.delivering) {
+                merge.delivering = true;
+                deliver = true;
+            }
+        }
+
+        for (SearchResult sr : results) {
+            // the same torrent from another engine is not crawled again
+            if (sr instanceof CrawlableSearchResult && !batch.duplicates.contains(sr)) {
+                crawl(performer, (CrawlableSearchResult) sr);
+            }
+        }
+
+        RESULTS_MERGED.add(batch.duplicates.size());
+
+        if (deliver) {
+            deliver(token, merge);
+        }
+    }
+
+    /**
+     * Sends the queued results of the search until there are no more, only
+     * one thread at a time per search.
+     */
+    private void deliver(long token, SearchMerge merge) {
+        while (true) {
+            Delivery d;
+            synchronized (merge) {
+                d = merge.pending.poll();
+                if (d == null) {
+                    merge.delivering = false;
+                    return;
+                }
+            }
+            if (!d.results.isEmpty()) {
+                onResults(token, d.results);
+            }
+            if (!d.merged.isEmpty()) {
+                onMerged(token, d.merged);
+            }
         }
     }
 
@@ -172,6 +246,16 @@ public final class SearchManager {
         }
     }
 
+    private void onMerged(long token, List<MergedSearchResult> merged) {
+        try {
+            if (listener instanceof SearchMergeListener) {
+                ((SearchMergeListener) listener).onMerged(token, merged);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error sending merged results to listener: " + e.getMessage(), e);
+        }
+    }
+
     private void onError(long token, SearchError error) {
         try {
             if (error != null && listener != null) {
@@ -233,7 +317,10 @@ public final class SearchManager {
         }
 
         if (pendingTask == null) {
+            merges.remove(token);
             onStopped(token);
+            // the response times of this search for the next run
+            SearchLatency.getInstance().save();
         }
     }
 
@@ -249,19 +336,45 @@ public final class SearchManager {
         return ordinal;
     }
 
+    private static final class SearchMerge {
+
+        final SearchResultMerger merger = new SearchResultMerger();
+
+        // guarded by this
+        final Queue<Delivery> pending = new ArrayDeque<>();
+        boolean delivering;
+    }
+
+    private static final class Delivery {
+
+        final List<? extends SearchResult> results;
+        final List<MergedSearchResult> merged;
+
+        Delivery(List<? extends SearchResult> results, List<MergedSearchResult> merged) {
+            this.results = results;
+            this.merged = merged;
+        }
+    }
+
     private static abstract class SearchTask extends Thread implements Comparable<SearchTask> {
 
         protected final SearchManager manager;
         protected final SearchPerformer performer;
         private final int ordinal;
+        private final long submitted;
 
         SearchTask(SearchManager manager, SearchPerformer performer, int ordinal) {
             this.manager = manager;
             this.performer = performer;
             this.ordinal = ordinal;
+            this.submitted = System.nanoTime();
             this.setName(performer.getClass().getName() + "-SearchTask");
         }
 
+        void recordQueueWait() {
+            QUEUE_WAIT.recordMillisSince(submitted);
+        }
+
         public long token() {
             return performer.getToken();
         }
@@ -290,9 +403,12 @@ public final class SearchManager {
 
         @Override
         public void run() {
+            recordQueueWait();
             try {
                 if (!stopped()) {
+                    long start = System.nanoTime();
                     performer.perform();
+                    performTime(performer).recordMillisSince(start);
                 }
             } catch (Throwable e) {
                 LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
@@ -315,6 +431,7 @@ public final class SearchManager {
 
         @Override
         public void run() {
+            recordQueueWait();
             try {
                 if (!stopped()) {
                     performer.crawl(sr);
@@ -329,8 +446,19 @@ public final class SearchManager {
         }
     }
 
+    private static Histogram performTime(SearchPerformer performer) {
+        Class<?> clazz = performer.getClass();
+        Histogram h = PERFORM_TIMES.get(clazz);
+        if (h == null) {
+            h = Metrics.getInstance().histogram("search.perform." + clazz.getSimpleName() + ".ms");
+            PERFORM_TIMES.putIfAbsent(clazz, h);
+        }
+        return h;
+    }
+
     // search engines
 
+    // the most an engine gets, the known ones get less, see SearchLatency
     private static final int DEFAULT_SEARCH_PERFORMER_TIMEOUT = 10000;
 
     private static final SearchEngine YOUTUBE = new SearchEngine("YouTube", AppSettings.SEARCH_YOUTUBE_ENABLED) {
@@ -0,0 +1,41 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import java.util.List;
+
+/**
+ * A listener that also wants to know when a result already sent was
+ * found by other engines, to update it instead of adding a new one.
+ * <p>
+ * The duplicates are never sent in {@link #onResults(long, List)}, a
+ * plain {@link SearchListener} just doesn't hear about them.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public interface SearchMergeListener extends SearchListener {
+
+    /**
+     * @param merged the results with new sources or more seeds, the
+     *               {@link MergedSearchResult#getFirst()} already sent
+     *               in {@link #onResults(long, List)}
+     */
+    void onMerged(long token, List<MergedSearchResult> merged);
+}
@@ -0,0 +1,212 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentItemSearchResult;
+import com.frostwire.search.torrent.TorrentSearchResult;
+
+import java.util.*;
+
+/**
+ * Collapses the results of one search that several engines found, by
+ * info hash for torrents and by name and size for the other files.
+ * <p>
+ * The index is open addressing with linear probing and holds at most
+ * {@code maxEntries} results, the ones after that are never merged, so
+ * the memory of a search stays bounded. Not thread safe.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class SearchResultMerger {
+
+    static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int maxEntries;
+
+    private String[] keys;
+    private int[] hashes;
+    private MergedSearchResult[] values;
+    private int size;
+    private int merges;
+
+    SearchResultMerger(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.keys = new String[INITIAL_CAPACITY];
+        this.hashes = new int[INITIAL_CAPACITY];
+        this.values = new MergedSearchResult[INITIAL_CAPACITY];
+    }
+
+    SearchResultMerger() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the new results and the merged ones that changed, each one
+     * once, in the order of the results
+     */
+    Batch merge(List<? extends SearchResult> results) {
+        int batch = merges++;
+        Batch b = new Batch(results.size());
+        for (SearchResult sr : results) {
+            String key = key(sr);
+            if (key == null) {
+                b.added.add(sr);
+                continue;
+            }
+            MergedSearchResult m = get(key);
+            if (m == null) {
+                if (size < maxEntries) {
+                    put(key, new MergedSearchResult(key, sr));
+                }
+                b.added.add(sr);
+            } else {
+                b.duplicates.add(sr);
+                if (m.merge(sr) && m.reported != batch) {
+                    m.reported = batch;
+                    b.updated.add(m);
+                }
+            }
+        }
+        return b;
+    }
+
+    MergedSearchResult get(String key) {
+        int h = hash(key);
+        int mask = keys.length - 1;
+        for (int i = h & mask; keys[i] != null; i = (i + 1) & mask) {
+            if (hashes[i] == h && keys[i].equals(key)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    private void put(String key, MergedSearchResult value) {
+        // at most half full
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        insert(keys, hashes, values, key, hash(key), value);
+        size++;
+    }
+
+    private void resize(int capacity) {
+        String[] k = new String[capacity];
+        int[] h = new int[capacity];
+        MergedSearchResult[] v = new MergedSearchResult[capacity];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                insert(k, h, v, keys[i], hashes[i], values[i]);
+            }
+        }
+        keys = k;
+        hashes = h;
+        values = v;
+    }
+
+    private static void insert(String[] keys, int[] hashes, MergedSearchResult[] values, String key, int h, MergedSearchResult value) {
+        int mask = keys.length - 1;
+        int i = h & mask;
+        while (keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        hashes[i] = h;
+        values[i] = value;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * The identity of a result, null if it can't be known, like a file
+     * without size.
+     */
+    static String key(SearchResult sr) {
+        if (sr instanceof TorrentSearchResult) {
+            TorrentSearchResult tsr = (TorrentSearchResult) sr;
+            String hash = tsr.getHash();
+            if (hash != null && !hash.isEmpty()) {
+                hash = hash.toLowerCase(Locale.US);
+                if (sr instanceof TorrentItemSearchResult) {
+                    return "bt:" + hash + "/" + ((TorrentItemSearchResult) sr).getFilePath();
+                }
+                if (sr instanceof CrawledSearchResult) {
+                    return "bt:" + hash + "#" + sr.getDisplayName();
+                }
+                return "bt:" + hash;
+            }
+        }
+        if (sr instanceof FileSearchResult) {
+            long size = ((FileSearchResult) sr).getSize();
+            String name = normalize(sr.getDisplayName());
+            if (size > 0 && !name.isEmpty()) {
+                return "file:" + name + ":" + size;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Lower case letters and digits, the rest as single spaces, so
+     * {@code "The.Movie (2017)"} and {@code "the movie 2017"} are the same.
+     */
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    static final class Batch {
+
+        final List<SearchResult> added;
+        final List<MergedSearchResult> updated;
+        final Set<SearchResult> duplicates;
+
+        Batch(int n) {
+            this.added = new ArrayList<>(n);
+            this.updated = new ArrayList<>();
+            this.duplicates = Collections.newSetFromMap(new IdentityHashMap<SearchResult, Boolean>());
+        }
+    }
+}
@@ -21,11 +21,21 @@ import com.frostwire.util.Logger;
 import com.frostwire.util.UrlUtils;
 import com.frostwire.util.http.HttpClient;
 import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.ThreadPool;
 import com.frostwire.util.UserAgentGenerator;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 
@@ -46,8 +56,19 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
     private final String encodedKeywords;
     private final int timeout;
     private final HttpClient client;
+    private final SearchLatency latency;
+
+    private boolean fetched;
 
     public WebSearchPerformer(String domainName, long token, String keywords, int timeout) {
+        this(domainName, token, keywords, timeout, HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH), SearchLatency.getInstance());
+    }
+
+    /**
+     * @param timeout the maximum, the engine gets less once its response
+     *                times are known
+     */
+    WebSearchPerformer(String domainName, long token, String keywords, int timeout, HttpClient client, SearchLatency latency) {
         super(token);
 
         if (domainName == null) {
@@ -58,7 +79,8 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         this.keywords = keywords;
         this.encodedKeywords = UrlUtils.encode(keywords);
         this.timeout = timeout;
-        this.client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
+        this.client = client;
+        this.latency = latency;
     }
 
     public final String getKeywords() {
@@ -85,17 +107,88 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
     }
 
     public String fetch(String url, String cookie, Map<String, String> customHeaders) throws IOException {
-        return client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders);
+        int timeout = latency.timeout(domainName, this.timeout);
+        long hedgeDelay = -1;
+        if (!fetched) {
+            // only the first page is worth a second request, the user is waiting
+            fetched = true;
+            hedgeDelay = latency.hedgeDelay(domainName);
+        }
+        long start = System.currentTimeMillis();
+        try {
+            String text = hedgeDelay < 0 ?
+                    client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders) :
+                    hedgedGet(url, timeout, cookie, customHeaders, hedgeDelay);
+            latency.record(domainName, System.currentTimeMillis() - start);
+            return text;
+        } catch (IOException e) {
+            if (e instanceof InterruptedIOException || System.currentTimeMillis() - start >= timeout) {
+                latency.recordTimeout(domainName, timeout);
+            }
+            throw e;
+        }
     }
 
     public String post(String url, Map<String, String> formData) {
         try {
-            return client.post(url, timeout, DEFAULT_USER_AGENT, formData);
+            return client.post(url, latency.timeout(domainName, timeout), DEFAULT_USER_AGENT, formData);
         } catch (IOException throwable) {
             return null;
         }
     }
 
+    /**
+     * The client for the second request of a page, with its own
+     * connection, the first one could be the slow part.
+     */
+    protected HttpClient newHedgeClient() {
+        return HttpClientFactory.newInstance();
+    }
+
+    /**
+     * Requests the page, and once more if it's not there after the delay,
+     * the first answer wins.
+     */
+    private String hedgedGet(String url, int timeout, String cookie, Map<String, String> customHeaders, long delay) throws IOException {
+        CompletionService<String> cs = new ExecutorCompletionService<>(HedgeExecutor.INSTANCE);
+        Future<String> first = cs.submit(new GetCall(client, url, timeout, cookie, customHeaders));
+        Future<String> second = null;
+        try {
+            Future<String> f = cs.poll(delay, TimeUnit.MILLISECONDS);
+            int pending = 1;
+            if (f == null && !isStopped()) {
+                second = cs.submit(new GetCall(newHedgeClient(), url, timeout, cookie, customHeaders));
+                pending = 2;
+            }
+            IOException error = null;
+            while (pending > 0) {
+                if (f == null) {
+                    f = cs.take();
+                }
+                pending--;
+                try {
+                    String text = f.get();
+                    if (text != null || pending == 0) {
+                        return text;
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    error = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+                f = null;
+            }
+            throw error;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted fetching: " + url);
+        } finally {
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
     /**
      * Allow to perform the HTTP operation using the same internal http client.
      * 
@@ -128,4 +221,30 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
     public String getDomainName() {
         return domainName;
     }
+
+    private static final class GetCall implements Callable<String> {
+
+        private final HttpClient client;
+        private final String url;
+        private final int timeout;
+        private final String cookie;
+        private final Map<String, String> customHeaders;
+
+        GetCall(HttpClient client, String url, int timeout, String cookie, Map<String, String> customHeaders) {
+            this.client = client;
+            this.url = url;
+            this.timeout = timeout;
+            this.cookie = cookie;
+            this.customHeaders = customHeaders;
+        }
+
+        @Override
+        public String call() throws Exception {
+            return client.get(url, timeout, DEFAULT_USER_AGENT, null, cookie, customHeaders);
+        }
+    }
+
+    private static final class HedgeExecutor {
+        static final ExecutorService INSTANCE = new ThreadPool("SearchHedge", 0, Integer.MAX_VALUE, 30, new SynchronousQueue<Runnable>(), true);
+    }
 }
@@ -15,6 +15,7 @@
 
 package com.frostwire.search.youtube;
 
+import com.frostwire.platform.Platforms;
 import com.frostwire.util.Logger;
 import com.frostwire.search.FileSearchResult;
 import com.frostwire.util.http.HttpClient;
@@ -31,6 +32,7 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.text.SimpleDateFormat;
@@ -51,8 +53,8 @@ public final class YouTubeExtractor {
 
     private static final Map<Integer, Format> FORMATS = buildFormats();
 
-    // using the signature decoding per running session (LruCache)
-    private static LRUCacheMap<String, YouTubeSig> YT_SIG_MAP = new LRUCacheMap<String, YouTubeSig>(50);
+    // the signature decoding by player id, compiled ones survive the session
+    private static final YouTubeSigCache YT_SIG_CACHE = new YouTubeSigCache(50, sigCacheDir());
 
     private YouTubeSig currentYTSig;
 
@@ -268,7 +270,7 @@ public final class YouTubeExtractor {
         }
 
         String playerId = br.getRegex("<script src=\"/yts/jsbin/player-([\\w_\\-]+)/en_US/base.js\" name=\"player/base\"></script>").getMatch(0);
-        YouTubeSig ytSig = getYouTubeSig("http://www.youtube.com/yts/jsbin/player-" + playerId + "/en_US/base.js");
+        YouTubeSig ytSig = getYouTubeSig(playerId);
         currentYTSig = ytSig;
 
         /* html5_fmt_map */
@@ -428,29 +430,40 @@ public final class YouTubeExtractor {
         return vuid;
     }
 
-    private YouTubeSig getYouTubeSig(String html5playerUrl) {
-        // concurrency issues are not important in this point
-        YouTubeSig sig = null;
-        if (!YT_SIG_MAP.containsKey(html5playerUrl)) {
-            String jscode = "";
+    private YouTubeSig getYouTubeSig(String playerId) {
+        if (playerId == null) {
+            LOG.error("Could not getYouTubeSig, player not found");
+            return null;
+        }
+        YouTubeSig sig = YT_SIG_CACHE.get(playerId);
+        if (sig == null) {
+            // two extractions of a new player could download it at once, harmless
             try {
-                html5playerUrl = html5playerUrl.replace("\\", "");
+                String html5playerUrl = "http://www.youtube.com/yts/jsbin/player-" + playerId + "/en_US/base.js";
                 HttpClient httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
-                jscode = httpClient.get(html5playerUrl);
+                String jscode = httpClient.get(html5playerUrl);
                 sig = new YouTubeSig(jscode);
-                YT_SIG_MAP.put(html5playerUrl, sig);
+                YT_SIG_CACHE.put(playerId, sig);
             } catch (Throwable t) {
                 LOG.error("Could not getYouTubeSig");
-                //LOG.error("jscode:\n" + jscode);
             }
-        } else {
-            //cache hit, it worked with this url.            
-            sig = YT_SIG_MAP.get(html5playerUrl);
         }
 
         return sig;
     }
 
+    private static File sigCacheDir() {
+        try {
+            File dir = new File(Platforms.data(), "youtube_sig");
+            if (dir.isDirectory() || dir.mkdirs()) {
+                return dir;
+            }
+        } catch (Throwable e) {
+            // platform not ready, keep them in memory only
+        }
+        return null;
+    }
+
     private ThumbnailLinks createThumbnailLink(String videoId) {
         String normal = "http://img.youtube.com/vi/" + videoId + "/default.jpg";
         String mq = "http://img.youtube.com/vi/" + videoId + "/mqdefault.jpg";
@@ -621,17 +634,4 @@ public final class YouTubeExtractor {
         public final String audio;
         public final String quality;
     }
-
-    private static class LRUCacheMap<K, V> extends LinkedHashMap<K, V> {
-        private final int capacity;
-
-        public LRUCacheMap(int capacity) {
-            this.capacity = capacity;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(java.util.Map.Entry<K, V> eldest) {
-            return size() > capacity;
-        }
-    }
 }
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -21,6 +21,7 @@ package com.frostwire.search.youtube;
 import com.frostwire.regex.Matcher;
 import com.frostwire.regex.Pattern;
 import com.frostwire.search.youtube.jd.JsFunction;
+import com.frostwire.util.Logger;
 
 /**
  * @author gubatron
@@ -28,6 +29,11 @@ import com.frostwire.search.youtube.jd.JsFunction;
  */
 final class YouTubeSig {
 
+    private static final Logger LOG = Logger.getLogger(YouTubeSig.class);
+
+    private static final Pattern FUNCNAME_PATTERN = Pattern.compile("\"signature\"," + JsFunction.WS + "?([$a-zA-Z0-9]+)\\(");
+
+    private final YouTubeSigProgram program;
     private final JsFunction<String> fn;
 
     public YouTubeSig(String jscode) {
@@ -41,13 +47,35 @@ final class YouTubeSig {
          }
          >> Output: gr
          */
-        Matcher m = Pattern.compile("\"signature\"," + JsFunction.WS + "?([$a-zA-Z0-9]+)\\(").matcher(jscode);
+        Matcher m = FUNCNAME_PATTERN.matcher(jscode);
         m.find();
         String funcname = m.group(1);
-        this.fn = new JsFunction<>(jscode, funcname);
+        this.program = YouTubeSigProgram.compile(jscode, funcname);
+        if (program == null) {
+            LOG.warn("Unable to compile signature function " + funcname + ", using the interpreter");
+        }
+        this.fn = program == null ? new JsFunction<String>(jscode, funcname) : null;
+    }
+
+    YouTubeSig(YouTubeSigProgram program) {
+        this.program = program;
+        this.fn = null;
+    }
+
+    /**
+     * @return the compiled decipher function, null if it's interpreted
+     */
+    YouTubeSigProgram program() {
+        return program;
     }
 
     public String calc(String sig) {
-        return fn.eval(sig);
+        if (program != null) {
+            return program.eval(sig);
+        }
+        // the interpreter context is not thread safe
+        synchronized (fn) {
+            return fn.eval(sig);
+        }
     }
 }
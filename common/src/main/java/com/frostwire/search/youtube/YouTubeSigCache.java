@@ -0,0 +1,101 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search.youtube;
+
+import com.frostwire.util.Logger;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The signature functions of the last players used, by player id, and
+ * optionally the compiled ones in a folder, to avoid downloading the
+ * player again in the next sessions.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class YouTubeSigCache {
+
+    private static final Logger LOG = Logger.getLogger(YouTubeSigCache.class);
+
+    private final Map<String, YouTubeSig> map;
+    private final File dir;
+
+    /**
+     * @param dir where to save the compiled functions, null to keep them in memory only
+     */
+    YouTubeSigCache(int capacity, File dir) {
+        this.map = Collections.synchronizedMap(new LRUCacheMap<String, YouTubeSig>(capacity));
+        this.dir = dir;
+    }
+
+    public YouTubeSig get(String playerId) {
+        YouTubeSig sig = map.get(playerId);
+        if (sig == null && dir != null && isValidId(playerId)) {
+            File f = new File(dir, playerId);
+            if (f.exists()) {
+                try {
+                    YouTubeSigProgram program = YouTubeSigProgram.parse(FileUtils.readFileToString(f, "UTF-8"));
+                    if (program != null) {
+                        sig = new YouTubeSig(program);
+                        map.put(playerId, sig);
+                    }
+                } catch (Throwable e) {
+                    LOG.warn("Error reading signature function of player " + playerId, e);
+                }
+            }
+        }
+        return sig;
+    }
+
+    public void put(String playerId, YouTubeSig sig) {
+        map.put(playerId, sig);
+        YouTubeSigProgram program = sig.program();
+        if (dir != null && program != null && isValidId(playerId)) {
+            try {
+                FileUtils.writeStringToFile(new File(dir, playerId), program.toString(), "UTF-8");
+            } catch (Throwable e) {
+                LOG.warn("Error saving signature function of player " + playerId, e);
+            }
+        }
+    }
+
+    private static boolean isValidId(String playerId) {
+        return playerId != null && playerId.matches("[\\w\\-]+");
+    }
+
+    private static final class LRUCacheMap<K, V> extends LinkedHashMap<K, V> {
+
+        private final int capacity;
+
+        LRUCacheMap(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
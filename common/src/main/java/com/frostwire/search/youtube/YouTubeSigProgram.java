@@ -0,0 +1,394 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search.youtube;
+
+import com.frostwire.regex.Matcher;
+import com.frostwire.regex.Pattern;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The signature decipher function of a YouTube player compiled to a list of
+ * operations over the characters of the signature.
+ * <p>
+ * The players split the signature, call helpers of one object that reverse,
+ * splice or swap the characters and join them back, so the function is
+ * compiled once per player and then every signature is deciphered without
+ * touching the javascript. Anything else and {@link #compile(String, String)}
+ * gives up, leaving the signature to the interpreter.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class YouTubeSigProgram {
+
+    private static final char REVERSE = 'r';
+    private static final char DROP = 'd';
+    private static final char SWAP = 's';
+
+    private static final String ID = "[$a-zA-Z0-9_]+";
+
+    private static final Pattern SPLIT_STMT = Pattern.compile("^(?<out>" + ID + ")=(?<in>" + ID + ")\\.split\\(\"\"\\)$");
+    private static final Pattern JOIN_STMT = Pattern.compile("^return (?<in>" + ID + ")\\.join\\(\"\"\\)$");
+    private static final Pattern REVERSE_STMT = Pattern.compile("^(?<in>" + ID + ")\\.reverse\\(\\)$");
+    private static final Pattern SPLICE_STMT = Pattern.compile("^(?<in>" + ID + ")\\.splice\\(0,(?<n>" + ID + ")\\)$");
+    private static final Pattern CALL_STMT = Pattern.compile("^(?<obj>" + ID + ")(\\.(?<member>" + ID + ")|\\[\"(?<qmember>" + ID + ")\"\\])\\((?<arg>" + ID + ")(,(?<n>[0-9]+))?\\)$");
+    private static final Pattern SWAP_VAR_STMT = Pattern.compile("^var (?<var>" + ID + ")=(?<in>" + ID + ")\\[0\\]$");
+    private static final Pattern FIELD = Pattern.compile("(?<key>\"?" + ID + "\"?)[ \\t\\n\\r]*:[ \\t\\n\\r]*function\\((?<args>[$a-zA-Z0-9_,]*)\\)[ \\t\\n\\r]*\\{(?<code>[^\\}]*)\\}");
+
+    private final char[] ops;
+    private final int[] args;
+
+    private YouTubeSigProgram(char[] ops, int[] args) {
+        this.ops = ops;
+        this.args = args;
+    }
+
+    public String eval(String sig) {
+        char[] s = sig.toCharArray();
+        int off = 0;
+        int len = s.length;
+
+        for (int i = 0; i < ops.length; i++) {
+            switch (ops[i]) {
+                case REVERSE:
+                    for (int l = off, r = off + len - 1; l < r; l++, r--) {
+                        char c = s[l];
+                        s[l] = s[r];
+                        s[r] = c;
+                    }
+                    break;
+                case DROP:
+                    int n = Math.min(args[i], len);
+                    off += n;
+                    len -= n;
+                    break;
+                case SWAP:
+                    int j = off + args[i] % len;
+                    char c = s[off];
+                    s[off] = s[j];
+                    s[j] = c;
+                    break;
+            }
+        }
+
+        return new String(s, off, len);
+    }
+
+    /**
+     * The operations as text, like {@code r,d3,s47}, to save the program.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ops.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(ops[i]);
+            if (ops[i] != REVERSE) {
+                sb.append(args[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the program, or null if the text is not one
+     */
+    public static YouTubeSigProgram parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        text = text.trim();
+        String[] items = text.length() > 0 ? text.split(",") : new String[0];
+        char[] ops = new char[items.length];
+        int[] args = new int[items.length];
+        try {
+            for (int i = 0; i < items.length; i++) {
+                String item = items[i];
+                ops[i] = item.charAt(0);
+                if (ops[i] == REVERSE && item.length() == 1) {
+                    continue;
+                }
+                if (ops[i] != DROP && ops[i] != SWAP) {
+                    return null;
+                }
+                args[i] = Integer.parseInt(item.substring(1));
+                if (args[i] < 0) {
+                    return null;
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return new YouTubeSigProgram(ops, args);
+    }
+
+    /**
+     * @return the compiled function, or null if it does something else
+     */
+    public static YouTubeSigProgram compile(String jscode, String funcname) {
+        int start = findFunction(jscode, funcname);
+        if (start == -1) {
+            return null;
+        }
+        String[] params = parseParams(jscode, start);
+        String[] stmts = parseBody(jscode, start);
+        if (params == null || params.length != 1 || stmts == null || stmts.length < 2) {
+            return null;
+        }
+        String a = params[0];
+
+        // a=a.split("") ... return a.join("")
+        Matcher m = SPLIT_STMT.matcher(stmts[0]);
+        if (!m.find() || !m.group("out").equals(a) || !m.group("in").equals(a)) {
+            return null;
+        }
+        m = JOIN_STMT.matcher(stmts[stmts.length - 1]);
+        if (!m.find() || !m.group("in").equals(a)) {
+            return null;
+        }
+
+        List<Character> ops = new ArrayList<>();
+        List<Integer> args = new ArrayList<>();
+        Map<String, Map<String, Character>> objects = new HashMap<>();
+
+        for (int i = 1; i < stmts.length - 1; i++) {
+            String stmt = stmts[i];
+            if (stmt.length() == 0) {
+                continue;
+            }
+            if ((m = REVERSE_STMT.matcher(stmt)).find() && m.group("in").equals(a)) {
+                ops.add(REVERSE);
+                args.add(0);
+                continue;
+            }
+            if ((m = SPLICE_STMT.matcher(stmt)).find() && m.group("in").equals(a) && isNumber(m.group("n"))) {
+                ops.add(DROP);
+                args.add(Integer.parseInt(m.group("n")));
+                continue;
+            }
+            m = CALL_STMT.matcher(stmt);
+            if (!m.find() || !m.group("arg").equals(a)) {
+                return null;
+            }
+            String obj = m.group("obj");
+            String member = m.group("member") != null ? m.group("member") : m.group("qmember");
+            if (!objects.containsKey(obj)) {
+                objects.put(obj, compileObject(jscode, obj));
+            }
+            Character op = objects.get(obj).get(member);
+            String n = m.group("n");
+            if (op == null || (op != REVERSE && n == null)) {
+                return null;
+            }
+            ops.add(op);
+            args.add(n != null ? Integer.parseInt(n) : 0);
+        }
+
+        char[] opsArr = new char[ops.size()];
+        int[] argsArr = new int[args.size()];
+        for (int i = 0; i < opsArr.length; i++) {
+            opsArr[i] = ops.get(i);
+            argsArr[i] = args.get(i);
+        }
+        return new YouTubeSigProgram(opsArr, argsArr);
+    }
+
+    /**
+     * Maps every helper of the object to its operation, the unknown ones are left out.
+     */
+    private static Map<String, Character> compileObject(String jscode, String name) {
+        Map<String, Character> members = new HashMap<>();
+
+        int start = findObject(jscode, name);
+        if (start == -1) {
+            return members;
+        }
+        int end = closingBrace(jscode, start);
+        if (end == -1) {
+            return members;
+        }
+
+        Matcher m = FIELD.matcher(jscode.substring(start + 1, end));
+        while (m.find()) {
+            String key = m.group("key").replaceAll("^\"|\"$", "");
+            String[] params = m.group("args").split(",");
+            Character op = compileHelper(params, statements(m.group("code")));
+            if (op != null) {
+                members.put(key, op);
+            }
+        }
+        return members;
+    }
+
+    private static Character compileHelper(String[] params, String[] stmts) {
+        String a = params[0];
+        if (stmts.length == 1 && stmts[0].equals(a + ".reverse()")) {
+            return REVERSE;
+        }
+        if (params.length != 2) {
+            return null;
+        }
+        String b = params[1];
+        if (stmts.length == 1 && stmts[0].equals(a + ".splice(0," + b + ")")) {
+            return DROP;
+        }
+        if (stmts.length == 3) {
+            // var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c
+            Matcher m = SWAP_VAR_STMT.matcher(stmts[0]);
+            if (m.find() && m.group("in").equals(a)) {
+                String c = m.group("var");
+                String j = a + "[" + b + "%" + a + ".length]";
+                if (stmts[1].equals(a + "[0]=" + j) && stmts[2].equals(j + "=" + c)) {
+                    return SWAP;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the opening parenthesis of the function arguments, or -1
+     */
+    private static int findFunction(String jscode, String name) {
+        int from = 0;
+        int idx;
+        while ((idx = jscode.indexOf(name, from)) != -1) {
+            from = idx + name.length();
+            if (idx > 0 && isIdentifierChar(jscode.charAt(idx - 1))) {
+                continue;
+            }
+            int i = skipSpaces(jscode, from);
+            if (i < jscode.length() && jscode.charAt(i) == '(' && jscode.startsWith("function", skipSpacesBack(jscode, idx - 1) - "function".length() + 1)) {
+                // function name(a)
+                return i;
+            }
+            if (idx > 0 && jscode.charAt(idx - 1) == '.') {
+                continue;
+            }
+            if (i < jscode.length() && jscode.charAt(i) == '=') {
+                i = skipSpaces(jscode, i + 1);
+                if (jscode.startsWith("function", i)) {
+                    i = skipSpaces(jscode, i + "function".length());
+                    if (i < jscode.length() && jscode.charAt(i) == '(') {
+                        return i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the opening brace of the object, or -1
+     */
+    private static int findObject(String jscode, String name) {
+        int from = 0;
+        int idx;
+        while ((idx = jscode.indexOf("var " + name, from)) != -1) {
+            from = idx + 4 + name.length();
+            int i = skipSpaces(jscode, from);
+            if (i < jscode.length() && jscode.charAt(i) == '=') {
+                i = skipSpaces(jscode, i + 1);
+                if (i < jscode.length() && jscode.charAt(i) == '{') {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String[] parseParams(String jscode, int open) {
+        int close = jscode.indexOf(')', open);
+        if (close == -1) {
+            return null;
+        }
+        String params = jscode.substring(open + 1, close).replaceAll("[ \\t\\n\\r]", "");
+        return params.length() > 0 ? params.split(",") : new String[0];
+    }
+
+    private static String[] parseBody(String jscode, int open) {
+        int start = jscode.indexOf('{', open);
+        if (start == -1) {
+            return null;
+        }
+        // same as the interpreter, the body has no braces
+        int end = jscode.indexOf('}', start);
+        if (end == -1) {
+            return null;
+        }
+        return statements(jscode.substring(start + 1, end));
+    }
+
+    private static String[] statements(String code) {
+        String[] stmts = code.split(";");
+        for (int i = 0; i < stmts.length; i++) {
+            stmts[i] = stmts[i].replaceAll("[\n\r]", "").trim();
+        }
+        return stmts;
+    }
+
+    private static int closingBrace(String jscode, int open) {
+        int depth = 0;
+        for (int i = open; i < jscode.length(); i++) {
+            char c = jscode.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+                if (depth == 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSpacesBack(String s, int i) {
+        while (i >= 0 && Character.isWhitespace(s.charAt(i))) {
+            i--;
+        }
+        return i;
+    }
+
+    private static boolean isIdentifierChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '$' || c == '_';
+    }
+
+    private static boolean isNumber(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+                return false;
+            }
+        }
+        return s.length() > 0;
+    }
+}
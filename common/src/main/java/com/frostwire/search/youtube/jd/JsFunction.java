@@ -53,6 +53,14 @@ public final class JsFunction<T> {
     private final static String VAR = "[a-zA-Z$0-9_\"]+";
     private final static String CODE = "{(?<code>[^\\}]+)\\}";
 
+    private final static Pattern ASSIGN_PATTERN = Pattern.compile("^(?<out>[a-z]+)(\\[(?<index>.+?)\\])?=(?<expr>.*)$");
+    private final static Pattern MEMBER_PATTERN = Pattern.compile("^(?<var>" + VAR + ")\\.(?<member>[^\\(]+)(\\((?<args>[^\\(\\)]*)\\))?$");
+    private final static Pattern QUOTED_MEMBER_PATTERN = Pattern.compile("^(?<var>" + VAR + ")\\[\"(?<member>[^\\(]+)\"\\](\\((?<args>[^\\(\\)]*)\\))?$");
+    private final static Pattern INDEX_PATTERN = Pattern.compile("^(?<in>[a-z]+)\\[(?<idx>.+)\\]$");
+    private final static Pattern MOD_PATTERN = Pattern.compile("^(?<a>.+?)(?<op>[%])(?<b>.+?)$");
+    private final static Pattern CALL_PATTERN = Pattern.compile("^(?<func>[a-zA-Z]+)\\((?<args>[a-z0-9,]*)\\)$");
+    private final static Pattern FIELDS_PATTERN = Pattern.compile("(?<key>" + VAR + ")" + WS + "*:" + WS + "*function\\((?<args>[a-z,]+)\\)\\" + CODE);
+
     public JsFunction(String jscode, String funcname) {
         this.ctx = new JsContext(jscode);
         this.initial_function = extract_function(ctx, funcname);
@@ -81,7 +89,7 @@ public final class JsFunction<T> {
             stmt = stmt.substring("var ".length());
         }
 
-        final Matcher ass_m = Pattern.compile("^(?<out>[a-z]+)(\\[(?<index>.+?)\\])?=(?<expr>.*)$").matcher(stmt);
+        final Matcher ass_m = ASSIGN_PATTERN.matcher(stmt);
         Lambda1 assign;
         String expr;
         if (ass_m.find()) {
@@ -155,12 +163,12 @@ public final class JsFunction<T> {
             return jsl;
         }
 
-        Matcher m = Pattern.compile("^(?<var>"+VAR+")\\.(?<member>[^\\(]+)(\\((?<args>[^\\(\\)]*)\\))?$").matcher(expr);
+        Matcher m = MEMBER_PATTERN.matcher(expr);
         boolean mFind = m.find();
         if (!mFind) {
             // maybe it's the new pattern?
             // oE["do"](a,67)
-            m = Pattern.compile("^(?<var>" + VAR + ")\\[\"(?<member>[^\\(]+)\"\\](\\((?<args>[^\\(\\)]*)\\))?$").matcher(expr);
+            m = QUOTED_MEMBER_PATTERN.matcher(expr);
             mFind = m.find();
         }
 
@@ -232,21 +240,21 @@ public final class JsFunction<T> {
             return ((JsObject) obj).functions.get(member).eval(argvals.toArray());
         }
 
-        m = Pattern.compile("^(?<in>[a-z]+)\\[(?<idx>.+)\\]$").matcher(expr);
+        m = INDEX_PATTERN.matcher(expr);
         if (m.find()) {
             Object val = local_vars.get(m.group("in"));
             Object idx = interpret_expression(ctx, m.group("idx"), local_vars, allow_recursion - 1);
             return ((List<?>) val).get((Integer) idx);
         }
 
-        m = Pattern.compile("^(?<a>.+?)(?<op>[%])(?<b>.+?)$").matcher(expr);
+        m = MOD_PATTERN.matcher(expr);
         if (m.find()) {
             Object a = interpret_expression(ctx, m.group("a"), local_vars, allow_recursion);
             Object b = interpret_expression(ctx, m.group("b"), local_vars, allow_recursion);
             return (Integer) a % (Integer) b;
         }
 
-        m = Pattern.compile("^(?<func>[a-zA-Z]+)\\((?<args>[a-z0-9,]*)\\)$").matcher(expr);
+        m = CALL_PATTERN.matcher(expr);
         if (m.find()) {
             String fname = m.group("func");
             if (!ctx.functions.containsKey(fname) && ctx.jscode.length() > 0) {
@@ -273,7 +281,7 @@ public final class JsFunction<T> {
         obj_m.find();
         String fields = obj_m.group("fields");
         // Currently, it only supports function definitions
-        final Matcher fields_m = Pattern.compile("(?<key>"+VAR+")"+ WS +"*:"+ WS +"*function\\((?<args>[a-z,]+)\\)\\"+CODE).matcher(fields);
+        final Matcher fields_m = FIELDS_PATTERN.matcher(fields);
 
         while (fields_m.find()) {
             final String[] argnames = mscpy(fields_m.group("args").split(","));
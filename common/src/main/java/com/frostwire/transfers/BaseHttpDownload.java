@@ -23,7 +23,6 @@ import com.frostwire.platform.FileSystem;
 import com.frostwire.platform.Platform;
 import com.frostwire.platform.Platforms;
 import com.frostwire.util.HttpClientFactory;
-import com.frostwire.util.ThreadPool;
 import com.frostwire.util.http.HttpClient;
 import org.apache.commons.io.FilenameUtils;
 
@@ -36,7 +35,6 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
 
 /**
  * @author gubatron
@@ -46,9 +44,6 @@ public abstract class BaseHttpDownload implements Transfer {
 
     private static final Logger LOG = Logger.getLogger(BaseHttpDownload.class);
 
-    // is 20 concurrent downloads enough?
-    private static final ExecutorService THREAD_POOL = ThreadPool.newThreadPool("HttpDownload", 20, true);
-
     protected final Info info;
 
     protected final File savePath;
@@ -59,6 +54,9 @@ public abstract class BaseHttpDownload implements Transfer {
     protected SpeedStat stat;
     protected boolean complete;
 
+    private final TokenBucket bucket;
+    private int priority;
+
     protected BaseHttpDownload(Info info) {
         this.info = info;
 
@@ -81,6 +79,8 @@ public abstract class BaseHttpDownload implements Transfer {
         this.stat = new SpeedStat();
         this.state = TransferState.WAITING;
         this.complete = false;
+
+        this.bucket = new TokenBucket(0);
     }
 
     @Override
@@ -163,6 +163,29 @@ public abstract class BaseHttpDownload implements Transfer {
         return Collections.emptyList();
     }
 
+    /**
+     * @return the download limit of this transfer in bytes per second, 0 means unlimited.
+     */
+    public int getDownloadRateLimit() {
+        return bucket.rate();
+    }
+
+    public void setDownloadRateLimit(int limit) {
+        bucket.rate(limit);
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Transfers with higher priority leave the scheduler queue first,
+     * it only takes effect if the transfer is not started yet.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
     @Override
     public void remove(boolean deleteData) {
         if (complete) {
@@ -170,6 +193,7 @@ public abstract class BaseHttpDownload implements Transfer {
         }
 
         complete(state = TransferState.CANCELED);
+        TransferScheduler.getInstance().cancel(this);
 
         FileSystem fs = Platforms.fileSystem();
 
@@ -188,7 +212,7 @@ public abstract class BaseHttpDownload implements Transfer {
             return;
         }
 
-        THREAD_POOL.execute(new Thread(getDisplayName()) {
+        TransferScheduler.getInstance().submit(this, priority, new Runnable() {
             public void run() {
                 try {
                     if (complete) {
@@ -226,7 +250,7 @@ public abstract class BaseHttpDownload implements Transfer {
         }
 
         state = TransferState.FINISHING;
-        THREAD_POOL.execute(new Runnable() {
+        TransferScheduler.getInstance().execute(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -266,12 +290,13 @@ public abstract class BaseHttpDownload implements Transfer {
 
     protected void moveAndComplete(File src, File dst) {
         FileSystem fs = Platforms.fileSystem();
-        if (fs.copy(src, dst)) {
-
-            if (!fs.delete(src)) {
-                LOG.warn("Error deleting source file while moving: " + src);
-            }
+        // the progress stays the one of the download, the move (a copy
+        // if the temp and the save dirs are in different volumes) is
+        // a state of its own
+        state = TransferState.MOVING;
+        boolean moved = fs.move(src, dst, null);
 
+        if (moved) {
             state = TransferState.SCANNING;
 
             fs.scan(dst);
@@ -357,6 +382,12 @@ public abstract class BaseHttpDownload implements Transfer {
                 // download logic flow.
                 throw new RuntimeException("Invalid status, transfer cancelled");
             }
+            try {
+                TransferScheduler.getInstance().consumeDownload(bucket, length);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Transfer interrupted", e);
+            }
         }
 
         @Override
@@ -18,49 +18,101 @@
 
 package com.frostwire.transfers;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
+ * Lock-free transfer rate estimator. The speed is an exponentially
+ * weighted moving average of the rate observed in ticks of
+ * {@link #TICK_MILLISECONDS}, with a configurable smoothing horizon.
+ * <p>
+ * Any number of threads can call {@link #update(long)} and read the
+ * values, the average is advanced (and decays when no data arrives)
+ * by whichever thread sees an expired tick first.
+ *
  * @author gubatron
  * @author aldenml
  */
-final class SpeedStat {
-
-    private static final int INTERVAL_MILLISECONDS = 1000;
+public final class SpeedStat {
 
-    private long totalBytes;
-    private long averageSpeed; // in bytes
+    static final long TICK_MILLISECONDS = 250;
+    private static final long DEFAULT_HORIZON_MILLISECONDS = 5000;
 
-    private long speedMarkTimestamp;
-    private long lastTotalBytes;
+    private final long horizon;
+    private final AtomicLong totalBytes;
+    private final AtomicReference<Sample> sample;
 
     public SpeedStat() {
+        this(DEFAULT_HORIZON_MILLISECONDS);
+    }
+
+    /**
+     * @param horizon the smoothing horizon in milliseconds, samples older
+     *                than this weight less than ~37% in the average.
+     */
+    public SpeedStat(long horizon) {
+        this.horizon = Math.max(TICK_MILLISECONDS, horizon);
+        this.totalBytes = new AtomicLong();
+        this.sample = new AtomicReference<>(Sample.NONE);
     }
 
     public long totalBytes() {
-        return totalBytes;
+        return totalBytes.get();
     }
 
+    /**
+     * @return the average speed in bytes per second
+     */
     public long averageSpeed() {
-        return averageSpeed;
+        return averageSpeed(System.currentTimeMillis());
     }
 
     public void update(long numBytes) {
-        long now = System.currentTimeMillis();
-
-        totalBytes += numBytes;
-
-        if (now - speedMarkTimestamp > INTERVAL_MILLISECONDS) {
-            averageSpeed = ((totalBytes - lastTotalBytes) * 1000) / (now - speedMarkTimestamp);
-            speedMarkTimestamp = now;
-            lastTotalBytes = totalBytes;
-        }
+        update(numBytes, System.currentTimeMillis());
     }
 
     public long eta(long size) {
-        return eta(size, totalBytes, averageSpeed);
+        return eta(size, totalBytes(), averageSpeed());
     }
 
     public int progress(long size) {
-        return progress(size, totalBytes);
+        return progress(size, totalBytes());
+    }
+
+    long averageSpeed(long now) {
+        return Math.round(advance(now).speed);
+    }
+
+    void update(long numBytes, long now) {
+        totalBytes.addAndGet(numBytes);
+        advance(now);
+    }
+
+    private Sample advance(long now) {
+        while (true) {
+            Sample s = sample.get();
+            long total = totalBytes.get();
+
+            Sample next;
+            if (s == Sample.NONE) {
+                if (total == 0) {
+                    return s; // nothing received yet, don't start the clock
+                }
+                next = new Sample(now, 0, 0);
+            } else {
+                long dt = now - s.timestamp;
+                if (dt < TICK_MILLISECONDS) {
+                    return s;
+                }
+                double rate = ((total - s.totalBytes) * 1000d) / dt;
+                double alpha = 1 - Math.exp(-(double) dt / horizon);
+                next = new Sample(now, total, s.speed + alpha * (rate - s.speed));
+            }
+
+            if (sample.compareAndSet(s, next)) {
+                return next;
+            }
+        }
     }
 
     static long eta(long size, long total, long speed) {
@@ -81,4 +133,19 @@ final class SpeedStat {
     static int progress(long size, long total) {
         return size > 0 ? (int) ((total * 100) / size) : 0;
     }
+
+    private static final class Sample {
+
+        static final Sample NONE = new Sample(0, 0, 0);
+
+        final long timestamp;
+        final long totalBytes;
+        final double speed;
+
+        Sample(long timestamp, long totalBytes, double speed) {
+            this.timestamp = timestamp;
+            this.totalBytes = totalBytes;
+            this.speed = speed;
+        }
+    }
 }
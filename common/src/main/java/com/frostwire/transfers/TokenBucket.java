@@ -0,0 +1,95 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simple token bucket used to shape the bytes read in the transfers
+ * copy loops. The bucket holds at most one second worth of tokens
+ * and a rate of 0 means unlimited.
+ * <p>
+ * Callers are allowed to go into debt, the time to pay it back is
+ * returned so the waiting happens outside the lock.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private int rate; // bytes per second
+    private long tokens;
+    private long lastRefill;
+
+    /**
+     * @param rate bytes per second, 0 means unlimited
+     */
+    public TokenBucket(int rate) {
+        this.rate = Math.max(0, rate);
+        this.tokens = this.rate;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized int rate() {
+        return rate;
+    }
+
+    public synchronized void rate(int rate) {
+        this.rate = Math.max(0, rate);
+        this.tokens = Math.min(tokens, this.rate);
+    }
+
+    /**
+     * Takes {@code n} tokens from the bucket and returns the
+     * number of nanoseconds the caller should wait before
+     * continuing, 0 if no wait is needed.
+     */
+    synchronized long reserve(int n, long now) {
+        if (rate == 0) {
+            return 0;
+        }
+
+        // the bucket is full after one second, also avoids overflows
+        long elapsed = Math.min(now - lastRefill, NANOS_PER_SECOND);
+        long added = elapsed * rate / NANOS_PER_SECOND;
+        if (added > 0) {
+            tokens += added;
+            if (tokens >= rate) {
+                tokens = rate;
+                lastRefill = now;
+            } else {
+                // only account for the time actually converted into tokens
+                lastRefill += added * NANOS_PER_SECOND / rate;
+            }
+        }
+
+        tokens -= n;
+
+        return tokens >= 0 ? 0 : (-tokens * NANOS_PER_SECOND) / rate;
+    }
+
+    void acquire(int n) throws InterruptedException {
+        long wait = reserve(n, System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
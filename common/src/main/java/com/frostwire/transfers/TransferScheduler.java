@@ -0,0 +1,348 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.ThreadPool;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission queue and bandwidth shaping for the transfers running
+ * in the JVM (HTTP, YouTube and SoundCloud downloads). Torrent
+ * traffic is shaped by libtorrent itself.
+ * <p>
+ * At most {@link #maxActive()} transfers run at the same time, the
+ * rest wait in a queue ordered by priority (higher first) and
+ * arrival. All the bytes read by the running transfers go through
+ * the shared token bucket and, optionally, a per transfer one.
+ * <p>
+ * The transfers are only used as keys, so the ones that are not a
+ * {@link Transfer}, like the desktop HTTP downloads, go through the
+ * same queue and bucket.
+ * <p>
+ * The global download budget configured by the user is shared with
+ * the torrents session, see {@link #rebalance(long)}, so the sum of
+ * both never goes over it.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TransferScheduler {
+
+    private static final Logger LOG = Logger.getLogger(TransferScheduler.class);
+
+    // is 20 concurrent downloads enough?
+    private static final int DEFAULT_MAX_ACTIVE = 20;
+
+    private final Executor executor;
+    private final TokenBucket downloadBucket;
+    private final AtomicLong downloadedBytes;
+
+    private final PriorityQueue<Task> queue;
+    // transfer -> number of running tasks
+    private final Map<Object, Integer> running;
+
+    private int maxActive;
+    private long sequence;
+
+    // the budget shared with the session and the part of the HTTP transfers
+    private int downloadBudget;
+    private int httpShare;
+    private long lastBytes;
+    private long lastRebalance;
+
+    TransferScheduler(Executor executor, int maxActive) {
+        this.executor = executor;
+        this.downloadBucket = new TokenBucket(0);
+        this.downloadedBytes = new AtomicLong();
+        this.queue = new PriorityQueue<>();
+        this.running = new IdentityHashMap<>();
+        this.maxActive = maxActive;
+    }
+
+    private static class Loader {
+        static final TransferScheduler INSTANCE = new TransferScheduler(ThreadPool.newThreadPool("HttpDownload", true), DEFAULT_MAX_ACTIVE);
+    }
+
+    public static TransferScheduler getInstance() {
+        return Loader.INSTANCE;
+    }
+
+    public synchronized int maxActive() {
+        return maxActive;
+    }
+
+    /**
+     * Changes the number of transfers allowed to run at the same time,
+     * running transfers are never interrupted when the value is lowered.
+     */
+    public void maxActive(int maxActive) {
+        synchronized (this) {
+            this.maxActive = Math.max(1, maxActive);
+        }
+        drain();
+    }
+
+    /**
+     * @return the global download budget in bytes per second, 0 means unlimited.
+     */
+    public synchronized int downloadBudget() {
+        return downloadBudget;
+    }
+
+    /**
+     * Changes the global download budget, the HTTP transfers start
+     * with a small part of it.
+     *
+     * @return the part of the budget left for the torrents session, 0 means unlimited.
+     */
+    public synchronized int downloadBudget(int budget) {
+        downloadBudget = Math.max(0, budget);
+        httpShare = minShare(downloadBudget);
+        downloadBucket.rate(httpShare);
+        return sessionShare();
+    }
+
+    /**
+     * @return the part of the budget given to the HTTP transfers, 0 means unlimited.
+     */
+    public int downloadRateLimit() {
+        return downloadBucket.rate();
+    }
+
+    /**
+     * Moves the budget between the torrents session and the HTTP
+     * transfers, following what each one is actually using. It's
+     * meant to be called about once a second.
+     *
+     * @param sessionRate the download rate of the session in bytes per second
+     * @return the part of the budget left for the torrents session, 0 means unlimited.
+     */
+    public synchronized int rebalance(long sessionRate) {
+        long now = System.currentTimeMillis();
+        long bytes = downloadedBytes.get();
+        long httpRate = 0;
+        if (lastRebalance > 0 && now > lastRebalance) {
+            httpRate = (bytes - lastBytes) * 1000 / (now - lastRebalance);
+        }
+        lastBytes = bytes;
+        lastRebalance = now;
+        return split(httpRate, sessionRate);
+    }
+
+    /**
+     * A side is using its part when it gets to 90% of it. If only one
+     * side is, it gets what the other one leaves plus some room for the
+     * other one to grow; if both are, they get half of the budget each.
+     * No side goes below 10% of the budget.
+     */
+    synchronized int split(long httpRate, long sessionRate) {
+        if (downloadBudget == 0) {
+            return 0;
+        }
+
+        long share = httpShare;
+        if (running.isEmpty()) {
+            share = 0;
+        } else {
+            boolean http = httpRate >= httpShare * 9L / 10;
+            boolean session = sessionRate >= (downloadBudget - httpShare) * 9L / 10;
+            if (http && session) {
+                share = downloadBudget / 2;
+            } else if (http) {
+                share = downloadBudget - sessionRate * 5 / 4;
+            } else if (session) {
+                share = httpRate * 5 / 4;
+            }
+        }
+
+        int min = minShare(downloadBudget);
+        httpShare = (int) Math.max(min, Math.min(downloadBudget - min, share));
+        downloadBucket.rate(httpShare);
+        return sessionShare();
+    }
+
+    // LOCKING: this
+    private int sessionShare() {
+        if (downloadBudget == 0) {
+            return 0;
+        }
+        // nothing to share if no HTTP transfer is running, it
+        // gets its part back in the next rebalance
+        return running.isEmpty() ? downloadBudget : downloadBudget - httpShare;
+    }
+
+    private static int minShare(int budget) {
+        return budget > 0 ? Math.max(1, budget / 10) : 0;
+    }
+
+    public synchronized int numActive() {
+        return running.size();
+    }
+
+    public synchronized int numQueued() {
+        return queue.size();
+    }
+
+    public synchronized boolean isQueued(Object transfer) {
+        for (Task t : queue) {
+            if (t.transfer == transfer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void submit(Transfer transfer, int priority, Runnable r) {
+        submit(transfer, transfer.getDisplayName(), priority, r);
+    }
+
+    /**
+     * Queues the task of the transfer. If the transfer is already running
+     * (for example, the second stream of a DASH download) the task starts
+     * right away in the slot of the transfer.
+     *
+     * @param transfer the key of the transfer in the queue
+     * @param name     the name of the thread running the task
+     * @param priority transfers with higher priority leave the queue first
+     */
+    public void submit(Object transfer, String name, int priority, Runnable r) {
+        synchronized (this) {
+            Integer n = running.get(transfer);
+            if (n != null) {
+                running.put(transfer, n + 1);
+                executor.execute(new Task(transfer, name, priority, 0, r));
+                return;
+            }
+            queue.add(new Task(transfer, name, priority, sequence++, r));
+        }
+        drain();
+    }
+
+    /**
+     * Executes a task outside of the admission control, used for the post
+     * processing of the transfers.
+     */
+    void execute(Runnable r) {
+        executor.execute(r);
+    }
+
+    /**
+     * Removes the queued (not yet started) tasks of the transfer.
+     *
+     * @return true if the transfer was waiting in the queue
+     */
+    public synchronized boolean cancel(Object transfer) {
+        boolean removed = false;
+        Iterator<Task> it = queue.iterator();
+        while (it.hasNext()) {
+            if (it.next().transfer == transfer) {
+                it.remove();
+                removed = true;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Called from the copy loops, blocks the calling thread until the
+     * limit of the transfer and the share of the HTTP transfers allow
+     * {@code n} more bytes.
+     *
+     * @param bucket the limit of the transfer, or null
+     */
+    public void consumeDownload(TokenBucket bucket, int n) throws InterruptedException {
+        downloadedBytes.addAndGet(n);
+        if (bucket != null) {
+            bucket.acquire(n);
+        }
+        downloadBucket.acquire(n);
+    }
+
+    private void drain() {
+        while (true) {
+            Task task;
+            synchronized (this) {
+                if (running.size() >= maxActive || queue.isEmpty()) {
+                    return;
+                }
+                task = queue.poll();
+                Integer n = running.get(task.transfer);
+                running.put(task.transfer, n != null ? n + 1 : 1);
+            }
+            try {
+                executor.execute(task);
+            } catch (Throwable e) {
+                LOG.error("Error starting transfer task", e);
+                finished(task.transfer);
+            }
+        }
+    }
+
+    private void finished(Object transfer) {
+        synchronized (this) {
+            Integer n = running.get(transfer);
+            if (n == null || n <= 1) {
+                running.remove(transfer);
+            } else {
+                running.put(transfer, n - 1);
+            }
+        }
+        drain();
+    }
+
+    private final class Task extends Thread implements Comparable<Task> {
+
+        private final Object transfer;
+        private final int priority;
+        private final long sequence;
+        private final Runnable r;
+
+        Task(Object transfer, String name, int priority, long sequence, Runnable r) {
+            super(String.valueOf(name));
+            this.transfer = transfer;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.r = r;
+        }
+
+        @Override
+        public void run() {
+            try {
+                r.run();
+            } finally {
+                finished(transfer);
+            }
+        }
+
+        @Override
+        public int compareTo(Task o) {
+            if (priority != o.priority) {
+                return priority > o.priority ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+}
@@ -55,5 +55,6 @@ public enum TransferState {
     REDIRECTING,
     STREAMING,
     SCANNING,
+    MOVING,
     ERROR_CONNECTION_TIMED_OUT
 }
@@ -19,6 +19,9 @@ package com.frostwire.util.http;
 
 import com.frostwire.util.Logger;
 import com.frostwire.util.UserAgentGenerator;
+import com.frostwire.util.metrics.Counter;
+import com.frostwire.util.metrics.Histogram;
+import com.frostwire.util.metrics.Metrics;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
@@ -40,6 +43,9 @@ public abstract class AbstractHttpClient implements HttpClient {
     protected static final int DEFAULT_TIMEOUT = 10000;
     protected static final String DEFAULT_USER_AGENT = UserAgentGenerator.getUserAgent();
     protected static final SSLSocketFactory CUSTOM_SSL_SOCKET_FACTORY = createCustomSSLSocketFactory();
+    protected static final Histogram CONNECT_TIME = Metrics.getInstance().histogram("http.connect.ms");
+    protected static final Histogram TTFB = Metrics.getInstance().histogram("http.ttfb.ms");
+    protected static final Counter BYTES_IN = Metrics.getInstance().counter("http.bytes_in");
     protected HttpClientListener listener;
     protected boolean canceled = false;
 
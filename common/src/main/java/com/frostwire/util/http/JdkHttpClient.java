@@ -200,6 +200,7 @@ public final class JdkHttpClient extends AbstractHttpClient {
                     if (read == -1) {
                         break;
                     }
+                    BYTES_IN.add(read);
                     baf.append(buffer, 0, read);
                 }
                 result = new String(baf.toByteArray());
@@ -274,7 +275,11 @@ public final class JdkHttpClient extends AbstractHttpClient {
             setCustomHeaders(conn, customHeaders);
         }
 
+        long start = System.nanoTime();
+        conn.connect();
+        CONNECT_TIME.recordMillisSince(start);
         InputStream in = conn.getInputStream();
+        TTFB.recordMillisSince(start);
         if ("gzip".equals(conn.getContentEncoding())) {
             in = new GZIPInputStream(in);
         }
@@ -295,6 +300,7 @@ public final class JdkHttpClient extends AbstractHttpClient {
             int n;
             while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
                 if (!canceled) {
+                    BYTES_IN.add(n);
                     out.write(b, 0, n);
                     onData(b, 0, n);
                 }
@@ -370,6 +376,7 @@ public final class JdkHttpClient extends AbstractHttpClient {
             b = new byte[4096];
             while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
                 if (!canceled) {
+                    BYTES_IN.add(n);
                     out.write(b, 0, n);
                     onData(b, 0, n);
                 }
@@ -23,6 +23,7 @@ import com.frostwire.util.ThreadPool;
 import okhttp3.*;
 import okio.Buffer;
 import okio.BufferedSink;
+import okio.BufferedSource;
 import okio.GzipSink;
 import okio.Okio;
 
@@ -78,6 +79,7 @@ public class OKHTTPClient extends AbstractHttpClient {
         try {
             responseBody = getSyncResponse(okHttpClient, builder).body();
             result = responseBody.bytes();
+            BYTES_IN.add(result.length);
         } catch (Throwable e) {
             LOG.error("Error getting bytes from http body response: " + e.getMessage());
         } finally {
@@ -97,7 +99,7 @@ public class OKHTTPClient extends AbstractHttpClient {
         ResponseBody responseBody = null;
         try {
             responseBody = getSyncResponse(okHttpClient, builder).body();
-            result = responseBody.string();
+            result = string(responseBody);
         } catch (IOException ioe) {
             //ioe.printStackTrace();
             throw ioe;
@@ -136,6 +138,7 @@ public class OKHTTPClient extends AbstractHttpClient {
         int n;
         while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
             if (!canceled) {
+                BYTES_IN.add(n);
                 fos.write(b, 0, n);
                 onData(b, 0, n);
             }
@@ -193,7 +196,7 @@ public class OKHTTPClient extends AbstractHttpClient {
             if (canceled) {
                 onCancel();
             } else {
-                result = response.body().string();
+                result = string(response.body());
                 onComplete();
             }
         } finally {
@@ -260,7 +263,20 @@ public class OKHTTPClient extends AbstractHttpClient {
 
     private Response getSyncResponse(OkHttpClient.Builder okHttpClient, Request.Builder builder) throws IOException {
         final Request request = builder.build();
-        return okHttpClient.build().newCall(request).execute();
+        final OkHttpClient client = okHttpClient.build();
+        // wall clock, like the times of the response
+        long start = System.currentTimeMillis();
+        Response response = client.newCall(request).execute();
+        CONNECT_TIME.record(response.sentRequestAtMillis() - start);
+        TTFB.record(response.receivedResponseAtMillis() - start);
+        return response;
+    }
+
+    private static String string(ResponseBody body) throws IOException {
+        BufferedSource source = body.source();
+        source.request(Long.MAX_VALUE); // all of it in the buffer, to count it
+        BYTES_IN.add(source.buffer().size());
+        return body.string();
     }
 
     private OkHttpClient.Builder newOkHttpClient() {
@@ -0,0 +1,72 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count of events and how many there are per second.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class Meter {
+
+    private static final long MIN_WINDOW = 1000000000L; // 1 second
+
+    private final AtomicLong count;
+
+    // guarded by this
+    private long lastCount;
+    private long lastTime;
+    private double rate;
+
+    Meter() {
+        this.count = new AtomicLong();
+        this.lastTime = System.nanoTime();
+    }
+
+    public void mark() {
+        count.incrementAndGet();
+    }
+
+    public void mark(long n) {
+        count.addAndGet(n);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return the events per second since the previous call, if that was
+     * at least a second ago, the previous rate otherwise
+     */
+    public synchronized double rate() {
+        long now = System.nanoTime();
+        long elapsed = now - lastTime;
+        if (elapsed >= MIN_WINDOW) {
+            long c = count.get();
+            rate = (c - lastCount) * 1e9 / elapsed;
+            lastCount = c;
+            lastTime = now;
+        }
+        return rate;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.util.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The counters, gauges, meters and histograms of the application, by
+ * name, like {@code "http.ttfb.ms"}, the unit at the end.
+ * <p>
+ * Look them up once and keep them in a field, only recording them is
+ * meant for hot paths.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class Metrics {
+
+    private final ConcurrentMap<String, Object> metrics;
+
+    Metrics() {
+        this.metrics = new ConcurrentHashMap<>();
+    }
+
+    private static class Loader {
+        static final Metrics INSTANCE = new Metrics();
+    }
+
+    public static Metrics getInstance() {
+        return Loader.INSTANCE;
+    }
+
+    public Counter counter(String name) {
+        return get(name, Counter.class);
+    }
+
+    public Gauge gauge(String name) {
+        return get(name, Gauge.class);
+    }
+
+    public Meter meter(String name) {
+        return get(name, Meter.class);
+    }
+
+    public Histogram histogram(String name) {
+        return get(name, Histogram.class);
+    }
+
+    /**
+     * All the metrics as numbers, histograms and meters flattened in
+     * several entries, like {@code "http.ttfb.ms.p95"}, sorted by name.
+     */
+    public Map<String, Long> values() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Object> e : metrics.entrySet()) {
+            String name = e.getKey();
+            Object m = e.getValue();
+            if (m instanceof Counter) {
+                values.put(name, ((Counter) m).get());
+            } else if (m instanceof Gauge) {
+                values.put(name, ((Gauge) m).get());
+            } else if (m instanceof Meter) {
+                Meter meter = (Meter) m;
+                values.put(name + ".count", meter.count());
+                values.put(name + ".rate", Math.round(meter.rate()));
+            } else if (m instanceof Histogram) {
+                Histogram.Snapshot s = ((Histogram) m).snapshot();
+                values.put(name + ".count", s.count());
+                values.put(name + ".mean", s.mean());
+                values.put(name + ".p50", s.percentile(0.50));
+                values.put(name + ".p95", s.percentile(0.95));
+                values.put(name + ".p99", s.percentile(0.99));
+                values.put(name + ".max", s.max());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * One line per metric, sorted by name, for logs and debugging.
+     */
+    public String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Object> e : new TreeMap<>(metrics).entrySet()) {
+            sb.append(e.getKey());
+            Object m = e.getValue();
+            if (m instanceof Counter) {
+                sb.append(' ').append(((Counter) m).get());
+            } else if (m instanceof Gauge) {
+                sb.append(' ').append(((Gauge) m).get());
+            } else if (m instanceof Meter) {
+                Meter meter = (Meter) m;
+                sb.append(" count=").append(meter.count());
+                sb.append(" rate=").append(String.format(Locale.US, "%.1f/s", meter.rate()));
+            } else if (m instanceof Histogram) {
+                Histogram.Snapshot s = ((Histogram) m).snapshot();
+                sb.append(" count=").append(s.count());
+                sb.append(" mean=").append(s.mean());
+                sb.append(" p50=").append(s.percentile(0.50));
+                sb.append(" p95=").append(s.percentile(0.95));
+                sb.append(" p99=").append(s.percentile(0.99));
+                sb.append(" max=").append(s.max());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private <T> T get(String name, Class<T> clazz) {
+        Object m = metrics.get(name);
+        if (m == null) {
+            Object created = create(clazz);
+            m = metrics.putIfAbsent(name, created);
+            if (m == null) {
+                m = created;
+            }
+        }
+        if (!clazz.isInstance(m)) {
+            throw new IllegalArgumentException("Metric " + name + " is not a " + clazz.getSimpleName());
+        }
+        return clazz.cast(m);
+    }
+
+    private static Object create(Class<?> clazz) {
+        if (clazz == Counter.class) {
+            return new Counter();
+        } else if (clazz == Gauge.class) {
+            return new Gauge();
+        } else if (clazz == Meter.class) {
+            return new Meter();
+        } else {
+            return new Histogram();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.uxstats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed capacity queue of actions, every one packed in a long with its
+ * time, for many threads logging and one thread taking them.
+ * <p>
+ * Logging never locks nor allocates, when the queue is full the action
+ * is dropped.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class UXActionRing {
+
+    private static final int CODE_BITS = 20;
+    private static final long CODE_MASK = (1L << CODE_BITS) - 1;
+
+    private final AtomicLongArray slots; // 0 means empty
+    private final int mask;
+    private final AtomicLong head; // next slot to claim
+    private final AtomicLong dropped;
+
+    private volatile long tail; // next slot to take, only written by the consumer
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    UXActionRing(int capacity) {
+        int n = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicLongArray(n);
+        this.mask = n - 1;
+        this.head = new AtomicLong();
+        this.dropped = new AtomicLong();
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return false if the queue is full or the action is not valid
+     */
+    public boolean offer(int code, long time) {
+        if (!isValid(code, time)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        long h;
+        do {
+            h = head.get();
+            if (h - tail > mask) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!head.compareAndSet(h, h + 1));
+
+        slots.lazySet((int) h & mask, pack(code, time));
+        return true;
+    }
+
+    /**
+     * Only called from one thread.
+     *
+     * @return the next packed action, or 0 if there is none
+     */
+    public long poll() {
+        long t = tail;
+        int i = (int) t & mask;
+        long v = slots.get(i);
+        if (v != 0) {
+            slots.set(i, 0);
+            tail = t + 1;
+        }
+        return v;
+    }
+
+    public long dropped() {
+        return dropped.get();
+    }
+
+    static boolean isValid(long code, long time) {
+        return code >= 0 && code <= CODE_MASK && time > 0 && time < (1L << (63 - CODE_BITS));
+    }
+
+    static long pack(int code, long time) {
+        return (time << CODE_BITS) | code;
+    }
+
+    static int code(long action) {
+        return (int) (action & CODE_MASK);
+    }
+
+    static long time(long action) {
+        return action >>> CODE_BITS;
+    }
+}
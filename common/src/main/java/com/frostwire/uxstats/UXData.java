@@ -17,8 +17,7 @@
 
 package com.frostwire.uxstats;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -46,6 +45,6 @@ public class UXData {
         this.fwversion = fwversion;
         this.build = build;
         this.time = System.currentTimeMillis();
-        this.actions = Collections.synchronizedList(new LinkedList<UXAction>());
+        this.actions = new ArrayList<>();
     }
 }
@@ -1,6 +1,6 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
- * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
  
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,11 +22,23 @@ import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.JsonUtils;
 import com.frostwire.util.http.HttpClient;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
+ * Actions are logged in a lock free ring, from any thread, and a single
+ * background thread moves them to the current batch, saves the batch in
+ * the spool file, if any, and sends it once the {@link UXStatsConf} period
+ * and minimum entries are reached.
+ * <p>
+ * The lock is only held to move the actions around, the batch is sent
+ * and the spool deleted outside of it, so {@link #setContext(UXStatsConf)}
+ * is safe to call from the UI thread.
+ *
  * @author gubatron
  * @author aldenml
  *
@@ -36,12 +48,25 @@ public final class UXStats {
     private static final Logger LOG = Logger.getLogger(UXStats.class);
     private static final int HTTP_TIMEOUT = 4000;
 
+    private static final int RING_CAPACITY = 2048;
+    private static final long FLUSH_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
     private final HttpClient httpClient;
     private final List<UXStats3rdPartyAPI> uxStatsAPIs = new ArrayList<>();
+    private final UXActionRing ring;
+
+    private volatile UXStatsConf conf;
+    private volatile boolean sendRequested;
+    // set when disabled, the flusher discards the actions and the spool
+    private volatile boolean discardRequested;
+    private Thread flusher;
 
-    private ExecutorService executor;
-    private UXStatsConf conf;
-    private UXData data;
+    // guarded by this, only touched by the flusher
+    private UXStatsSpool spool;
+    private long[] batch;
+    private int batchSize;
+    private long batchTime;
+    private boolean spoolDirty;
 
     private static final UXStats instance = new UXStats();
 
@@ -49,35 +74,58 @@ public final class UXStats {
         return instance;
     }
 
-    private UXStats() {
+    UXStats() {
         this.httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.MISC);
-        this.executor = null;
-        this.conf = null;
-        this.data = null;
-    }
-
-    public ExecutorService getExecutor() {
-        return executor;
-    }
-
-    public void setExecutor(ExecutorService executor) {
-        this.executor = executor;
+        this.ring = new UXActionRing(RING_CAPACITY);
+        this.batch = new long[0];
     }
 
     public UXStatsConf getContext() {
         return conf;
     }
 
+    /**
+     * A null context disables the stats, the flusher discards the actions
+     * not sent and the spool.
+     */
     public void setContext(UXStatsConf conf) {
-        this.conf = conf;
+        if (conf == null) {
+            this.conf = null;
+            discardRequested = true;
+            Thread t = flusher;
+            if (t != null) {
+                LockSupport.unpark(t);
+            }
+            return;
+        }
 
-        if (conf != null) {
-            this.data = newData();
-        } else {
-            this.data = null;
+        synchronized (this) {
+            if (this.conf == null) {
+                // first time, or enabled again, resume the saved actions
+                // unless they are still waiting to be discarded
+                batchSize = 0;
+                if (spool != null && !discardRequested) {
+                    append(spool.read(), conf.getMaxEntries());
+                }
+                batchTime = System.currentTimeMillis();
+            }
+            long[] b = new long[conf.getMaxEntries()];
+            batchSize = Math.min(batchSize, b.length);
+            System.arraycopy(batch, 0, b, 0, batchSize);
+            batch = b;
+            this.conf = conf;
+            startFlusher();
         }
     }
 
+    /**
+     * Where the actions not sent yet are saved, to send them in the next
+     * session, call it before setting the context.
+     */
+    public synchronized void setSpoolFile(File file) {
+        this.spool = file != null ? new UXStatsSpool(file) : null;
+    }
+
     public void add3rdPartyAPI(UXStats3rdPartyAPI api) {
         if (api != null) {
             uxStatsAPIs.add(api);
@@ -85,42 +133,27 @@ public final class UXStats {
     }
 
     /**
-     * Important: This method is not thread-safe. That means it's only
-     * meant to be used on the UI thread.
-     * 
+     * Safe to call from any thread, it never blocks nor allocates.
+     *
      * @param action
      */
     public void log(int action) {
-        try {
-            if (conf != null && data != null) {
-                //System.out.println(UXAction.getActionName(action));
-
-                if (data.actions.size() < conf.getMaxEntries()) {
-                    data.actions.add(new UXAction(action, System.currentTimeMillis()));
-                }
+        if (conf != null) {
+            ring.offer(action, System.currentTimeMillis());
 
-                if (isReadyToSend()) {
-                    sendData();
+            // IMPORTANT: gubatron: Don't uncomment this
+            // until we research if indeed the providers
+            // are truly asynchronous and don't use the main
+            // looper to send the data to the servers.
+            // see the configuration for uxMinEntries
+            /*
+            if (!uxStatsAPIs.isEmpty()) {
+                for (UXStats3rdPartyAPI api : uxStatsAPIs) {
+                    try {
+                        api.logAction(action);
+                    } catch (Throwable ignored) {}
                 }
-
-                // IMPORTANT: gubatron: Don't uncomment this
-                // until we research if indeed the providers
-                // are truly asynchronous and don't use the main
-                // looper to send the data to the servers.
-                // We also never set the internal executor and
-                // that could be another potential problem
-                // see the configuration for uxMinEntries
-                /*
-                if (!uxStatsAPIs.isEmpty()) {
-                    for (UXStats3rdPartyAPI api : uxStatsAPIs) {
-                        try {
-                            api.logAction(action);
-                        } catch (Throwable ignored) {}
-                    }
-                }*/
-            }
-        } catch (Throwable e) {
-            // ignore, not important
+            }*/
         }
     }
 
@@ -131,10 +164,18 @@ public final class UXStats {
         flush(false);
     }
 
+    /**
+     * The data is sent in the background, the actions are in the spool
+     * file in case the process ends first.
+     */
     public void flush(boolean endSession) {
         try {
-            if (conf != null && data != null) {
-                sendData();
+            if (conf != null) {
+                sendRequested = true;
+                Thread t = flusher;
+                if (t != null) {
+                    LockSupport.unpark(t);
+                }
             }
 
             if (endSession && !uxStatsAPIs.isEmpty()) {
@@ -149,48 +190,165 @@ public final class UXStats {
         }
     }
 
-    private boolean isReadyToSend() {
-        return data.actions.size() >= conf.getMinEntries() && (System.currentTimeMillis() - data.time > conf.getPeriod() * 1000);
-    }
+    /**
+     * Moves the logged actions to the batch, sends it if it's time or
+     * {@code force} and saves what's left in the spool. Only called from
+     * the flusher (and tests).
+     */
+    void process(boolean force) {
+        if (discardRequested) {
+            discard();
+        }
+
+        UXStatsConf c;
+        long[] actions = null;
+        long time = 0;
+        synchronized (this) {
+            c = conf;
+            if (c == null) {
+                return;
+            }
 
-    private void sendData() {
-        SendDataRunnable r = new SendDataRunnable(data);
+            long action;
+            while ((action = ring.poll()) != 0) {
+                if (batchSize < batch.length) {
+                    batch[batchSize++] = action;
+                    spoolDirty = true;
+                }
+            }
+
+            if (batchSize > 0 && (force || isReadyToSend(c))) {
+                actions = Arrays.copyOf(batch, batchSize);
+                time = batchTime;
+                batchSize = 0;
+                // on error, try again in the next period
+                batchTime = System.currentTimeMillis();
+            }
+        }
 
-        this.data = newData();
+        if (actions != null) {
+            // the spool still has the actions until they are sent
+            boolean sent = sendData(c, actions, time);
+            synchronized (this) {
+                if (sent) {
+                    spoolDirty = true;
+                } else {
+                    restore(actions);
+                }
+            }
+        }
 
-        if (executor != null) { // remember, not thread safe
-            executor.submit(r);
-        } else {
-            new Thread(r, "UXStats-sendData").start();
+        synchronized (this) {
+            if (spoolDirty && spool != null && conf != null) {
+                try {
+                    spool.write(batch, batchSize);
+                    spoolDirty = false;
+                } catch (Throwable e) {
+                    LOG.warn("Unable to save ux stats spool", e);
+                }
+            }
         }
     }
 
-    private UXData newData() {
-        return new UXData(conf.getGuid(), conf.getOS(), conf.getFwversion(), conf.getFwbuild());
+    int batchSize() {
+        return batchSize;
+    }
+
+    long dropped() {
+        return ring.dropped();
+    }
+
+    private boolean isReadyToSend(UXStatsConf c) {
+        return batchSize >= c.getMinEntries() && (System.currentTimeMillis() - batchTime > c.getPeriod() * 1000L);
     }
 
-    private final class SendDataRunnable implements Runnable {
+    private boolean sendData(UXStatsConf c, long[] actions, long time) {
+        try {
+            UXData data = new UXData(c.getGuid(), c.getOS(), c.getFwversion(), c.getFwbuild());
+            data.time = time;
+            for (long action : actions) {
+                data.actions.add(new UXAction(UXActionRing.code(action), UXActionRing.time(action)));
+            }
+            String json = JsonUtils.toJson(data);
+            String postURL = c.getUrl();
 
-        private final UXData data;
+            if (IS_TESTING) {
+                postURL += "?test=1";
+            }
 
-        public SendDataRunnable(UXData data) {
-            this.data = data;
+            httpClient.post(postURL, HTTP_TIMEOUT, "FrostWire/UXStats", json, true);
+            return true;
+        } catch (Throwable e) {
+            LOG.error("Unable to send ux stats", e);
+            return false;
         }
+    }
 
-        @Override
-        public void run() {
-            try {
-                String json = JsonUtils.toJson(data);
-                String postURL = conf.getUrl();
-                
-                if (IS_TESTING) {
-                    postURL += "?test=1";
-                }
-                
-                httpClient.post(postURL, HTTP_TIMEOUT, "FrostWire/UXStats", json, true);
-            } catch (Throwable e) {
-                LOG.error("Unable to send ux stats", e);
+    /**
+     * Discards the logged actions, the batch and the spool after the
+     * stats are disabled.
+     */
+    private void discard() {
+        UXStatsSpool s;
+        synchronized (this) {
+            discardRequested = false;
+            while (ring.poll() != 0) {
+                // discard
             }
+            batchSize = 0;
+            spoolDirty = false;
+            s = spool;
+        }
+        if (s != null) {
+            s.delete();
+        }
+    }
+
+    /**
+     * Puts back in front of the batch the actions that could not be
+     * sent, unless the stats were disabled in the meantime.
+     */
+    private void restore(long[] actions) {
+        if (conf == null || discardRequested) {
+            return;
+        }
+        int n = Math.min(actions.length, batch.length);
+        int keep = Math.min(batchSize, batch.length - n);
+        System.arraycopy(batch, 0, batch, n, keep);
+        System.arraycopy(actions, 0, batch, 0, n);
+        batchSize = n + keep;
+    }
+
+    private void append(long[] actions, int max) {
+        if (batch.length < max) {
+            long[] b = new long[max];
+            System.arraycopy(batch, 0, b, 0, batchSize);
+            batch = b;
+        }
+        for (int i = 0; i < actions.length && batchSize < max; i++) {
+            batch[batchSize++] = actions[i];
+        }
+    }
+
+    private void startFlusher() {
+        if (flusher == null) {
+            flusher = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (true) {
+                        LockSupport.parkNanos(FLUSH_INTERVAL);
+                        try {
+                            boolean force = sendRequested;
+                            sendRequested = false;
+                            process(force);
+                        } catch (Throwable e) {
+                            LOG.error("Error processing ux stats", e);
+                        }
+                    }
+                }
+            }, "UXStats-Flusher");
+            flusher.setDaemon(true);
+            flusher.start();
         }
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.uxstats;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The actions not sent yet, saved in a file to send them in the next
+ * session.
+ * <p>
+ * The file is a version byte, the number of actions, then every action as
+ * its code and the time since the previous one, all as variable length
+ * integers, a few bytes per action.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class UXStatsSpool {
+
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    UXStatsSpool(File file) {
+        this.file = file;
+    }
+
+    public void write(long[] actions, int count) throws IOException {
+        if (count == 0) {
+            delete();
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        FileUtils.writeByteArrayToFile(temp, encode(actions, count));
+        if (!temp.renameTo(file)) {
+            // windows doesn't replace on rename
+            FileUtils.deleteQuietly(file);
+            if (!temp.renameTo(file)) {
+                throw new IOException("Unable to replace " + file);
+            }
+        }
+    }
+
+    /**
+     * @return the saved actions, none if there is no file or it's not valid
+     */
+    public long[] read() {
+        if (!file.exists()) {
+            return new long[0];
+        }
+        try {
+            return decode(FileUtils.readFileToByteArray(file));
+        } catch (Throwable e) {
+            return new long[0];
+        }
+    }
+
+    public void delete() {
+        FileUtils.deleteQuietly(file);
+    }
+
+    static byte[] encode(long[] actions, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8 + count * 4);
+        out.write(VERSION);
+        writeVarLong(out, count);
+        long prev = 0;
+        for (int i = 0; i < count; i++) {
+            long time = UXActionRing.time(actions[i]);
+            writeVarLong(out, UXActionRing.code(actions[i]));
+            // zigzag, the clock could go back
+            long delta = time - prev;
+            writeVarLong(out, (delta << 1) ^ (delta >> 63));
+            prev = time;
+        }
+        return out.toByteArray();
+    }
+
+    static long[] decode(byte[] data) throws IOException {
+        int[] pos = {0};
+        if (data.length == 0 || data[pos[0]++] != VERSION) {
+            throw new IOException("Unknown spool version");
+        }
+        long count = readVarLong(data, pos);
+        if (count < 0 || count > data.length) {
+            throw new IOException("Invalid spool size");
+        }
+        long[] actions = new long[(int) count];
+        long prev = 0;
+        for (int i = 0; i < count; i++) {
+            long code = readVarLong(data, pos);
+            long zigzag = readVarLong(data, pos);
+            long time = prev + ((zigzag >>> 1) ^ -(zigzag & 1));
+            if (!UXActionRing.isValid(code, time)) {
+                throw new IOException("Invalid action in spool");
+            }
+            actions[i] = UXActionRing.pack((int) code, time);
+            prev = time;
+        }
+        return actions;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new IOException("Truncated spool");
+            }
+            byte b = data[pos[0]++];
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Malformed spool");
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class PieceHasherTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("hasher", null);
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testSameAsSequential() throws Exception {
+        int pieceLength = 16 * 1024;
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        PieceHasher parallel = new PieceHasher(pieceLength).threads(4);
+        PieceHasher single = new PieceHasher(pieceLength).threads(1);
+
+        // sizes not aligned to the pieces, an empty file and a pad file
+        int[] sizes = {100000, 0, 16384, 7, 250000};
+        Random r = new Random(7);
+        for (int i = 0; i < sizes.length; i++) {
+            byte[] data = new byte[sizes[i]];
+            r.nextBytes(data);
+            File f = new File(dir, "f" + i);
+            FileUtils.writeByteArrayToFile(f, data);
+            all.write(data);
+            parallel.addFile(f, data.length);
+            single.addFile(f, data.length);
+            if (i == 2) {
+                all.write(new byte[5000]);
+                parallel.addPadding(5000);
+                single.addPadding(5000);
+            }
+        }
+
+        byte[][] expected = sequentialHashes(all.toByteArray(), pieceLength);
+        assertEquals(expected.length, parallel.getNumPieces());
+        assertHashes(expected, parallel.hash());
+        assertHashes(expected, single.hash());
+    }
+
+    @Test
+    public void testProgress() throws Exception {
+        File f = new File(dir, "f");
+        FileUtils.writeByteArrayToFile(f, new byte[100000]);
+
+        final long[] last = new long[2];
+        new PieceHasher(16 * 1024).addFile(f, 100000).listener(new PieceHasher.Listener() {
+            @Override
+            public void onProgress(PieceHasher hasher, long hashedBytes, long totalBytes, long bytesPerSecond, long etaSeconds) {
+                last[0] = hashedBytes;
+                last[1] = totalBytes;
+            }
+        }).hash();
+
+        assertEquals(100000, last[0]);
+        assertEquals(100000, last[1]);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        File f = new File(dir, "f");
+        FileUtils.writeByteArrayToFile(f, new byte[100000]);
+
+        PieceHasher hasher = new PieceHasher(16 * 1024).addFile(f, 100000);
+        hasher.cancel();
+
+        assertNull(hasher.hash());
+    }
+
+    @Test(expected = IOException.class)
+    public void testShorterFile() throws Exception {
+        File f = new File(dir, "f");
+        FileUtils.writeByteArrayToFile(f, new byte[1000]);
+
+        new PieceHasher(16 * 1024).addFile(f, 2000).hash();
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals(0, new PieceHasher(16 * 1024).hash().length);
+    }
+
+    /**
+     * Hashes 512 MB in 1 MB pieces, with one thread and with all the cores,
+     * run with -Dfrostwire.benchmark=true
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        assumeTrue(Boolean.getBoolean("frostwire.benchmark"));
+
+        byte[] data = new byte[64 * 1024 * 1024];
+        new Random().nextBytes(data);
+        File[] files = new File[8];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = new File(dir, "f" + i);
+            FileUtils.writeByteArrayToFile(files[i], data);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            long t = System.nanoTime();
+            hasher(files, data.length).threads(1).hash();
+            long single = (System.nanoTime() - t) / 1000000;
+
+            t = System.nanoTime();
+            hasher(files, data.length).hash();
+            long parallel = (System.nanoTime() - t) / 1000000;
+
+            System.out.println("cores: " + Runtime.getRuntime().availableProcessors() +
+                    ", single thread: " + single + "ms, parallel: " + parallel + "ms");
+        }
+    }
+
+    private static PieceHasher hasher(File[] files, long size) {
+        PieceHasher hasher = new PieceHasher(1024 * 1024);
+        for (File f : files) {
+            hasher.addFile(f, size);
+        }
+        return hasher;
+    }
+
+    private static byte[][] sequentialHashes(byte[] data, int pieceLength) throws Exception {
+        int n = (data.length + pieceLength - 1) / pieceLength;
+        byte[][] hashes = new byte[n][];
+        MessageDigest md = MessageDigest.getInstance("SHA-1");
+        for (int i = 0; i < n; i++) {
+            int offset = i * pieceLength;
+            md.update(data, offset, Math.min(pieceLength, data.length - offset));
+            hashes[i] = md.digest();
+        }
+        return hashes;
+    }
+
+    private static void assertHashes(byte[][] expected, byte[][] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue("piece " + i, Arrays.equals(expected[i], actual[i]));
+        }
+    }
+}
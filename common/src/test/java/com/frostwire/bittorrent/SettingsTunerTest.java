@@ -0,0 +1,203 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the tuner over the counter traces in the test resources, one
+ * sample every 10 seconds.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class SettingsTunerTest {
+
+    // the desktop profile
+    private static final int CACHE_SIZE = 2048;
+    private static final int MAX_QUEUED_DISK_BYTES = 1024 * 1024;
+    private static final int SEND_BUFFER_WATERMARK = 500 * 1024;
+    private static final int ACTIVE_DOWNLOADS = 10;
+    private static final int CONNECTIONS_LIMIT = 200;
+
+    @Test
+    public void testSteadyLoadChangesNothing() throws IOException {
+        SettingsTuner tuner = newTuner();
+        assertEquals(0, run(tuner, "tuner-steady.csv").size());
+        assertDefaults(tuner);
+    }
+
+    @Test
+    public void testFlappingLoadChangesNothing() throws IOException {
+        SettingsTuner tuner = newTuner();
+        assertEquals(0, run(tuner, "tuner-flapping.csv").size());
+        assertDefaults(tuner);
+    }
+
+    @Test
+    public void testDiskBusy() throws IOException {
+        SettingsTuner tuner = newTuner();
+        List<Integer> changes = run(tuner, "tuner-disk-busy.csv");
+        assertFalse(changes.isEmpty());
+
+        // it grows while the disk is behind, to the bound, and back when idle
+        int max = 0;
+        List<Integer> values = new ArrayList<>();
+        SettingsTuner replay = newTuner();
+        for (SettingsTuner.Sample s : trace("tuner-disk-busy.csv")) {
+            replay.update(s);
+            values.add(replay.maxQueuedDiskBytes());
+            max = Math.max(max, replay.maxQueuedDiskBytes());
+        }
+        assertEquals(4 * MAX_QUEUED_DISK_BYTES, max);
+        assertEquals(4 * MAX_QUEUED_DISK_BYTES, (int) values.get(29));
+        assertEquals(MAX_QUEUED_DISK_BYTES, tuner.maxQueuedDiskBytes());
+        // not before the signal held
+        assertEquals(MAX_QUEUED_DISK_BYTES, (int) values.get(SettingsTuner.HYSTERESIS - 1));
+
+        assertEquals(CACHE_SIZE, tuner.cacheSize());
+        assertEquals(ACTIVE_DOWNLOADS, tuner.activeDownloads());
+        assertEquals(CONNECTIONS_LIMIT, tuner.connectionsLimit());
+    }
+
+    @Test
+    public void testCacheMisses() throws IOException {
+        SettingsTuner tuner = newTuner();
+        List<Integer> changes = run(tuner, "tuner-cache-misses.csv");
+        assertEquals(4 * CACHE_SIZE, tuner.cacheSize());
+        // two doublings, not one per sample
+        assertEquals(2, changes.size());
+        assertTrue(changes.get(1) - changes.get(0) > SettingsTuner.COOLDOWN);
+    }
+
+    @Test
+    public void testAlertStorm() throws IOException {
+        SettingsTuner tuner = newTuner();
+        List<SettingsTuner.Sample> trace = trace("tuner-alert-storm.csv");
+        int minConnections = CONNECTIONS_LIMIT;
+        int minDownloads = ACTIVE_DOWNLOADS;
+        for (int i = 0; i < trace.size(); i++) {
+            tuner.update(trace.get(i));
+            minConnections = Math.min(minConnections, tuner.connectionsLimit());
+            minDownloads = Math.min(minDownloads, tuner.activeDownloads());
+            assertTrue(tuner.connectionsLimit() <= CONNECTIONS_LIMIT);
+            assertTrue(tuner.activeDownloads() <= ACTIVE_DOWNLOADS && tuner.activeDownloads() >= 1);
+            if (i == 29) {
+                assertTrue("connections " + tuner.connectionsLimit(), tuner.connectionsLimit() < CONNECTIONS_LIMIT / 2);
+                assertTrue("downloads " + tuner.activeDownloads(), tuner.activeDownloads() < ACTIVE_DOWNLOADS);
+                // what is saved is still what the user configured
+                assertEquals(CONNECTIONS_LIMIT, tuner.configuredConnectionsLimit());
+                assertEquals(ACTIVE_DOWNLOADS, tuner.configuredActiveDownloads());
+                assertEquals(CACHE_SIZE, tuner.configuredCacheSize());
+            }
+        }
+        assertTrue(minConnections >= CONNECTIONS_LIMIT / 4);
+        assertTrue(minDownloads < ACTIVE_DOWNLOADS);
+
+        // once the load is gone, back to what the user configured
+        assertEquals(CONNECTIONS_LIMIT, tuner.connectionsLimit());
+        assertEquals(ACTIVE_DOWNLOADS, tuner.activeDownloads());
+    }
+
+    @Test
+    public void testConfigure() throws IOException {
+        SettingsTuner tuner = newTuner();
+        run(tuner, "tuner-alert-storm.csv");
+
+        // the user wants less, the tuner never goes over
+        tuner.configure(3, 100);
+        assertEquals(3, tuner.activeDownloads());
+        assertEquals(100, tuner.connectionsLimit());
+        run(tuner, "tuner-steady.csv");
+        assertEquals(3, tuner.activeDownloads());
+        assertEquals(100, tuner.connectionsLimit());
+
+        run(tuner, "tuner-cache-misses.csv");
+        assertEquals(4 * CACHE_SIZE, tuner.cacheSize());
+        tuner.reset();
+        assertEquals(CACHE_SIZE, tuner.cacheSize());
+        assertEquals(3, tuner.activeDownloads());
+        assertEquals(100, tuner.connectionsLimit());
+    }
+
+    @Test
+    public void testCountersRestart() {
+        SettingsTuner tuner = newTuner();
+        for (int i = 0; i < 10; i++) {
+            // the session restarted at the sixth
+            long n = i < 5 ? 100000 + i * 1000 : (i - 5) * 1000;
+            assertFalse(tuner.update(new SettingsTuner.Sample(20, 100, 4, 5, 8, n, n / 2, i < 5 ? 10 : 0)));
+        }
+        assertDefaults(tuner);
+    }
+
+    private static SettingsTuner newTuner() {
+        return new SettingsTuner(CACHE_SIZE, MAX_QUEUED_DISK_BYTES, SEND_BUFFER_WATERMARK, ACTIVE_DOWNLOADS, CONNECTIONS_LIMIT);
+    }
+
+    private static void assertDefaults(SettingsTuner tuner) {
+        assertEquals(CACHE_SIZE, tuner.cacheSize());
+        assertEquals(MAX_QUEUED_DISK_BYTES, tuner.maxQueuedDiskBytes());
+        assertEquals(SEND_BUFFER_WATERMARK, tuner.sendBufferWatermark());
+        assertEquals(ACTIVE_DOWNLOADS, tuner.activeDownloads());
+        assertEquals(CONNECTIONS_LIMIT, tuner.connectionsLimit());
+    }
+
+    /**
+     * @return the indexes of the samples that changed the settings
+     */
+    private static List<Integer> run(SettingsTuner tuner, String name) throws IOException {
+        List<Integer> changes = new ArrayList<>();
+        List<SettingsTuner.Sample> trace = trace(name);
+        for (int i = 0; i < trace.size(); i++) {
+            if (tuner.update(trace.get(i))) {
+                changes.add(i);
+            }
+        }
+        return changes;
+    }
+
+    private static List<SettingsTuner.Sample> trace(String name) throws IOException {
+        InputStream is = SettingsTunerTest.class.getResourceAsStream(name);
+        assertNotNull(name, is);
+        List<SettingsTuner.Sample> samples = new ArrayList<>();
+        try {
+            for (String line : IOUtils.readLines(is, "UTF-8")) {
+                if (line.startsWith("#") || line.startsWith("queued_disk_jobs") || line.trim().isEmpty()) {
+                    continue;
+                }
+                String[] v = line.split(",");
+                samples.add(new SettingsTuner.Sample(
+                        Integer.parseInt(v[0]), Integer.parseInt(v[1]), Integer.parseInt(v[2]),
+                        Integer.parseInt(v[3]), Integer.parseInt(v[4]),
+                        Long.parseLong(v[5]), Long.parseLong(v[6]), Long.parseLong(v[7])));
+            }
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class StreamServerTest {
+
+    private StreamServer server;
+    private byte[] data;
+    private FakeSource source;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StreamServer();
+        data = new byte[300000];
+        new Random(7).nextBytes(data);
+        source = new FakeSource(data);
+        url = server.register(source);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testLoopback() throws Exception {
+        URL u = new URL(url);
+        assertTrue(InetAddress.getByName(u.getHost()).isLoopbackAddress());
+        assertTrue(u.getPath().endsWith("/video%20file.mp4"));
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        HttpURLConnection c = open(url, null);
+        assertEquals(200, c.getResponseCode());
+        assertEquals("video/mp4", c.getContentType());
+        assertEquals("bytes", c.getHeaderField("Accept-Ranges"));
+        assertEquals(data.length, Long.parseLong(c.getHeaderField("Content-Length")));
+        assertTrue(Arrays.equals(data, body(c)));
+    }
+
+    @Test
+    public void testRange() throws Exception {
+        HttpURLConnection c = open(url, "bytes=1000-1999");
+        assertEquals(206, c.getResponseCode());
+        assertEquals("bytes 1000-1999/" + data.length, c.getHeaderField("Content-Range"));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 1000, 2000), body(c)));
+
+        c = open(url, "bytes=200000-");
+        assertEquals(206, c.getResponseCode());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 200000, data.length), body(c)));
+    }
+
+    @Test
+    public void testSuffixRange() throws Exception {
+        HttpURLConnection c = open(url, "bytes=-500");
+        assertEquals(206, c.getResponseCode());
+        assertEquals("bytes " + (data.length - 500) + "-" + (data.length - 1) + "/" + data.length, c.getHeaderField("Content-Range"));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, data.length - 500, data.length), body(c)));
+    }
+
+    @Test
+    public void testHead() throws Exception {
+        HttpURLConnection c = open(url, null);
+        c.setRequestMethod("HEAD");
+        assertEquals(200, c.getResponseCode());
+        assertEquals(data.length, Long.parseLong(c.getHeaderField("Content-Length")));
+        assertEquals(0, source.reads);
+    }
+
+    @Test
+    public void testNotSatisfiable() throws Exception {
+        HttpURLConnection c = open(url, "bytes=" + data.length + "-");
+        assertEquals(416, c.getResponseCode());
+        assertEquals("bytes */" + data.length, c.getHeaderField("Content-Range"));
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        String other = url.replaceFirst("/[0-9a-f]+/", "/0123456789abcdef/");
+        assertEquals(404, open(other, null).getResponseCode());
+
+        server.unregister(source);
+        assertTrue(source.closed);
+        assertEquals(404, open(url, null).getResponseCode());
+    }
+
+    @Test
+    public void testWaitsForData() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        source.gate = gate;
+
+        final byte[][] result = new byte[1][];
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = body(open(url, "bytes=100-199"));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        t.start();
+
+        // the response waits while the data is not there
+        assertFalse(done.await(500, TimeUnit.MILLISECONDS));
+        gate.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(Arrays.equals(Arrays.copyOfRange(data, 100, 200), result[0]));
+    }
+
+    private static HttpURLConnection open(String url, String range) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL(url).openConnection();
+        c.setConnectTimeout(5000);
+        c.setReadTimeout(10000);
+        if (range != null) {
+            c.setRequestProperty("Range", range);
+        }
+        return c;
+    }
+
+    private static byte[] body(HttpURLConnection c) throws IOException {
+        InputStream in = c.getInputStream();
+        try {
+            return IOUtils.toByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static final class FakeSource implements StreamSource {
+
+        private final byte[] data;
+        volatile CountDownLatch gate;
+        volatile int reads;
+        volatile boolean closed;
+
+        FakeSource(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public String name() {
+            return "video file.mp4";
+        }
+
+        @Override
+        public String contentType() {
+            return "video/mp4";
+        }
+
+        @Override
+        public long length() {
+            return data.length;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            reads++;
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (position >= data.length) {
+                return -1;
+            }
+            // short reads, like the pieces of a torrent
+            int n = Math.min(len, Math.min(data.length - (int) position, 16 * 1024));
+            System.arraycopy(data, (int) position, b, off, n);
+            return n;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
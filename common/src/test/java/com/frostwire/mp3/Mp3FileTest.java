@@ -0,0 +1,201 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.mp3;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class Mp3FileTest {
+
+    // MPEG 1 layer III, 44100 Hz, stereo, no CRC
+    private static final int HEADER_128 = 0xFFFB9000;
+    private static final int HEADER_160 = 0xFFFBA000;
+    private static final int LENGTH_128 = 417;
+    private static final int LENGTH_160 = 522;
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("probe", ".mp3");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testProbeCbrSameAsScan() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ID3v2 id3v2 = new ID3v24Tag();
+        id3v2.setTitle("probe");
+        out.write(id3v2.toBytes());
+        for (int i = 0; i < 500; i++) {
+            writeFrame(out, HEADER_128, LENGTH_128);
+        }
+        ID3v1 id3v1 = new ID3v1Tag();
+        id3v1.setArtist("frostwire");
+        out.write(id3v1.toBytes());
+        write(out);
+
+        Mp3File scanned = new Mp3File(file.getAbsolutePath());
+        Mp3File probed = Mp3File.probe(file.getAbsolutePath());
+
+        assertEquals(500, probed.getFrameCount());
+        assertEquals(scanned.getFrameCount(), probed.getFrameCount());
+        assertEquals(scanned.getStartOffset(), probed.getStartOffset());
+        assertEquals(scanned.getEndOffset(), probed.getEndOffset());
+        assertEquals(scanned.getLengthInMilliseconds(), probed.getLengthInMilliseconds());
+        assertEquals(128, probed.getBitrate());
+        assertFalse(probed.isVbr());
+        assertFalse(probed.hasXingFrame());
+        assertEquals(scanned.getSampleRate(), probed.getSampleRate());
+        assertEquals(scanned.getChannelMode(), probed.getChannelMode());
+        assertEquals("probe", probed.getId3v2Tag().getTitle());
+        assertEquals("frostwire", probed.getId3v1Tag().getArtist());
+    }
+
+    @Test
+    public void testProbeXing() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int frames = 1000;
+        int bytes = LENGTH_128 + frames / 2 * (LENGTH_128 + LENGTH_160);
+        byte[] xing = headerFrame(HEADER_128, LENGTH_128, 36, "Xing", 0x3, frames, bytes);
+        out.write(xing);
+        for (int i = 0; i < frames; i++) {
+            writeFrame(out, i % 2 == 0 ? HEADER_128 : HEADER_160, i % 2 == 0 ? LENGTH_128 : LENGTH_160);
+        }
+        write(out);
+
+        Mp3File scanned = new Mp3File(file.getAbsolutePath());
+        Mp3File probed = Mp3File.probe(file.getAbsolutePath());
+
+        assertTrue(probed.hasXingFrame());
+        assertEquals(0, probed.getXingOffset());
+        assertEquals(LENGTH_128, probed.getStartOffset());
+        assertEquals(frames, probed.getFrameCount());
+        assertEquals(scanned.getFrameCount(), probed.getFrameCount());
+        assertTrue(probed.isVbr());
+        // 1000 frames of 1152 samples at 44100 Hz
+        assertEquals(26122, probed.getLengthInMilliseconds(), 1);
+        assertEquals(scanned.getLengthInMilliseconds(), probed.getLengthInMilliseconds(), 50);
+        assertEquals(scanned.getBitrate(), probed.getBitrate(), 1);
+    }
+
+    @Test
+    public void testProbeVbri() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int frames = 200;
+        byte[] vbri = headerFrame(HEADER_160, LENGTH_160, 36, "VBRI", 0, 0, 0);
+        // version, delay and quality, then the bytes and frames
+        putInt(vbri, 36 + 10, LENGTH_160 + frames * LENGTH_160);
+        putInt(vbri, 36 + 14, frames);
+        out.write(vbri);
+        for (int i = 0; i < frames; i++) {
+            writeFrame(out, HEADER_160, LENGTH_160);
+        }
+        write(out);
+
+        Mp3File probed = Mp3File.probe(file.getAbsolutePath());
+
+        assertEquals(frames, probed.getFrameCount());
+        assertEquals(LENGTH_160, probed.getStartOffset());
+        assertTrue(probed.isVbr());
+        assertEquals(160, probed.getBitrate(), 1);
+        assertEquals(5224, probed.getLengthInMilliseconds(), 1);
+    }
+
+    @Test
+    public void testProbeLargeTag() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ID3v2 id3v2 = new ID3v24Tag();
+        id3v2.setTitle("large");
+        id3v2.setAlbumImage(new byte[100000], "image/jpeg");
+        out.write(id3v2.toBytes());
+        for (int i = 0; i < 100; i++) {
+            writeFrame(out, HEADER_128, LENGTH_128);
+        }
+        write(out);
+
+        Mp3File scanned = new Mp3File(file.getAbsolutePath());
+        Mp3File probed = Mp3File.probe(file.getAbsolutePath());
+
+        assertEquals(scanned.getStartOffset(), probed.getStartOffset());
+        assertEquals(100, probed.getFrameCount());
+        assertFalse(probed.hasId3v1Tag());
+        assertEquals("large", probed.getId3v2Tag().getTitle());
+        assertEquals(100000, probed.getId3v2Tag().getAlbumImage().length);
+    }
+
+    @Test(expected = InvalidDataException.class)
+    public void testProbeNoFrames() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[10000]);
+        write(out);
+
+        Mp3File.probe(file.getAbsolutePath());
+    }
+
+    private void write(ByteArrayOutputStream out) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            out.writeTo(fos);
+        } finally {
+            fos.close();
+        }
+    }
+
+    private static void writeFrame(ByteArrayOutputStream out, int header, int length) {
+        byte[] frame = new byte[length];
+        putInt(frame, 0, header);
+        out.write(frame, 0, length);
+    }
+
+    private static byte[] headerFrame(int header, int length, int markerOffset, String marker, int flags, int frames, int bytes) {
+        byte[] frame = new byte[length];
+        putInt(frame, 0, header);
+        for (int i = 0; i < 4; i++) {
+            frame[markerOffset + i] = (byte) marker.charAt(i);
+        }
+        putInt(frame, markerOffset + 4, flags);
+        putInt(frame, markerOffset + 8, frames);
+        putInt(frame, markerOffset + 12, bytes);
+        return frame;
+    }
+
+    private static void putInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+}
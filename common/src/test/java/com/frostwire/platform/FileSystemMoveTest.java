@@ -0,0 +1,112 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2016, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.platform;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class FileSystemMoveTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("fsmove", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testMove() throws IOException {
+        File src = new File(dir, "src.txt");
+        File dest = new File(dir, "sub/dest.txt");
+        FileUtils.writeStringToFile(src, "data", UTF8);
+
+        assertTrue(new DefaultFileSystem().move(src, dest, null));
+        assertFalse(src.exists());
+        assertEquals("data", FileUtils.readFileToString(dest, UTF8));
+    }
+
+    @Test
+    public void testMoveReplacesDestination() throws IOException {
+        File src = new File(dir, "src.txt");
+        File dest = new File(dir, "dest.txt");
+        FileUtils.writeStringToFile(src, "new", UTF8);
+        FileUtils.writeStringToFile(dest, "old", UTF8);
+
+        DefaultFileSystem.moveFile(src, dest, null);
+        assertFalse(src.exists());
+        assertEquals("new", FileUtils.readFileToString(dest, UTF8));
+    }
+
+    @Test
+    public void testMoveWithCopy() throws IOException {
+        File src = new File(dir, "src.txt");
+        File dest = new File(dir, "dest.txt");
+        FileUtils.writeStringToFile(src, "data", UTF8);
+
+        // as if the destination were in a different volume
+        DefaultFileSystem fs = new DefaultFileSystem() {
+            @Override
+            protected boolean rename(File src, File dest) {
+                return false;
+            }
+        };
+        final long[] progress = new long[2];
+        assertTrue(fs.move(src, dest, new CopyListener() {
+            @Override
+            public void onProgress(long copied, long total) {
+                progress[0] = copied;
+                progress[1] = total;
+            }
+        }));
+        assertFalse(src.exists());
+        assertEquals("data", FileUtils.readFileToString(dest, UTF8));
+        assertEquals(4, progress[0]);
+        assertEquals(4, progress[1]);
+    }
+
+    @Test
+    public void testMoveMissingSource() {
+        File src = new File(dir, "missing.txt");
+        File dest = new File(dir, "dest.txt");
+
+        assertFalse(new DefaultFileSystem().move(src, dest, null));
+        assertFalse(dest.exists());
+    }
+}
@@ -24,8 +24,10 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -92,7 +94,8 @@ public class FileSystemWalkTest {
         File f2 = new File(d2, "bbb");
         assertTrue(f2.createNewFile());
 
-        final LinkedList<File> l = new LinkedList<>();
+        // the filter is called from the threads of the walk
+        final List<File> l = Collections.synchronizedList(new LinkedList<File>());
 
         fs.walk(d1, new FileFilter() {
             @Override
@@ -0,0 +1,273 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.platform;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class FileWalkerTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = File.createTempFile("walker", null);
+        assertTrue(root.delete());
+        assertTrue(root.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    @Test
+    public void testParallelSameAsSequential() throws IOException {
+        createTree(root, 3, 4, 5);
+
+        Set<File> parallel = walk(Integer.MAX_VALUE, true, null);
+        Set<File> sequential = walk(Integer.MAX_VALUE, false, null);
+
+        // 4 + 16 + 64 folders, 5 files in each one plus the root
+        assertEquals(84 + 85 * 5, parallel.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testMaxDepth() throws IOException {
+        createTree(root, 3, 2, 1);
+
+        Set<File> files = walk(1, true, null);
+        // 2 folders and 1 file
+        assertEquals(3, files.size());
+
+        files = walk(2, true, null);
+        assertEquals(3 + 2 * 3, files.size());
+    }
+
+    @Test
+    public void testFilterSkipsFolders() throws IOException {
+        createTree(root, 2, 2, 2);
+        final File skipped = new File(root, "d0");
+
+        Set<File> files = walk(Integer.MAX_VALUE, true, new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.equals(skipped);
+            }
+
+            @Override
+            public void file(File file) {
+            }
+        });
+
+        for (File f : files) {
+            assertFalse(f.getPath().startsWith(skipped.getPath()));
+        }
+        // 2 files, d1 with 2 files and 2 folders with 2 files each
+        assertEquals(2 + 1 + 2 + 2 + 2 * 2, files.size());
+    }
+
+    @Test
+    public void testCancel() throws IOException {
+        createTree(root, 3, 4, 5);
+        final AtomicInteger files = new AtomicInteger();
+        final FileWalker[] walker = new FileWalker[1];
+
+        walker[0] = new FileWalker(new DefaultFileSystem(), new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return true;
+            }
+
+            @Override
+            public void file(File file) {
+                if (files.incrementAndGet() == 10) {
+                    walker[0].cancel();
+                }
+            }
+        });
+        walker[0].walk(root);
+
+        assertTrue(walker[0].isCancelled());
+        // the other threads stop at their next entry
+        assertTrue(files.get() >= 10);
+        assertTrue(files.get() < 84 + 85 * 5);
+    }
+
+    @Test
+    public void testPlainFiles() throws IOException {
+        File f = new File(root, "f");
+        FileUtils.writeByteArrayToFile(f, new byte[123]);
+        assertTrue(new File(root, "d").mkdir());
+
+        final Set<File> files = Collections.synchronizedSet(new HashSet<File>());
+        new FileWalker(new DefaultFileSystem(), new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return true;
+            }
+
+            @Override
+            public void file(File file) {
+                // nothing cached, the files can be kept after the walk
+                assertEquals(File.class, file.getClass());
+                files.add(file);
+            }
+        }).walk(root);
+
+        assertEquals(2, files.size());
+        assertTrue(files.contains(f));
+    }
+
+    @Test
+    public void testLister() throws IOException {
+        createTree(root, 2, 2, 2);
+        final AtomicInteger listed = new AtomicInteger();
+
+        class ListerFileSystem extends DefaultFileSystem implements FileWalker.Lister {
+            @Override
+            public boolean list(File dir, List<File> children, BitSet directories) {
+                listed.incrementAndGet();
+                File[] arr = dir.listFiles();
+                for (int i = 0; i < arr.length; i++) {
+                    children.add(arr[i]);
+                    directories.set(i, arr[i].isDirectory());
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isDirectory(File file) {
+                throw new AssertionError("the lister has the type");
+            }
+        }
+
+        final Set<File> files = Collections.synchronizedSet(new HashSet<File>());
+        new FileWalker(new ListerFileSystem(), new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return true;
+            }
+
+            @Override
+            public void file(File file) {
+                files.add(file);
+            }
+        }).walk(root);
+
+        // 2 + 4 folders, 2 files in each one plus the root
+        assertEquals(6 + 7 * 2, files.size());
+        assertEquals(7, listed.get());
+    }
+
+    @Test
+    public void testTypedFilter() throws IOException {
+        createTree(root, 2, 2, 2);
+        final AtomicInteger dirs = new AtomicInteger();
+        final AtomicInteger files = new AtomicInteger();
+
+        new FileWalker(new DefaultFileSystem(), new FileWalker.Filter() {
+            @Override
+            public boolean accept(File file, boolean directory) {
+                assertEquals(file.isDirectory(), directory);
+                return true;
+            }
+
+            @Override
+            public void file(File file, boolean directory) {
+                (directory ? dirs : files).incrementAndGet();
+            }
+        }).walk(root);
+
+        // 2 + 4 folders, 2 files in each one plus the root
+        assertEquals(6, dirs.get());
+        assertEquals(7 * 2, files.get());
+    }
+
+    /**
+     * Walks a tree of 100k files, run with -Dfrostwire.benchmark=true
+     */
+    @Test
+    public void testBenchmark() throws IOException {
+        assumeTrue(Boolean.getBoolean("frostwire.benchmark"));
+
+        // 10 + 100 + 1000 folders with 90 files each, 99990 files
+        createTree(root, 3, 10, 90);
+
+        for (int i = 0; i < 3; i++) {
+            long t = System.nanoTime();
+            int n = walk(Integer.MAX_VALUE, false, null).size();
+            long sequential = (System.nanoTime() - t) / 1000000;
+
+            t = System.nanoTime();
+            walk(Integer.MAX_VALUE, true, null);
+            long parallel = (System.nanoTime() - t) / 1000000;
+
+            System.out.println("entries: " + n + ", sequential: " + sequential + "ms, parallel: " + parallel + "ms");
+        }
+    }
+
+    private Set<File> walk(int maxDepth, boolean parallel, final FileFilter filter) {
+        final Set<File> files = Collections.synchronizedSet(new HashSet<File>());
+        new FileWalker(new DefaultFileSystem(), new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return filter == null || filter.accept(file);
+            }
+
+            @Override
+            public void file(File file) {
+                assertTrue("duplicated " + file, files.add(file));
+            }
+        }).maxDepth(maxDepth).parallel(parallel).walk(root);
+        return files;
+    }
+
+    private static void createTree(File dir, int levels, int folders, int files) throws IOException {
+        for (int i = 0; i < files; i++) {
+            assertTrue(new File(dir, "f" + i).createNewFile());
+        }
+        if (levels > 0) {
+            for (int i = 0; i < folders; i++) {
+                File d = new File(dir, "d" + i);
+                assertTrue(d.mkdir());
+                createTree(d, levels - 1, folders, files);
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class MagnetPrefetcherTest {
+
+    @Test
+    public void testConcurrencyCap() throws Exception {
+        FakeDownloader downloader = new FakeDownloader(50);
+        MagnetPrefetcher prefetcher = new MagnetPrefetcher(downloader, new MapCache(), 3, 5);
+        try {
+            for (int i = 0; i < 12; i++) {
+                prefetcher.prefetch(1, hash(i), magnet(i), i);
+            }
+            for (int i = 0; i < 12; i++) {
+                assertNotNull(prefetcher.fetch(1, hash(i), magnet(i), i));
+            }
+            assertEquals(12, downloader.calls.get());
+            assertEquals(3, downloader.maxRunning.get());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testSameInfohashOnce() throws Exception {
+        final FakeDownloader downloader = new FakeDownloader(200);
+        MapCache cache = new MapCache();
+        final MagnetPrefetcher prefetcher = new MagnetPrefetcher(downloader, cache, 4, 5);
+        try {
+            final int threads = 8;
+            final AtomicReferenceArray<byte[]> results = new AtomicReferenceArray<>(threads);
+            final CountDownLatch start = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(threads);
+            for (int i = 0; i < threads; i++) {
+                final int token = i;
+                new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            // like the same torrent found by several engines
+                            results.set(token, prefetcher.fetch(token, hash(0), magnet(0), token));
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        } finally {
+                            done.countDown();
+                        }
+                    }
+                }).start();
+            }
+            start.countDown();
+            done.await();
+
+            assertEquals(1, downloader.calls.get());
+            for (int i = 0; i < threads; i++) {
+                assertArrayEquals(magnet(0).getBytes(), results.get(i));
+            }
+            assertArrayEquals(magnet(0).getBytes(), cache.get(hash(0)));
+
+            // already in the cache
+            prefetcher.prefetch(100, hash(0), magnet(0), 0);
+            assertNotNull(prefetcher.fetch(100, hash(0), magnet(0), 0));
+            assertEquals(1, downloader.calls.get());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        FakeDownloader downloader = new FakeDownloader(300);
+        final MagnetPrefetcher prefetcher = new MagnetPrefetcher(downloader, new MapCache(), 1, 5);
+        try {
+            prefetcher.prefetch(1, hash(0), magnet(0), 0); // takes the only slot
+            prefetcher.prefetch(1, hash(1), magnet(1), 0);
+            prefetcher.prefetch(1, hash(2), magnet(2), 0);
+            prefetcher.prefetch(2, hash(2), magnet(2), 0); // also wanted by another search
+
+            final byte[][] waited = new byte[1][];
+            final CountDownLatch waiting = new CountDownLatch(1);
+            Thread t = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    waiting.countDown();
+                    waited[0] = prefetcher.fetch(1, hash(1), magnet(1), 0);
+                }
+            });
+            t.start();
+            waiting.await();
+            Thread.sleep(50);
+
+            prefetcher.cancel(1);
+            t.join(2000);
+            assertFalse(t.isAlive());
+            assertNull(waited[0]);
+
+            // the running one finishes, the one of the other search still runs
+            assertNotNull(prefetcher.fetch(2, hash(2), magnet(2), 0));
+            assertEquals(Collections.singletonList(magnet(0)), downloader.magnets.subList(0, 1));
+            assertFalse(downloader.magnets.contains(magnet(1)));
+            assertEquals(2, downloader.calls.get());
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        FakeDownloader downloader = new FakeDownloader(100);
+        MagnetPrefetcher prefetcher = new MagnetPrefetcher(downloader, new MapCache(), 1, 5);
+        try {
+            prefetcher.prefetch(1, hash(0), magnet(0), 0); // takes the only slot
+            prefetcher.prefetch(1, hash(1), magnet(1), 5);
+            prefetcher.prefetch(1, hash(2), magnet(2), 50);
+            prefetcher.prefetch(1, hash(3), magnet(3), 20);
+            prefetcher.prefetch(1, hash(4), magnet(4), 1);
+            prefetcher.prefetch(2, hash(4), magnet(4), 100); // more seeds in another engine
+
+            assertNotNull(prefetcher.fetch(1, hash(1), magnet(1), 5));
+
+            List<String> expected = new ArrayList<>();
+            expected.add(magnet(0));
+            expected.add(magnet(4));
+            expected.add(magnet(2));
+            expected.add(magnet(3));
+            expected.add(magnet(1));
+            assertEquals(expected, downloader.magnets);
+        } finally {
+            prefetcher.shutdown();
+        }
+    }
+
+    private static String hash(int i) {
+        return String.format("%040x", i);
+    }
+
+    private static String magnet(int i) {
+        return "magnet:?xt=urn:btih:" + hash(i);
+    }
+
+    private static final class FakeDownloader implements MagnetDownloader {
+
+        final long latency;
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<String> magnets = Collections.synchronizedList(new ArrayList<String>());
+
+        FakeDownloader(long latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public byte[] download(String magnet, int timeout) {
+            calls.incrementAndGet();
+            magnets.add(magnet);
+            int n = running.incrementAndGet();
+            int max;
+            while ((max = maxRunning.get()) < n && !maxRunning.compareAndSet(max, n)) {
+            }
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return magnet.getBytes();
+        }
+    }
+
+    private static final class MapCache implements CrawlCache {
+
+        private final Map<String, byte[]> map = new HashMap<>();
+
+        @Override
+        public byte[] get(String key) {
+            return map.get(key);
+        }
+
+        @Override
+        public void put(String key, byte[] data) {
+            map.put(key, data);
+        }
+
+        @Override
+        public void remove(String key) {
+            map.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            map.clear();
+        }
+
+        @Override
+        public long size() {
+            return map.size();
+        }
+    }
+}
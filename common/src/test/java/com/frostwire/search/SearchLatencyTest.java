@@ -0,0 +1,348 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.util.http.HttpClient;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SearchLatencyTest {
+
+    private static final String DOMAIN = "fake.engine";
+
+    @Test
+    public void testTimeoutShrinksAndGrows() throws Exception {
+        SearchLatency latency = new SearchLatency(null);
+        latency.setMinTimeout(50);
+        latency.setHedging(false);
+        FakeClient client = new FakeClient(10);
+        FakePerformer performer = new FakePerformer(client, null, latency, 2000);
+
+        // not known yet, the maximum
+        assertEquals(2000, latency.timeout(DOMAIN, 2000));
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("page", performer.fetch("http://fake.engine/" + i));
+        }
+        int fast = latency.timeout(DOMAIN, 2000);
+        assertTrue("timeout " + fast, fast >= 50 && fast <= 200);
+
+        // the engine gets slow, the first requests time out until the timeout is enough
+        client.delay = 400;
+        List<Integer> timeouts = new ArrayList<>();
+        boolean answered = false;
+        for (int i = 0; i < 10 && !answered; i++) {
+            timeouts.add(latency.timeout(DOMAIN, 2000));
+            try {
+                performer.fetch("http://fake.engine/slow/" + i);
+                answered = true;
+            } catch (SocketTimeoutException e) {
+                // expected until it grows
+            }
+        }
+        assertTrue(answered);
+        assertTrue(timeouts.size() > 1);
+        for (int i = 1; i < timeouts.size(); i++) {
+            assertTrue(timeouts.toString(), timeouts.get(i) > timeouts.get(i - 1));
+        }
+        int slow = latency.timeout(DOMAIN, 2000);
+        assertTrue("timeout " + slow, slow >= 400 && slow <= 2000);
+    }
+
+    @Test
+    public void testHedgeOnlyOnce() throws Exception {
+        SearchLatency latency = new SearchLatency(null);
+        for (int i = 0; i < 10; i++) {
+            latency.record(DOMAIN, 50);
+        }
+        long delay = latency.hedgeDelay(DOMAIN);
+        assertTrue(delay > 0);
+
+        FakeClient client = new FakeClient(1500);
+        FakeClient hedge = new FakeClient(20, "hedge");
+        FakePerformer performer = new FakePerformer(client, hedge, latency, 5000);
+
+        // the first page takes too long, the second request wins
+        long start = System.currentTimeMillis();
+        assertEquals("hedge", performer.fetch("http://fake.engine/1"));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("elapsed " + elapsed, elapsed >= delay && elapsed < 1500);
+        assertEquals(1, client.calls.get());
+        assertEquals(1, hedge.calls.get());
+
+        // the next pages are slow too, but they are never requested twice
+        client.delay = delay + 200;
+        for (int i = 2; i <= 3; i++) {
+            assertEquals("page", performer.fetch("http://fake.engine/" + i));
+        }
+        assertEquals(3, client.calls.get());
+        assertEquals(1, hedge.calls.get());
+    }
+
+    @Test
+    public void testNoHedgeWhenFastOrUnknown() throws Exception {
+        // not known, the first page waits for the only request
+        SearchLatency latency = new SearchLatency(null);
+        FakeClient client = new FakeClient(400);
+        FakeClient hedge = new FakeClient(10, "hedge");
+        assertEquals("page", new FakePerformer(client, hedge, latency, 5000).fetch("http://fake.engine/1"));
+        assertEquals(0, hedge.calls.get());
+
+        // known, answering before the delay
+        for (int i = 0; i < 10; i++) {
+            latency.record(DOMAIN, 300);
+        }
+        client.delay = 10;
+        assertEquals("page", new FakePerformer(client, hedge, latency, 5000).fetch("http://fake.engine/1"));
+        assertEquals(0, hedge.calls.get());
+
+        latency.setHedging(false);
+        client.delay = 1000;
+        assertEquals("page", new FakePerformer(client, hedge, latency, 5000).fetch("http://fake.engine/1"));
+        assertEquals(0, hedge.calls.get());
+    }
+
+    @Test
+    public void testPersistence() throws IOException {
+        File f = File.createTempFile("search_latency", ".json");
+        try {
+            assertTrue(f.delete());
+            SearchLatency latency = new SearchLatency(f);
+            for (int i = 0; i < 20; i++) {
+                latency.record(DOMAIN, 300 + i * 10);
+                latency.record("other.engine", 4000);
+            }
+            latency.save();
+            assertTrue(f.exists());
+
+            SearchLatency loaded = new SearchLatency(f);
+            assertEquals(latency.timeout(DOMAIN, 10000), loaded.timeout(DOMAIN, 10000));
+            assertEquals(latency.timeout("other.engine", 10000), loaded.timeout("other.engine", 10000));
+            assertEquals(latency.estimator(DOMAIN).p95(), loaded.estimator(DOMAIN).p95());
+            assertEquals(latency.estimator(DOMAIN).ewma(), loaded.estimator(DOMAIN).ewma());
+            assertTrue(loaded.timeout(DOMAIN, 10000) < loaded.timeout("other.engine", 10000));
+
+            // not valid, starts over
+            FileUtils.writeStringToFile(f, "{\"engines\":{\"fake.engine\":{\"counts\":[1,2]}}}", "UTF-8");
+            assertEquals(10000, new SearchLatency(f).timeout(DOMAIN, 10000));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testOldSamplesFade() {
+        LatencyEstimator e = new LatencyEstimator();
+        for (int i = 0; i < 200; i++) {
+            e.record(5000);
+        }
+        for (int i = 0; i < 300; i++) {
+            e.record(100);
+        }
+        assertTrue("p95 " + e.p95(), e.p95() < 200);
+        assertTrue("ewma " + e.ewma(), e.ewma() < 200);
+    }
+
+    private static final class FakePerformer extends WebSearchPerformer {
+
+        private final HttpClient hedge;
+
+        FakePerformer(HttpClient client, HttpClient hedge, SearchLatency latency, int timeout) {
+            super(DOMAIN, 1, "test", timeout, client, latency);
+            this.hedge = hedge;
+        }
+
+        @Override
+        protected HttpClient newHedgeClient() {
+            return hedge;
+        }
+
+        @Override
+        public void perform() {
+        }
+    }
+
+    /**
+     * Answers after the delay, or times out like a real client.
+     */
+    private static final class FakeClient implements HttpClient {
+
+        final String page;
+        final AtomicInteger calls = new AtomicInteger();
+        volatile long delay;
+
+        FakeClient(long delay, String page) {
+            this.delay = delay;
+            this.page = page;
+        }
+
+        FakeClient(long delay) {
+            this(delay, "page");
+        }
+
+        @Override
+        public String get(String url, int timeout, String userAgent, String referrer, String cookie, Map<String, String> customHeaders) throws IOException {
+            calls.incrementAndGet();
+            long d = delay;
+            try {
+                Thread.sleep(Math.min(d, timeout));
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (d > timeout) {
+                throw new SocketTimeoutException("timeout " + timeout);
+            }
+            return page;
+        }
+
+        @Override
+        public void setListener(HttpClientListener listener) {
+        }
+
+        @Override
+        public HttpClientListener getListener() {
+            return null;
+        }
+
+        @Override
+        public void onCancel() {
+        }
+
+        @Override
+        public void onData(byte[] b, int i, int n) {
+        }
+
+        @Override
+        public void onError(Exception e) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        @Override
+        public int head(String url, int connectTimeoutInMillis, Map<String, List<String>> outputHeaders) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String get(String url) throws IOException {
+            return get(url, 10000);
+        }
+
+        @Override
+        public String get(String url, int timeout) throws IOException {
+            return get(url, timeout, null);
+        }
+
+        @Override
+        public String get(String url, int timeout, String userAgent) throws IOException {
+            return get(url, timeout, userAgent, null, null);
+        }
+
+        @Override
+        public String get(String url, int timeout, String userAgent, String referrer, String cookie) throws IOException {
+            return get(url, timeout, userAgent, referrer, cookie, null);
+        }
+
+        @Override
+        public byte[] getBytes(String url) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] getBytes(String url, int timeout) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] getBytes(String url, int timeout, String referrer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] getBytes(String url, int timeout, String userAgent, String referrer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public byte[] getBytes(String url, int timeout, String userAgent, String referrer, String cookies) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void save(String url, File file) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void save(String url, File file, boolean resume) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void save(String url, File file, boolean resume, int timeout, String userAgent) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String post(String url, int timeout, String userAgent, Map<String, String> formData) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String post(String url, int timeout, String userAgent, String content, boolean gzip) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String post(String url, int timeout, String userAgent, String content, String postContentType, boolean gzip) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void cancel() {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.search.torrent.TorrentSearchResult;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SearchResultMergerTest {
+
+    private static final String[] ENGINES = {"Zooqle", "TPB", "Torlock"};
+
+    @Test
+    public void testKeys() {
+        assertEquals("bt:abcdef", SearchResultMerger.key(new FakeTorrent("TPB", "ABCDEF", "Name", 1, 10)));
+        assertEquals(SearchResultMerger.key(new FakeFile("A", "The.Movie (2017)", 100)),
+                SearchResultMerger.key(new FakeFile("B", "the movie  2017", 100)));
+        assertNotEquals(SearchResultMerger.key(new FakeFile("A", "The Movie", 100)),
+                SearchResultMerger.key(new FakeFile("A", "The Movie", 101)));
+        // without hash, by name and size
+        assertEquals(SearchResultMerger.key(new FakeFile("A", "The Movie", 100)),
+                SearchResultMerger.key(new FakeTorrent("TPB", null, "the-movie", 1, 100)));
+        // not known, never merged
+        assertNull(SearchResultMerger.key(new FakeFile("A", "The Movie", -1)));
+    }
+
+    @Test
+    public void testMergeIsDeterministic() {
+        List<SearchResult> results = engineResults(300, 100);
+        Map<String, String> expected = null;
+        for (long seed = 0; seed < 10; seed++) {
+            List<SearchResult> shuffled = new ArrayList<>(results);
+            Collections.shuffle(shuffled, new Random(seed));
+
+            SearchResultMerger merger = new SearchResultMerger();
+            int added = 0;
+            for (int i = 0; i < shuffled.size(); i += 20) {
+                added += merger.merge(shuffled.subList(i, Math.min(i + 20, shuffled.size()))).added.size();
+            }
+            assertEquals(100, added);
+            assertEquals(100, merger.size());
+
+            Map<String, String> state = new TreeMap<>();
+            for (int i = 0; i < 100; i++) {
+                MergedSearchResult m = merger.get("bt:" + hash(i));
+                state.put(m.key(), m.getSources() + " " + m.getSeeds() + " " + m.getCount() + " " + m.getBest().getDetailsUrl());
+            }
+            if (expected == null) {
+                expected = state;
+            } else {
+                assertEquals(expected, state);
+            }
+        }
+
+        // every engine found every torrent, the one with most seeds is the best
+        SearchResultMerger merger = new SearchResultMerger();
+        merger.merge(results);
+        MergedSearchResult m = merger.get("bt:" + hash(7));
+        assertEquals(Arrays.asList("TPB", "Torlock", "Zooqle"), m.getSources());
+        assertEquals(3, m.getCount());
+        assertEquals(m.getSeeds(), ((TorrentSearchResult) m.getBest()).getSeeds());
+    }
+
+    @Test
+    public void testOneUpdatePerBatch() {
+        SearchResultMerger merger = new SearchResultMerger();
+        merger.merge(Collections.singletonList(new FakeTorrent("TPB", "aa", "A", 5, 10)));
+
+        List<SearchResult> page = new ArrayList<>();
+        page.add(new FakeTorrent("Zooqle", "aa", "A", 7, 10));
+        page.add(new FakeTorrent("Torlock", "AA", "A", 9, 10));
+        page.add(new FakeTorrent("Torlock", "aa", "A", 1, 10)); // nothing new
+        SearchResultMerger.Batch batch = merger.merge(page);
+        assertTrue(batch.added.isEmpty());
+        assertEquals(3, batch.duplicates.size());
+        assertEquals(1, batch.updated.size());
+        assertEquals(9, batch.updated.get(0).getSeeds());
+
+        // the same again, nothing changes, nothing reported
+        batch = merger.merge(page);
+        assertTrue(batch.updated.isEmpty());
+        assertEquals(7, merger.get("bt:aa").getCount());
+    }
+
+    @Test
+    public void testBounded() {
+        SearchResultMerger merger = new SearchResultMerger(50);
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(new FakeTorrent("TPB", hash(i), "T" + i, 1, 10));
+        }
+        assertEquals(200, merger.merge(results).added.size());
+        assertEquals(50, merger.size());
+
+        // the ones in the index still merge, the others pass
+        SearchResultMerger.Batch batch = merger.merge(results);
+        assertEquals(50, batch.duplicates.size());
+        assertEquals(150, batch.added.size());
+        assertEquals(50, merger.size());
+    }
+
+    @Test
+    public void testManagerMergesEngines() throws InterruptedException {
+        final long token = 4700;
+        final CountDownLatch finished = new CountDownLatch(1);
+        final List<SearchResult> added = Collections.synchronizedList(new ArrayList<SearchResult>());
+        final AtomicInteger resultEvents = new AtomicInteger();
+        final AtomicInteger mergeEvents = new AtomicInteger();
+        final Set<String> merged = Collections.synchronizedSet(new HashSet<String>());
+
+        SearchManager manager = SearchManager.getInstance();
+        manager.setListener(new SearchMergeListener() {
+            @Override
+            public void onResults(long t, List<? extends SearchResult> results) {
+                if (t == token) {
+                    resultEvents.incrementAndGet();
+                    added.addAll(results);
+                }
+            }
+
+            @Override
+            public void onMerged(long t, List<MergedSearchResult> list) {
+                if (t == token) {
+                    mergeEvents.incrementAndGet();
+                    Set<MergedSearchResult> once = Collections.newSetFromMap(new IdentityHashMap<MergedSearchResult, Boolean>());
+                    for (MergedSearchResult m : list) {
+                        assertTrue(once.add(m));
+                        merged.add(m.key());
+                    }
+                }
+            }
+
+            @Override
+            public void onError(long t, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long t) {
+                if (t == token) {
+                    finished.countDown();
+                }
+            }
+        });
+
+        try {
+            // the same 60 torrents, in pages of 10, in a different order by engine
+            List<SearchResult> all = engineResults(180, 60);
+            int pages = 0;
+            for (String engine : ENGINES) {
+                List<SearchResult> mine = new ArrayList<>();
+                for (SearchResult sr : all) {
+                    if (engine.equals(sr.getSource())) {
+                        mine.add(sr);
+                    }
+                }
+                Collections.shuffle(mine, new Random(engine.hashCode()));
+                FakePerformer p = new FakePerformer(token, mine, 10);
+                pages += p.pages.size();
+                manager.perform(p);
+            }
+
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+
+            Set<String> keys = new HashSet<>();
+            for (SearchResult sr : added) {
+                assertTrue("added twice: " + sr, keys.add(SearchResultMerger.key(sr)));
+            }
+            assertEquals(60, added.size());
+            assertEquals(60, merged.size());
+            // at most one event of each kind per page, not one per result
+            assertTrue(resultEvents.get() <= pages);
+            assertTrue(mergeEvents.get() <= pages);
+            assertTrue(resultEvents.get() + mergeEvents.get() < all.size() / 4);
+        } finally {
+            manager.setListener(null);
+        }
+    }
+
+    @Test
+    public void testPlainListenerGetsNoDuplicates() throws InterruptedException {
+        final long token = 4701;
+        final CountDownLatch finished = new CountDownLatch(1);
+        final List<SearchResult> added = Collections.synchronizedList(new ArrayList<SearchResult>());
+
+        SearchManager manager = SearchManager.getInstance();
+        manager.setListener(new SearchListener() {
+            @Override
+            public void onResults(long t, List<? extends SearchResult> results) {
+                if (t == token) {
+                    added.addAll(results);
+                }
+            }
+
+            @Override
+            public void onError(long t, SearchError error) {
+            }
+
+            @Override
+            public void onStopped(long t) {
+                if (t == token) {
+                    finished.countDown();
+                }
+            }
+        });
+
+        try {
+            List<SearchResult> all = engineResults(90, 30);
+            Collections.shuffle(all, new Random(token));
+            manager.perform(new FakePerformer(token, all, 10));
+
+            assertTrue(finished.await(10, TimeUnit.SECONDS));
+            assertEquals(30, added.size());
+        } finally {
+            manager.setListener(null);
+        }
+    }
+
+    private static String hash(int i) {
+        return String.format("%040x", i * 2654435761L);
+    }
+
+    /**
+     * Each of the engines finds the same torrents, with its own seeds.
+     */
+    private static List<SearchResult> engineResults(int n, int unique) {
+        Random r = new Random(47);
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int t = i % unique;
+            String engine = ENGINES[(i / unique) % ENGINES.length];
+            results.add(new FakeTorrent(engine, hash(t), "Torrent " + t, r.nextInt(20), 1000 + t));
+        }
+        return results;
+    }
+
+    private static final class FakePerformer extends AbstractSearchPerformer {
+
+        final List<List<SearchResult>> pages;
+
+        FakePerformer(long token, List<SearchResult> results, int pageSize) {
+            super(token);
+            this.pages = new ArrayList<>();
+            for (int i = 0; i < results.size(); i += pageSize) {
+                pages.add(results.subList(i, Math.min(i + pageSize, results.size())));
+            }
+        }
+
+        @Override
+        public void perform() {
+            for (List<SearchResult> page : pages) {
+                onResults(page);
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void crawl(CrawlableSearchResult sr) {
+        }
+    }
+
+    private static class FakeFile extends AbstractFileSearchResult {
+
+        private final String source;
+        private final String name;
+        private final long size;
+
+        FakeFile(String source, String name, long size) {
+            this.source = source;
+            this.name = name;
+            this.size = size;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://" + source.toLowerCase() + "/" + name.hashCode();
+        }
+
+        @Override
+        public String getSource() {
+            return source;
+        }
+
+        @Override
+        public String getFilename() {
+            return name;
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+    }
+
+    private static final class FakeTorrent extends FakeFile implements TorrentSearchResult {
+
+        private final String hash;
+        private final int seeds;
+
+        FakeTorrent(String source, String hash, String name, int seeds, long size) {
+            super(source, name, size);
+            this.hash = hash;
+            this.seeds = seeds;
+        }
+
+        @Override
+        public String getDetailsUrl() {
+            return "http://" + getSource().toLowerCase() + "/" + hash;
+        }
+
+        @Override
+        public String getTorrentUrl() {
+            return "magnet:?xt=urn:btih:" + hash;
+        }
+
+        @Override
+        public String getReferrerUrl() {
+            return getDetailsUrl();
+        }
+
+        @Override
+        public int getSeeds() {
+            return seeds;
+        }
+
+        @Override
+        public String getHash() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.search.youtube;
+
+import com.frostwire.search.youtube.jd.JsFunction;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the signature functions of the base-*.js fixtures, compiled and
+ * interpreted. The fixtures are synthetic, see the README next to them.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class YouTubeSigTest {
+
+    private static final String SIG_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789.";
+
+    @Test
+    public void testDotMembers() throws IOException {
+        assertSameAsInterpreter("base-dot-members.js", "Rs", true);
+    }
+
+    @Test
+    public void testQuotedMembers() throws IOException {
+        assertSameAsInterpreter("base-quoted-members.js", "pE", true);
+    }
+
+    @Test
+    public void testDirectOps() throws IOException {
+        assertSameAsInterpreter("base-direct-ops.js", "Jn", true);
+    }
+
+    @Test
+    public void testUnsupportedFallsBack() throws IOException {
+        assertSameAsInterpreter("base-unsupported.js", "Yq", false);
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        YouTubeSigProgram program = new YouTubeSig(fixture("base-dot-members.js")).program();
+        assertEquals("s12,d3,r,s60,d2,s27", program.toString());
+
+        YouTubeSigProgram parsed = YouTubeSigProgram.parse(program.toString());
+        String sig = signature(new Random(1), 86);
+        assertEquals(program.eval(sig), parsed.eval(sig));
+
+        assertNull(YouTubeSigProgram.parse("r,x3"));
+        assertNull(YouTubeSigProgram.parse("s"));
+        assertNull(YouTubeSigProgram.parse("d-1"));
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        File dir = File.createTempFile("youtube_sig", null);
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        try {
+            String js = fixture("base-quoted-members.js");
+            YouTubeSig sig = new YouTubeSig(js);
+            new YouTubeSigCache(2, dir).put("vflXyz-1", sig);
+
+            // a new session reads it from disk
+            YouTubeSigCache cache = new YouTubeSigCache(2, dir);
+            YouTubeSig saved = cache.get("vflXyz-1");
+            assertNotNull(saved);
+            String s = signature(new Random(2), 83);
+            assertEquals(sig.calc(s), saved.calc(s));
+
+            assertNull(cache.get("vflOther"));
+            assertNull(cache.get("../vflXyz-1"));
+        } finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Test
+    public void testMemoryOnlyCacheEvicts() throws IOException {
+        YouTubeSig sig = new YouTubeSig(fixture("base-direct-ops.js"));
+        YouTubeSigCache cache = new YouTubeSigCache(2, null);
+        cache.put("a", sig);
+        cache.put("b", sig);
+        cache.get("a");
+        cache.put("c", sig);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+    }
+
+    private static void assertSameAsInterpreter(String name, String funcname, boolean compiled) throws IOException {
+        String js = fixture(name);
+        YouTubeSig sig = new YouTubeSig(js);
+        assertEquals(compiled, sig.program() != null);
+
+        Random r = new Random(name.hashCode());
+        for (int i = 0; i < 200; i++) {
+            String s = signature(r, 80 + r.nextInt(12));
+            // the interpreter frees the code after the first call
+            String expected = new JsFunction<String>(js, funcname).eval(s);
+            assertEquals(s, expected, sig.calc(s));
+        }
+    }
+
+    private static String signature(Random r, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(SIG_CHARS.charAt(r.nextInt(SIG_CHARS.length())));
+        }
+        return sb.toString();
+    }
+
+    private static String fixture(String name) throws IOException {
+        InputStream in = YouTubeSigTest.class.getResourceAsStream(name);
+        assertNotNull(name, in);
+        try {
+            return IOUtils.toString(in, "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
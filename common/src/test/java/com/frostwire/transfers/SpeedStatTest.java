@@ -0,0 +1,121 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class SpeedStatTest {
+
+    @Test
+    public void testNoDataNoSpeed() {
+        SpeedStat stat = new SpeedStat();
+        assertEquals(0, stat.averageSpeed(10000));
+        assertEquals(-1, SpeedStat.eta(100, stat.totalBytes(), stat.averageSpeed(20000)));
+    }
+
+    @Test
+    public void testConvergesToSteadyRate() {
+        SpeedStat stat = new SpeedStat(2000);
+        long now = 1000;
+        // 100 KB/s in chunks of 1 KB every 10 ms
+        for (int i = 0; i < 2000; i++) {
+            stat.update(1024, now);
+            now += 10;
+        }
+        long speed = stat.averageSpeed(now);
+        assertTrue("speed: " + speed, Math.abs(speed - 102400) < 1024);
+    }
+
+    @Test
+    public void testStableUnderBursts() {
+        SpeedStat stat = new SpeedStat(5000);
+        long now = 1000;
+        // warm up at 100 KB/s
+        for (int i = 0; i < 100; i++) {
+            stat.update(25600, now);
+            now += 250;
+        }
+        // one tick with a 10x burst should move the average by much less than 10x
+        stat.update(256000, now);
+        now += 250;
+        long speed = stat.averageSpeed(now);
+        assertTrue("speed: " + speed, speed < 2 * 102400);
+    }
+
+    @Test
+    public void testDecaysWhenStalled() {
+        SpeedStat stat = new SpeedStat(1000);
+        long now = 1000;
+        for (int i = 0; i < 40; i++) {
+            stat.update(25600, now);
+            now += 250;
+        }
+        long before = stat.averageSpeed(now);
+        long after = stat.averageSpeed(now + 5000);
+        assertTrue(before > 0);
+        assertTrue("after: " + after, after < before / 100);
+    }
+
+    @Test
+    public void testSameTimeReadsAreStable() {
+        SpeedStat stat = new SpeedStat();
+        stat.update(1000, 1000);
+        stat.update(1000, 1500);
+        long a = stat.averageSpeed(1600);
+        long b = stat.averageSpeed(1600);
+        assertEquals(a, b);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final SpeedStat stat = new SpeedStat();
+        final int threads = 8;
+        final int updates = 10000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < updates; j++) {
+                        stat.update(10);
+                        stat.averageSpeed();
+                    }
+                    latch.countDown();
+                }
+            }.start();
+        }
+        latch.await();
+        assertEquals(threads * updates * 10L, stat.totalBytes());
+    }
+
+    @Test
+    public void testEta() {
+        assertEquals(0, SpeedStat.eta(100, 100, 0));
+        assertEquals(-1, SpeedStat.eta(100, 50, 0));
+        assertEquals(5, SpeedStat.eta(100, 50, 10));
+    }
+}
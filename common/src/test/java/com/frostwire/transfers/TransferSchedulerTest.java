@@ -0,0 +1,311 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.transfers;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class TransferSchedulerTest {
+
+    private ManualExecutor executor;
+    private TransferScheduler scheduler;
+    private List<String> log;
+
+    @Before
+    public void setUp() {
+        executor = new ManualExecutor();
+        scheduler = new TransferScheduler(executor, 2);
+        log = new LinkedList<>();
+    }
+
+    @Test
+    public void testMaxActive() {
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit(new FakeTransfer("t" + i), 0, task("t" + i));
+        }
+
+        assertEquals(2, scheduler.numActive());
+        assertEquals(3, scheduler.numQueued());
+        assertEquals(2, executor.pending.size());
+
+        executor.runNext();
+        assertEquals(2, scheduler.numActive());
+        assertEquals(2, scheduler.numQueued());
+
+        scheduler.maxActive(4);
+        assertEquals(4, scheduler.numActive());
+        assertEquals(0, scheduler.numQueued());
+
+        executor.runAll();
+        assertEquals(0, scheduler.numActive());
+        assertEquals("[t0, t1, t2, t3, t4]", log.toString());
+    }
+
+    @Test
+    public void testPriority() {
+        scheduler.maxActive(1);
+        scheduler.submit(new FakeTransfer("a"), 0, task("a"));
+        scheduler.submit(new FakeTransfer("low"), 0, task("low"));
+        scheduler.submit(new FakeTransfer("high"), 5, task("high"));
+        scheduler.submit(new FakeTransfer("low2"), 0, task("low2"));
+
+        executor.runAll();
+        assertEquals("[a, high, low, low2]", log.toString());
+    }
+
+    @Test
+    public void testNotATransfer() {
+        scheduler.maxActive(1);
+        Object a = new Object();
+        Object b = new Object();
+        scheduler.submit(a, "a", 0, task("a"));
+        scheduler.submit(b, "b", 0, task("b"));
+
+        assertTrue(scheduler.isQueued(b));
+        assertTrue(scheduler.cancel(b));
+        assertFalse(scheduler.cancel(b));
+
+        executor.runAll();
+        assertEquals("[a]", log.toString());
+        assertEquals(0, scheduler.numActive());
+    }
+
+    @Test
+    public void testCancel() {
+        scheduler.maxActive(1);
+        FakeTransfer a = new FakeTransfer("a");
+        FakeTransfer b = new FakeTransfer("b");
+        scheduler.submit(a, 0, task("a"));
+        scheduler.submit(b, 0, task("b"));
+
+        assertTrue(scheduler.isQueued(b));
+        scheduler.cancel(b);
+        assertFalse(scheduler.isQueued(b));
+
+        executor.runAll();
+        assertEquals("[a]", log.toString());
+    }
+
+    @Test
+    public void testRunningTransferKeepsItsSlot() {
+        scheduler.maxActive(1);
+        final FakeTransfer a = new FakeTransfer("a");
+        scheduler.submit(a, 0, new Runnable() {
+            @Override
+            public void run() {
+                log.add("video");
+                // second stream of the same transfer
+                scheduler.submit(a, 0, task("audio"));
+            }
+        });
+        scheduler.submit(new FakeTransfer("b"), 0, task("b"));
+
+        executor.runNext();
+        assertEquals(1, scheduler.numActive());
+        assertEquals(1, scheduler.numQueued());
+
+        executor.runAll();
+        assertEquals("[video, audio, b]", log.toString());
+    }
+
+    @Test
+    public void testDownloadBudget() {
+        // nothing running, all the budget for the session
+        assertEquals(1000, scheduler.downloadBudget(1000));
+        assertEquals(100, scheduler.downloadRateLimit());
+
+        scheduler.submit(new FakeTransfer("a"), 0, task("a"));
+        // nobody using its part, nothing moves
+        assertEquals(900, scheduler.split(0, 0));
+
+        // only the HTTP transfers use their part, the session keeps some room to grow
+        assertEquals(125, scheduler.split(95, 100));
+        assertEquals(875, scheduler.downloadRateLimit());
+
+        // both use their part, half each
+        assertEquals(500, scheduler.split(800, 120));
+        assertEquals(500, scheduler.downloadRateLimit());
+
+        // only the session uses its part
+        assertEquals(875, scheduler.split(100, 480));
+        assertEquals(125, scheduler.downloadRateLimit());
+
+        // never below 10% of the budget
+        assertEquals(100, scheduler.split(2000, 0));
+        assertEquals(900, scheduler.downloadRateLimit());
+
+        executor.runAll();
+        assertEquals(1000, scheduler.split(0, 1000));
+
+        assertEquals(0, scheduler.downloadBudget(0));
+        assertEquals(0, scheduler.split(1000, 1000));
+        assertEquals(0, scheduler.downloadRateLimit());
+    }
+
+    @Test
+    public void testTokenBucket() {
+        TokenBucket bucket = new TokenBucket(1000);
+        long now = System.nanoTime();
+
+        assertEquals(0, bucket.reserve(1000, now));
+        // empty, 500 bytes of debt is half a second of wait
+        assertEquals(500000000L, bucket.reserve(500, now));
+        // after one second the debt is paid and there are 500 tokens
+        assertEquals(0, bucket.reserve(500, now + 1000000000L));
+        assertEquals(250000000L, bucket.reserve(250, now + 1000000000L));
+
+        bucket.rate(0);
+        assertEquals(0, bucket.reserve(Integer.MAX_VALUE, now));
+    }
+
+    private Runnable task(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+
+    private static final class ManualExecutor implements Executor {
+
+        private final LinkedList<Runnable> pending = new LinkedList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            pending.add(command);
+        }
+
+        void runNext() {
+            pending.poll().run();
+        }
+
+        void runAll() {
+            while (!pending.isEmpty()) {
+                runNext();
+            }
+        }
+    }
+
+    private static final class FakeTransfer implements Transfer {
+
+        private final String name;
+
+        FakeTransfer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return name;
+        }
+
+        @Override
+        public File getSavePath() {
+            return null;
+        }
+
+        @Override
+        public File previewFile() {
+            return null;
+        }
+
+        @Override
+        public long getSize() {
+            return 0;
+        }
+
+        @Override
+        public Date getCreated() {
+            return null;
+        }
+
+        @Override
+        public TransferState getState() {
+            return TransferState.WAITING;
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return 0;
+        }
+
+        @Override
+        public long getBytesSent() {
+            return 0;
+        }
+
+        @Override
+        public long getDownloadSpeed() {
+            return 0;
+        }
+
+        @Override
+        public long getUploadSpeed() {
+            return 0;
+        }
+
+        @Override
+        public boolean isDownloading() {
+            return false;
+        }
+
+        @Override
+        public long getETA() {
+            return 0;
+        }
+
+        @Override
+        public int getProgress() {
+            return 0;
+        }
+
+        @Override
+        public boolean isComplete() {
+            return false;
+        }
+
+        @Override
+        public List<TransferItem> getItems() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void remove(boolean deleteData) {
+        }
+    }
+}
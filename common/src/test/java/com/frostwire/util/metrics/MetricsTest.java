@@ -0,0 +1,164 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.util.metrics;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class MetricsTest {
+
+    @Test
+    public void testBuckets() {
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            long lower = Histogram.lowerBound(i);
+            long upper = Histogram.upperBound(i);
+            assertTrue(lower <= upper);
+            assertEquals(i, Histogram.index(lower));
+            assertEquals(i, Histogram.index(upper));
+            if (i > 0) {
+                assertEquals(Histogram.upperBound(i - 1) + 1, lower);
+            }
+        }
+        assertEquals(Histogram.BUCKETS - 1, Histogram.index(Long.MAX_VALUE));
+
+        // a value is known within 12.5%
+        Random r = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            long v = Math.abs(r.nextLong() >>> r.nextInt(60));
+            int index = Histogram.index(v);
+            assertTrue(Histogram.upperBound(index) - Histogram.lowerBound(index) <= Math.max(0, v / 8));
+        }
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram h = new Metrics().histogram("test.ms");
+        Histogram.Snapshot empty = h.snapshot();
+        assertEquals(0, empty.count());
+        assertEquals(0, empty.percentile(0.95));
+
+        for (int i = 1; i <= 1000; i++) {
+            h.record(i);
+        }
+        h.record(-5); // as zero
+
+        Histogram.Snapshot s = h.snapshot();
+        assertEquals(1001, s.count());
+        assertEquals(500500, s.sum());
+        assertEquals(1000, s.max());
+        assertEquals(500, s.mean());
+        assertEquals(500, s.percentile(0.50), 500 / 8);
+        assertEquals(950, s.percentile(0.95), 950 / 8);
+        assertEquals(1000, s.percentile(1.0));
+        assertEquals(0, s.percentile(0));
+    }
+
+    @Test
+    public void testRegistry() {
+        Metrics metrics = new Metrics();
+        Counter c = metrics.counter("http.bytes");
+        assertSame(c, metrics.counter("http.bytes"));
+        c.add(1000);
+        c.inc();
+        metrics.gauge("search.tasks").set(7);
+        metrics.meter("bt.alerts").mark(3);
+        metrics.histogram("search.queue_wait.ms").record(12);
+
+        try {
+            metrics.histogram("http.bytes");
+            fail("a counter is not a histogram");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        Map<String, Long> values = metrics.values();
+        assertEquals(1001L, (long) values.get("http.bytes"));
+        assertEquals(7L, (long) values.get("search.tasks"));
+        assertEquals(3L, (long) values.get("bt.alerts.count"));
+        assertEquals(1L, (long) values.get("search.queue_wait.ms.count"));
+        assertEquals(12L, (long) values.get("search.queue_wait.ms.p95"));
+
+        String dump = metrics.dump();
+        String[] lines = dump.split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("bt.alerts count=3", lines[0].substring(0, lines[0].indexOf(" rate=")));
+        assertEquals("http.bytes 1001", lines[1]);
+        assertEquals("search.queue_wait.ms count=1 mean=12 p50=12 p95=12 p99=12 max=12", lines[2]);
+        assertEquals("search.tasks 7", lines[3]);
+    }
+
+    @Test
+    public void testRecordDoesNotAllocate() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        Metrics metrics = new Metrics();
+        Histogram h = metrics.histogram("test.us");
+        Counter c = metrics.counter("test.bytes");
+        Meter m = metrics.meter("test.events");
+        record(h, c, m, 100000); // warm up
+
+        long id = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(id);
+        record(h, c, m, 1000000);
+        long allocated = mx.getThreadAllocatedBytes(id) - before;
+        assertTrue("allocated " + allocated, allocated < 1024);
+    }
+
+    /**
+     * The cost of recording a sample in a histogram, best of a few runs.
+     */
+    @Test
+    public void testRecordOverhead() {
+        Histogram h = new Metrics().histogram("test.ns");
+        int n = 5000000;
+        long best = Long.MAX_VALUE;
+        for (int run = 0; run < 10; run++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                h.record(i & 0xFFFF);
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double ns = (double) best / n;
+        System.out.println(String.format("Histogram.record: %.1f ns per sample", ns));
+        assertEquals(10L * n, h.snapshot().count());
+        assertTrue("ns " + ns, ns < 50);
+    }
+
+    private static void record(Histogram h, Counter c, Meter m, int n) {
+        for (int i = 0; i < n; i++) {
+            h.record(i);
+            c.add(i);
+            m.mark();
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.uxstats;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class UXStatsTest {
+
+    // nothing listens there, sending always fails
+    private static final String URL = "http://127.0.0.1:1/dux";
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("uxstats", null);
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testRing() {
+        UXActionRing ring = new UXActionRing(4);
+        assertEquals(4, ring.capacity());
+        assertEquals(0, ring.poll());
+
+        for (int i = 1; i <= 4; i++) {
+            assertTrue(ring.offer(UXAction.SEARCH_BASE + i, 1000 + i));
+        }
+        assertFalse(ring.offer(UXAction.SEARCH_BASE, 2000));
+        assertFalse(ring.offer(-1, 2000));
+        assertEquals(2, ring.dropped());
+
+        for (int i = 1; i <= 4; i++) {
+            long action = ring.poll();
+            assertEquals(UXAction.SEARCH_BASE + i, UXActionRing.code(action));
+            assertEquals(1000 + i, UXActionRing.time(action));
+        }
+        assertEquals(0, ring.poll());
+        assertTrue(ring.offer(UXAction.SETTINGS_BASE, System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testSpoolEncoding() throws IOException {
+        long now = System.currentTimeMillis();
+        long[] actions = {
+                UXActionRing.pack(UXAction.SEARCH_STARTED_ENTER_KEY, now),
+                UXActionRing.pack(UXAction.DOWNLOAD_FULL_TORRENT_FILE, now + 1500),
+                UXActionRing.pack(UXAction.CONFIGURATION_WIZARD_FIRST_TIME, now - 200) // clock went back
+        };
+        byte[] data = UXStatsSpool.encode(actions, actions.length);
+        // a few bytes per action after the first one
+        assertTrue(data.length < 20);
+        assertArrayEquals(actions, UXStatsSpool.decode(data));
+
+        File f = new File(dir, "uxstats.spool");
+        FileUtils.writeByteArrayToFile(f, new byte[]{1, 5, (byte) 0x80});
+        assertEquals(0, new UXStatsSpool(f).read().length);
+    }
+
+    @Test
+    public void testLimitsAndRestart() {
+        File f = new File(dir, "uxstats.spool");
+
+        UXStats stats = new UXStats();
+        stats.setSpoolFile(f);
+        stats.setContext(conf(3600, 1000, 50));
+        for (int i = 0; i < 80; i++) {
+            stats.log(UXAction.SEARCH_STARTED_ENTER_KEY);
+        }
+        stats.process(false);
+        assertEquals(50, stats.batchSize());
+        assertTrue(f.exists());
+
+        // a new session starts with the saved actions
+        stats = new UXStats();
+        stats.setSpoolFile(f);
+        stats.setContext(conf(3600, 1000, 50));
+        assertEquals(50, stats.batchSize());
+
+        // sending fails, nothing is lost
+        stats.process(true);
+        assertEquals(50, stats.batchSize());
+
+        // disabled, nothing is kept once the flusher runs
+        stats.setContext(null);
+        stats.log(UXAction.SEARCH_STARTED_ENTER_KEY);
+        stats.process(false);
+        assertEquals(0, stats.batchSize());
+        assertFalse(f.exists());
+    }
+
+    /**
+     * The server never answers, disabling the stats must not wait for the send.
+     */
+    @Test
+    public void testDisableWhileSending() throws Exception {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+        try {
+            final UXStats stats = new UXStats();
+            stats.setContext(new UXStatsConf("http://127.0.0.1:" + server.getLocalPort() + "/dux",
+                    "test", "1.0", "1", 3600, 1000, 50));
+            for (int i = 0; i < 10; i++) {
+                stats.log(UXAction.SEARCH_STARTED_ENTER_KEY);
+            }
+
+            Thread sender = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    stats.process(true);
+                }
+            });
+            sender.start();
+            Socket s = server.accept();
+            try {
+                long t = System.nanoTime();
+                stats.setContext(null);
+                assertTrue(System.nanoTime() - t < TimeUnit.SECONDS.toNanos(1));
+
+                // the send times out, the batch is not given back
+                sender.join();
+                assertEquals(0, stats.batchSize());
+            } finally {
+                s.close();
+            }
+        } finally {
+            server.close();
+        }
+    }
+
+    /**
+     * Eight threads logging while the batch is drained, logging must not allocate.
+     */
+    @Test
+    public void testLogDoesNotAllocate() throws Exception {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        final com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mx.isThreadAllocatedMemorySupported());
+        mx.setThreadAllocatedMemoryEnabled(true);
+
+        final UXStats stats = new UXStats();
+        stats.setContext(conf(3600, Integer.MAX_VALUE, 10000));
+
+        final int threads = 8;
+        final int calls = 1000000;
+        final AtomicLong allocated = new AtomicLong();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // warm up
+                        for (int j = 0; j < calls / 10; j++) {
+                            stats.log(UXAction.SEARCH_RESULT_CLICKED);
+                        }
+                        start.await();
+                        long id = Thread.currentThread().getId();
+                        long before = mx.getThreadAllocatedBytes(id);
+                        for (int j = 0; j < calls; j++) {
+                            stats.log(UXAction.SEARCH_RESULT_CLICKED);
+                        }
+                        allocated.addAndGet(mx.getThreadAllocatedBytes(id) - before);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        long t = System.nanoTime();
+        start.countDown();
+        while (done.getCount() > 0) {
+            stats.process(false);
+            Thread.sleep(1);
+        }
+        long ms = (System.nanoTime() - t) / 1000000;
+        stats.process(false);
+
+        System.out.println("UXStats.log: " + threads + " threads x " + calls + " calls in " + ms + "ms, " +
+                "allocated " + allocated.get() + " bytes, dropped " + stats.dropped() + ", batch " + stats.batchSize());
+        // only the measuring itself could allocate something, never per call
+        assertTrue("allocated " + allocated.get(), allocated.get() < threads * 1024);
+        assertEquals(10000, stats.batchSize());
+    }
+
+    private static UXStatsConf conf(int period, int minEntries, int maxEntries) {
+        return new UXStatsConf(URL, "test", "1.0", "1", period, minEntries, maxEntries);
+    }
+}
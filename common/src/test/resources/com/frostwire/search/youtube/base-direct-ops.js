@@ -0,0 +1,6 @@
+var _yt_player={};(function(g){var window=this;
+var Hn={Vk:function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c},
+Xq:function(a){a.reverse()}};
+function Jn(a){a=a.split("");a.reverse();a.splice(0,2);Hn.Vk(a,30);Hn.Xq(a);a.splice(0,1);Hn.Vk(a,9);return a.join("")}
+g.Kn=function(a,b){a.set("signature",Jn(b))};
+})(_yt_player);
@@ -0,0 +1,8 @@
+var _yt_player={};(function(g){var window=this;var aa=function(a){var b=0;return function(){return b<a.length?{done:!1,value:a[b++]}:{done:!0}}};
+var Qs={YV:function(a,b){a.splice(0,b)},
+dO:function(a){a.reverse()},
+oE:function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c}};
+Rs=function(a){a=a.split("");Qs.oE(a,12);Qs.YV(a,3);Qs.dO(a,34);Qs.oE(a,60);Qs.YV(a,2);Qs.oE(a,27);return a.join("")};
+g.Ss=function(a,b){var c=a.split("?");return c[0]+"?"+b};
+var Tu=function(a,b,c){if(b.sig||b.s){var d=b.sig||Rs(b.s);a.set("signature",Rs(d))}};
+})(_yt_player);
@@ -0,0 +1,8 @@
+var _yt_player={};(function(g){var window=this;
+var pD=function(a){return a.replace(/\+/g," ")};
+var oE={"do":function(a,b){a.splice(0,b)},
+Xa:function(a){a.reverse()},
+"new":function(a,b){var c=a[0];a[0]=a[b%a.length];a[b%a.length]=c}};
+var pE=function(a){a=a.split("");oE["do"](a,3);oE.Xa(a,41);oE["new"](a,67);oE.Xa(a,5);oE["new"](a,2);oE["do"](a,1);return a.join("")};
+g.qE=function(a,b){b.s&&a.set("signature", pE(b.s))};
+})(_yt_player);
@@ -0,0 +1,5 @@
+var _yt_player={};(function(g){var window=this;
+var Zq=function(a,b){var c=a[0];a[0]=a[b%a.length];a[b]=c;return a};
+var Yq=function(a){a=a.split("");a=Zq(a,5);a.reverse();a=Zq(a,17);return a.join("")};
+g.Wq=function(a,b){a.set("signature",Yq(b))};
+})(_yt_player);
@@ -22,9 +22,11 @@ import com.frostwire.alexandria.db.LibraryDatabaseEntity;
 import com.frostwire.alexandria.db.PlaylistDB;
 import com.frostwire.alexandria.db.PlaylistItemDB;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 
 /**
  * 
@@ -34,11 +36,16 @@ import java.util.List;
  */
 public class Playlist extends LibraryDatabaseEntity {
 
+    // below this space between the keys given by an insert the playlist is
+    // renumbered in the background, before there is no room left
+    static final int MIN_SORT_KEY_STEP = 16;
+
     private int _id;
     private String _name;
     private String _description;
 
     private boolean deleted;
+    private volatile boolean crowdedSortKeys;
 
     private List<PlaylistItem> _items;
 
@@ -107,6 +114,111 @@ public class Playlist extends LibraryDatabaseEntity {
         }
     }
 
+    /**
+     * Saves the given items of this playlist using batched statements.
+     *
+     * @param updateStarred if true, the starred items mark as starred the
+     *                      other entries of the same file.
+     */
+    public void saveItems(List<PlaylistItem> items, boolean updateStarred) {
+        if (db != null) {
+            PlaylistItemDB.saveAll(db, items, updateStarred);
+        }
+    }
+
+    /**
+     * Persists only the sort keys of the given items, in one batch.
+     */
+    public void saveSortKeys(List<PlaylistItem> items) {
+        if (db != null) {
+            PlaylistItemDB.updateSortKeys(db, items);
+        }
+    }
+
+    /**
+     * Gives sort keys to the {@code count} items starting at {@code index} in the
+     * list, spread in the space between the keys of their neighbours. Only when
+     * there is no room left the whole playlist is numbered again, with
+     * {@link PlaylistItem#SORT_KEY_GAP} between items.
+     *
+     * @return the items whose key changed and need to be saved
+     */
+    public List<PlaylistItem> assignSortKeys(int index, int count) {
+        synchronized (_items) {
+            int size = _items.size();
+            if (count <= 0 || index < 0 || index + count > size) {
+                return Collections.emptyList();
+            }
+
+            long lo = index > 0 ? _items.get(index - 1).getSortKey() : 0;
+            long hi = index + count < size ? _items.get(index + count).getSortKey() : Integer.MAX_VALUE;
+            long step = index + count < size ? (hi - lo) / (count + 1) : PlaylistItem.SORT_KEY_GAP;
+
+            if (step < 1 || lo + step * count > hi) {
+                return renumberSortKeys();
+            }
+
+            if (step < MIN_SORT_KEY_STEP) {
+                crowdedSortKeys = true;
+            }
+
+            List<PlaylistItem> changed = new ArrayList<>(count);
+            ListIterator<PlaylistItem> it = _items.listIterator(index);
+            for (int i = 1; i <= count; i++) {
+                PlaylistItem item = it.next();
+                item.setSortKey((int) (lo + step * i));
+                changed.add(item);
+            }
+            return changed;
+        }
+    }
+
+    /**
+     * Updates the in-memory (displayed) sort index of every item after the list
+     * was modified, does not touch the database.
+     */
+    public void refreshSortIndexes() {
+        synchronized (_items) {
+            int i = 1;
+            for (PlaylistItem item : _items) {
+                item.setSortIndexByTrackNumber(i++);
+            }
+        }
+    }
+
+    /**
+     * @return true if the inserts left the sort keys so close together that
+     * the playlist should be renumbered, see {@link #spreadSortKeys()}
+     */
+    public boolean hasCrowdedSortKeys() {
+        return crowdedSortKeys;
+    }
+
+    /**
+     * Numbers the whole playlist again, with {@link PlaylistItem#SORT_KEY_GAP}
+     * between items, if the sort keys are crowded. Meant to run in the
+     * background, so the next inserts don't have to do it.
+     *
+     * @return the items whose key changed and need to be saved
+     */
+    public List<PlaylistItem> spreadSortKeys() {
+        synchronized (_items) {
+            return crowdedSortKeys ? renumberSortKeys() : Collections.<PlaylistItem>emptyList();
+        }
+    }
+
+    private List<PlaylistItem> renumberSortKeys() {
+        crowdedSortKeys = false;
+        List<PlaylistItem> changed = new ArrayList<>(_items.size());
+        int key = 0;
+        for (PlaylistItem item : _items) {
+            key += PlaylistItem.SORT_KEY_GAP;
+            item.setSortKey(key);
+            changed.add(item);
+        }
+        return changed;
+    }
+
     public synchronized void refresh() {
         if (db != null) {
             _items.clear();
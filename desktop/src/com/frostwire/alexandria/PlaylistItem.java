@@ -26,6 +26,13 @@ import static com.frostwire.util.StringUtils.isNullOrEmpty;
 
 public class PlaylistItem extends LibraryDatabaseEntity {
 
+    /**
+     * Distance between the sort keys of consecutive items when a playlist
+     * is numbered from scratch, leaves room to insert items in between
+     * without touching their neighbours.
+     */
+    public static final int SORT_KEY_GAP = 1024;
+
     private Playlist playlist;
     private int id;
     private String filePath;
@@ -44,6 +51,7 @@ public class PlaylistItem extends LibraryDatabaseEntity {
     private String trackYear;
     private boolean starred;
     private int sortIndex;
+    private int sortKey;
 
     public PlaylistItem(Playlist playlist) {
         super(playlist != null ? playlist.getLibraryDatabase() : null);
@@ -250,6 +258,19 @@ public class PlaylistItem extends LibraryDatabaseEntity {
         this.sortIndex = sortIndex;
     }
 
+    /**
+     * The persisted position of this item in the playlist, items are loaded in
+     * ascending order of this key. Unlike {@link #getSortIndex()} the keys are
+     * sparse, see {@link Playlist#assignSortKeys(int, int)}.
+     */
+    public int getSortKey() {
+        return sortKey;
+    }
+
+    public void setSortKey(int sortKey) {
+        this.sortKey = sortKey;
+    }
+
     /**
      * Attempts to look for the track number to set this number as the sorting index.
      * In case it cannot find a track number it will use the fallback value.
@@ -24,24 +24,50 @@ import com.frostwire.alexandria.PlaylistItem;
 import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class LibraryDatabase {
 
     public static final int OBJECT_NOT_SAVED_ID = -1;
     public static final int OBJECT_INVALID_ID = -2;
     public static final int STARRED_PLAYLIST_ID = -3;
-    private static final int LIBRARY_DATABASE_VERSION = 4;
+    private static final int LIBRARY_DATABASE_VERSION = 6;
 
     public static final String STARRED_TABLE_NAME_DO_NOT_TRANSLATE_THIS = "starred";
-    
+
+    private static final int MAX_CACHED_STATEMENTS = 64;
+    private static final int MAX_READ_CONNECTIONS = 2;
+
+    private static final RowMapper<List<Object>> OBJECT_ROW_MAPPER = new RowMapper<List<Object>>() {
+        @Override
+        public List<Object> map(ResultSet rs) throws SQLException {
+            int numColumns = rs.getMetaData().getColumnCount();
+            List<Object> row = new ArrayList<>(numColumns);
+            for (int i = 1; i <= numColumns; i++) {
+                row.add(rs.getObject(i));
+            }
+            return row;
+        }
+    };
+
     private final File _databaseFile;
     private final String _name;
     
     private Connection _connection;
+    private StatementCache _statements;
+
+    // idle read only connections, only used if the database is MVCC, they
+    // only run query() and are marked with Connection.setReadOnly
+    private final Queue<StatementCache> _readers;
+    private int _numReaders;
+    private boolean _concurrentReads;
 
-    private boolean _closed;
+    private volatile boolean _closed;
 
     static {
         try {
@@ -52,6 +78,8 @@ public class LibraryDatabase {
     }
 
     public LibraryDatabase(File databaseFile) {
+        _readers = new ConcurrentLinkedQueue<>();
+
         if (databaseFile != null && !databaseFile.isDirectory() && !databaseFile.exists()) {
             databaseFile.mkdirs();
         }
@@ -60,6 +88,8 @@ public class LibraryDatabase {
             _databaseFile = databaseFile;
             _name = databaseFile.getName();
             _connection = openOrCreateDatabase(databaseFile, _name);
+            _statements = _connection != null ? new StatementCache(_connection) : null;
+            _concurrentReads = _connection != null && isMvcc(_connection);
         } else {
             if (databaseFile != null) {
                 throw new IllegalArgumentException("Invalid library database file parameter received: " + databaseFile.getAbsolutePath());
@@ -77,32 +107,51 @@ public class LibraryDatabase {
         return _closed;
     }
 
-    public synchronized List<List<Object>> query(String statementSql, Object... arguments) {
+    public List<List<Object>> query(String statementSql, Object... arguments) {
+        return query(OBJECT_ROW_MAPPER, statementSql, arguments);
+    }
+
+    /**
+     * Runs the query mapping every row as it is read. If the database supports it,
+     * the query runs on one of a few read only connections, not blocking (or being
+     * blocked by) the writes.
+     */
+    public <T> List<T> query(RowMapper<T> mapper, String statementSql, Object... arguments) {
         if (isClosed()) {
             return new ArrayList<>();
         }
 
-        return query(_connection, statementSql, arguments);
+        StatementCache reader = acquireReader();
+        if (reader == null) {
+            synchronized (this) {
+                if (isClosed() || _statements == null) {
+                    return new ArrayList<>();
+                }
+                return query(_statements, mapper, statementSql, arguments);
+            }
+        }
+
+        try {
+            return query(reader, mapper, statementSql, arguments);
+        } finally {
+            releaseReader(reader);
+        }
     }
 
-    /**
-     * This method is synchronized due to possible concurrent issues, specially
-     * during recently generated id retrieval.
-     */
     public synchronized int update(String statementSql, Object... arguments) {
-        if (isClosed()) {
+        if (isClosed() || _statements == null) {
             return -1;
         }
 
-        return update(_connection, statementSql, arguments);
+        return update(_statements, statementSql, arguments);
     }
 
     /**
-     * This method is synchronized due to possible concurrent issues, specially
-     * during recently generated id retrieval.
+     * The id is read from the generated keys of the same statement, this method
+     * is synchronized only because the connection is shared by all the writers.
      */
     public synchronized int insert(String statementSql, Object... arguments) {
-        if (isClosed()) {
+        if (isClosed() || _statements == null) {
             return OBJECT_INVALID_ID;
         }
 
@@ -110,13 +159,77 @@ public class LibraryDatabase {
             return OBJECT_INVALID_ID;
         }
 
-        if (update(statementSql, arguments) != -1) {
-            return getIdentity();
+        ResultSet keys = null;
+
+        try {
+            PreparedStatement statement = _statements.prepare(statementSql, true);
+            bind(statement, arguments);
+            statement.executeUpdate();
+
+            keys = statement.getGeneratedKeys();
+            if (keys.next()) {
+                return keys.getInt(1);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            _statements.evict(statementSql, true);
+        } finally {
+            closeQuietly(keys);
         }
 
         return OBJECT_INVALID_ID;
     }
 
+    /**
+     * Executes the insert once for every row of arguments, reusing the same
+     * statement in a single transaction.
+     *
+     * @return the generated ids, in the order of the rows, all of them
+     * OBJECT_INVALID_ID if the batch failed
+     */
+    public synchronized int[] insertBatch(String statementSql, List<Object[]> rows) {
+        int[] ids = new int[rows.size()];
+        Arrays.fill(ids, OBJECT_INVALID_ID);
+
+        if (isClosed() || rows.isEmpty()) {
+            return ids;
+        }
+
+        if (!statementSql.toUpperCase().startsWith("INSERT")) {
+            return ids;
+        }
+
+        if (_statements == null || !batch(_connection, _statements, statementSql, rows, ids)) {
+            Arrays.fill(ids, OBJECT_INVALID_ID);
+        }
+
+        return ids;
+    }
+
+    /**
+     * Executes the statement once for every row of arguments, reusing the same
+     * statement in a single transaction.
+     */
+    public synchronized boolean updateBatch(String statementSql, List<Object[]> rows) {
+        if (isClosed()) {
+            return false;
+        }
+
+        return rows.isEmpty() || (_statements != null && batch(_connection, _statements, statementSql, rows, null));
+    }
+
+    /**
+     * Starts a bulk update of the full text index, its changes are committed
+     * once, in the matching {@link #endBulk()}. Calls can be nested.
+     */
+    public synchronized void beginBulk() {
+        update("CALL FTL_BEGIN_BULK()");
+    }
+
+    public synchronized void endBulk() {
+        update("CALL FTL_END_BULK()");
+    }
+
     public synchronized void close() {
         if (isClosed()) {
             return;
@@ -124,7 +237,17 @@ public class LibraryDatabase {
 
         _closed = true;
 
+        synchronized (_readers) {
+            StatementCache reader;
+            while ((reader = _readers.poll()) != null) {
+                reader.close(true);
+            }
+        }
+
         try {
+            if (_statements != null) {
+                _statements.close(false);
+            }
             Statement statement = _connection.createStatement();
             statement.execute("SHUTDOWN");
             _connection.close();
@@ -154,10 +277,18 @@ public class LibraryDatabase {
             setupLuceneIndex(connection);
         }
         
-        if (oldVersion == 3 && newVersion == 4) {
+        if (oldVersion == 3 && newVersion >= 4) {
             setupPlaylistIndexes(connection);
         }
 
+        if (oldVersion < 5 && newVersion >= 5) {
+            migrateLuceneIndex(connection);
+        }
+
+        if (oldVersion >= 4 && oldVersion < 6 && newVersion >= 6) {
+            spreadPlaylistSortKeys(connection);
+        }
+
         update(connection, "UPDATE Library SET version = ?", LIBRARY_DATABASE_VERSION);
     }
 
@@ -225,49 +356,115 @@ public class LibraryDatabase {
     }
 
     private List<List<Object>> convertResultSetToList(ResultSet resultSet) throws SQLException {
-        ResultSetMetaData meta = resultSet.getMetaData();
-        int numColumns = meta.getColumnCount();
-        int i;
-
-        List<List<Object>> result = new LinkedList<>();
+        List<List<Object>> result = new ArrayList<>();
 
         while (resultSet.next()) {
-            List<Object> row = new ArrayList<>(numColumns);
-            for (i = 1; i <= numColumns; i++) {
-                row.add(resultSet.getObject(i));
-            }
-            result.add(row);
+            result.add(OBJECT_ROW_MAPPER.map(resultSet));
         }
         return result;
     }
 
-    private int getIdentity() {
-        if (isClosed()) {
-            return OBJECT_INVALID_ID;
+    private boolean isMvcc(Connection connection) {
+        List<List<Object>> result = query(connection, "SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'MVCC'");
+        return result.size() > 0 && "TRUE".equalsIgnoreCase(String.valueOf(result.get(0).get(0)));
+    }
+
+    private StatementCache acquireReader() {
+        if (!_concurrentReads) {
+            return null;
         }
 
-        Statement statement = null;
-        ResultSet resultSet;
+        StatementCache reader = _readers.poll();
+        if (reader != null) {
+            return reader;
+        }
 
-        try {
-            statement = _connection.createStatement();
-            resultSet = statement.executeQuery("CALL IDENTITY()");
+        synchronized (_readers) {
+            if (isClosed() || _numReaders >= MAX_READ_CONNECTIONS) {
+                // all busy, use the shared connection
+                return null;
+            }
+            Connection connection = openConnection(_databaseFile, _name, false);
+            if (connection == null) {
+                _concurrentReads = false;
+                return null;
+            }
+            try {
+                connection.setReadOnly(true);
+            } catch (SQLException e) {
+                _concurrentReads = false;
+                try {
+                    connection.close();
+                } catch (SQLException ignored) {
+                }
+                return null;
+            }
+            _numReaders++;
+            return new StatementCache(connection);
+        }
+    }
 
-            resultSet.next();
+    private void releaseReader(StatementCache reader) {
+        synchronized (_readers) {
+            if (isClosed()) {
+                reader.close(true);
+            } else {
+                _readers.offer(reader);
+            }
+        }
+    }
 
-            return resultSet.getInt(1);
+    private static void bind(PreparedStatement statement, Object[] arguments) throws SQLException {
+        if (arguments != null) {
+            for (int i = 0; i < arguments.length; i++) {
+                statement.setObject(i + 1, arguments[i]);
+            }
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private static <T> List<T> query(StatementCache statements, RowMapper<T> mapper, String statementSql, Object... arguments) {
+        ResultSet resultSet = null;
+
+        try {
+            PreparedStatement statement = statements.prepare(statementSql, false);
+            bind(statement, arguments);
+            resultSet = statement.executeQuery();
+
+            List<T> result = new ArrayList<>();
+            while (resultSet.next()) {
+                result.add(mapper.map(resultSet));
+            }
+            return result;
         } catch (Exception e) {
             e.printStackTrace();
+            statements.evict(statementSql, false);
         } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException ignored) {
-                }
-            }
+            closeQuietly(resultSet);
         }
 
-        return OBJECT_INVALID_ID;
+        return new ArrayList<>();
+    }
+
+    private static int update(StatementCache statements, String statementSql, Object... arguments) {
+        try {
+            PreparedStatement statement = statements.prepare(statementSql, false);
+            bind(statement, arguments);
+            return statement.executeUpdate();
+        } catch (Exception e) {
+            e.printStackTrace();
+            statements.evict(statementSql, false);
+        }
+
+        return -1;
     }
 
     private List<List<Object>> query(Connection connection, String statementSql, Object... arguments) {
@@ -328,17 +525,78 @@ public class LibraryDatabase {
         return -1;
     }
 
+    private static boolean batch(Connection connection, StatementCache statements, String statementSql, List<Object[]> rows, int[] ids) {
+        boolean autoCommit = true;
+        ResultSet keys = null;
+
+        try {
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+
+            PreparedStatement statement = statements.prepare(statementSql, ids != null);
+            statement.clearBatch();
+
+            for (Object[] arguments : rows) {
+                bind(statement, arguments);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+
+            if (ids != null) {
+                keys = statement.getGeneratedKeys();
+                for (int i = 0; i < ids.length && keys.next(); i++) {
+                    ids[i] = keys.getInt(1);
+                }
+            }
+
+            connection.commit();
+
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            statements.evict(statementSql, ids != null);
+            try {
+                connection.rollback();
+            } catch (SQLException ignored) {
+            }
+        } finally {
+            closeQuietly(keys);
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException ignored) {
+            }
+        }
+
+        return false;
+    }
+
     private int getDatabaseVersion(Connection connection) {
         List<List<Object>> query = query(connection, "SELECT version FROM Library");
         return query.size() > 0 ? (Integer) query.get(0).get(0) : -1;
     }
 
     private void setupLuceneIndex(final Connection connection) {
-        update(connection, "CREATE ALIAS IF NOT EXISTS FTL_INIT FOR \"org.h2.fulltext.FullTextLucene.init\"");
+        update(connection, "CREATE ALIAS IF NOT EXISTS FTL_INIT FOR \"org.h2.fulltext.FullTextLucene2.init\"");
         update(connection, "CALL FTL_INIT()");
         update(connection, "CALL FTL_CREATE_INDEX('PUBLIC', 'PLAYLISTITEMS', 'FILEPATH, TRACKTITLE, TRACKARTIST, TRACKALBUM, TRACKGENRE, TRACKYEAR')");
     }
 
+    /**
+     * Moves the full text index from the H2 stock implementation, which commits
+     * the index on every row change, to FullTextLucene2. Both use the same index
+     * layout, but the aliases and the trigger need to point to the new classes
+     * and the stock implementation only releases its index writer in FTL_DROP_ALL.
+     */
+    private void migrateLuceneIndex(final Connection connection) {
+        // drops the old index and trigger, also releasing the index writer
+        update(connection, "CALL FTL_DROP_ALL()");
+        for (String alias : new String[]{"FTL_INIT", "FTL_CREATE_INDEX", "FTL_SEARCH", "FTL_SEARCH_DATA", "FTL_REINDEX", "FTL_DROP_ALL"}) {
+            update(connection, "DROP ALIAS IF EXISTS " + alias);
+        }
+        setupLuceneIndex(connection);
+    }
+
     private void setupPlaylistIndexes(final Connection connection) {
         
         // add new column
@@ -353,7 +611,72 @@ public class LibraryDatabase {
             for(int i=0; i < items.size(); i++) {
                 PlaylistItem item = items.get(i);
                 item.setSortIndexByTrackNumber(i+1); // set initial sort index (1-based)
-                item.save();
+                item.setSortKey(item.getSortIndex() * PlaylistItem.SORT_KEY_GAP);
+            }
+            playlist.saveSortKeys(items);
+        }
+    }
+
+    /**
+     * Sort keys used to be consecutive, spread them so that items can be
+     * inserted and moved without renumbering the rest of the playlist.
+     */
+    private void spreadPlaylistSortKeys(final Connection connection) {
+        update(connection, "UPDATE PlaylistItems SET sortIndex = sortIndex * ? WHERE sortIndex IS NOT NULL", PlaylistItem.SORT_KEY_GAP);
+    }
+
+    /**
+     * Prepared statements of one connection, by SQL, closing the least recently
+     * used ones when there are too many. Not thread safe, the owner of the
+     * connection is responsible for that.
+     */
+    private static final class StatementCache {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+
+        StatementCache(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() > MAX_CACHED_STATEMENTS) {
+                        closeQuietly(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        PreparedStatement prepare(String sql, boolean generatedKeys) throws SQLException {
+            String key = generatedKeys ? "+" + sql : sql;
+            PreparedStatement statement = statements.get(key);
+            if (statement == null) {
+                statement = generatedKeys ?
+                        connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS) :
+                        connection.prepareStatement(sql);
+                statements.put(key, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        /**
+         * Discards the statement after an error, it will be prepared again.
+         */
+        void evict(String sql, boolean generatedKeys) {
+            closeQuietly(statements.remove(generatedKeys ? "+" + sql : sql));
+        }
+
+        void close(boolean closeConnection) {
+            for (PreparedStatement statement : statements.values()) {
+                closeQuietly(statement);
+            }
+            statements.clear();
+            if (closeConnection) {
+                closeQuietly(connection);
             }
         }
     }
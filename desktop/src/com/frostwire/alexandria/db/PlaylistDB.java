@@ -49,8 +49,9 @@ public class PlaylistDB {
 
         for (PlaylistItem item : items) {
             item.setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
-            item.save();
         }
+
+        PlaylistItemDB.saveAll(db, items, false);
     }
 
     public static void delete(LibraryDatabase db, Playlist obj) {
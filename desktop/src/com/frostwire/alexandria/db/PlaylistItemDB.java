@@ -21,21 +21,59 @@ package com.frostwire.alexandria.db;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PlaylistItemDB {
 
-    private PlaylistItemDB() {}
+    private static final String COLUMNS = "playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex ";
 
-    public static void fill(LibraryDatabase db, PlaylistItem obj) {
-        List<List<Object>> result = db
-                .query("SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred "
-                        + "FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
-        if (result.size() > 0) {
-            List<Object> row = result.get(0);
-            fill(row, obj);
+    private static final RowMapper<String> STRING_MAPPER = new RowMapper<String>() {
+        @Override
+        public String map(ResultSet rs) throws SQLException {
+            return rs.getString(1);
         }
+    };
+
+    private PlaylistItemDB() {}
+
+    public static void fill(LibraryDatabase db, final PlaylistItem obj) {
+        db.query(new RowMapper<PlaylistItem>() {
+            @Override
+            public PlaylistItem map(ResultSet rs) throws SQLException {
+                fill(rs, obj);
+                return obj;
+            }
+        }, "SELECT " + COLUMNS + "FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
+    }
+
+    /**
+     * Reads the current row, with the columns in the order of {@link #COLUMNS}.
+     */
+    private static void fill(ResultSet rs, PlaylistItem obj) throws SQLException {
+        obj.setId(rs.getInt(1));
+        obj.setFilePath(rs.getString(2));
+        obj.setFileName(rs.getString(3));
+        obj.setFileSize(rs.getLong(4));
+        obj.setFileExtension(rs.getString(5));
+        obj.setTrackTitle(rs.getString(6));
+        obj.setTrackDurationInSecs(rs.getFloat(7));
+        obj.setTrackArtist(rs.getString(8));
+        obj.setTrackAlbum(rs.getString(9));
+        obj.setCoverArtPath(rs.getString(10));
+        obj.setTrackBitrate(rs.getString(11));
+        obj.setTrackComment(rs.getString(12));
+        obj.setTrackGenre(rs.getString(13));
+        obj.setTrackNumber(rs.getString(14));
+        obj.setTrackYear(rs.getString(15));
+        obj.setStarred(rs.getBoolean(16));
+        obj.setSortKey(rs.getInt(17));
+        // approximate position, exact when the whole playlist is loaded
+        obj.setSortIndexByTrackNumber(obj.getSortKey() / PlaylistItem.SORT_KEY_GAP);
     }
 
     public static void fill(List<Object> row, PlaylistItem obj) {
@@ -56,7 +94,7 @@ public class PlaylistItemDB {
         String trackYear = (String) row.get(14);
         boolean starred = (Boolean) row.get(15);
         
-        int sortIndex = row.size() < 17 || row.get(16) == null ? 0 : (Integer) row.get(16);
+        int sortKey = row.size() < 17 || row.get(16) == null ? 0 : (Integer) row.get(16);
 
         obj.setId(id);
         obj.setFilePath(filePath);
@@ -74,7 +112,9 @@ public class PlaylistItemDB {
         obj.setTrackNumber(trackNumber);
         obj.setTrackYear(trackYear);
         obj.setStarred(starred);
-        obj.setSortIndexByTrackNumber(sortIndex);
+        obj.setSortKey(sortKey);
+        // approximate position, exact when the whole playlist is loaded
+        obj.setSortIndexByTrackNumber(sortKey / PlaylistItem.SORT_KEY_GAP);
     }
 
     public static void save(LibraryDatabase db, PlaylistItem obj, boolean updateStarred) {
@@ -100,22 +140,100 @@ public class PlaylistItemDB {
         }
     }
 
+    /**
+     * Same as calling {@link #save(LibraryDatabase, PlaylistItem, boolean)} for every
+     * item, but with batched statements, inserts and updates are done in one
+     * transaction each.
+     *
+     * @param updateStarred if true, the starred items mark as starred the other
+     *                      entries of the same file.
+     */
+    public static void saveAll(LibraryDatabase db, List<PlaylistItem> items, boolean updateStarred) {
+        List<PlaylistItem> inserts = new ArrayList<>();
+        List<Object[]> insertValues = new ArrayList<>();
+        List<Object[]> updateValues = new ArrayList<>();
+        List<Object[]> starredValues = new ArrayList<>();
+        String insertSql = null;
+        String updateSql = null;
+        String starredSql = null;
+        Set<String> starredPaths = null;
+
+        for (PlaylistItem obj : items) {
+            if (obj.getId() == LibraryDatabase.OBJECT_INVALID_ID || obj.getPlaylist() == null) {
+                continue;
+            }
+            Object[] sqlAndValues;
+            if (obj.getId() == LibraryDatabase.OBJECT_NOT_SAVED_ID) {
+                if (!obj.isStarred()) {
+                    if (starredPaths == null) {
+                        starredPaths = getStarredPaths(db);
+                    }
+                    obj.setStarred(starredPaths.contains(obj.getFilePath()));
+                }
+                sqlAndValues = createPlaylistItemInsert(obj);
+                insertSql = (String) sqlAndValues[0];
+                insertValues.add((Object[]) sqlAndValues[1]);
+                inserts.add(obj);
+            } else {
+                sqlAndValues = createPlaylistItemUpdate(obj);
+                updateSql = (String) sqlAndValues[0];
+                updateValues.add((Object[]) sqlAndValues[1]);
+            }
+            if (updateStarred && obj.isStarred()) {
+                sqlAndValues = updateStarred(obj);
+                starredSql = (String) sqlAndValues[0];
+                starredValues.add((Object[]) sqlAndValues[1]);
+            }
+        }
+
+        if (insertSql != null) {
+            int[] ids = db.insertBatch(insertSql, insertValues);
+            for (int i = 0; i < ids.length; i++) {
+                inserts.get(i).setId(ids[i]);
+            }
+        }
+        if (updateSql != null) {
+            db.updateBatch(updateSql, updateValues);
+        }
+        if (starredSql != null) {
+            db.updateBatch(starredSql, starredValues);
+        }
+    }
+
+    /**
+     * Writes only the sort key of the given items, in one batch. Items not
+     * saved yet are skipped.
+     */
+    public static void updateSortKeys(LibraryDatabase db, List<PlaylistItem> items) {
+        List<Object[]> values = new ArrayList<>(items.size());
+        for (PlaylistItem item : items) {
+            if (item.getId() >= 0) {
+                values.add(new Object[] { item.getSortKey(), item.getId() });
+            }
+        }
+        if (!values.isEmpty()) {
+            db.updateBatch("UPDATE PlaylistItems SET sortIndex = ? WHERE playlistItemId = ?", values);
+        }
+    }
+
     public static void delete(LibraryDatabase db, PlaylistItem obj) {
         db.update("DELETE FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
     }
     
-    public static List<PlaylistItem> getPlaylistItems(LibraryDatabase db, Playlist playlist) {
-        String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex "
-                + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
-
-        List<List<Object>> result = db.query(query, playlist.getId());
+    public static List<PlaylistItem> getPlaylistItems(LibraryDatabase db, final Playlist playlist) {
+        String query = "SELECT " + COLUMNS + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
 
-        List<PlaylistItem> items = new ArrayList<>(result.size());
+        List<PlaylistItem> items = db.query(new RowMapper<PlaylistItem>() {
+            @Override
+            public PlaylistItem map(ResultSet rs) throws SQLException {
+                PlaylistItem item = new PlaylistItem(playlist);
+                fill(rs, item);
+                return item;
+            }
+        }, query, playlist.getId());
 
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
-            items.add(item);
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).setSortIndexByTrackNumber(i + 1);
         }
 
         return items;
@@ -127,7 +245,7 @@ public class PlaylistItemDB {
 
         Object[] values = new Object[] { item.getPlaylist().getId(), item.getFilePath(), item.getFileName(), item.getFileSize(), item.getFileExtension(), item.getTrackTitle(),
                 item.getTrackDurationInSecs(), item.getTrackArtist(), item.getTrackAlbum(), item.getCoverArtPath(), item.getTrackBitrate(), item.getTrackComment(),
-                item.getTrackGenre(), item.getTrackNumber(), item.getTrackYear(), item.isStarred(), item.getSortIndex() };
+                item.getTrackGenre(), item.getTrackNumber(), item.getTrackYear(), item.isStarred(), item.getSortKey() };
 
         return new Object[] { sql, values };
     }
@@ -137,7 +255,7 @@ public class PlaylistItemDB {
 
         Object[] values = new Object[] { item.getFilePath(), item.getFileName(), item.getFileSize(), item.getFileExtension(), item.getTrackTitle(),
                 item.getTrackDurationInSecs(), item.getTrackArtist(), item.getTrackAlbum(), item.getCoverArtPath(), item.getTrackBitrate(), item.getTrackComment(),
-                item.getTrackGenre(), item.getTrackNumber(), item.getTrackYear(), item.isStarred(), item.getSortIndex(), item.getId() };
+                item.getTrackGenre(), item.getTrackNumber(), item.getTrackYear(), item.isStarred(), item.getSortKey(), item.getId() };
 
         return new Object[] { sql, values };
     }
@@ -157,4 +275,8 @@ public class PlaylistItemDB {
         
         return false;
     }
+
+    private static Set<String> getStarredPaths(LibraryDatabase db) {
+        return new HashSet<>(db.query(STRING_MAPPER, "SELECT DISTINCT filePath FROM PlaylistItems WHERE starred = ?", true));
+    }
 }
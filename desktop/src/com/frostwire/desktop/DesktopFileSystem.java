@@ -0,0 +1,96 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.frostwire.desktop;
+
+import com.frostwire.platform.DefaultFileSystem;
+import com.frostwire.platform.FileWalker;
+import com.frostwire.util.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public final class DesktopFileSystem extends DefaultFileSystem implements FileWalker.Lister {
+
+    private static final Logger LOG = Logger.getLogger(DesktopFileSystem.class);
+
+    /**
+     * An atomic rename that replaces the destination, even on Windows,
+     * where {@link File#renameTo(File)} fails if it exists.
+     */
+    @Override
+    protected boolean rename(File src, File dest) {
+        try {
+            Files.move(src.toPath(), dest.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            // different volumes
+            return false;
+        } catch (IOException e) {
+            // file in use, permissions, etc, let the copy decide
+            LOG.warn("Unable to rename file: " + src + " -> " + dest + " (" + e.getMessage() + ")");
+            return false;
+        }
+    }
+
+    /**
+     * Lists with a directory stream, on Windows the entries already come
+     * with their attributes, elsewhere it's one stat per entry, like
+     * {@link File#isDirectory()}.
+     */
+    @Override
+    public boolean list(File dir, List<File> children, BitSet directories) {
+        DirectoryStream<Path> stream = null;
+        try {
+            stream = Files.newDirectoryStream(dir.toPath());
+            for (Path p : stream) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(p, BasicFileAttributes.class);
+                    if (attrs.isDirectory()) {
+                        directories.set(children.size());
+                    }
+                    children.add(p.toFile());
+                } catch (IOException e) {
+                    // broken link or removed since listed
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        } finally {
+            if (stream != null) {
+                try {
+                    stream.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
@@ -18,7 +18,6 @@
 package com.frostwire.desktop;
 
 import com.frostwire.platform.AbstractPlatform;
-import com.frostwire.platform.DefaultFileSystem;
 import com.frostwire.platform.VPNMonitor;
 
 /**
@@ -30,7 +29,7 @@ public final class DesktopPlatform extends AbstractPlatform {
     private final DesktopVPNMonitor vpn;
 
     public DesktopPlatform() {
-        super(new DefaultFileSystem(), new DesktopPaths(), new DesktopSettings());
+        super(new DesktopFileSystem(), new DesktopPaths(), new DesktopSettings());
         this.vpn = new DesktopVPNMonitor();
     }
 
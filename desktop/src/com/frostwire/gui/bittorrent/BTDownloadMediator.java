@@ -49,6 +49,7 @@ import com.limegroup.gnutella.settings.QuestionsHandler;
 import com.limegroup.gnutella.settings.TablesHandlerSettings;
 import com.limegroup.gnutella.settings.iTunesSettings;
 import org.apache.commons.io.FilenameUtils;
+import org.limewire.concurrent.ExecutorsHelper;
 import org.limewire.util.FileUtils;
 import org.limewire.util.OSUtils;
 
@@ -57,6 +58,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class acts as a mediator between all of the components of the
@@ -70,6 +78,21 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
 
     private static final Logger LOG = Logger.getLogger(BTDownloadMediator.class);
 
+    // save locations read by updateDownload, waiting for the UI thread
+    private final ConcurrentMap<String, File[]> pendingLocations = new ConcurrentHashMap<>();
+    private final AtomicBoolean locationsUpdatePosted = new AtomicBoolean();
+    private final Runnable updateLocations = new UpdateLocations();
+
+    /**
+     * How often the progress of the transfers is checked, off the UI thread.
+     */
+    private static final long SAMPLE_INTERVAL = 1000;
+
+    // the version of the table, bumped from the engine and the sampler threads
+    private final AtomicLong transfersVersion = new AtomicLong();
+    private final ScheduledExecutorService sampler =
+            Executors.newSingleThreadScheduledExecutor(ExecutorsHelper.daemonThreadFactory("BTDownloadMediator-Sampler"));
+
     public static final int MIN_HEIGHT = 150;
     /**
      * instance, for singleton access
@@ -171,21 +194,7 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
         }
 
         try {
-            final List<BTDownload> downloads = getDownloads();
-            for (BTDownload dl : downloads) {
-                File dlSaveLocation = dl.getSaveLocation();
-                if (saveLocation.equals(dlSaveLocation)) {
-                    return dl;
-                }
-
-                // special consideration if it is an actual torrent transfer
-                if (dl instanceof BittorrentDownload) {
-                    dlSaveLocation = ((BittorrentDownload) dl).getDl().getContentSavePath();
-                    if (saveLocation.equals(dlSaveLocation)) {
-                        return dl;
-                    }
-                }
-            }
+            return DATA_MODEL.getDownload(saveLocation);
         } catch (Throwable e) {
             LOG.error("Error looking for transfer by save location", e);
         }
@@ -209,15 +218,10 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
                 state == TransferState.UPLOADING;
     }
 
-    // Linear complexity, take it easy, try no to use on refresh methods, only on actions.
     public boolean isActiveTorrentDownload(File saveLocation) {
         if (saveLocation == null) {
             return false;
         }
-        int active = getActiveDownloads() + getActiveUploads();
-        if (active == 0) {
-            return false;
-        }
         final BTDownload btDownload = findBTDownload(saveLocation);
         return btDownload != null && isActive(btDownload);
     }
@@ -315,7 +319,13 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
     private BTDownloadMediator() {
         super("DOWNLOAD_TABLE");
         TABLE.setRowHeight(30);
-        GUIMediator.addRefreshListener(this);
+        GUIMediator.addRefreshListener(this, 250, new RefreshSource.Showing(TABLE) {
+            @Override
+            public long getVersion() {
+                return transfersVersion.get();
+            }
+        });
+        sampler.scheduleWithFixedDelay(new SampleTransfers(), SAMPLE_INTERVAL, SAMPLE_INTERVAL, TimeUnit.MILLISECONDS);
         restoreSorting();
     }
 
@@ -417,6 +427,7 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
      * <p/>
      */
     public void add(BTDownload downloader) {
+        transfersVersion.incrementAndGet();
         if (!DATA_MODEL.contains(downloader)) {
             super.add(downloader, DATA_MODEL.getRowCount());
             if (DATA_MODEL.getRowCount() > 0) {
@@ -443,6 +454,7 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
      *                   complete.
      */
     public void remove(BTDownload downloader) {
+        transfersVersion.incrementAndGet();
         super.remove(downloader);
         downloader.remove();
     }
@@ -821,20 +833,21 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
         }
     }
 
+    /**
+     * Called from the engine thread. The download is refreshed right
+     * here, as it goes to the engine, and only the index of the model
+     * is updated in the UI thread, all the pending updates at once.
+     */
     public void updateDownload(com.frostwire.bittorrent.BTDownload dl) {
         try {
-            int count = TABLE.getRowCount();
-            for (int i = 0; i < count; i++) {
-                if (i < DATA_MODEL.getRowCount()) {
-                    BTDownloadDataLine line = DATA_MODEL.get(i);
-                    BTDownload downloader = line.getInitializeObject();
-                    if (downloader instanceof BittorrentDownload) {
-                        BittorrentDownload bt = (BittorrentDownload) downloader;
-                        if (bt.getHash().equals(dl.getInfoHash())) {
-                            ((BittorrentDownload) downloader).updateUI(dl);
-                            break;
-                        }
-                    }
+            String hash = dl.getInfoHash();
+            BTDownload downloader = DATA_MODEL.findDownload(hash);
+            if (downloader instanceof BittorrentDownload) {
+                ((BittorrentDownload) downloader).updateUI(dl);
+                transfersVersion.incrementAndGet();
+                pendingLocations.put(hash, BTDownloadModel.locationsOf(downloader));
+                if (!locationsUpdatePosted.getAndSet(true)) {
+                    GUIMediator.safeInvokeLater(updateLocations);
                 }
             }
         } catch (Throwable e) {
@@ -842,6 +855,56 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
         }
     }
 
+    /**
+     * Bumps the version of the table when the state, the bytes or the
+     * speeds of any transfer changed since the last check, so the table is
+     * refreshed at most once per sample while something moves and not at
+     * all while nothing does. The speeds count too, a stalled transfer
+     * moves no bytes but its speed and ETA still go down to zero. Runs off
+     * the UI thread, where the calls to the engine don't hold the table back.
+     */
+    private final class SampleTransfers implements Runnable {
+
+        private long last;
+
+        @Override
+        public void run() {
+            try {
+                long sample = 0;
+                for (BTDownload dl : DATA_MODEL.downloads()) {
+                    TransferState state = dl.getState();
+                    long h = System.identityHashCode(dl);
+                    h = 31 * h + (state != null ? state.ordinal() : -1);
+                    h = 31 * h + dl.getBytesReceived();
+                    h = 31 * h + dl.getBytesSent();
+                    h = 31 * h + Double.doubleToLongBits(dl.getDownloadSpeed());
+                    h = 31 * h + Double.doubleToLongBits(dl.getUploadSpeed());
+                    // in any order
+                    sample += h;
+                }
+                if (sample != last) {
+                    last = sample;
+                    transfersVersion.incrementAndGet();
+                }
+            } catch (Throwable e) {
+                LOG.warn("Error sampling the transfers", e);
+            }
+        }
+    }
+
+    private final class UpdateLocations implements Runnable {
+        @Override
+        public void run() {
+            locationsUpdatePosted.set(false);
+            for (String hash : pendingLocations.keySet()) {
+                File[] locations = pendingLocations.remove(hash);
+                if (locations != null) {
+                    DATA_MODEL.updateLocations(hash, locations);
+                }
+            }
+        }
+    }
+
     /**
      * Load from the last settings saved the previous sorting preferences of this mediator.
      */
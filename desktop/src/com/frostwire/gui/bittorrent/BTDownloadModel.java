@@ -15,7 +15,13 @@
 
 package com.frostwire.gui.bittorrent;
 
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.frostwire.transfers.TransferState;
 
@@ -29,12 +35,38 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
 
     private HashSet<String> _hashDownloads;
 
+    /**
+     * HashMap for quick access to the row of a (visible) download by its hash.
+     */
+    private final HashMap<String, Integer> _hashRows;
+
+    /**
+     * HashMap for quick access to a (visible) download by its save location.
+     */
+    private final HashMap<File, BTDownloadDataLine> _locationLines;
+
+    /**
+     * The save locations of each line in <tt>_locationLines</tt>, to
+     * remove them without scanning the whole map.
+     */
+    private final IdentityHashMap<BTDownloadDataLine, File[]> _lineLocations;
+
+    /**
+     * The (visible) downloads by hash, written from the UI thread but
+     * safe to read from any thread.
+     */
+    private final ConcurrentMap<String, BTDownload> _hashDownloaders;
+
     /**
      * Initialize the model by setting the class of its DataLines.
      */
     BTDownloadModel() {
         super(BTDownloadDataLine.class);
         _hashDownloads = new HashSet<>();
+        _hashRows = new HashMap<>();
+        _locationLines = new HashMap<>();
+        _lineLocations = new IdentityHashMap<>();
+        _hashDownloaders = new ConcurrentHashMap<>();
     }
 
     /**
@@ -111,13 +143,176 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
         return super.add(downloader, row);
     }
 
+    @Override
+    public int add(BTDownloadDataLine dl, int row) {
+        int addedAt = super.add(dl, row);
+        if (addedAt != -1) {
+            String hash = dl.getInitializeObject().getHash();
+            if (hash != null) {
+                _hashDownloaders.put(hash, dl.getInitializeObject());
+            }
+            addLocations(dl, locationsOf(dl.getInitializeObject()));
+            remapIndexes(addedAt);
+        }
+        return addedAt;
+    }
+
     @Override
     public void remove(int i) {
         BTDownloadDataLine line = get(i);
         BTDownload downloader = line.getInitializeObject();
         downloader.remove();
         _hashDownloads.remove(downloader.getHash());
+        if (downloader.getHash() != null) {
+            _hashDownloaders.remove(downloader.getHash(), downloader);
+        }
+        removeLocations(line);
         super.remove(i);
+        // it's easier & quicker to just clear & re-input
+        _hashRows.clear();
+        remapIndexes(0);
+    }
+
+    @Override
+    public void clear() {
+        _hashRows.clear();
+        _locationLines.clear();
+        _lineLocations.clear();
+        _hashDownloaders.clear();
+        super.clear();
+    }
+
+    @Override
+    protected void doResort() {
+        super.doResort();
+        _hashRows.clear();
+        remapIndexes(0);
+    }
+
+    /**
+     * Looks up the row in the HashMap, falling back to a linear search
+     * only when two downloads share the same hash (or have none).
+     */
+    @Override
+    public int getRow(BTDownload downloader) {
+        String hash = downloader.getHash();
+        if (hash != null) {
+            int row = getRow(hash);
+            if (row == -1) {
+                return -1;
+            }
+            if (get(row).getInitializeObject().equals(downloader)) {
+                return row;
+            }
+        }
+        return super.getRow(downloader);
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof BTDownload ? getRow((BTDownload) o) != -1 : super.contains(o);
+    }
+
+    /**
+     * @return the row of the visible download with the given hash, or -1.
+     */
+    public int getRow(String hash) {
+        Integer idx = _hashRows.get(hash);
+        return idx != null && idx < getRowCount() ? idx : -1;
+    }
+
+    /**
+     * @return the visible download whose save location (or content save path
+     * for torrents) is the given file, or null.
+     */
+    public BTDownload getDownload(File saveLocation) {
+        BTDownloadDataLine line = _locationLines.get(saveLocation);
+        return line != null ? line.getInitializeObject() : null;
+    }
+
+    /**
+     * @return the visible download with the given hash, or null. Unlike
+     * the rest of the model, it can be called from any thread.
+     */
+    BTDownload findDownload(String hash) {
+        return hash != null ? _hashDownloaders.get(hash) : null;
+    }
+
+    /**
+     * @return the visible downloads with a hash, a live view that can be
+     * iterated from any thread, like {@link #findDownload(String)}.
+     */
+    Collection<BTDownload> downloads() {
+        return _hashDownloaders.values();
+    }
+
+    /**
+     * Replaces the save locations of the download, which may change
+     * after the torrent metadata is received or the priorities change.
+     *
+     * @param locations as returned by {@link #locationsOf(BTDownload)}
+     */
+    void updateLocations(String hash, File[] locations) {
+        int row = getRow(hash);
+        if (row != -1) {
+            BTDownloadDataLine line = get(row);
+            removeLocations(line);
+            addLocations(line, locations);
+        }
+    }
+
+    /**
+     * Reads the save locations of the download, which may go to the
+     * engine, so it is better called outside the UI thread.
+     */
+    static File[] locationsOf(BTDownload downloader) {
+        File saveLocation = null;
+        File contentSavePath = null;
+        try {
+            saveLocation = downloader.getSaveLocation();
+            // special consideration if it is an actual torrent transfer
+            if (downloader instanceof BittorrentDownload) {
+                contentSavePath = ((BittorrentDownload) downloader).getDl().getContentSavePath();
+            }
+        } catch (Throwable e) {
+            // ignore, the location is not available yet
+        }
+        return new File[]{saveLocation, contentSavePath};
+    }
+
+    /**
+     * Remaps the hash indexes, starting at 'start' and going to the end of
+     * the list.
+     */
+    private void remapIndexes(int start) {
+        int end = getRowCount();
+        for (int i = start; i < end; i++) {
+            String hash = get(i).getInitializeObject().getHash();
+            if (hash != null) {
+                _hashRows.put(hash, i);
+            }
+        }
+    }
+
+    private void addLocations(BTDownloadDataLine line, File[] locations) {
+        for (File f : locations) {
+            if (f != null) {
+                _locationLines.put(f, line);
+            }
+        }
+        _lineLocations.put(line, locations);
+    }
+
+    private void removeLocations(BTDownloadDataLine line) {
+        File[] locations = _lineLocations.remove(line);
+        if (locations != null) {
+            for (File f : locations) {
+                // another line may have taken the location since
+                if (f != null && _locationLines.get(f) == line) {
+                    _locationLines.remove(f);
+                }
+            }
+        }
     }
 
     public void remove(String hash) {
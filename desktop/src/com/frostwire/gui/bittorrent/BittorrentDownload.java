@@ -48,10 +48,11 @@ public class BittorrentDownload implements com.frostwire.gui.bittorrent.BTDownlo
     private static final Logger LOG = Logger.getLogger(BittorrentDownload.class);
     private final BTDownload dl;
 
-    private String displayName;
-    private long size;
-    private List<TransferItem> items;
-    private boolean partial;
+    // refreshed from the engine thread by updateUI
+    private volatile String displayName;
+    private volatile long size;
+    private volatile List<TransferItem> items;
+    private volatile boolean partial;
 
     private boolean deleteTorrentWhenRemove;
     private boolean deleteDataWhenRemove;
@@ -60,6 +61,8 @@ public class BittorrentDownload implements com.frostwire.gui.bittorrent.BTDownlo
     private CopyrightLicenseBroker licenseBroker;
     private PaymentOptions paymentOptions;
 
+    private String streamUrl;
+
     public BittorrentDownload(BTDownload dl) {
         this.dl = dl;
         this.dl.setListener(new StatusListener());
@@ -242,7 +245,35 @@ public class BittorrentDownload implements com.frostwire.gui.bittorrent.BTDownlo
     @Override
     public boolean canPreview() {
         checkSequentialDownload();
-        return getPreviewFile() != null;
+        return getPreviewFile() != null || canStream();
+    }
+
+    /**
+     * A playable file not yet downloaded can be streamed, the player
+     * reads it from a local server which asks for the pieces in front
+     * of the playhead first.
+     */
+    public boolean canStream() {
+        BTDownloadItem item = getFirstBiggestItem();
+        return item != null && !isCompleted() && MediaPlayer.isPlayableFile(item.getFile());
+    }
+
+    /**
+     * @return the local URL to play the biggest file while it downloads
+     */
+    public String getStreamUrl() {
+        BTDownloadItem item = getFirstBiggestItem();
+        if (item != null) {
+            streamUrl = dl.streamUrl(item.getIndex());
+        }
+        return streamUrl;
+    }
+
+    /**
+     * The last URL returned by {@link #getStreamUrl()}, without starting a new stream.
+     */
+    public String getLastStreamUrl() {
+        return streamUrl;
     }
 
     @Override
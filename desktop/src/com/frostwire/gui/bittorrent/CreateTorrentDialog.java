@@ -19,6 +19,8 @@ package com.frostwire.gui.bittorrent;
 
 import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
+import com.frostwire.bittorrent.PieceHasher;
+import com.frostwire.bittorrent.TorrentBuilder;
 import com.frostwire.gui.theme.ThemeMediator;
 import com.frostwire.jlibtorrent.Entry;
 import com.frostwire.jlibtorrent.swig.*;
@@ -31,6 +33,7 @@ import com.limegroup.gnutella.settings.SharingSettings;
 import com.limegroup.gnutella.util.FrostWireUtils;
 import net.miginfocom.swing.MigLayout;
 import org.gudy.azureus2.core3.util.Debug;
+import org.limewire.util.CommonUtils;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -97,6 +100,8 @@ public class CreateTorrentDialog extends JDialog {
     private String invalidTrackerURL;
     private JButton buttonClose;
 
+    private volatile TorrentBuilder builder;
+
     private JComboBox<PieceSize> pieceSizeComboBox;
     private int pieceSize;
     private static final PieceSize[] values = PieceSize.values();
@@ -357,6 +362,15 @@ public class CreateTorrentDialog extends JDialog {
         GUIUtils.getDisposeAction().actionPerformed(e);
     }
 
+    @Override
+    public void dispose() {
+        TorrentBuilder b = builder;
+        if (b != null) {
+            b.cancel();
+        }
+        super.dispose();
+    }
+
     private void showFileChooser(final int fileFolderChoosingMode) {
         FileFilter directoryFilesAllowedFilter = new FileFilter() {
             @Override
@@ -640,8 +654,16 @@ public class CreateTorrentDialog extends JDialog {
             if (addAvailableWebSeeds(torrent, create_from_dir)) {
                 reportCurrentTask(I18n.tr("Calculating piece hashes..."));
                 saveDir = f.getParentFile();
-                error_code ec = new error_code();
-                libtorrent.set_piece_hashes(torrent, saveDir.getAbsolutePath(), ec);
+                builder = new TorrentBuilder(torrent, saveDir).listener(new PieceHasher.Listener() {
+                    @Override
+                    public void onProgress(PieceHasher hasher, long hashedBytes, long totalBytes, long bytesPerSecond, long etaSeconds) {
+                        reportHashingProgress(hashedBytes, totalBytes, bytesPerSecond, etaSeconds);
+                    }
+                });
+                if (!builder.setPieceHashes()) {
+                    // the dialog was closed
+                    return false;
+                }
                 reportCurrentTask(I18n.tr("Generating torrent entry..."));
 
                 Entry entry = new Entry(torrent.generate());
@@ -838,6 +860,20 @@ public class CreateTorrentDialog extends JDialog {
         });
     }
 
+    private void reportHashingProgress(long hashedBytes, long totalBytes, long bytesPerSecond, long etaSeconds) {
+        final int percent = totalBytes > 0 ? (int) (hashedBytes * 100 / totalBytes) : 100;
+        final String task_description = I18n.tr("Calculating piece hashes...") + " " + percent + "% (" +
+                GUIUtils.toUnitbytes(bytesPerSecond) + "/s" +
+                (etaSeconds >= 0 ? ", " + CommonUtils.seconds2time(etaSeconds) : "") + ")";
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                progressBar.setValue(percent);
+                progressBar.setString(task_description);
+            }
+        });
+    }
+
     private void reportCurrentTask(final String task_description) {
         SwingUtilities.invokeLater(new Runnable() {
             @Override
@@ -20,6 +20,9 @@ package com.frostwire.gui.bittorrent;
 
 import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
+import com.frostwire.transfers.SpeedStat;
+import com.frostwire.transfers.TokenBucket;
+import com.frostwire.transfers.TransferScheduler;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.Logger;
@@ -38,19 +41,18 @@ import java.util.Date;
  */
 abstract class HttpBTDownload implements BTDownload {
     private static final Logger LOG = Logger.getLogger(HttpBTDownload.class);
-    private static final int SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS = 1000;
 
     final File completeFile;
     private final Date dateCreated;
 
     long size;
     TransferState state;
-    private long averageSpeed; // in bytes
+    private final SpeedStat stat;
     long bytesReceived;
     private boolean deleteDataWhenRemoved;
-    private long speedMarkTimestamp;
-    private long totalReceivedSinceLastSpeedStamp;
 
+    private final TokenBucket bucket;
+    private int priority;
 
     final HttpClient httpClient;
     HttpClient.HttpClientListener httpClientListener;
@@ -60,25 +62,75 @@ abstract class HttpBTDownload implements BTDownload {
         this.size = size;
         dateCreated = new Date();
         bytesReceived = 0;
+        stat = new SpeedStat();
+        bucket = new TokenBucket(0);
         httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
-        httpClient.setListener(createHttpClientListener());
+        httpClientListener = createHttpClientListener();
+        httpClient.setListener(httpClientListener);
     }
 
     abstract HttpClient.HttpClientListener createHttpClientListener();
 
-    void updateAverageDownloadSpeed() {
-        long now = System.currentTimeMillis();
-        if (isCompleted()) {
-            averageSpeed = 0;
-            speedMarkTimestamp = now;
-            totalReceivedSinceLastSpeedStamp = 0;
-        } else if (now - speedMarkTimestamp > SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS) {
-            averageSpeed = ((bytesReceived - totalReceivedSinceLastSpeedStamp) * 1000) / (now - speedMarkTimestamp);
-            speedMarkTimestamp = now;
-            totalReceivedSinceLastSpeedStamp = bytesReceived;
+    void updateAverageDownloadSpeed(int length) {
+        stat.update(length);
+    }
+
+    /**
+     * Queues the task in the transfer scheduler, it runs when this
+     * download gets one of the active slots.
+     */
+    void submit(Runnable r) {
+        TransferScheduler.getInstance().submit(this, getDisplayName(), priority, r);
+    }
+
+    /**
+     * Called from the listener for every chunk read, blocks until the
+     * limit of this download and the share of the HTTP transfers allow it.
+     */
+    void consume(int length) {
+        try {
+            TransferScheduler.getInstance().consumeDownload(bucket, length);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            httpClient.cancel();
+        }
+    }
+
+    /**
+     * Stops the transfer, the listener gets the cancel right away if
+     * the transfer was still waiting in the scheduler queue.
+     */
+    void cancelTransfer() {
+        if (TransferScheduler.getInstance().cancel(this)) {
+            httpClientListener.onCancel(httpClient);
+        } else {
+            httpClient.cancel();
         }
     }
 
+    /**
+     * @return the download limit of this transfer in bytes per second, 0 means unlimited.
+     */
+    public int getDownloadRateLimit() {
+        return bucket.rate();
+    }
+
+    public void setDownloadRateLimit(int limit) {
+        bucket.rate(limit);
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * Transfers with higher priority leave the scheduler queue first,
+     * it only takes effect if the transfer is not started yet.
+     */
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
     void cleanup() {
         cleanupIncomplete();
         cleanupComplete();
@@ -134,7 +186,7 @@ abstract class HttpBTDownload implements BTDownload {
     public void remove() {
         if (state != TransferState.FINISHED) {
             state = TransferState.CANCELING;
-            httpClient.cancel();
+            cancelTransfer();
         }
         if (deleteDataWhenRemoved) {
             cleanup();
@@ -148,7 +200,7 @@ abstract class HttpBTDownload implements BTDownload {
     public void pause() {
         if (state != TransferState.FINISHED) {
             state = TransferState.CANCELING;
-            httpClient.cancel();
+            cancelTransfer();
         }
     }
 
@@ -191,7 +243,7 @@ abstract class HttpBTDownload implements BTDownload {
     public double getDownloadSpeed() {
         double result = 0;
         if (state == TransferState.DOWNLOADING) {
-            result = averageSpeed / 1000;
+            result = stat.averageSpeed() / 1000;
         }
         return result;
     }
@@ -203,8 +255,8 @@ abstract class HttpBTDownload implements BTDownload {
 
     @Override
     public long getETA() {
-        if (size > 0) {
-            long speed = averageSpeed;
+        if (size > 0 && !isCompleted()) {
+            long speed = stat.averageSpeed();
             return speed > 0 ? (size - getBytesReceived()) / speed : -1;
         } else {
             return -1;
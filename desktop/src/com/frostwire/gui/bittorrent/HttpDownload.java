@@ -20,6 +20,7 @@ package com.frostwire.gui.bittorrent;
 
 import com.frostwire.gui.DigestUtils;
 import com.frostwire.gui.DigestUtils.DigestProgressListener;
+import com.frostwire.platform.Platforms;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.Logger;
 import com.frostwire.util.http.HttpClient;
@@ -34,8 +35,6 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * @author gubatron
@@ -43,8 +42,6 @@ import java.util.concurrent.Executors;
  *
  */
 public class HttpDownload extends HttpBTDownload {
-    /** TODO: Make this configurable */
-    private static final Executor HTTP_THREAD_POOL = Executors.newFixedThreadPool(6);
     private static final Logger LOG = Logger.getLogger(HttpDownload.class);
 
     private final String url;
@@ -112,7 +109,7 @@ public class HttpDownload extends HttpBTDownload {
             } else {
                 state = TransferState.CANCELING;
             }
-            httpClient.cancel();
+            cancelTransfer();
         }
     }
 
@@ -148,7 +145,7 @@ public class HttpDownload extends HttpBTDownload {
 
         saveFile = completeFile;
 
-        HTTP_THREAD_POOL.execute(new Runnable() {
+        submit(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -228,8 +225,9 @@ public class HttpDownload extends HttpBTDownload {
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
-                updateAverageDownloadSpeed();
+                updateAverageDownloadSpeed(length);
                 state = TransferState.DOWNLOADING;
+                consume(length);
             }
         }
 
@@ -241,9 +239,9 @@ public class HttpDownload extends HttpBTDownload {
                 return;
             }
 
-            boolean renameTo = incompleteFile.renameTo(completeFile);
+            boolean moved = Platforms.fileSystem().move(incompleteFile, completeFile, null);
 
-            if (!renameTo) {
+            if (!moved) {
                 state = TransferState.ERROR_MOVING_INCOMPLETE;
                 LOG.error("Could not rename [" + incompleteFile.getAbsolutePath() + "] into [" + completeFile.getAbsolutePath() + "]");
             } else {
@@ -24,6 +24,7 @@ import com.frostwire.mp3.ID3v1Tag;
 import com.frostwire.mp3.ID3v23Tag;
 import com.frostwire.mp3.Mp3File;
 import com.frostwire.search.soundcloud.SoundcloudSearchResult;
+import com.frostwire.platform.Platforms;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.http.HttpClient;
@@ -37,15 +38,12 @@ import org.limewire.util.OSUtils;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * @author gubatron
  * @author aldenml
  */
 public class SoundcloudDownload extends HttpBTDownload {
-    private static final Executor SOUNDCLOUD_THREAD_POOL = Executors.newFixedThreadPool(6);
     private final SoundcloudSearchResult sr;
     private final File tempAudio;
 
@@ -97,7 +95,7 @@ public class SoundcloudDownload extends HttpBTDownload {
     private void start(final File temp) {
         state = TransferState.WAITING;
 
-        SOUNDCLOUD_THREAD_POOL.execute(new Runnable() {
+        submit(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -131,8 +129,9 @@ public class SoundcloudDownload extends HttpBTDownload {
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
-                updateAverageDownloadSpeed();
+                updateAverageDownloadSpeed(length);
                 state = TransferState.DOWNLOADING;
+                consume(length);
             }
         }
 
@@ -140,8 +139,8 @@ public class SoundcloudDownload extends HttpBTDownload {
         public void onComplete(HttpClient client) {
             if (state != TransferState.REDIRECTING) {
                 if (!setAlbumArt(tempAudio.getAbsolutePath(), completeFile.getAbsolutePath())) {
-                    boolean renameTo = tempAudio.renameTo(completeFile);
-                    if (!renameTo) {
+                    boolean moved = Platforms.fileSystem().move(tempAudio, completeFile, null);
+                    if (!moved) {
                         if (!MediaPlayer.instance().isThisBeingPlayed(tempAudio)) {
                             state = TransferState.ERROR_MOVING_INCOMPLETE;
                             cleanupIncomplete();
@@ -36,7 +36,6 @@ import com.limegroup.gnutella.util.FrostWireUtils;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -73,32 +72,6 @@ public final class TorrentUtil {
         return null;
     }
 
-    private static Set<File> getIncompleteFiles() {
-        Set<File> set = new HashSet<>();
-        List<BTDownload> downloads = BTDownloadMediator.instance().getDownloads();
-        for (BTDownload d : downloads) {
-            if (d instanceof BittorrentDownload) {
-                BittorrentDownload bt = (BittorrentDownload) d;
-                com.frostwire.bittorrent.BTDownload dl = bt.getDl();
-                set.addAll(dl.getIncompleteFiles());
-            }
-        }
-        return set;
-    }
-
-    private static Set<File> getPartsFiles() {
-        Set<File> set = new HashSet<>();
-        List<BTDownload> downloads = BTDownloadMediator.instance().getDownloads();
-        for (BTDownload d : downloads) {
-            if (d instanceof BittorrentDownload) {
-                BittorrentDownload bt = (BittorrentDownload) d;
-                com.frostwire.bittorrent.BTDownload dl = bt.getDl();
-                set.add(dl.partsFile());
-            }
-        }
-        return set;
-    }
-
     public static String getMagnet(String hash) {
         return "magnet:?xt=urn:btih:" + hash;
     }
@@ -124,10 +97,12 @@ public final class TorrentUtil {
         return sb.toString();
     }
 
+    /**
+     * Returns a live, read only, view of the files still being downloaded
+     * (including the ".parts" files), backed by the engine index.
+     */
     public static Set<File> getIgnorableFiles() {
-        Set<File> set = TorrentUtil.getIncompleteFiles();
-        set.addAll(getPartsFiles());
-        return set;
+        return BTEngine.getInstance().incompleteFiles();
     }
 
     public static boolean askForPermissionToSeedAndSeedDownloads(BTDownload[] downloaders) {
@@ -116,7 +116,15 @@ public final class TransferActionsRenderer extends FWAbstractJPanelTableCellRend
     private void onPlay() {
         if (dl.canPreview() && !isDlBeingPlayed()) {
             File file = dl.getPreviewFile();
-            if (file != null) {
+            if (dl instanceof BittorrentDownload && ((BittorrentDownload) dl).canStream()) {
+                // read through the stream server, it can seek to pieces not downloaded yet
+                String url = ((BittorrentDownload) dl).getStreamUrl();
+                if (url != null) {
+                    GUIMediator.instance().launchMedia(new MediaSource(url), true);
+                } else if (file != null) {
+                    GUIMediator.instance().launchMedia(new MediaSource(file), true);
+                }
+            } else if (file != null) {
                 GUIMediator.instance().launchMedia(new MediaSource(file), !dl.isCompleted());
             }
             updatePlayButton();
@@ -124,6 +132,9 @@ public final class TransferActionsRenderer extends FWAbstractJPanelTableCellRend
     }
 
     private boolean isDlBeingPlayed() {
+        if (dl instanceof BittorrentDownload && MediaPlayer.instance().isThisBeingPlayed(((BittorrentDownload) dl).getLastStreamUrl())) {
+            return true;
+        }
         File file = dl.getPreviewFile();
         return file != null && MediaPlayer.instance().isThisBeingPlayed(dl.getPreviewFile());
     }
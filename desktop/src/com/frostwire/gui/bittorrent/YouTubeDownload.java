@@ -25,6 +25,7 @@ import com.frostwire.mp4.Mp4Demuxer;
 import com.frostwire.mp4.Mp4Info;
 import com.frostwire.search.youtube.YouTubeCrawledSearchResult;
 import com.frostwire.search.youtube.YouTubeExtractor.LinkInfo;
+import com.frostwire.platform.Platforms;
 import com.frostwire.transfers.TransferState;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.http.HttpClient;
@@ -42,15 +43,12 @@ import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
 
 /**
  * @author gubatron
  * @author aldenml
  */
 public class YouTubeDownload extends HttpBTDownload {
-    private static final Executor YOUTUBE_THREAD_POOL = Executors.newFixedThreadPool(6);
     private final YouTubeCrawledSearchResult sr;
     private final DownloadType downloadType;
     private final File tempVideo;
@@ -121,7 +119,7 @@ public class YouTubeDownload extends HttpBTDownload {
     private void start(final LinkInfo inf, final File temp) {
         state = TransferState.WAITING;
 
-        YOUTUBE_THREAD_POOL.execute(new Runnable() {
+        submit(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -157,8 +155,9 @@ public class YouTubeDownload extends HttpBTDownload {
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
-                updateAverageDownloadSpeed();
+                updateAverageDownloadSpeed(length);
                 state = TransferState.DOWNLOADING;
+                consume(length);
             }
         }
 
@@ -182,9 +181,9 @@ public class YouTubeDownload extends HttpBTDownload {
                     cleanupIncomplete();
                     return;
                 }
-                boolean renameTo = tempVideo.renameTo(completeFile);
+                boolean moved = Platforms.fileSystem().move(tempVideo, completeFile, null);
 
-                if (!renameTo) {
+                if (!moved) {
                     if (!MediaPlayer.instance().isThisBeingPlayed(tempVideo)) {
                         state = TransferState.ERROR_MOVING_INCOMPLETE;
                     } else {
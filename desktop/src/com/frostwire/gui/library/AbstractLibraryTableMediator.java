@@ -72,7 +72,7 @@ abstract class AbstractLibraryTableMediator<T extends DataLineModel<E, I>, E ext
 
     AbstractLibraryTableMediator(String id) {
         super(id);
-        GUIMediator.addRefreshListener(this);
+        GUIMediator.addRefreshListener(this, 1000, new PlayingRefreshSource(TABLE));
         mediaType = MediaType.getAnyTypeMediaType();
         needToScrollTo = -1;
     }
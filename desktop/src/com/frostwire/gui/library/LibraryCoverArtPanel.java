@@ -36,11 +36,21 @@ public final class LibraryCoverArtPanel extends JPanel {
 
     private final BufferedImage background;
     private final Image defaultCoverArt;
+    private final boolean thumbnail;
 
     private Image coverArtImage;
     private TagsReader tagsReader;
 
     LibraryCoverArtPanel() {
+        this(false);
+    }
+
+    /**
+     * @param thumbnail if the cached thumbnail of the artwork is enough,
+     *                  for when the panel is small
+     */
+    LibraryCoverArtPanel(boolean thumbnail) {
+        this.thumbnail = thumbnail;
         background = new BufferedImage(350, 350, BufferedImage.TYPE_INT_ARGB);
         defaultCoverArt = GUIMediator.getThemeImage("default_cover_art").getImage();
         setTagsReader(null);
@@ -98,7 +108,7 @@ public final class LibraryCoverArtPanel extends JPanel {
         if (tagsReader == null || tagsReader.getFile() == null) {
             return defaultCoverArt;
         }
-        return tagsReader.getArtwork();
+        return thumbnail ? tagsReader.getArtworkThumbnail() : tagsReader.getArtwork();
     }
 
     private void setPrivateImage(Image image) {
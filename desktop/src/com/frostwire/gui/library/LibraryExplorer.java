@@ -129,7 +129,7 @@ public class LibraryExplorer extends AbstractLibraryListPanel {
         setLayout(new BorderLayout());
         setMinimumSize(new Dimension(177,113));
         setPreferredSize(new Dimension(177,232));
-        GUIMediator.addRefreshListener(this);
+        GUIMediator.addRefreshListener(this, 1000, new PlayingRefreshSource(this));
 
         setupModel();
         setupTree();
@@ -0,0 +1,489 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.gui.library.tags.MetadataCache;
+import com.frostwire.util.Logger;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * In memory catalog of the files under the library folders, with an inverted
+ * index of the tokens of their paths (see {@link LibraryPathIndex}), so that
+ * a library search does not need to walk the disk.
+ * <p>
+ * The catalog and its postings are saved to disk and loaded at startup. It
+ * is kept fresh with file system events when the platform supports them, and
+ * with a periodic full walk of the folders that also catches any missed event.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class LibraryFileIndex {
+
+    private static final Logger LOG = Logger.getLogger(LibraryFileIndex.class);
+
+    private static final int VERSION = 2;
+    private static final long RECONCILE_DELAY = 10 * 1000;
+    private static final long RECONCILE_INTERVAL = 30 * 60 * 1000;
+    private static final long SAVE_INTERVAL = 60 * 1000;
+
+    private final File indexFile;
+    private final ExecutorService executor;
+    private final Timer timer;
+    private final Map<WatchKey, Path> watchedDirs;
+    private final Map<Path, WatchKey> watchKeys;
+
+    // all guarded by this
+    private final Map<File, Root> roots;
+    private final LibraryPathIndex index;
+    private boolean dirty;
+
+    private WatchService watcher;
+
+    private LibraryFileIndex() {
+        this.indexFile = new File(CommonUtils.getUserSettingsDir(), "library_index.dat");
+        this.executor = ExecutorsHelper.newProcessingQueue("LibraryFileIndex");
+        this.timer = new Timer("LibraryFileIndex-Timer", true);
+        this.watchedDirs = new ConcurrentHashMap<>();
+        this.watchKeys = new ConcurrentHashMap<>();
+
+        this.roots = new HashMap<>();
+        this.index = new LibraryPathIndex();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+                startWatcher();
+            }
+        });
+
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        reconcile();
+                    }
+                });
+            }
+        }, RECONCILE_DELAY, RECONCILE_INTERVAL);
+
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        save();
+                    }
+                });
+            }
+        }, SAVE_INTERVAL, SAVE_INTERVAL);
+    }
+
+    private static class Loader {
+        static final LibraryFileIndex INSTANCE = new LibraryFileIndex();
+    }
+
+    static LibraryFileIndex instance() {
+        return Loader.INSTANCE;
+    }
+
+    /**
+     * Same normalization used to match a search against a path.
+     */
+    static String normalize(String s) {
+        return LibraryPathIndex.normalize(s);
+    }
+
+    /**
+     * Finds the files under {@code dir} whose absolute path contains all the
+     * tokens, or all of them if {@code tokens} is null.
+     *
+     * @param tokens normalized search tokens, could be null
+     * @return the files found, or null if the folder is not indexed yet, in that
+     * case the indexing of the folder starts in the background
+     */
+    List<File> search(File dir, String[] tokens) {
+        String prefix = dir.getAbsolutePath() + File.separator;
+        List<String> found;
+        boolean fresh;
+
+        synchronized (this) {
+            Root root = findRoot(dir);
+            if (root == null) {
+                addRoot(dir.getAbsoluteFile());
+                return null;
+            }
+            if (!root.ready) {
+                return null;
+            }
+            fresh = root.fresh;
+            found = index.find(prefix, tokens);
+        }
+
+        List<File> result = new ArrayList<>(found.size());
+        for (String path : found) {
+            if (tokens != null && !LibraryPathIndex.matches(path, tokens)) {
+                continue;
+            }
+            File file = new File(path);
+            // loaded from disk, but not checked since
+            if (!fresh && !file.exists()) {
+                continue;
+            }
+            result.add(file);
+        }
+        return result;
+    }
+
+    private Root findRoot(File dir) {
+        for (File f = dir.getAbsoluteFile(); f != null; f = f.getParentFile()) {
+            Root root = roots.get(f);
+            if (root != null) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    private void addRoot(final File dir) {
+        roots.put(dir, new Root());
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> files = walk(dir.toPath());
+                synchronized (LibraryFileIndex.this) {
+                    for (String path : files) {
+                        index.add(path);
+                    }
+                    Root root = roots.get(dir);
+                    if (root != null) {
+                        root.ready = true;
+                        root.fresh = true;
+                    }
+                    dirty = true;
+                }
+                LOG.info("Indexed " + files.size() + " files in " + dir);
+            }
+        });
+    }
+
+    /**
+     * Walks all the folders again and rebuilds the index from scratch, this
+     * also compacts the postings.
+     */
+    private void reconcile() {
+        List<File> dirs;
+        synchronized (this) {
+            dirs = new ArrayList<>(roots.keySet());
+        }
+
+        Map<File, List<String>> walked = new HashMap<>();
+        for (File dir : dirs) {
+            if (dir.isDirectory()) {
+                walked.put(dir, walk(dir.toPath()));
+            }
+        }
+
+        // folders removed while the events were lost
+        for (Path dir : watchKeys.keySet()) {
+            if (!Files.isDirectory(dir)) {
+                unwatch(dir);
+            }
+        }
+
+        synchronized (this) {
+            index.clear();
+            roots.keySet().retainAll(walked.keySet());
+            for (Map.Entry<File, List<String>> e : walked.entrySet()) {
+                for (String path : e.getValue()) {
+                    index.add(path);
+                }
+                Root root = roots.get(e.getKey());
+                if (root != null) {
+                    root.ready = true;
+                    root.fresh = true;
+                }
+            }
+            dirty = true;
+        }
+        save();
+    }
+
+    private List<String> walk(Path dir) {
+        final List<String> files = new ArrayList<>();
+        try {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                    if (d.getFileName() != null && Files.isHidden(d)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    watch(d);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && !Files.isHidden(file)) {
+                        files.add(file.toAbsolutePath().toString());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (Throwable e) {
+            LOG.warn("Error walking " + dir, e);
+        }
+        return files;
+    }
+
+    private void startWatcher() {
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            LOG.warn("File system events not available, relying on periodic reconciliation", e);
+            return;
+        }
+
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watchLoop();
+            }
+        }, "LibraryFileIndex-Watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void watch(Path dir) {
+        if (watcher == null) {
+            return;
+        }
+        try {
+            WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE);
+            watchedDirs.put(key, dir);
+            watchKeys.put(dir, key);
+        } catch (Throwable e) {
+            // too many watches or not supported, covered by the reconciliation
+        }
+    }
+
+    /**
+     * Cancels the watch of the folder and of all the folders under it.
+     */
+    private void unwatch(Path dir) {
+        Iterator<Map.Entry<Path, WatchKey>> it = watchKeys.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, WatchKey> e = it.next();
+            if (e.getKey().startsWith(dir)) {
+                e.getValue().cancel();
+                watchedDirs.remove(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            final Path dir = watchedDirs.get(key);
+            final List<WatchEvent<?>> events = key.pollEvents();
+            if (!key.reset()) {
+                // the folder is gone, or unwatched
+                watchedDirs.remove(key);
+                if (dir != null) {
+                    watchKeys.remove(dir, key);
+                }
+            }
+            if (dir == null) {
+                continue;
+            }
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (WatchEvent<?> event : events) {
+                        onEvent(dir, event);
+                    }
+                }
+            });
+        }
+    }
+
+    private void onEvent(Path dir, WatchEvent<?> event) {
+        if (event.kind() == OVERFLOW) {
+            reconcile();
+            return;
+        }
+
+        Path child = dir.resolve((Path) event.context());
+        if (event.kind() == ENTRY_CREATE) {
+            List<String> files;
+            if (Files.isDirectory(child)) {
+                files = walk(child);
+            } else {
+                files = Collections.singletonList(child.toAbsolutePath().toString());
+            }
+            synchronized (this) {
+                for (String path : files) {
+                    index.add(path);
+                }
+                dirty = true;
+            }
+        } else if (event.kind() == ENTRY_DELETE) {
+            unwatch(child);
+            synchronized (this) {
+                index.remove(child.toAbsolutePath().toString());
+                dirty = true;
+            }
+            MetadataCache.instance().remove(child.toFile());
+        }
+    }
+
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(indexFile))));
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            synchronized (this) {
+                int numRoots = in.readInt();
+                for (int i = 0; i < numRoots; i++) {
+                    Root root = new Root();
+                    root.ready = true;
+                    roots.put(new File(in.readUTF()), root);
+                }
+                index.read(in);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error loading library index, it will be rebuilt", e);
+            synchronized (this) {
+                roots.clear();
+                index.clear();
+            }
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void save() {
+        byte[] data;
+        try {
+            data = snapshot();
+        } catch (Throwable e) {
+            LOG.warn("Error saving library index", e);
+            return;
+        }
+        if (data == null) {
+            return;
+        }
+
+        File temp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        OutputStream out = null;
+        try {
+            out = new GZIPOutputStream(new FileOutputStream(temp));
+            out.write(data);
+            out.close();
+            out = null;
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Throwable e) {
+            LOG.warn("Error saving library index", e);
+            synchronized (this) {
+                dirty = true;
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * The index, serialized in memory so the disk is not written holding
+     * the lock, null if nothing changed since the last save.
+     */
+    private synchronized byte[] snapshot() throws IOException {
+        if (!dirty) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VERSION);
+        List<String> rootPaths = new ArrayList<>();
+        for (Map.Entry<File, Root> e : roots.entrySet()) {
+            if (e.getValue().ready) {
+                rootPaths.add(e.getKey().getAbsolutePath());
+            }
+        }
+        out.writeInt(rootPaths.size());
+        for (String path : rootPaths) {
+            out.writeUTF(path);
+        }
+        index.write(out);
+        out.flush();
+        dirty = false;
+        return bytes.toByteArray();
+    }
+
+    private static final class Root {
+        // the files of the root are in the index
+        boolean ready;
+        // walked since the application started, files are known to exist
+        boolean fresh;
+    }
+}
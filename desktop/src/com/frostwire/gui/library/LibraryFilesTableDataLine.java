@@ -19,8 +19,12 @@
 package com.frostwire.gui.library;
 
 import com.frostwire.bittorrent.BTInfoAdditionalMetadataHolder;
+import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
+import com.frostwire.gui.library.tags.MetadataCache;
+import com.frostwire.gui.library.tags.MetadataCache.TorrentMetadata;
 import com.frostwire.gui.player.MediaPlayer;
+import com.frostwire.util.Logger;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.I18n;
 import com.limegroup.gnutella.gui.IconManager;
@@ -34,6 +38,7 @@ import javax.swing.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.Callable;
 
 /**
  * This class acts as a single line containing all
@@ -44,6 +49,8 @@ import java.util.Date;
  */
 public final class LibraryFilesTableDataLine extends AbstractLibraryTableDataLine<File> {
 
+    private static final Logger LOG = Logger.getLogger(LibraryFilesTableDataLine.class);
+
     static final int ACTIONS_IDX = 0;
 
     /**
@@ -186,31 +193,28 @@ public final class LibraryFilesTableDataLine extends AbstractLibraryTableDataLin
                 FilenameUtils.getExtension(initializer.getName()) != null &&
                 FilenameUtils.getExtension(initializer.getName()).toLowerCase().endsWith("torrent")) {
 
-            BTInfoAdditionalMetadataHolder additionalMetadataHolder = null;
-
-            try {
-                additionalMetadataHolder = new BTInfoAdditionalMetadataHolder(initializer, initializer.getName());
-            } catch (Throwable t) {
-                System.err.println("[InvalidTorrent] Can't create BTInfoAdditionalMetadataholder out of " + initializer.getAbsolutePath());
-                t.printStackTrace();
-            }
-
-            boolean hasLicense = additionalMetadataHolder != null && additionalMetadataHolder.getLicenseBroker() != null;
-            boolean hasPaymentOptions = additionalMetadataHolder != null && additionalMetadataHolder.getPaymentOptions() != null;
+            TorrentMetadata torrent = MetadataCache.instance().getTorrentMetadata(initializer, new Callable<TorrentMetadata>() {
+                @Override
+                public TorrentMetadata call() throws Exception {
+                    BTInfoAdditionalMetadataHolder holder = new BTInfoAdditionalMetadataHolder(initializer, initializer.getName());
+                    CopyrightLicenseBroker licenseBroker = holder.getLicenseBroker();
+                    PaymentOptions options = holder.getPaymentOptions();
+                    return new TorrentMetadata(licenseBroker != null ? licenseBroker.getLicenseName() : null,
+                            options != null ? options.bitcoin : null, options != null ? options.paypalUrl : null);
+                }
+            });
 
-            if (hasLicense) {
-                license = additionalMetadataHolder.getLicenseBroker().getLicenseName();
+            if (torrent != null) {
+                license = torrent.getLicense();
+                paymentOptions = new PaymentOptions(torrent.getBitcoin(), torrent.getPaypalUrl());
+            } else {
+                LOG.warn("[InvalidTorrent] Can't create BTInfoAdditionalMetadataholder out of " + initializer.getAbsolutePath());
+                paymentOptions = new PaymentOptions(null, null);
             }
 
             if (license == null) {
                 license = "";
             }
-
-            if (hasPaymentOptions) {
-                paymentOptions = additionalMetadataHolder.getPaymentOptions();
-            } else {
-                paymentOptions = new PaymentOptions(null, null);
-            }
             paymentOptions.setItemName(_name);
         }
     }
@@ -0,0 +1,331 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * The paths of the {@link LibraryFileIndex}, with an inverted index of the
+ * tokens of the paths and a trigram index of the tokens, so a search doesn't
+ * look at every path nor at every token.
+ * <p>
+ * Ids of removed paths stay in the postings until the index is rebuilt or
+ * saved, which compacts them. Not thread safe.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class LibraryPathIndex {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern DIACRITICAL_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private static final int GRAM_LENGTH = 3;
+
+    private final List<String> paths; // by id, null if the file was removed
+    private final TreeMap<String, Integer> ids; // sorted, a folder is a range
+    private final Map<String, Integer> termIds;
+    private final List<String> terms; // by term id
+    private final List<Postings> termPaths; // by term id, ids of the paths
+    private final Map<String, Postings> grams; // ids of the terms
+
+    LibraryPathIndex() {
+        this.paths = new ArrayList<>();
+        this.ids = new TreeMap<>();
+        this.termIds = new HashMap<>();
+        this.terms = new ArrayList<>();
+        this.termPaths = new ArrayList<>();
+        this.grams = new HashMap<>();
+    }
+
+    /**
+     * Same normalization used to match a search against a path.
+     */
+    static String normalize(String s) {
+        String norm = Normalizer.normalize(s, Normalizer.Form.NFKD);
+        norm = DIACRITICAL_MARKS.matcher(norm).replaceAll("");
+        return norm.toLowerCase(Locale.US);
+    }
+
+    /**
+     * The final check of a path found with {@link #find(String, String[])}.
+     */
+    static boolean matches(String path, String[] tokens) {
+        String normalizedPath = normalize(path);
+        for (String token : tokens) {
+            if (!normalizedPath.contains(token)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    boolean contains(String path) {
+        return ids.containsKey(path);
+    }
+
+    void add(String path) {
+        if (ids.containsKey(path)) {
+            return;
+        }
+        int id = paths.size();
+        paths.add(path);
+        ids.put(path, id);
+        for (String token : new HashSet<>(Arrays.asList(SEPARATORS.split(normalize(path))))) {
+            if (!token.isEmpty()) {
+                term(token).add(id);
+            }
+        }
+    }
+
+    /**
+     * Removes the file, or all the files under it if it was a folder.
+     */
+    void remove(String path) {
+        Integer id = ids.remove(path);
+        if (id != null) {
+            paths.set(id, null);
+            return;
+        }
+        SortedMap<String, Integer> under = under(path + File.separator);
+        for (Integer i : under.values()) {
+            paths.set(i, null);
+        }
+        under.clear();
+    }
+
+    void clear() {
+        paths.clear();
+        ids.clear();
+        termIds.clear();
+        terms.clear();
+        termPaths.clear();
+        grams.clear();
+    }
+
+    /**
+     * Finds the paths that start with {@code prefix} and could contain all
+     * the tokens, the tokens still need to be checked with
+     * {@link #matches(String, String[])}.
+     *
+     * @param tokens normalized search tokens, could be null
+     */
+    List<String> find(String prefix, String[] tokens) {
+        BitSet candidates = tokens != null ? candidates(tokens) : null;
+        if (candidates == null) {
+            return new ArrayList<>(under(prefix).keySet());
+        }
+        List<String> found = new ArrayList<>();
+        for (int id = candidates.nextSetBit(0); id >= 0; id = candidates.nextSetBit(id + 1)) {
+            String path = paths.get(id);
+            if (path != null && path.startsWith(prefix)) {
+                found.add(path);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Writes the live paths, with new consecutive ids, and the postings.
+     */
+    void write(DataOutputStream out) throws IOException {
+        int[] remap = new int[paths.size()];
+        int n = 0;
+        for (int id = 0; id < remap.length; id++) {
+            remap[id] = paths.get(id) != null ? n++ : -1;
+        }
+        out.writeInt(n);
+        for (String path : paths) {
+            if (path != null) {
+                out.writeUTF(path);
+            }
+        }
+
+        List<Integer> live = new ArrayList<>(terms.size());
+        Postings[] remapped = new Postings[terms.size()];
+        for (int t = 0; t < remapped.length; t++) {
+            remapped[t] = termPaths.get(t).remap(remap);
+            if (remapped[t].size > 0) {
+                live.add(t);
+            }
+        }
+        out.writeInt(live.size());
+        for (int t : live) {
+            out.writeUTF(terms.get(t));
+            remapped[t].write(out);
+        }
+    }
+
+    /**
+     * Reads what {@link #write(DataOutputStream)} wrote, the trigrams of
+     * the terms are rebuilt, the paths are not tokenized again.
+     */
+    void read(DataInputStream in) throws IOException {
+        clear();
+        int n = in.readInt();
+        for (int id = 0; id < n; id++) {
+            String path = in.readUTF();
+            paths.add(path);
+            ids.put(path, id);
+        }
+        int numTerms = in.readInt();
+        for (int t = 0; t < numTerms; t++) {
+            Postings p = term(in.readUTF());
+            p.read(in, n);
+        }
+    }
+
+    private SortedMap<String, Integer> under(String prefix) {
+        return ids.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private Postings term(String token) {
+        Integer t = termIds.get(token);
+        if (t != null) {
+            return termPaths.get(t);
+        }
+        t = terms.size();
+        termIds.put(token, t);
+        terms.add(token);
+        Postings p = new Postings();
+        termPaths.add(p);
+        for (int i = 0; i + GRAM_LENGTH <= token.length(); i++) {
+            String gram = token.substring(i, i + GRAM_LENGTH);
+            Postings g = grams.get(gram);
+            if (g == null) {
+                g = new Postings();
+                grams.put(gram, g);
+            }
+            if (g.size == 0 || g.ids[g.size - 1] != t) {
+                g.add(t);
+            }
+        }
+        return p;
+    }
+
+    /**
+     * @return the ids of the paths that could contain the tokens, null if
+     * the tokens are too short to narrow the search
+     */
+    private BitSet candidates(String[] tokens) {
+        BitSet result = null;
+        for (String token : tokens) {
+            // a file containing the token has path tokens containing each part of it
+            for (String part : SEPARATORS.split(token)) {
+                if (part.length() < GRAM_LENGTH) {
+                    // too short to narrow the search, only checked by matches
+                    continue;
+                }
+                BitSet bits = new BitSet(paths.size());
+                Postings termsWithPart = termsContaining(part);
+                for (int i = 0; i < termsWithPart.size; i++) {
+                    termPaths.get(termsWithPart.ids[i]).addTo(bits);
+                }
+                if (result == null) {
+                    result = bits;
+                } else {
+                    result.and(bits);
+                }
+            }
+        }
+        return result;
+    }
+
+    private Postings termsContaining(String part) {
+        // the terms that have the rarest trigram of the part, then checked
+        Postings rarest = null;
+        for (int i = 0; i + GRAM_LENGTH <= part.length(); i++) {
+            Postings g = grams.get(part.substring(i, i + GRAM_LENGTH));
+            if (g == null) {
+                return new Postings();
+            }
+            if (rarest == null || g.size < rarest.size) {
+                rarest = g;
+            }
+        }
+        Postings result = new Postings();
+        for (int i = 0; i < rarest.size; i++) {
+            if (terms.get(rarest.ids[i]).contains(part)) {
+                result.add(rarest.ids[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Growable array of ids, in increasing order.
+     */
+    private static final class Postings {
+
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        void addTo(BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(ids[i]);
+            }
+        }
+
+        Postings remap(int[] remap) {
+            Postings p = new Postings();
+            for (int i = 0; i < size; i++) {
+                int id = remap[ids[i]];
+                if (id >= 0) {
+                    p.add(id);
+                }
+            }
+            return p;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(ids[i]);
+            }
+        }
+
+        void read(DataInputStream in, int maxId) throws IOException {
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                int id = in.readInt();
+                if (id < 0 || id >= maxId) {
+                    throw new IOException("Invalid path id in library index: " + id);
+                }
+                add(id);
+            }
+        }
+    }
+}
@@ -121,7 +121,7 @@ public class LibraryPlaylists extends AbstractLibraryListPanel {
     protected void setupUI() {
         setLayout(new BorderLayout());
         setMinimumSize(new Dimension(177,94));
-        GUIMediator.addRefreshListener(this);
+        GUIMediator.addRefreshListener(this, 1000, new PlayingRefreshSource(this));
         initPopupMenuActions();
         setupModel();
         setupList();
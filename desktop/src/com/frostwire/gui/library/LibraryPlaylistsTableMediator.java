@@ -368,7 +368,7 @@ final class LibraryPlaylistsTableMediator extends AbstractLibraryTableMediator<L
 
     private void updatePlaylistComponentHeader(String lyrics) {
         JPanel playlistHeaderRow = new JPanel(new MigLayout("insets 10, fillx","[][grow][]"));
-        LibraryCoverArtPanel artWorkLabel = new LibraryCoverArtPanel();
+        LibraryCoverArtPanel artWorkLabel = new LibraryCoverArtPanel(true);
         if (currentPlaylist == null) {
             return;
         }
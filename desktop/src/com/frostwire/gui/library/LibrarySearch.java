@@ -42,7 +42,6 @@ import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.io.File;
 import java.io.FileFilter;
-import java.text.Normalizer;
 import java.util.*;
 import java.util.List;
 
@@ -64,6 +63,8 @@ public class LibrarySearch extends JPanel {
 
     public LibrarySearch() {
         setupUI();
+        // starts loading the index of the library folders in the background
+        LibraryFileIndex.instance();
     }
 
     public void searchFor(final String query, final boolean displayTextOnSearchBox) {
@@ -353,9 +354,18 @@ public class LibrarySearch extends JPanel {
                 return;
             }
 
+            SearchFileFilter searchFilter = new SearchFileFilter(_query);
+
+            boolean savedFiles = directoryHolder instanceof SavedFilesDirectoryHolder;
+            List<File> indexed = LibraryFileIndex.instance().search(haystackDir, savedFiles ? searchFilter.tokens() : null);
+            if (indexed != null) {
+                searchIndexed(indexed, excludeFiles, exludedSubFolders);
+                return;
+            }
+
+            // not indexed yet, walk the folder
             final List<File> directories = new ArrayList<File>();
             final List<File> results = new ArrayList<File>();
-            SearchFileFilter searchFilter = new SearchFileFilter(_query);
 
             for (File child : FileUtils.listFiles(haystackDir)) { //haystackDir.listFiles(searchFilter)) {
                 if (canceled) {
@@ -407,6 +417,62 @@ public class LibrarySearch extends JPanel {
             }
         }
 
+        private void searchIndexed(List<File> files, Set<File> excludeFiles, Set<File> exludedSubFolders) {
+            List<String> excludedPrefixes = new ArrayList<String>(exludedSubFolders.size());
+            for (File dir : exludedSubFolders) {
+                excludedPrefixes.add(dir.getAbsolutePath() + File.separator);
+            }
+
+            List<File> results = new ArrayList<File>();
+            for (File file : files) {
+                if (excludeFiles.contains(file) || isExcluded(file, excludedPrefixes)) {
+                    continue;
+                }
+                if (directoryHolder instanceof SavedFilesDirectoryHolder || directoryHolder.accept(file)) {
+                    results.add(file);
+                }
+                if (results.size() >= 1000) {
+                    if (!publishResults(results)) {
+                        return;
+                    }
+                    results = new ArrayList<File>();
+                }
+            }
+            publishResults(results);
+        }
+
+        private boolean isExcluded(File file, List<String> excludedPrefixes) {
+            if (!excludedPrefixes.isEmpty()) {
+                String path = file.getAbsolutePath();
+                for (String prefix : excludedPrefixes) {
+                    if (path.startsWith(prefix)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean publishResults(final List<File> results) {
+            //Stop search if the user selected another item in the library tree
+            if (canceled || !directoryHolder.equals(LibraryMediator.instance().getLibraryExplorer().getSelectedDirectoryHolder())) {
+                return false;
+            }
+            if (results.isEmpty()) {
+                return true;
+            }
+            GUIMediator.safeInvokeLater(new Runnable() {
+                public void run() {
+                    LibraryMediator.instance().addFilesToLibraryTable(results);
+
+                    if (directoryHolder instanceof SavedFilesDirectoryHolder) {
+                        LibraryFilesTableMediator.instance().resetAudioPlayerFileView();
+                    }
+                }
+            });
+            return true;
+        }
+
         private void search(List<File> cache) {
             if (canceled) {
                 return;
@@ -454,6 +520,10 @@ public class LibrarySearch extends JPanel {
             _tokens = StringUtils.removeDoubleSpaces(normalize(query)).split(" ");
         }
 
+        public String[] tokens() {
+            return _tokens;
+        }
+
         public boolean accept(File pathname) {
             return accept(pathname, true);
         }
@@ -485,11 +555,7 @@ public class LibrarySearch extends JPanel {
         }
 
         private String normalize(String token) {
-            String norm = Normalizer.normalize(token, Normalizer.Form.NFKD);
-            norm = norm.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-            norm = norm.toLowerCase(Locale.US);
-
-            return norm;
+            return LibraryFileIndex.normalize(token);
         }
     }
 
@@ -28,6 +28,8 @@ import com.frostwire.gui.library.tags.TagsReader;
 import com.frostwire.gui.player.MediaPlayer;
 import com.frostwire.gui.theme.DialogFinishedListener;
 import com.frostwire.gui.theme.FrostwireInputDialog;
+import com.frostwire.platform.FileWalker;
+import com.frostwire.platform.Platforms;
 import com.frostwire.util.HistoHashMap;
 import com.frostwire.util.Logger;
 import com.frostwire.uxstats.UXAction;
@@ -42,10 +44,18 @@ import org.limewire.util.StringUtils;
 import java.awt.event.KeyEvent;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author gubatron
@@ -53,65 +63,155 @@ import java.util.concurrent.ExecutorService;
  */
 public class LibraryUtils {
 
-    @SuppressWarnings("unused")
     private static final Logger LOG = Logger.getLogger(LibraryUtils.class);
 
+    private static final int IMPORT_BATCH_SIZE = 500;
+
     private static final ExecutorService executor;
+    private static final ExecutorService tagsExecutor;
 
     static {
         executor = ExecutorsHelper.newProcessingQueue("LibraryUtils-Executor");
+        // tag parsing is mostly CPU and small reads, keep the pool bounded
+        tagsExecutor = ExecutorsHelper.newFixedSizeThreadPool(Math.min(4, Runtime.getRuntime().availableProcessors()), "LibraryUtils-Tags");
     }
 
     public static ExecutorService getExecutor() {
         return executor;
     }
 
-    private static void addPlaylistItem(Playlist playlist, File file) {
-        addPlaylistItem(playlist, file, playlist.isStarred(), -1);
+    /**
+     * Imports the files in batches, the tags of every batch are parsed in
+     * parallel and the items are saved with batched statements.
+     */
+    private static void importFiles(Playlist playlist, List<File> files, boolean starred, int index) {
+        LibraryDatabase db = playlist.getLibraryDatabase();
+        if (db != null) {
+            // one commit of the full text index for the whole import
+            db.beginBulk();
+        }
+        try {
+            int total = files.size();
+            for (int offset = 0; offset < total && !playlist.isDeleted(); offset += IMPORT_BATCH_SIZE) {
+                List<File> batch = files.subList(offset, Math.min(offset + IMPORT_BATCH_SIZE, total));
+                try {
+                    LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + (offset + batch.size()) + "/" + total);
+                    List<TagsData> tags = parseTags(batch);
+                    List<PlaylistItem> items = new ArrayList<>(batch.size());
+                    for (int i = 0; i < batch.size(); i++) {
+                        items.add(newPlaylistItem(playlist, batch.get(i), tags.get(i), starred || playlist.isStarred()));
+                    }
+                    addPlaylistItems(playlist, items, index != -1 ? index + offset : -1);
+                    if (isPlaylistSelected(playlist)) {
+                        // refresh UI
+                        LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
+                    }
+                } finally {
+                    LibraryMediator.instance().getLibrarySearch().revertStatus();
+                }
+            }
+        } finally {
+            if (db != null) {
+                db.endBulk();
+            }
+        }
     }
 
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred, int index) {
-        try {
-            LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
-            TagsData mt = new TagsReader(file).parse();
-            PlaylistItem item = playlist.newItem(
-                    file.getAbsolutePath(),
-                    file.getName(),
-                    file.length(),
-                    FilenameUtils.getExtension(file.getName()),
-                    mt.getTitle(),
-                    mt.getDuration(),
-                    mt.getArtist(),
-                    mt.getAlbum(),
-                    "",// TODO: cover art path
-                    mt.getBitrate(),
-                    mt.getComment(),
-                    mt.getGenre(),
-                    mt.getTrack(),
-                    mt.getYear(),
-                    starred || playlist.isStarred());
-            List<PlaylistItem> items = playlist.getItems();
-            if (index != -1 && index < items.size()) {
-                // insert item
-                items.add(index, item);
-                // update all sort indexes from insertion point onwards
-                for (int i = index; i < items.size(); i++) {
-                    PlaylistItem curItem = items.get(i);
-                    curItem.setSortIndexByTrackNumber(i+1);
-                    curItem.save();
+    private static void addPlaylistItems(Playlist playlist, List<PlaylistItem> newItems, int index) {
+        List<PlaylistItem> items = playlist.getItems();
+        if (index != -1 && index < items.size()) {
+            // insert items, only the new ones get sort keys unless there is no room left
+            items.addAll(index, newItems);
+            List<PlaylistItem> changed = playlist.assignSortKeys(index, newItems.size());
+            playlist.saveSortKeys(changed);
+            playlist.refreshSortIndexes();
+            playlist.saveItems(newItems, true);
+        } else {
+            items.addAll(newItems);
+            // all the items get new keys if there is no room left at the end
+            List<PlaylistItem> changed = playlist.assignSortKeys(items.size() - newItems.size(), newItems.size());
+            playlist.saveSortKeys(changed);
+            for (int i = 0; i < newItems.size(); i++) {
+                // fall back index would be it being the last track.
+                newItems.get(i).setSortIndexByTrackNumber(items.size() - newItems.size() + i + 1);
+            }
+            playlist.saveItems(newItems, true);
+        }
+        spreadSortKeysLater(playlist);
+    }
+
+    /**
+     * Renumbers the playlist in the background once the inserts leave its
+     * sort keys too close together, so the next inserts don't have to.
+     */
+    private static void spreadSortKeysLater(final Playlist playlist) {
+        if (!playlist.hasCrowdedSortKeys()) {
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!playlist.isDeleted()) {
+                    playlist.saveSortKeys(playlist.spreadSortKeys());
                 }
-            } else {
-                items.add(item);
-                item.setSortIndexByTrackNumber(items.size()); // fall back index would be it being the last track.
-                item.save(item.isStarred());
             }
-            if (isPlaylistSelected(playlist)) {
-                // refresh UI
-                LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
+        });
+    }
+
+    private static PlaylistItem newPlaylistItem(Playlist playlist, File file, TagsData mt, boolean starred) {
+        if (mt == null) {
+            // no parser for this file, use what we know
+            return playlist.newItem(file.getAbsolutePath(), file.getName(), file.length(), FilenameUtils.getExtension(file.getName()),
+                    FilenameUtils.getBaseName(file.getName()), 0, "", "", "", "", "", "", "", "", starred);
+        }
+        return playlist.newItem(
+                file.getAbsolutePath(),
+                file.getName(),
+                file.length(),
+                FilenameUtils.getExtension(file.getName()),
+                mt.getTitle(),
+                mt.getDuration(),
+                mt.getArtist(),
+                mt.getAlbum(),
+                "",// TODO: cover art path
+                mt.getBitrate(),
+                mt.getComment(),
+                mt.getGenre(),
+                mt.getTrack(),
+                mt.getYear(),
+                starred);
+    }
+
+    /**
+     * Parses the tags of the files in the tags pool, the result is in the
+     * same order of the files, with null for the files that failed.
+     */
+    private static List<TagsData> parseTags(List<File> files) {
+        List<Future<TagsData>> futures = new ArrayList<>(files.size());
+        for (final File file : files) {
+            futures.add(tagsExecutor.submit(new Callable<TagsData>() {
+                @Override
+                public TagsData call() throws Exception {
+                    return new TagsReader(file).parse();
+                }
+            }));
+        }
+        List<TagsData> result = new ArrayList<>(files.size());
+        for (int i = 0; i < futures.size(); i++) {
+            TagsData data = null;
+            try {
+                data = futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int j = i; j < futures.size(); j++) {
+                    futures.get(j).cancel(true);
+                }
+            } catch (Throwable e) {
+                LOG.warn("Error parsing tags of file: " + files.get(i), e);
             }
-        } finally {
-            LibraryMediator.instance().getLibrarySearch().revertStatus();
+            result.add(data);
         }
+        return result;
     }
 
     public static String getSecondsInDDHHMMSS(int s) {
@@ -353,10 +453,11 @@ public class LibraryUtils {
                 try {
                     Set<File> ignore = TorrentUtil.getIgnorableFiles();
                     addToPlaylist(playlist, files, playlist.isStarred(), index, ignore);
+                    // the added items and their sort keys are already saved
                     if (playlist.isStarred()) {
                         playlist.refresh();
+                        playlist.save();
                     }
-                    playlist.save();
                 } finally {
                     asyncAddToPlaylistFinalizer(playlist);
                 }
@@ -384,10 +485,11 @@ public class LibraryUtils {
         Thread t = new Thread(new Runnable() {
             public void run() {
                 addToPlaylist(playlist, playlistItems, playlist.isStarred(), index);
+                // the added items and their sort keys are already saved
                 if (playlist.isStarred()) {
                     playlist.refresh();
+                    playlist.save();
                 }
-                playlist.save();
                 GUIMediator.safeInvokeLater(new Runnable() {
                     public void run() {
                         LibraryMediator.instance().getLibraryPlaylists().refreshSelection();
@@ -458,29 +560,44 @@ public class LibraryUtils {
     }
 
     private static void addToPlaylist(Playlist playlist, List<? extends AbstractLibraryTableDataLine<?>> lines) {
-        for (int i = 0; i < lines.size() && !playlist.isDeleted(); i++) {
-            AbstractLibraryTableDataLine<?> line = lines.get(i);
+        List<File> files = new ArrayList<>(lines.size());
+        for (AbstractLibraryTableDataLine<?> line : lines) {
             if (MediaPlayer.isPlayableFile(line.getFile())) {
-                LibraryUtils.addPlaylistItem(playlist, line.getFile());
+                files.add(line.getFile());
             }
         }
+        importFiles(playlist, files, playlist.isStarred(), -1);
     }
 
     private static void addToPlaylist(Playlist playlist, File[] files, boolean starred, Set<File> ignore) {
         addToPlaylist(playlist, files, starred || playlist.isStarred(), -1, ignore);
     }
 
-    private static int addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
-        int count = 0;
-        for (int i = 0; i < files.length && !playlist.isDeleted(); i++) {
-            if (MediaPlayer.isPlayableFile(files[i]) && !ignore.contains(files[i])) {
-                LibraryUtils.addPlaylistItem(playlist, files[i], playlist.isStarred() || starred, index + count);
-                count++;
-            } else if (files[i].isDirectory()) {
-                count += addToPlaylist(playlist, files[i].listFiles(), playlist.isStarred() || starred, index + count, ignore);
+    private static void addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
+        importFiles(playlist, getPlayableFiles(playlist, files, ignore), starred || playlist.isStarred(), index);
+    }
+
+    /**
+     * Walks the files and folders (depth first, in the given order) collecting
+     * the playable files.
+     */
+    private static List<File> getPlayableFiles(Playlist playlist, File[] files, Set<File> ignore) {
+        List<File> result = new ArrayList<>();
+        Deque<File> stack = new LinkedList<>(Arrays.asList(files));
+        while (!stack.isEmpty() && !playlist.isDeleted()) {
+            File file = stack.pollFirst();
+            if (MediaPlayer.isPlayableFile(file) && !ignore.contains(file)) {
+                result.add(file);
+            } else if (file.isDirectory()) {
+                File[] children = file.listFiles();
+                if (children != null) {
+                    for (int i = children.length - 1; i >= 0; i--) {
+                        stack.addFirst(children[i]);
+                    }
+                }
             }
         }
-        return count;
+        return result;
     }
 
     private static void addToPlaylist(Playlist playlist, PlaylistItem[] playlistItems) {
@@ -490,39 +607,68 @@ public class LibraryUtils {
     private static void addToPlaylist(Playlist playlist, PlaylistItem[] playlistItems, boolean starred, int index) {
         List<PlaylistItem> items = playlist.getItems();
         if (index != -1 && index <= items.size()) {
-            List<Integer> toRemove = new ArrayList<>(playlistItems.length);
+            Set<Integer> toRemove = new HashSet<>(playlistItems.length);
+            List<PlaylistItem> newItems = new ArrayList<>(playlistItems.length);
             for (int i = 0; i < playlistItems.length && !playlist.isDeleted(); i++) {
-                toRemove.add(playlistItems[i].getId());
+                if (playlistItems[i].getId() >= 0) {
+                    toRemove.add(playlistItems[i].getId());
+                }
                 playlistItems[i].setId(LibraryDatabase.OBJECT_NOT_SAVED_ID);
                 playlistItems[i].setPlaylist(playlist);
-                items.add(index + i, playlistItems[i]);
                 playlistItems[i].setStarred(starred || playlist.isStarred());
-                playlistItems[i].save();
-            }
-            for (int i = 0; i < toRemove.size() && !playlist.isDeleted(); i++) {
-                int id = toRemove.get(i);
-                for (int j = 0; j < items.size() && !playlist.isDeleted(); j++) {
-                    if (items.get(j).getId() == id) {
-                        items.remove(j);
-                        break;
+                newItems.add(playlistItems[i]);
+            }
+            if (playlist.isDeleted()) {
+                return;
+            }
+            List<PlaylistItem> removed = new ArrayList<>();
+            synchronized (items) {
+                items.addAll(index, newItems);
+                // the copies replace the entries they come from
+                if (!toRemove.isEmpty()) {
+                    int before = 0;
+                    int position = 0;
+                    Iterator<PlaylistItem> it = items.iterator();
+                    while (it.hasNext()) {
+                        PlaylistItem item = it.next();
+                        if (toRemove.contains(item.getId())) {
+                            it.remove();
+                            removed.add(item);
+                            if (position < index) {
+                                before++;
+                            }
+                        }
+                        position++;
                     }
+                    index -= before;
                 }
             }
-            // update sort indexes now that the ordering in the list is correct
-            items = playlist.getItems();
-            for (int i = 0; i < items.size(); i++) {
-                PlaylistItem item = items.get(i);
-                item.setSortIndexByTrackNumber(i + 1); // set index 1-based
-                item.save();
+            for (PlaylistItem item : removed) {
+                item.delete();
             }
+            playlist.saveSortKeys(playlist.assignSortKeys(index, newItems.size()));
+            playlist.refreshSortIndexes();
+            playlist.saveItems(newItems, false);
+            spreadSortKeysLater(playlist);
         } else {
+            List<PlaylistItem> newItems = new ArrayList<>(playlistItems.length);
             for (int i = 0; i < playlistItems.length && !playlist.isDeleted(); i++) {
-                items.add(playlistItems[i]);
-                playlistItems[i].setSortIndexByTrackNumber(items.size()); // set sort index to be at the end (1-based)
                 playlistItems[i].setStarred(playlistItems[i].isStarred() || starred || playlist.isStarred());
                 playlistItems[i].setPlaylist(playlist);
-                playlistItems[i].save();
+                newItems.add(playlistItems[i]);
+            }
+            if (playlist.isDeleted() || newItems.isEmpty()) {
+                return;
             }
+            items.addAll(newItems);
+            int first = items.size() - newItems.size();
+            // all the items get new keys if there is no room left at the end
+            playlist.saveSortKeys(playlist.assignSortKeys(first, newItems.size()));
+            for (int i = 0; i < newItems.size(); i++) {
+                newItems.get(i).setSortIndexByTrackNumber(first + i + 1); // set sort index to be at the end (1-based)
+            }
+            playlist.saveItems(newItems, false);
+            spreadSortKeysLater(playlist);
         }
     }
 
@@ -556,32 +702,29 @@ public class LibraryUtils {
         return directoryContainsExtension(directory, 4, ignore, extensionWithoutDot);
     }
 
-    private static boolean directoryContainsExtension(File directory, int depth, Set<File> ignore, String... extensionWithoutDot) {
-        try {
-            if (directory == null || !directory.isDirectory()) {
-                return false;
-            }
-            File[] files = directory.listFiles();
-            if (files == null || files.length == 0) {
-                return false;
+    private static boolean directoryContainsExtension(File directory, int depth, final Set<File> ignore, final String... extensionWithoutDot) {
+        if (directory == null || !directory.isDirectory()) {
+            return false;
+        }
+        final AtomicBoolean found = new AtomicBoolean(false);
+        final FileWalker[] walker = new FileWalker[1];
+        walker[0] = new FileWalker(Platforms.fileSystem(), new FileWalker.Filter() {
+            @Override
+            public boolean accept(File file, boolean directory) {
+                return directory || (FileUtils.hasExtension(file.getName(), extensionWithoutDot) && !ignore.contains(file));
             }
-            for (File childFile : files) {
-                if (!childFile.isDirectory()) {
-                    if (FileUtils.hasExtension(childFile.getAbsolutePath(), extensionWithoutDot) && !ignore.contains(childFile)) {
-                        return true;
-                    }
-                } else {
-                    if (depth > 0) {
-                        if (directoryContainsExtension(childFile, depth - 1, ignore, extensionWithoutDot)) {
-                            return true;
-                        }
-                    }
+
+            @Override
+            public void file(File file, boolean directory) {
+                if (!directory) {
+                    found.set(true);
+                    walker[0].cancel();
                 }
             }
-        } catch (NullPointerException e) {
-            // NPE reported in bug manager, ignore until refactor
-        }
-        return false;
+        });
+        // depth counts the levels of subfolders below the directory
+        walker[0].maxDepth(depth + 1).walk(directory);
+        return found.get();
     }
 
     private static String suggestPlaylistName(File[] mediaFiles) {
@@ -589,9 +732,14 @@ public class LibraryUtils {
         HistoHashMap<String> artistsAlbums = new HistoHashMap<>();
         HistoHashMap<String> albumNames = new HistoHashMap<>();
         HistoHashMap<String> genres = new HistoHashMap<>();
+        List<File> playableFiles = new ArrayList<>(mediaFiles.length);
         for (File mf : mediaFiles) {
             if (MediaPlayer.isPlayableFile(mf)) {
-                TagsData mt = new TagsReader(mf).parse();
+                playableFiles.add(mf);
+            }
+        }
+        for (TagsData mt : parseTags(playableFiles)) {
+            if (mt != null) {
                 artistNames.update(mt.getArtist());
                 artistsAlbums.update(mt.getArtist() + " - " + mt.getAlbum());
                 albumNames.update(mt.getAlbum());
@@ -709,33 +857,47 @@ public class LibraryUtils {
         return keyCode == KeyEvent.VK_F5 || (ctrlCmdDown && keyCode == KeyEvent.VK_R);
     }
 
-    static void movePlaylistItemsToIndex(Playlist playlist, int[] selectedIndexes, int index) {
+    static void movePlaylistItemsToIndex(final Playlist playlist, int[] selectedIndexes, int index) {
         List<PlaylistItem> items = playlist.getItems();
-        int targetIndex = index;
-        // first, order items in list correctly
-        for (int i = 0; i < selectedIndexes.length; i++) {
-            int sourceIndex = selectedIndexes[i];
-            if (sourceIndex != targetIndex) {
-                items.add(targetIndex, items.get(sourceIndex));
-                items.remove(sourceIndex < targetIndex ? sourceIndex : sourceIndex + 1);
-                // adjust remaining selected indexes if insertion point is greater than their location
-                for (int j = i + 1; j < selectedIndexes.length; j++) {
-                    if (targetIndex > selectedIndexes[j]) {
-                        selectedIndexes[j]--;
+        final List<PlaylistItem> changed;
+        synchronized (items) {
+            List<PlaylistItem> current = new ArrayList<>(items);
+            boolean[] selected = new boolean[current.size()];
+            List<PlaylistItem> moved = new ArrayList<>(selectedIndexes.length);
+            int targetIndex = Math.min(index, current.size());
+            // first, take the selected items out keeping their relative order
+            for (int sourceIndex : selectedIndexes) {
+                if (sourceIndex >= 0 && sourceIndex < current.size() && !selected[sourceIndex]) {
+                    selected[sourceIndex] = true;
+                    moved.add(current.get(sourceIndex));
+                    if (sourceIndex < index) {
+                        targetIndex--;
                     }
                 }
-                // update insertion point
-                if (sourceIndex > targetIndex) {
-                    targetIndex++;
+            }
+            if (moved.isEmpty()) {
+                return;
+            }
+            List<PlaylistItem> reordered = new ArrayList<>(current.size());
+            for (int i = 0; i < current.size(); i++) {
+                if (!selected[i]) {
+                    reordered.add(current.get(i));
                 }
             }
+            reordered.addAll(targetIndex, moved);
+            items.clear();
+            items.addAll(reordered);
+            // second, new keys only for the moved items (or all of them if there is no room)
+            changed = playlist.assignSortKeys(targetIndex, moved.size());
+            playlist.refreshSortIndexes();
         }
-        // second, generate new indexes based list order
-        for (int i = 0; i < items.size(); i++) {
-            PlaylistItem item = items.get(i);
-            item.setSortIndexByTrackNumber(i + 1); // set index (1-based)
-            item.save();
-        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                playlist.saveSortKeys(changed);
+            }
+        });
+        spreadSortKeysLater(playlist);
         // initiate UI refresh
         GUIMediator.safeInvokeLater(new Runnable() {
             public void run() {
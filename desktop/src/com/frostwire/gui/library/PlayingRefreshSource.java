@@ -0,0 +1,44 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.gui.player.MediaPlayer;
+import com.limegroup.gnutella.gui.RefreshSource;
+
+import java.awt.*;
+
+/**
+ * The source of the library components that only change on screen with
+ * the media playing, refreshed when another media opens or the playback
+ * state changes.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class PlayingRefreshSource extends RefreshSource.Showing {
+
+    PlayingRefreshSource(Component component) {
+        super(component);
+    }
+
+    @Override
+    public long getVersion() {
+        return MediaPlayer.instance().getPlayingVersion();
+    }
+}
@@ -0,0 +1,572 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import com.frostwire.util.Logger;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of the metadata read from the library files: the parsed
+ * tags, a thumbnail of the artwork and the license and payment options of
+ * the .torrent files.
+ * <p>
+ * An entry is valid while the file keeps the same length and modification
+ * time, it is parsed again after the file changes. The entries are kept in
+ * a LRU in memory and saved to disk, the thumbnails are saved as images and
+ * only the most recently used are kept in memory.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class MetadataCache {
+
+    private static final Logger LOG = Logger.getLogger(MetadataCache.class);
+
+    private static final int VERSION = 1;
+    private static final int MAX_ENTRIES = 20000;
+    private static final int MAX_THUMBNAILS = 32;
+    private static final int THUMBNAIL_SIZE = 512;
+    private static final long SAVE_INTERVAL = 60 * 1000;
+
+    private static final int ARTWORK_UNKNOWN = 0;
+    private static final int ARTWORK_NONE = 1;
+    private static final int ARTWORK_THUMBNAIL = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File cacheFile;
+    private final File thumbnailsDir;
+    private final ExecutorService executor;
+    private final Timer timer;
+
+    // all guarded by this
+    private final Map<String, Entry> entries;
+    private final Map<String, BufferedImage> thumbnails;
+    private boolean dirty;
+
+    private MetadataCache() {
+        this.cacheFile = new File(CommonUtils.getUserSettingsDir(), "metadata_cache.dat");
+        this.thumbnailsDir = new File(CommonUtils.getUserSettingsDir(), "metadata_thumbnails");
+        this.executor = ExecutorsHelper.newProcessingQueue("MetadataCache");
+        this.timer = new Timer("MetadataCache-Timer", true);
+
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > MAX_ENTRIES) {
+                    discardThumbnail(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.thumbnails = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BufferedImage> eldest) {
+                return size() > MAX_THUMBNAILS;
+            }
+        };
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        save();
+                    }
+                });
+            }
+        }, SAVE_INTERVAL, SAVE_INTERVAL);
+    }
+
+    private static class Loader {
+        static final MetadataCache INSTANCE = new MetadataCache();
+    }
+
+    public static MetadataCache instance() {
+        return Loader.INSTANCE;
+    }
+
+    /**
+     * Returns the cached tags of the file, or calls {@code parser} and caches
+     * its result if the file is not in the cache or changed since cached.
+     */
+    public TagsData getTags(File file, Callable<TagsData> parser) {
+        Key key = new Key(file);
+        synchronized (this) {
+            Entry e = validEntry(key, false);
+            if (e != null && e.tags != null) {
+                return e.tags;
+            }
+        }
+
+        TagsData tags = call(parser, file);
+        if (tags != null && key.isValid()) {
+            synchronized (this) {
+                validEntry(key, true).tags = tags;
+                dirty = true;
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * Returns the cached artwork thumbnail of the file, or calls {@code reader}
+     * and caches a thumbnail of its result. The absence of artwork is cached
+     * too, in that case it returns null.
+     */
+    public BufferedImage getThumbnail(File file, Callable<BufferedImage> reader) {
+        Key key = new Key(file);
+        File thumbnailFile = null;
+        synchronized (this) {
+            Entry e = validEntry(key, false);
+            if (e != null) {
+                if (e.artwork == ARTWORK_NONE) {
+                    return null;
+                }
+                if (e.artwork == ARTWORK_THUMBNAIL) {
+                    BufferedImage image = thumbnails.get(key.path);
+                    if (image != null) {
+                        return image;
+                    }
+                    thumbnailFile = new File(thumbnailsDir, e.thumbnail);
+                }
+            }
+        }
+
+        if (thumbnailFile != null) {
+            BufferedImage image = readThumbnail(thumbnailFile);
+            if (image != null) {
+                synchronized (this) {
+                    thumbnails.put(key.path, image);
+                }
+                return image;
+            }
+        }
+
+        BufferedImage image = call(reader, file);
+        final BufferedImage thumbnail = image != null ? scale(image) : null;
+        if (key.isValid()) {
+            final File f;
+            synchronized (this) {
+                Entry e = validEntry(key, true);
+                discardThumbnail(e);
+                if (thumbnail != null) {
+                    e.artwork = ARTWORK_THUMBNAIL;
+                    e.thumbnail = UUID.randomUUID().toString() + ".png";
+                    thumbnails.put(key.path, thumbnail);
+                    f = new File(thumbnailsDir, e.thumbnail);
+                } else {
+                    e.artwork = ARTWORK_NONE;
+                    f = null;
+                }
+                dirty = true;
+            }
+            if (f != null) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeThumbnail(thumbnail, f);
+                    }
+                });
+            }
+        }
+        return thumbnail;
+    }
+
+    /**
+     * Returns the cached license and payment options of the .torrent file, or
+     * calls {@code reader} and caches its result.
+     */
+    public TorrentMetadata getTorrentMetadata(File file, Callable<TorrentMetadata> reader) {
+        Key key = new Key(file);
+        synchronized (this) {
+            Entry e = validEntry(key, false);
+            if (e != null && e.torrent != null) {
+                return e.torrent;
+            }
+        }
+
+        TorrentMetadata torrent = call(reader, file);
+        if (torrent != null && key.isValid()) {
+            synchronized (this) {
+                validEntry(key, true).torrent = torrent;
+                dirty = true;
+            }
+        }
+        return torrent;
+    }
+
+    /**
+     * Forgets the file, for when it is known to be removed.
+     */
+    public void remove(File file) {
+        synchronized (this) {
+            Entry e = entries.remove(file.getAbsolutePath());
+            if (e != null) {
+                discardThumbnail(e);
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the entry of the key, discarding it if the file changed.
+     * Must be called holding the lock.
+     *
+     * @param create if a new entry should be created when there is no valid one
+     */
+    private Entry validEntry(Key key, boolean create) {
+        Entry e = entries.get(key.path);
+        if (e != null && (e.length != key.length || e.lastModified != key.lastModified)) {
+            entries.remove(key.path);
+            discardThumbnail(e);
+            dirty = true;
+            e = null;
+        }
+        if (e == null && create) {
+            e = new Entry(key.length, key.lastModified);
+            entries.put(key.path, e);
+        }
+        return e;
+    }
+
+    /**
+     * Must be called holding the lock.
+     */
+    private void discardThumbnail(Entry e) {
+        if (e.thumbnail != null) {
+            final File f = new File(thumbnailsDir, e.thumbnail);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    f.delete();
+                }
+            });
+            e.thumbnail = null;
+        }
+        e.artwork = ARTWORK_UNKNOWN;
+    }
+
+    private static <T> T call(Callable<T> c, File file) {
+        try {
+            return c.call();
+        } catch (Throwable e) {
+            LOG.warn("Error reading metadata of " + file, e);
+            return null;
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (w <= THUMBNAIL_SIZE && h <= THUMBNAIL_SIZE) {
+            return image;
+        }
+        double f = Math.min((double) THUMBNAIL_SIZE / w, (double) THUMBNAIL_SIZE / h);
+        int tw = Math.max(1, (int) (w * f));
+        int th = Math.max(1, (int) (h * f));
+        BufferedImage thumbnail = new BufferedImage(tw, th, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = thumbnail.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, tw, th, null);
+        } finally {
+            g.dispose();
+        }
+        return thumbnail;
+    }
+
+    private static BufferedImage readThumbnail(File f) {
+        try {
+            return ImageIO.read(f);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private void writeThumbnail(BufferedImage image, File f) {
+        try {
+            if (!thumbnailsDir.isDirectory() && !thumbnailsDir.mkdirs()) {
+                return;
+            }
+            ImageIO.write(image, "png", f);
+        } catch (Throwable e) {
+            LOG.warn("Error saving artwork thumbnail", e);
+        }
+    }
+
+    private void load() {
+        Set<String> thumbnailNames = new HashSet<>();
+        if (cacheFile.exists()) {
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(cacheFile))));
+                if (in.readInt() == VERSION) {
+                    int n = in.readInt();
+                    Map<String, Entry> loaded = new LinkedHashMap<>();
+                    for (int i = 0; i < n; i++) {
+                        String path = in.readUTF();
+                        Entry e = readEntry(in);
+                        loaded.put(path, e);
+                        if (e.thumbnail != null) {
+                            thumbnailNames.add(e.thumbnail);
+                        }
+                    }
+                    synchronized (this) {
+                        for (Map.Entry<String, Entry> e : loaded.entrySet()) {
+                            // anything cached since the start is newer
+                            if (!entries.containsKey(e.getKey())) {
+                                entries.put(e.getKey(), e.getValue());
+                            }
+                        }
+                    }
+                }
+            } catch (Throwable e) {
+                LOG.warn("Error loading metadata cache, it will be rebuilt", e);
+            } finally {
+                if (in != null) {
+                    try {
+                        in.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+
+        // thumbnails written after the last save, before a crash
+        File[] files = thumbnailsDir.listFiles();
+        if (files != null) {
+            synchronized (this) {
+                for (Entry e : entries.values()) {
+                    if (e.thumbnail != null) {
+                        thumbnailNames.add(e.thumbnail);
+                    }
+                }
+            }
+            for (File f : files) {
+                if (!thumbnailNames.contains(f.getName())) {
+                    f.delete();
+                }
+            }
+        }
+    }
+
+    private void save() {
+        List<String> paths;
+        List<Entry> values;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            paths = new ArrayList<>(entries.keySet());
+            values = new ArrayList<>(entries.size());
+            for (Entry e : entries.values()) {
+                values.add(e.copy());
+            }
+        }
+
+        File temp = new File(cacheFile.getParentFile(), cacheFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+            out.writeInt(VERSION);
+            out.writeInt(paths.size());
+            // least recently used first, the load keeps the order
+            for (int i = 0; i < paths.size(); i++) {
+                out.writeUTF(paths.get(i));
+                writeEntry(out, values.get(i));
+            }
+            out.close();
+            out = null;
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Throwable e) {
+            LOG.warn("Error saving metadata cache", e);
+            synchronized (this) {
+                dirty = true;
+            }
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static Entry readEntry(DataInputStream in) throws IOException {
+        Entry e = new Entry(in.readLong(), in.readLong());
+        e.artwork = in.readByte();
+        e.thumbnail = readString(in);
+        if (in.readBoolean()) {
+            e.tags = new TagsData(in.readInt(), readString(in), readString(in), readString(in), readString(in),
+                    readString(in), readString(in), readString(in), readString(in), readString(in));
+        }
+        if (in.readBoolean()) {
+            e.torrent = new TorrentMetadata(readString(in), readString(in), readString(in));
+        }
+        return e;
+    }
+
+    private static void writeEntry(DataOutputStream out, Entry e) throws IOException {
+        out.writeLong(e.length);
+        out.writeLong(e.lastModified);
+        out.writeByte(e.artwork);
+        writeString(out, e.thumbnail);
+        out.writeBoolean(e.tags != null);
+        if (e.tags != null) {
+            TagsData t = e.tags;
+            out.writeInt(t.getDuration());
+            writeString(out, t.getBitrate());
+            writeString(out, t.getTitle());
+            writeString(out, t.getArtist());
+            writeString(out, t.getAlbum());
+            writeString(out, t.getComment());
+            writeString(out, t.getGenre());
+            writeString(out, t.getTrack());
+            writeString(out, t.getYear());
+            writeString(out, t.getLyrics());
+        }
+        out.writeBoolean(e.torrent != null);
+        if (e.torrent != null) {
+            writeString(out, e.torrent.getLicense());
+            writeString(out, e.torrent.getBitcoin());
+            writeString(out, e.torrent.getPaypalUrl());
+        }
+    }
+
+    // not writeUTF, the lyrics could be longer than 64k
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        if (n < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[n];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * The license and payment options found in the info map of a .torrent file.
+     */
+    public static final class TorrentMetadata {
+
+        private final String license;
+        private final String bitcoin;
+        private final String paypalUrl;
+
+        public TorrentMetadata(String license, String bitcoin, String paypalUrl) {
+            this.license = license;
+            this.bitcoin = bitcoin;
+            this.paypalUrl = paypalUrl;
+        }
+
+        public String getLicense() {
+            return license;
+        }
+
+        public String getBitcoin() {
+            return bitcoin;
+        }
+
+        public String getPaypalUrl() {
+            return paypalUrl;
+        }
+    }
+
+    private static final class Key {
+
+        final String path;
+        final long length;
+        final long lastModified;
+
+        Key(File file) {
+            this.path = file.getAbsolutePath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        /**
+         * A file that doesn't exist or can't be read has no modification time.
+         */
+        boolean isValid() {
+            return lastModified != 0;
+        }
+    }
+
+    private static final class Entry {
+
+        final long length;
+        final long lastModified;
+
+        int artwork;
+        String thumbnail;
+        TagsData tags;
+        TorrentMetadata torrent;
+
+        Entry(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        Entry copy() {
+            Entry e = new Entry(length, lastModified);
+            e.artwork = artwork;
+            e.thumbnail = thumbnail;
+            e.tags = tags;
+            e.torrent = torrent;
+            return e;
+        }
+    }
+}
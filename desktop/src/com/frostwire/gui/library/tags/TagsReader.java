@@ -21,6 +21,7 @@ import com.frostwire.util.Logger;
 
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.concurrent.Callable;
 
 /**
  * 
@@ -40,7 +41,41 @@ public class TagsReader {
         parser = new TagsParserFactory().getInstance(file);
     }
 
+    /**
+     * Returns the tags from the metadata cache, the file is parsed only if
+     * it is not cached or changed since cached.
+     */
     public TagsData parse() {
+        return MetadataCache.instance().getTags(file, new Callable<TagsData>() {
+            @Override
+            public TagsData call() throws Exception {
+                return parseFile();
+            }
+        });
+    }
+
+    /**
+     * Returns the artwork in full resolution, read from the file.
+     */
+    public BufferedImage getArtwork() {
+        return readArtwork();
+    }
+
+    /**
+     * Returns a thumbnail of the artwork from the metadata cache, the file is
+     * read only if it is not cached or changed since cached. Meant for the
+     * tables and lists, where the artwork is drawn small.
+     */
+    public BufferedImage getArtworkThumbnail() {
+        return MetadataCache.instance().getThumbnail(file, new Callable<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws Exception {
+                return readArtwork();
+            }
+        });
+    }
+
+    private TagsData parseFile() {
         TagsData data = null;
         if (parser != null) {
             data = parser.parse();
@@ -54,7 +89,7 @@ public class TagsReader {
         return data;
     }
 
-    public BufferedImage getArtwork() {
+    private BufferedImage readArtwork() {
         BufferedImage image = null;
         if (parser != null) {
             image = parser.getArtwork();
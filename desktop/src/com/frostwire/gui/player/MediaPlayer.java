@@ -70,6 +70,12 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
      */
     private List<MediaPlayerListener> listenerList = new CopyOnWriteArrayList<>();
 
+    /**
+     * Changes with the media opened and the playback state, only written
+     * in the UI thread.
+     */
+    private volatile long playingVersion;
+
     private MPlayer mplayer;
     private MediaSource currentMedia;
     private Playlist currentPlaylist;
@@ -209,6 +215,14 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
         listenerList.add(listener);
     }
 
+    /**
+     * A number that changes every time a media is opened or the playback
+     * state changes, for the components that show what is playing.
+     */
+    public long getPlayingVersion() {
+        return playingVersion;
+    }
+
     public MediaPlaybackState getState() {
         return mplayer.getCurrentState();
     }
@@ -529,6 +543,7 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
      * rate, sample rate, media type(MPEG, Streaming,etc..), etc..
      */
     private void fireOpened(MediaSource mediaSource) {
+        playingVersion++;
         for (MediaPlayerListener listener : listenerList) {
             listener.mediaOpened(this, mediaSource);
         }
@@ -558,6 +573,7 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
      * STOPPED -> EOF
      */
     private void fireState(MediaPlaybackState state) {
+        playingVersion++;
         for (MediaPlayerListener listener : listenerList) {
             listener.stateChange(this, state);
         }
@@ -21,10 +21,12 @@ import com.frostwire.uxstats.UXStatsConf;
 import com.limegroup.gnutella.gui.search.SearchEngine;
 import com.limegroup.gnutella.settings.ApplicationSettings;
 import com.limegroup.gnutella.util.FrostWireUtils;
+import org.limewire.util.CommonUtils;
 import org.limewire.util.OSUtils;
 import org.xml.sax.*;
 import org.xml.sax.helpers.XMLReaderFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -440,6 +442,7 @@ final class UpdateMessageReader implements ContentHandler {
                 int maxEntries = Integer.parseInt(atts.getValue("maxEntries"));
 
                 UXStatsConf context = new UXStatsConf(url, os, fwversion, fwbuild, period, minEntries, maxEntries);
+                UXStats.instance().setSpoolFile(new File(CommonUtils.getUserSettingsDir(), "uxstats.spool"));
                 UXStats.instance().setContext(context);
             }
         } catch (Throwable e) {
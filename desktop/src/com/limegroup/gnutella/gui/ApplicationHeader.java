@@ -135,7 +135,8 @@ public final class ApplicationHeader extends JPanel implements RefreshListener {
         JComponent player = new MediaPlayerComponent().getMediaPanel();
         add(player, "dock east, growy, gapafter 10px!");
 
-        GUIMediator.addRefreshListener(this);
+        // the update button doesn't need more than that
+        GUIMediator.addRefreshListener(this, 5000, null);
 
         final ActionListener schemaListener = new SchemaListener();
         schemaListener.actionPerformed(null);
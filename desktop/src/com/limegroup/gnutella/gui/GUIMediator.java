@@ -66,9 +66,7 @@ import java.io.UnsupportedEncodingException;
 import java.lang.reflect.InvocationTargetException;
 import java.net.NetworkInterface;
 import java.net.URLEncoder;
-import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.LinkedBlockingQueue;
 
@@ -175,10 +173,10 @@ public final class GUIMediator {
     private static PopupMenu TRAY_MENU;
 
     /**
-     * <tt>List</tt> of <tt>RefreshListener</tt> classes to notify of UI refresh
+     * Schedules the <tt>RefreshListener</tt> classes to notify of UI refresh
      * events.
      */
-    private static final List<RefreshListener> REFRESH_LIST = new ArrayList<>();
+    private static final RefreshScheduler REFRESH_SCHEDULER = new RefreshScheduler();
 
     /**
      * String to be displayed in title bar of LW client.
@@ -267,8 +265,12 @@ public final class GUIMediator {
     }
 
     private void startTimer() {
-        RefreshTimer timer = new RefreshTimer();
-        timer.startTimer();
+        addRefreshListener(new RefreshListener() {
+            public void refresh() {
+                updateConnectionQualityAsync();
+            }
+        });
+        REFRESH_SCHEDULER.start();
     }
 
     /**
@@ -474,23 +476,6 @@ public final class GUIMediator {
         return STATUS_LINE;
     }
 
-    /**
-     * Refreshes the various gui components that require refreshing.
-     */
-    final void refreshGUI() {
-        for (RefreshListener aREFRESH_LIST : REFRESH_LIST) {
-            try {
-                aREFRESH_LIST.refresh();
-            } catch (Throwable t) {
-                // Show the error for each RefreshListener individually
-                // so that we continue refreshing the other items.
-                ErrorService.error(t);
-            }
-        }
-
-        updateConnectionQualityAsync();
-    }
-
     private static ThreadPool pool = new ThreadPool("GUIMediator-updateConnectionQuality", 1, 1, Integer.MAX_VALUE, new LinkedBlockingQueue<Runnable>(), true);
 
     private void updateConnectionQualityAsync() {
@@ -1264,8 +1249,28 @@ public final class GUIMediator {
      * @param listener new <tt>RefreshListener</tt> to add
      */
     public static void addRefreshListener(RefreshListener listener) {
-        if (!REFRESH_LIST.contains(listener))
-            REFRESH_LIST.add(listener);
+        addRefreshListener(listener, RefreshScheduler.DEFAULT_INTERVAL, null);
+    }
+
+    /**
+     * Adds the specified <tt>RefreshListener</tt> instance, to be refreshed
+     * at most every <tt>interval</tt> milliseconds, and only when the
+     * <tt>source</tt> is visible and its version changed.
+     *
+     * @param listener new <tt>RefreshListener</tt> to add
+     * @param interval the time between refreshes in milliseconds
+     * @param source   the data behind the listener, null to refresh it
+     *                 at every interval
+     */
+    public static void addRefreshListener(RefreshListener listener, int interval, RefreshSource source) {
+        REFRESH_SCHEDULER.add(listener, interval, source);
+    }
+
+    /**
+     * Removes the specified <tt>RefreshListener</tt> instance.
+     */
+    public static void removeRefreshListener(RefreshListener listener) {
+        REFRESH_SCHEDULER.remove(listener);
     }
 
     /**
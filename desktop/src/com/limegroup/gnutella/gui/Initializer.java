@@ -17,6 +17,7 @@ package com.limegroup.gnutella.gui;
 
 import com.frostwire.bittorrent.BTContext;
 import com.frostwire.bittorrent.BTEngine;
+import com.frostwire.transfers.TransferScheduler;
 import com.frostwire.util.UserAgentGenerator;
 import com.limegroup.gnutella.ExternalControl;
 import com.limegroup.gnutella.LimeCoreGlue;
@@ -26,6 +27,7 @@ import com.limegroup.gnutella.gui.bugs.BugManager;
 import com.limegroup.gnutella.gui.init.SetupManager;
 import com.limegroup.gnutella.gui.notify.NotifyUserProxy;
 import com.limegroup.gnutella.settings.ApplicationSettings;
+import com.limegroup.gnutella.settings.BittorrentSettings;
 import com.limegroup.gnutella.settings.ConnectionSettings;
 import com.limegroup.gnutella.settings.SharingSettings;
 import com.limegroup.gnutella.settings.StartupSettings;
@@ -89,6 +91,9 @@ public final class Initializer {
         DeadlockSupport.startDeadlockMonitoring();
         //stopwatch.resetAndLog("Start deadlock monitor");
 
+        // Publishes the search, http and bittorrent metrics through JMX.
+        MetricsSupport.register();
+
         // Installs properties & resources.
         //System.out.println("Initializer.initialize() install properties");
         installProperties();
@@ -476,6 +481,8 @@ public final class Initializer {
         BTEngine btEngine = BTEngine.getInstance();
         btEngine.start();
 
+        TransferScheduler.getInstance().maxActive(BittorrentSettings.MAX_ACTIVE_HTTP_DOWNLOADS.getValue());
+
         if (!SharingSettings.ENABLE_DISTRIBUTED_HASH_TABLE.getValue()) {
             BTEngine.getInstance().stopDht();
         }
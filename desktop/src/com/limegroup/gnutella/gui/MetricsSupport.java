@@ -0,0 +1,86 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui;
+
+import com.frostwire.util.Logger;
+import com.frostwire.util.metrics.Metrics;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Publishes the metrics of the application through JMX, to look at
+ * them with jconsole or VisualVM under {@code com.frostwire:type=Metrics}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class MetricsSupport {
+
+    private static final Logger LOG = Logger.getLogger(MetricsSupport.class);
+
+    private MetricsSupport() {
+    }
+
+    public static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.frostwire:type=Metrics");
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MetricsBean(Metrics.getInstance()), name);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to publish the metrics through JMX: " + e.getMessage());
+        }
+    }
+
+    public interface MetricsMXBean {
+
+        /**
+         * Every number, like {@code http.ttfb.ms.p95}.
+         */
+        Map<String, Long> getValues();
+
+        /**
+         * One line per metric.
+         */
+        String getDump();
+    }
+
+    private static final class MetricsBean implements MetricsMXBean {
+
+        private final Metrics metrics;
+
+        MetricsBean(Metrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public Map<String, Long> getValues() {
+            return metrics.values();
+        }
+
+        @Override
+        public String getDump() {
+            return metrics.dump();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui;
+
+import com.frostwire.util.metrics.Counter;
+import com.frostwire.util.metrics.Histogram;
+import com.frostwire.util.metrics.Metrics;
+import org.limewire.service.ErrorService;
+
+import javax.swing.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Refreshes the {@link RefreshListener}s on the EDT, each at its own
+ * interval, and only if it is visible and its data changed, according
+ * to its {@link RefreshSource}. A listener without a source is refreshed
+ * at every interval, as the old one second timer did.
+ * <p>
+ * The work of each tick is capped, the listeners left out go first in
+ * the next tick.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class RefreshScheduler {
+
+    /**
+     * The interval of the listeners added without one.
+     */
+    static final int DEFAULT_INTERVAL = 1000;
+
+    private static final int TICK_INTERVAL = 50;
+
+    /**
+     * The EDT time of a tick, after which the listeners due wait for
+     * the next one. At least one listener is refreshed every tick.
+     */
+    private static final long TICK_BUDGET = TimeUnit.MILLISECONDS.toNanos(8);
+
+    private final Timer timer;
+    private final Histogram tickTime;
+    private final Counter deferred;
+
+    /**
+     * Copied on write, so listeners can be added from any thread.
+     * LOCKING: must hold this monitor to write
+     */
+    private volatile Entry[] entries;
+
+    /**
+     * The entry to start the next tick with, only used on the EDT.
+     */
+    private int next;
+
+    RefreshScheduler() {
+        this.timer = new Timer(TICK_INTERVAL, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                tick();
+            }
+        });
+        this.tickTime = Metrics.getInstance().histogram("gui.refresh.us");
+        this.deferred = Metrics.getInstance().counter("gui.refresh.deferred");
+        this.entries = new Entry[0];
+    }
+
+    void start() {
+        timer.start();
+    }
+
+    /**
+     * Adds the listener, refreshed at most every {@code interval}
+     * milliseconds, or replaces how an already added one is refreshed.
+     *
+     * @param source the data behind the listener, null to refresh it at
+     *               every interval
+     */
+    synchronized void add(RefreshListener listener, int interval, RefreshSource source) {
+        Entry e = new Entry(listener, TimeUnit.MILLISECONDS.toNanos(Math.max(interval, TICK_INTERVAL)), source);
+        int index = indexOf(listener);
+        Entry[] arr;
+        if (index >= 0) {
+            arr = entries.clone();
+            arr[index] = e;
+        } else {
+            arr = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, arr, 0, entries.length);
+            arr[entries.length] = e;
+        }
+        entries = arr;
+    }
+
+    synchronized void remove(RefreshListener listener) {
+        int index = indexOf(listener);
+        if (index >= 0) {
+            Entry[] arr = new Entry[entries.length - 1];
+            System.arraycopy(entries, 0, arr, 0, index);
+            System.arraycopy(entries, index + 1, arr, index, arr.length - index);
+            entries = arr;
+        }
+    }
+
+    private int indexOf(RefreshListener listener) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].listener.equals(listener)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    void tick() {
+        Entry[] arr = entries;
+        int n = arr.length;
+        if (n == 0) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        int first = next < n ? next : 0;
+        boolean refreshed = false;
+        next = 0;
+
+        for (int i = 0; i < n; i++) {
+            int index = (first + i) % n;
+            Entry e = arr[index];
+            if (start - e.due < 0) {
+                continue;
+            }
+
+            long version = 0;
+            if (e.source != null) {
+                // hidden or unchanged, checked again in a full interval
+                if (!e.source.isVisible()) {
+                    e.due = start + e.interval;
+                    continue;
+                }
+                version = e.source.getVersion();
+                if (e.refreshed && version == e.version) {
+                    e.due = start + e.interval;
+                    continue;
+                }
+            }
+
+            if (refreshed && System.nanoTime() - start >= TICK_BUDGET) {
+                next = index;
+                deferred.inc();
+                break;
+            }
+
+            try {
+                e.listener.refresh();
+            } catch (Throwable t) {
+                // Show the error for each RefreshListener individually
+                // so that we continue refreshing the other items.
+                ErrorService.error(t);
+            }
+            e.version = version;
+            e.refreshed = true;
+            e.due = start + e.interval;
+            refreshed = true;
+        }
+
+        if (refreshed) {
+            tickTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    private static final class Entry {
+
+        final RefreshListener listener;
+        final long interval;
+        final RefreshSource source;
+
+        // only used on the EDT
+        long due;
+        long version;
+        boolean refreshed;
+
+        Entry(RefreshListener listener, long interval, RefreshSource source) {
+            this.listener = listener;
+            this.interval = interval;
+            this.source = source;
+            this.due = System.nanoTime();
+        }
+    }
+}
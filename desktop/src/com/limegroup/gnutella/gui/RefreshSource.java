@@ -0,0 +1,60 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui;
+
+import java.awt.Component;
+
+/**
+ * The data behind a {@link RefreshListener}, to refresh it only when it
+ * is on screen and something changed since the last refresh.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public interface RefreshSource {
+
+    /**
+     * A number that changes every time the data to show changes, like a
+     * counter or a hash. Called on the EDT, so it must be cheap.
+     */
+    long getVersion();
+
+    /**
+     * Returns true if the component is on screen.
+     */
+    boolean isVisible();
+
+    /**
+     * A source for components visible while {@code component} is showing,
+     * the subclasses tell the version of the data.
+     */
+    abstract class Showing implements RefreshSource {
+
+        private final Component component;
+
+        public Showing(Component component) {
+            this.component = component;
+        }
+
+        @Override
+        public boolean isVisible() {
+            return component.isShowing();
+        }
+    }
+}
@@ -113,7 +113,6 @@ public final class VisualConnectionCallback implements ActivityCallback {
 
     @Override
     public void updateDownload(BTDownload dl) {
-        // no need of running this in the UI thread
         mf().getBTDownloadMediator().updateDownload(dl);
     }
 
@@ -16,7 +16,9 @@
 package com.limegroup.gnutella.gui.options.panes;
 
 import com.frostwire.bittorrent.BTEngine;
+import com.frostwire.transfers.TransferScheduler;
 import com.limegroup.gnutella.gui.*;
+import com.limegroup.gnutella.settings.BittorrentSettings;
 import com.limegroup.gnutella.settings.ConnectionSettings;
 import com.limegroup.gnutella.settings.SharingSettings;
 
@@ -31,6 +33,8 @@ public final class TorrentConnectionPaneItem extends AbstractPaneItem {
 
     private final static String MAX_ACTIVE_DOWNLOADS = I18n.tr("Maximum active downloads");
 
+    private final static String MAX_ACTIVE_HTTP_DOWNLOADS = I18n.tr("Maximum active HTTP, YouTube and SoundCloud downloads");
+
     private final static String MAX_GLOBAL_NUM_CONNECTIONS = I18n.tr("Global maximum number of connections");
 
     private final static String MAX_PEERS = I18n.tr("Maximum number of peers");
@@ -43,6 +47,8 @@ public final class TorrentConnectionPaneItem extends AbstractPaneItem {
 
     private WholeNumberField MAX_ACTIVE_DOWNLOADS_FIELD = new SizedWholeNumberField(4);
 
+    private WholeNumberField MAX_ACTIVE_HTTP_DOWNLOADS_FIELD = new SizedWholeNumberField(4);
+
     private WholeNumberField MAX_GLOBAL_NUM_CONNECTIONS_FIELD = new SizedWholeNumberField(4);
 
     private WholeNumberField MAX_PEERS_FIELD = new SizedWholeNumberField(4);
@@ -83,6 +89,13 @@ public final class TorrentConnectionPaneItem extends AbstractPaneItem {
         panel.add(comp.getComponent());
         panel.addVerticalComponentGap();
 
+        comp = new LabeledComponent(
+                MAX_ACTIVE_HTTP_DOWNLOADS,
+                MAX_ACTIVE_HTTP_DOWNLOADS_FIELD, LabeledComponent.LEFT_GLUE,
+                LabeledComponent.LEFT);
+        panel.add(comp.getComponent());
+        panel.addVerticalComponentGap();
+
         comp = new LabeledComponent(
                 MAX_ACTIVE_SEEDS,
                 MAX_ACTIVE_SEEDS_FIELD, LabeledComponent.LEFT_GLUE,
@@ -117,7 +130,8 @@ public final class TorrentConnectionPaneItem extends AbstractPaneItem {
                 btEngine.maxActiveDownloads() != MAX_ACTIVE_DOWNLOADS_FIELD.getValue()) ||
                 (btEngine.maxConnections() != MAX_GLOBAL_NUM_CONNECTIONS_FIELD.getValue()) ||
                 (btEngine.maxPeers() != MAX_PEERS_FIELD.getValue()) ||
-                (btEngine.maxActiveSeeds() != MAX_ACTIVE_SEEDS_FIELD.getValue());
+                (btEngine.maxActiveSeeds() != MAX_ACTIVE_SEEDS_FIELD.getValue()) ||
+                (TransferScheduler.getInstance().maxActive() != MAX_ACTIVE_HTTP_DOWNLOADS_FIELD.getValue());
     }
 
     @Override
@@ -129,6 +143,7 @@ public final class TorrentConnectionPaneItem extends AbstractPaneItem {
         MAX_PEERS_FIELD.setValue(btEngine.maxPeers());
         MAX_ACTIVE_DOWNLOADS_FIELD.setValue(btEngine.maxActiveDownloads());
         MAX_ACTIVE_SEEDS_FIELD.setValue(btEngine.maxActiveSeeds());
+        MAX_ACTIVE_HTTP_DOWNLOADS_FIELD.setValue(BittorrentSettings.MAX_ACTIVE_HTTP_DOWNLOADS.getValue());
     }
 
     @Override
@@ -140,10 +155,17 @@ public final class TorrentConnectionPaneItem extends AbstractPaneItem {
         btEngine.maxPeers(MAX_PEERS_FIELD.getValue());
         btEngine.maxActiveDownloads(MAX_ACTIVE_DOWNLOADS_FIELD.getValue());
         btEngine.maxActiveSeeds(MAX_ACTIVE_SEEDS_FIELD.getValue());
+        applyMaxActiveHttpDownloads();
 
         return false;
     }
 
+    private void applyMaxActiveHttpDownloads() {
+        int maxActive = Math.max(1, MAX_ACTIVE_HTTP_DOWNLOADS_FIELD.getValue());
+        BittorrentSettings.MAX_ACTIVE_HTTP_DOWNLOADS.setValue(maxActive);
+        TransferScheduler.getInstance().maxActive(maxActive);
+    }
+
     private void applyDHTOptions(BTEngine btEngine) {
         boolean dhtExpectedValue = ENABLE_DISTRIBUTED_HASH_TABLE_CHECKBOX_FIELD.isSelected();
         boolean dhtCurrentStatus = btEngine.isDhtRunning();
@@ -29,6 +29,7 @@ import com.limegroup.gnutella.MediaType;
 import com.limegroup.gnutella.gui.ApplicationHeader;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.I18n;
+import com.limegroup.gnutella.gui.RefreshSource;
 import com.limegroup.gnutella.settings.SearchSettings;
 import org.limewire.util.I18NConvert;
 import org.limewire.util.StringUtils;
@@ -118,7 +119,12 @@ public final class SearchMediator {
         // Set the splash screen text...
         final String splashScreenString = I18n.tr("Loading Search Window...");
         GUIMediator.setSplashScreenString(splashScreenString);
-        GUIMediator.addRefreshListener(getSearchResultDisplayer());
+        GUIMediator.addRefreshListener(getSearchResultDisplayer(), 1000, new RefreshSource.Showing(getSearchResultDisplayer().getComponent()) {
+            @Override
+            public long getVersion() {
+                return getSearchResultDisplayer().getVersion();
+            }
+        });
 
         // Link up the tabs of results with the filters of the input screen.
         getSearchResultDisplayer().setSearchListener(new ChangeListener() {
@@ -139,12 +145,17 @@ public final class SearchMediator {
         CrawlPagedWebSearchPerformer.setMagnetDownloader(new LibTorrentMagnetDownloader());
 
         this.manager = SearchManager.getInstance();
-        this.manager.setListener(new SearchListener() {
+        this.manager.setListener(new SearchMergeListener() {
             @Override
             public void onResults(long token, List<? extends SearchResult> results) {
                 SearchMediator.this.onResults(token, results);
             }
 
+            @Override
+            public void onMerged(long token, List<MergedSearchResult> merged) {
+                SearchMediator.this.onMerged(token, merged);
+            }
+
             @Override
             public void onError(long token, SearchError error) {
 
@@ -567,6 +578,22 @@ public final class SearchMediator {
         }
     }
 
+    private void onMerged(long token, final List<MergedSearchResult> merged) {
+        final SearchResultMediator rp = getResultPanelForGUID(token);
+
+        if (rp != null && !rp.isStopped()) {
+            GUIMediator.safeInvokeLater(new Runnable() {
+                public void run() {
+                    try {
+                        rp.updateMerged(merged);
+                    } catch (Exception e) {
+                        LOG.error("Error updating merged search results in UI", e);
+                    }
+                }
+            });
+        }
+    }
+
     private void onFinished(long token) {
         SearchResultMediator rp = getResultPanelForGUID(token);
         if (rp != null) {
@@ -16,6 +16,7 @@
 package com.limegroup.gnutella.gui.search;
 
 import com.frostwire.gui.bittorrent.BTDownloadMediator;
+import com.frostwire.search.MergedSearchResult;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.IconManager;
 import com.limegroup.gnutella.gui.tables.AbstractDataLine;
@@ -59,6 +60,8 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
     private SearchResultActionsHolder actionsHolder;
     private SearchResultNameHolder name;
     private String seeds;
+    // the max of the seeds of the same torrent found by other engines
+    private int mergedSeeds;
     private Icon icon;
     private SizeHolder size;
     private SourceHolder source;
@@ -265,7 +268,21 @@ public final class SearchResultDataLine extends AbstractDataLine<UISearchResult>
     }
 
     public int getSeeds() {
-        return RESULT.getSeeds();
+        return Math.max(RESULT.getSeeds(), mergedSeeds);
+    }
+
+    /**
+     * Shows the seeds of the same torrent found by other engines.
+     *
+     * @return true if the line changed
+     */
+    boolean merge(MergedSearchResult m) {
+        if (!(RESULT instanceof TorrentUISearchResult) || m.getSeeds() <= getSeeds()) {
+            return false;
+        }
+        mergedSeeds = m.getSeeds();
+        seeds = String.valueOf(mergedSeeds);
+        return true;
     }
 
     public String getHash() {
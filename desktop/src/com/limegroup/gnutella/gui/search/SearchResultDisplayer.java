@@ -516,6 +516,18 @@ public final class SearchResultDisplayer implements RefreshListener {
         return MAIN_PANEL;
     }
 
+    /**
+     * Changes with the tabs and the number of results in each, what the
+     * tab titles show. Called from the UI thread.
+     */
+    long getVersion() {
+        long version = tabbedPane.getSelectedIndex();
+        for (int i = 0; i < entries.size(); i++) {
+            version = 31 * version + entries.get(i).totalResults();
+        }
+        return 31 * version + entries.size();
+    }
+
     /**
      * Every second, redraw only the tab portion of the TabbedPane
      * and determine if we should stop the lime spinning.
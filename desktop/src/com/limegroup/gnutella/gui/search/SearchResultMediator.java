@@ -24,6 +24,7 @@ import com.frostwire.gui.theme.SkinMenu;
 import com.frostwire.gui.theme.SkinMenuItem;
 import com.frostwire.gui.theme.SkinPopupMenu;
 import com.frostwire.gui.theme.ThemeMediator;
+import com.frostwire.search.MergedSearchResult;
 import com.frostwire.search.SearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
 import com.frostwire.util.UrlUtils;
@@ -55,8 +56,10 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import static com.limegroup.gnutella.gui.I18n.tr;
 
@@ -877,4 +880,32 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
 
         schemaBox.updateCounters(o);
     }
+
+    /**
+     * Updates the lines of the results found again by other engines,
+     * the hidden ones too, in case the filters change.
+     */
+    void updateMerged(List<MergedSearchResult> merged) {
+        Map<SearchResult, MergedSearchResult> byFirst = new IdentityHashMap<>();
+        for (MergedSearchResult m : merged) {
+            byFirst.put(m.getFirst(), m);
+        }
+
+        for (int row = 0; row < DATA_MODEL.getRowCount() && !byFirst.isEmpty(); row++) {
+            SearchResultDataLine line = DATA_MODEL.get(row);
+            MergedSearchResult m = byFirst.remove(line.getSearchResult().getSearchResult());
+            if (m != null && line.merge(m)) {
+                DATA_MODEL.fireTableRowsUpdated(row, row);
+            }
+        }
+        for (SearchResultDataLine line : DATA_MODEL.HIDDEN) {
+            if (byFirst.isEmpty()) {
+                break;
+            }
+            MergedSearchResult m = byFirst.remove(line.getSearchResult().getSearchResult());
+            if (m != null) {
+                line.merge(m);
+            }
+        }
+    }
 }
@@ -37,4 +37,10 @@ public final class BittorrentSettings extends LimeProps {
      * Records what was the last column you used to sort the transfers table.
      */
     public static IntSetting BTMEDIATOR_COLUMN_SORT_INDEX = FACTORY.createIntSetting("BTMEDIATOR_COLUMN_SORT_INDEX", -1);
+
+    /**
+     * Maximum number of HTTP, YouTube and SoundCloud downloads running at
+     * the same time, the rest wait in the transfer scheduler queue.
+     */
+    public static IntSetting MAX_ACTIVE_HTTP_DOWNLOADS = FACTORY.createIntSetting("MAX_ACTIVE_HTTP_DOWNLOADS", 20);
 }
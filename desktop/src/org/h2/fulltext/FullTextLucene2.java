@@ -6,6 +6,7 @@
  */
 package org.h2.fulltext;
 
+import com.frostwire.util.Logger;
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
@@ -35,6 +36,8 @@ import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Timer;
+import java.util.TimerTask;
 
 /*## LUCENE2 ##
 import org.apache.lucene.index.IndexModifier;
@@ -50,6 +53,8 @@ import org.apache.lucene.search.Hits;
 @SuppressWarnings("deprecation")
 public class FullTextLucene2 extends FullText {
 
+    private static final Logger LOG = Logger.getLogger(FullTextLucene2.class);
+
     /**
      * Whether the text content should be stored in the Lucene index.
      */
@@ -63,6 +68,25 @@ public class FullTextLucene2 extends FullText {
     private static final String LUCENE_FIELD_MODIFIED = "_modified";
     private static final String LUCENE_FIELD_COLUMN_PREFIX = "_";
 
+    /**
+     * Changes are committed at most this many milliseconds after they happen,
+     * a transaction does not notify its end to the triggers, so a short delay
+     * groups the rows of a statement (or a burst of them) in one commit.
+     */
+    private static final long COMMIT_DELAY = Utils.getProperty("h2.luceneCommitDelay", 1000);
+    /**
+     * Changes are committed right away when this many are pending.
+     */
+    private static final int COMMIT_MAX_CHANGES = Utils.getProperty("h2.luceneCommitMaxChanges", 1000);
+    /**
+     * A failed delayed commit is tried again after this many milliseconds,
+     * the changes stay pending until then.
+     */
+    private static final long COMMIT_RETRY_DELAY = Utils.getProperty("h2.luceneCommitRetryDelay", 10000);
+    private static final double BULK_RAM_BUFFER_SIZE_MB = 64;
+
+    private static final Timer COMMIT_TIMER = new Timer("FullTextLucene2-Commit", true);
+
     /**
      * Initializes full text search functionality for this database. This adds
      * the following Java functions to the database:
@@ -72,6 +96,8 @@ public class FullTextLucene2 extends FullText {
      * <li>FTL_SEARCH(queryString, limitInt, offsetInt): result set</li>
      * <li>FTL_REINDEX()</li>
      * <li>FTL_DROP_ALL()</li>
+     * <li>FTL_BEGIN_BULK()</li>
+     * <li>FTL_END_BULK()</li>
      * </ul>
      * It also adds a schema FTL to the database where bookkeeping information
      * is stored. This function may be called from a Java application, or by
@@ -95,6 +121,8 @@ public class FullTextLucene2 extends FullText {
         stat.execute("CREATE ALIAS IF NOT EXISTS FTL_SEARCH_DATA FOR \"" + FullTextLucene2.class.getName() + ".searchData\"");
         stat.execute("CREATE ALIAS IF NOT EXISTS FTL_REINDEX FOR \"" + FullTextLucene2.class.getName() + ".reindex\"");
         stat.execute("CREATE ALIAS IF NOT EXISTS FTL_DROP_ALL FOR \"" + FullTextLucene2.class.getName() + ".dropAll\"");
+        stat.execute("CREATE ALIAS IF NOT EXISTS FTL_BEGIN_BULK FOR \"" + FullTextLucene2.class.getName() + ".beginBulk\"");
+        stat.execute("CREATE ALIAS IF NOT EXISTS FTL_END_BULK FOR \"" + FullTextLucene2.class.getName() + ".endBulk\"");
         try {
             getIndexAccess(conn);
         } catch (SQLException e) {
@@ -185,6 +213,30 @@ public class FullTextLucene2 extends FullText {
         }
     }
 
+    /**
+     * Starts a bulk update of the index, the changes are not committed
+     * (but still visible to the searches) until the matching call to
+     * {@link #endBulk(Connection)}. Calls can be nested.
+     *
+     * @param conn the connection
+     */
+    public static void beginBulk(Connection conn) throws SQLException {
+        getIndexAccess(conn).beginBulk();
+    }
+
+    /**
+     * Ends a bulk update of the index, committing the pending changes.
+     *
+     * @param conn the connection
+     */
+    public static void endBulk(Connection conn) throws SQLException {
+        try {
+            getIndexAccess(conn).endBulk();
+        } catch (IOException e) {
+            throw convertException(e);
+        }
+    }
+
     /**
      * Drops all full text indexes from the database.
      *
@@ -304,10 +356,7 @@ public class FullTextLucene2 extends FullText {
                             recreate, IndexWriter.MaxFieldLength.UNLIMITED);
                     //see http://wiki.apache.org/lucene-java/NearRealtimeSearch
                     IndexReader reader = writer.getReader();
-                    access = new IndexAccess();
-                    access.writer = writer;
-                    access.reader = reader;
-                    access.searcher = new IndexSearcher(reader);
+                    access = new IndexAccess(writer, reader);
                     //*/
                 } catch (IOException e) {
                     throw convertException(e);
@@ -352,17 +401,25 @@ public class FullTextLucene2 extends FullText {
         FullTextLucene2.FullTextTrigger existing = new FullTextLucene2.FullTextTrigger();
         existing.init(conn, schema, null, table, false, Trigger.INSERT);
         String sql = "SELECT * FROM " + StringUtils.quoteIdentifier(schema) + "." + StringUtils.quoteIdentifier(table);
-        ResultSet rs = conn.createStatement().executeQuery(sql);
-        int columnCount = rs.getMetaData().getColumnCount();
-        while (rs.next()) {
-            Object[] row = new Object[columnCount];
-            for (int i = 0; i < columnCount; i++) {
-                row[i] = rs.getObject(i + 1);
+        existing.indexAccess.beginBulk();
+        try {
+            ResultSet rs = conn.createStatement().executeQuery(sql);
+            int columnCount = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                Object[] row = new Object[columnCount];
+                for (int i = 0; i < columnCount; i++) {
+                    row[i] = rs.getObject(i + 1);
+                }
+                //existing.fire(conn, null, row);
+                existing.insert(row, false);
+            }
+        } finally {
+            try {
+                existing.indexAccess.endBulk();
+            } catch (IOException e) {
+                throw convertException(e);
             }
-            //existing.fire(conn, null, row);
-            existing.insert(row, false);
         }
-        existing.commitIndex();
     }
 
     private static void removeIndexFiles(Connection conn) throws SQLException {
@@ -389,9 +446,7 @@ public class FullTextLucene2 extends FullText {
                 access.modifier.close();
                 //*/
                 //## LUCENE3 ##
-                access.searcher.close();
-                access.reader.close();
-                access.writer.close();
+                access.close();
                 //*/
             } catch (Exception e) {
                 throw convertException(e);
@@ -439,51 +494,56 @@ public class FullTextLucene2 extends FullText {
                 float score = hits.score(i + offset);
             //*/
             //## LUCENE3 ##
-            // take a reference as the searcher may change
-            Searcher searcher = access.searcher;
-            // reuse the same analyzer; it's thread-safe;
-            // also allows subclasses to control the analyzer used.
-            Analyzer analyzer = access.writer.getAnalyzer();
-            QueryParser parser = new QueryParser(Version.LUCENE_30,
-                    LUCENE_FIELD_DATA, analyzer);
-            Query query = parser.parse(text);
-            // Lucene 3 insists on a hard limit and will not provide
-            // a total hits value. Take at least 100 which is
-            // an optimal limit for Lucene as any more
-            // will trigger writing results to disk.
-            int maxResults = (limit == 0 ? 100 : limit) + offset;
-            TopDocs docs = searcher.search(query, maxResults);
-            if (limit == 0) {
-                limit = docs.totalHits;
-            }
-            for (int i = 0, len = docs.scoreDocs.length;
-                    i < limit && i + offset < docs.totalHits
-                    && i + offset < len; i++) {
-                ScoreDoc sd = docs.scoreDocs[i + offset];
-                Document doc = searcher.doc(sd.doc);
-                float score = sd.score;
-                //*/
-                String q = doc.get(LUCENE_FIELD_QUERY);
-                if (data) {
-                    int idx = q.indexOf(" WHERE ");
-                    JdbcConnection c = (JdbcConnection) conn;
-                    Session session = (Session) c.getSession();
-                    Parser p = new Parser(session);
-                    String tab = q.substring(0, idx);
-                    ExpressionColumn expr = (ExpressionColumn) p.parseExpression(tab);
-                    String schemaName = expr.getOriginalTableAliasName();
-                    String tableName = expr.getColumnName();
-                    q = q.substring(idx + " WHERE ".length());
-                    Object[][] columnData = parseKey(conn, q);
-                    result.addRow(
-                            schemaName,
-                            tableName,
-                            columnData[0],
-                            columnData[1],
-                            score);
-                } else {
-                    result.addRow(q, score);
+            // take a reference as the searcher may change, this is
+            // also the point where the pending changes become visible
+            IndexSearcher searcher = access.acquireSearcher();
+            try {
+                // reuse the same analyzer; it's thread-safe;
+                // also allows subclasses to control the analyzer used.
+                Analyzer analyzer = access.writer.getAnalyzer();
+                QueryParser parser = new QueryParser(Version.LUCENE_30,
+                        LUCENE_FIELD_DATA, analyzer);
+                Query query = parser.parse(text);
+                // Lucene 3 insists on a hard limit and will not provide
+                // a total hits value. Take at least 100 which is
+                // an optimal limit for Lucene as any more
+                // will trigger writing results to disk.
+                int maxResults = (limit == 0 ? 100 : limit) + offset;
+                TopDocs docs = searcher.search(query, maxResults);
+                if (limit == 0) {
+                    limit = docs.totalHits;
                 }
+                for (int i = 0, len = docs.scoreDocs.length;
+                        i < limit && i + offset < docs.totalHits
+                        && i + offset < len; i++) {
+                    ScoreDoc sd = docs.scoreDocs[i + offset];
+                    Document doc = searcher.doc(sd.doc);
+                    float score = sd.score;
+                    //*/
+                    String q = doc.get(LUCENE_FIELD_QUERY);
+                    if (data) {
+                        int idx = q.indexOf(" WHERE ");
+                        JdbcConnection c = (JdbcConnection) conn;
+                        Session session = (Session) c.getSession();
+                        Parser p = new Parser(session);
+                        String tab = q.substring(0, idx);
+                        ExpressionColumn expr = (ExpressionColumn) p.parseExpression(tab);
+                        String schemaName = expr.getOriginalTableAliasName();
+                        String tableName = expr.getColumnName();
+                        q = q.substring(idx + " WHERE ".length());
+                        Object[][] columnData = parseKey(conn, q);
+                        result.addRow(
+                                schemaName,
+                                tableName,
+                                columnData[0],
+                                columnData[1],
+                                score);
+                    } else {
+                        result.addRow(q, score);
+                    }
+                }
+            } finally {
+                access.releaseSearcher(searcher);
             }
             /*## LUCENE2 ##
             // TODO keep it open if possible
@@ -614,13 +674,7 @@ public class FullTextLucene2 extends FullText {
         
         public void commitIndex() throws SQLException {
             try {
-                indexAccess.writer.commit();
-                // recreate Searcher with the IndexWriter's reader.
-                indexAccess.searcher.close();
-                indexAccess.reader.close();
-                IndexReader reader = indexAccess.writer.getReader();
-                indexAccess.reader = reader;
-                indexAccess.searcher = new IndexSearcher(reader);
+                indexAccess.commit();
             } catch (IOException e) {
                 throw convertException(e);
             }
@@ -630,6 +684,8 @@ public class FullTextLucene2 extends FullText {
          * Add a row to the index.
          *
          * @param row the row
+         * @param commitIndex whether the commit policy should be applied,
+         *                    if false the caller is responsible of the commit
          */
         protected void insert(Object[] row, boolean commitIndex) throws SQLException {
             /*## LUCENE2 ##
@@ -695,15 +751,7 @@ public class FullTextLucene2 extends FullText {
                     Field.Index.ANALYZED));
             try {
                 indexAccess.writer.addDocument(doc);
-                if (commitIndex) {
-                    indexAccess.writer.commit();
-                    // recreate Searcher with the IndexWriter's reader.
-                    indexAccess.searcher.close();
-                    indexAccess.reader.close();
-                    IndexReader reader = indexAccess.writer.getReader();
-                    indexAccess.reader = reader;
-                    indexAccess.searcher = new IndexSearcher(reader);
-                }
+                indexAccess.changed(commitIndex);
             } catch (IOException e) {
                 throw convertException(e);
             }
@@ -724,6 +772,7 @@ public class FullTextLucene2 extends FullText {
                 //*/
                 //## LUCENE3 ##
                 indexAccess.writer.deleteDocuments(term);
+                indexAccess.changed(true);
                 //*/
             } catch (IOException e) {
                 throw convertException(e);
@@ -752,6 +801,11 @@ public class FullTextLucene2 extends FullText {
 
     /**
      * A wrapper for the Lucene writer and searcher.
+     * <p>
+     * Changes are not committed one by one, they are grouped following
+     * the {@link #COMMIT_DELAY} and {@link #COMMIT_MAX_CHANGES} policy (or
+     * until the end of a bulk update). The near real time reader is reopened
+     * lazily, only when a search needs it.
      */
     static class IndexAccess {
 
@@ -766,22 +820,150 @@ public class FullTextLucene2 extends FullText {
          * The index writer.
          */
         //## LUCENE3 ##
-        IndexWriter writer;
+        final IndexWriter writer;
         //*/
 
         /**
-         * The index reader.
+         * The index reader, this object holds one reference to it.
          */
         //## LUCENE3 ##
-        IndexReader reader;
+        private IndexReader reader;
         //*/
 
         /**
          * The index searcher.
          */
         //## LUCENE3 ##
-        Searcher searcher;
+        private IndexSearcher searcher;
         //*/
+
+        // changes not committed yet
+        private int pending;
+        // changes not visible to the reader yet
+        private boolean stale;
+        private int bulk;
+        private TimerTask commitTask;
+        private boolean closed;
+
+        IndexAccess(IndexWriter writer, IndexReader reader) {
+            this.writer = writer;
+            this.reader = reader;
+            this.searcher = new IndexSearcher(reader);
+        }
+
+        /**
+         * Called after every change to the writer.
+         *
+         * @param applyPolicy if false, the caller takes care of the commit
+         */
+        synchronized void changed(boolean applyPolicy) throws IOException {
+            pending++;
+            stale = true;
+            if (!applyPolicy || bulk > 0) {
+                return;
+            }
+            if (pending >= COMMIT_MAX_CHANGES) {
+                commit();
+            } else if (commitTask == null) {
+                scheduleCommit(COMMIT_DELAY);
+            }
+        }
+
+        synchronized void commit() throws IOException {
+            cancelCommitTask();
+            if (pending == 0 || closed) {
+                return;
+            }
+            writer.commit();
+            pending = 0;
+        }
+
+        synchronized void beginBulk() {
+            if (bulk++ == 0) {
+                cancelCommitTask();
+                writer.setRAMBufferSizeMB(BULK_RAM_BUFFER_SIZE_MB);
+            }
+        }
+
+        synchronized void endBulk() throws IOException {
+            if (bulk > 0 && --bulk == 0) {
+                if (!closed) {
+                    writer.setRAMBufferSizeMB(IndexWriter.DEFAULT_RAM_BUFFER_SIZE_MB);
+                }
+                commit();
+            }
+        }
+
+        /**
+         * Returns a searcher that includes all the changes so far, it
+         * must be returned with {@link #releaseSearcher(IndexSearcher)}.
+         */
+        synchronized IndexSearcher acquireSearcher() throws IOException {
+            if (stale) {
+                IndexReader r = IndexReader.openIfChanged(reader, writer, true);
+                if (r != null) {
+                    reader.decRef();
+                    reader = r;
+                    searcher = new IndexSearcher(r);
+                }
+                stale = false;
+            }
+            reader.incRef();
+            return searcher;
+        }
+
+        void releaseSearcher(IndexSearcher searcher) throws IOException {
+            searcher.getIndexReader().decRef();
+        }
+
+        synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            cancelCommitTask();
+            searcher.close();
+            reader.decRef();
+            // also commits the pending changes
+            writer.close();
+        }
+
+        private void scheduleCommit(long delay) {
+            commitTask = new TimerTask() {
+                @Override
+                public void run() {
+                    try {
+                        timedCommit(this);
+                    } catch (Throwable e) {
+                        LOG.error("Error committing the full text index, retrying in " + COMMIT_RETRY_DELAY + "ms", e);
+                        retryCommit();
+                    }
+                }
+            };
+            COMMIT_TIMER.schedule(commitTask, delay);
+        }
+
+        private synchronized void timedCommit(TimerTask task) throws IOException {
+            // ignore a task that was cancelled after it started
+            if (commitTask == task) {
+                commit();
+            }
+        }
+
+        private synchronized void retryCommit() {
+            // nothing to do if the changes were committed by someone else
+            // in the meantime, or if a new commit is already scheduled
+            if (pending > 0 && commitTask == null && bulk == 0 && !closed) {
+                scheduleCommit(COMMIT_RETRY_DELAY);
+            }
+        }
+
+        private void cancelCommitTask() {
+            if (commitTask != null) {
+                commitTask.cancel();
+                commitTask = null;
+            }
+        }
     }
 
 }
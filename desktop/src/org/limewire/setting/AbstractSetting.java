@@ -89,6 +89,12 @@ public abstract class AbstractSetting implements Setting {
 	 * List of {@link SettingListener}
 	 */
     private Collection<SettingListener> listeners = null;
+
+    /**
+     * The string of the value loaded last, a reload of the same string
+     * keeps the typed value as is.
+     */
+    private volatile String loaded;
     
 	/**
 	 * Constructs a new setting with the specified key and default
@@ -109,7 +115,7 @@ public abstract class AbstractSetting implements Setting {
 		if(DEFAULT_PROPS.containsKey(key)) 
 			throw new IllegalArgumentException("(AbstractSetting constructor) duplicate setting key: " + key);
 		DEFAULT_PROPS.put(KEY, defaultValue);
-        loadValue(defaultValue);
+        load(defaultValue);
 	}
     
 	/* (non-Javadoc)
@@ -177,7 +183,9 @@ public abstract class AbstractSetting implements Setting {
             PROPS.setProperty(KEY, DEFAULT_VALUE);
         }
         
-        loadValue(value);
+        if (!value.equals(loaded)) {
+            load(value);
+        }
         fireSettingEvent(EventType.RELOAD);
     }
 
@@ -266,11 +274,17 @@ public abstract class AbstractSetting implements Setting {
         String old = PROPS.getProperty(KEY);
         if (old == null || !old.equals(value)) {
             PROPS.setProperty(KEY, value);
-            loadValue(value);
+            load(value);
             fireSettingEvent(EventType.VALUE_CHANGED);
         }
     }
 
+    private void load(String value) {
+        // first, loadValue may revert to the default
+        loaded = value;
+        loadValue(value);
+    }
+
     /**
      * Load value from property string value
      * @param sValue property string value
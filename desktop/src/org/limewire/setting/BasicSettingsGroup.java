@@ -11,6 +11,11 @@ import org.limewire.setting.evt.SettingsGroupEvent.EventType;
  * {@link SettingsFactory}.
  */
 public class BasicSettingsGroup extends AbstractSettingsGroup {
+
+    /**
+     * The delay to save the changed settings in the background.
+     */
+    private static final long WRITE_BEHIND_DELAY = 2000;
     
     /**
      * properties file
@@ -29,6 +34,7 @@ public class BasicSettingsGroup extends AbstractSettingsGroup {
     protected BasicSettingsGroup(File settingsFile, String header) {
         PROPS_FILE = settingsFile;
         FACTORY = new SettingsFactory(PROPS_FILE, header);
+        FACTORY.setWriteBehindDelay(WRITE_BEHIND_DELAY);
         
         SettingsGroupManager.instance().addSettingsGroup(this);
     }
@@ -76,6 +82,15 @@ public class BasicSettingsGroup extends AbstractSettingsGroup {
         return false;
     }
     
+    /**
+     * No background saves either if the settings should not be saved.
+     */
+    @Override
+    public void setShouldSave(boolean shouldSave) {
+        super.setShouldSave(shouldSave);
+        FACTORY.setWriteBehindDelay(shouldSave ? WRITE_BEHIND_DELAY : 0);
+    }
+    
     /** Revert all settings to their default value     */
     public boolean revertToDefault() {
         if (FACTORY.revertToDefault()) {
@@ -23,11 +23,21 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.IOUtils;
+import org.limewire.concurrent.ExecutorsHelper;
 import org.limewire.util.FileUtils;
 
 
@@ -86,6 +96,13 @@ With the call sf.save(), setting.txt now includes:
  </pre>
  * If setting.txt didn't have the key MAX_MESSAGE_SIZE prior to the 
  * <code>createIntSetting</code> call, then the MAX_MESSAGE_SIZE is 0.
+ * <p>
+ * The factory keeps track of the keys changed since the last save, and
+ * <code>save</code> does nothing if there are none. The file is written
+ * to a temporary file first and then renamed over the settings file, so
+ * a crash in the middle of a save leaves the previous file in place.
+ * With {@link #setWriteBehindDelay(long)} the changes are also saved in
+ * the background, all the changes within the delay in a single write.
  */
 public final class SettingsFactory implements Iterable<AbstractSetting> {
     
@@ -108,7 +125,39 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
     protected final Properties DEFAULT_PROPS = new Properties();
 
     /** The <tt>Properties</tt> instance containing all settings.  */
-    protected final Properties PROPS = new Properties(DEFAULT_PROPS);
+    protected final Properties PROPS = new TrackedProperties(DEFAULT_PROPS);
+
+    /**
+     * The keys changed since the last save.
+     * LOCKING: must hold the PROPS monitor
+     */
+    private final Set<String> dirty = new HashSet<String>();
+
+    /**
+     * The number of times the settings file was written.
+     * LOCKING: must hold this monitor
+     */
+    private int writes = 0;
+
+    /** The delay of the background saves, 0 to only save on request. */
+    private volatile long writeBehindDelay = 0;
+
+    /**
+     * The scheduled background save, if any.
+     * LOCKING: must hold the flushLock monitor
+     */
+    private ScheduledFuture<?> pendingFlush;
+
+    private final Object flushLock = new Object();
+
+    private final Runnable flush = new Runnable() {
+        public void run() {
+            synchronized (flushLock) {
+                pendingFlush = null;
+            }
+            save();
+        }
+    };
     
     /**
      * List of all settings associated with this factory 
@@ -214,6 +263,11 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
         } finally {
             IOUtils.closeQuietly(fis);
         }
+
+        // what was just read is what is in the file
+        synchronized (PROPS) {
+            dirty.clear();
+        }
         
         // Reload all setting values
         for(Setting set : settings)
@@ -257,64 +311,149 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
      * Save setting information to property file
      * We want to NOT save any properties which are the default value,
      * as well as any older properties that are no longer in use.
-     * To avoid having to manually encode the file, we clone
+     * To avoid having to manually encode the file, we copy
      * the existing properties and manually remove the ones
      * which are default and aren't required to be saved.
      * It is important to do it this way (as opposed to creating a new
      * properties object and adding only those that should be saved
      * or aren't default) because 'adding' properties may fail if
      * certain settings classes haven't been statically loaded yet.
-     * (Note that we cannot use 'store' since it's only available in 1.2)
+     * <p>
+     * Nothing is written if no setting changed since the last save.
      */
     public synchronized void save() {
-        Properties toSave = (Properties) PROPS.clone();
+        cancelFlush();
+
+        Properties toSave = new Properties();
+        Set<String> saved;
+        synchronized (PROPS) {
+            if (dirty.isEmpty() && SETTINGS_FILE.isFile()) {
+                return;
+            }
+            toSave.putAll(PROPS);
+            saved = new HashSet<String>(dirty);
+            dirty.clear();
+        }
 
         //Add any settings which require saving or aren't default
         for(Setting set : settings) {
             if( !set.shouldAlwaysSave() && set.isDefault() )
                 toSave.remove( set.getKey() );
         }
-        
-        OutputStream out = null;
+
         try {
-            // some bugs were reported where the settings file was a directory.
-            if (SETTINGS_FILE.isDirectory())
-                SETTINGS_FILE.delete();
-
-            // some bugs were reported where the settings file's parent
-            // directory was deleted.
-            File parent = SETTINGS_FILE.getParentFile();
-            if(parent != null) {
-                parent.mkdirs();
-            }
-            
-            FileUtils.setWriteable(SETTINGS_FILE);
-            
-            if (SETTINGS_FILE.exists() && !SETTINGS_FILE.canRead()) {
-                SETTINGS_FILE.delete();
+            commit(writeTemp(toSave));
+            writes++;
+        } catch (IOException e) {
+            markFailure();
+            // try again with the next save
+            synchronized (PROPS) {
+                dirty.addAll(saved);
             }
-            
-            try {
-                out = new BufferedOutputStream(new FileOutputStream(SETTINGS_FILE));
-            } catch(IOException ioe) {
-                // Try again.
-                if (SETTINGS_FILE.exists()) {
-                    SETTINGS_FILE.delete();
-                    out = new BufferedOutputStream(new FileOutputStream(SETTINGS_FILE));
-                }
+        }
+    }
+
+    /**
+     * Writes the properties to the temporary file next to the settings
+     * file, and makes sure they reached the disk.
+     */
+    File writeTemp(Properties toSave) throws IOException {
+        // some bugs were reported where the settings file was a directory.
+        if (SETTINGS_FILE.isDirectory())
+            SETTINGS_FILE.delete();
+
+        // some bugs were reported where the settings file's parent
+        // directory was deleted.
+        File parent = SETTINGS_FILE.getParentFile();
+        if(parent != null) {
+            parent.mkdirs();
+        }
+
+        File tmp = new File(SETTINGS_FILE.getPath() + ".tmp");
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tmp);
+            OutputStream out = new BufferedOutputStream(fos);
+            toSave.store(out, HEADING);
+            out.flush();
+            fos.getFD().sync();
+        } finally {
+            IOUtils.closeQuietly(fos);
+        }
+        return tmp;
+    }
+
+    /**
+     * Replaces the settings file with the temporary file, in one step
+     * where the file system allows it.
+     */
+    void commit(File tmp) throws IOException {
+        FileUtils.setWriteable(SETTINGS_FILE);
+        try {
+            Files.move(tmp.toPath(), SETTINGS_FILE.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), SETTINGS_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Returns the number of times the settings file was written.
+     */
+    synchronized int getWriteCount() {
+        return writes;
+    }
+
+    /**
+     * Returns true if any setting changed since the last save.
+     */
+    public boolean isDirty() {
+        synchronized (PROPS) {
+            return !dirty.isEmpty();
+        }
+    }
+
+    /**
+     * Sets the delay after the first change to save the settings in the
+     * background, so a burst of changes results in a single write.
+     *
+     * @param millis the delay in milliseconds, 0 to only save when
+     *  {@link #save()} is called
+     */
+    public void setWriteBehindDelay(long millis) {
+        writeBehindDelay = Math.max(0, millis);
+        if (millis <= 0) {
+            cancelFlush();
+        } else if (isDirty()) {
+            scheduleFlush();
+        }
+    }
+
+    private void changed(String key) {
+        synchronized (PROPS) {
+            dirty.add(key);
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        long delay = writeBehindDelay;
+        if (delay <= 0) {
+            return;
+        }
+        synchronized (flushLock) {
+            if (pendingFlush == null) {
+                pendingFlush = Flusher.EXECUTOR.schedule(flush, delay, TimeUnit.MILLISECONDS);
             }
+        }
+    }
 
-            if(out != null) {
-                // save the properties to disk.
-                toSave.store(out, HEADING);
-            } else {
-                markFailure();
+    private void cancelFlush() {
+        synchronized (flushLock) {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+                pendingFlush = null;
             }
-            
-        } catch (IOException e) {
-            markFailure();
-        } finally {
-            IOUtils.closeQuietly(out);
         }
     }
     
@@ -573,4 +712,47 @@ public final class SettingsFactory implements Iterable<AbstractSetting> {
         settings.add(setting);
         setting.reload();
     }
+
+    /**
+     * Notes the keys whose value changes, counting the defaults, so
+     * filling in a default value doesn't make the settings dirty.
+     */
+    private final class TrackedProperties extends Properties {
+
+        TrackedProperties(Properties defaults) {
+            super(defaults);
+        }
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            if (!(key instanceof String)) {
+                return super.put(key, value);
+            }
+            String before = getProperty((String) key);
+            Object old = super.put(key, value);
+            if (!value.equals(before)) {
+                changed((String) key);
+            }
+            return old;
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            if (!(key instanceof String)) {
+                return super.remove(key);
+            }
+            String before = getProperty((String) key);
+            Object old = super.remove(key);
+            String after = getProperty((String) key);
+            if (before == null ? after != null : !before.equals(after)) {
+                changed((String) key);
+            }
+            return old;
+        }
+    }
+
+    private static final class Flusher {
+        static final ScheduledExecutorService EXECUTOR =
+            Executors.newSingleThreadScheduledExecutor(ExecutorsHelper.daemonThreadFactory("SettingsWriteBehind"));
+    }
 }
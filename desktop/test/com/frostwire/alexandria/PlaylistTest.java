@@ -0,0 +1,119 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.alexandria;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class PlaylistTest {
+
+    private Playlist playlist;
+
+    @Before
+    public void setUp() {
+        playlist = new Playlist(null, 1, "test", "");
+    }
+
+    @Test
+    public void testAppend() {
+        add(0, 3);
+        List<PlaylistItem> changed = playlist.assignSortKeys(0, 3);
+
+        assertEquals(3, changed.size());
+        assertKeys(1024, 2048, 3072);
+
+        add(3, 1);
+        changed = playlist.assignSortKeys(3, 1);
+        assertEquals(1, changed.size());
+        assertKeys(1024, 2048, 3072, 4096);
+    }
+
+    @Test
+    public void testInsertOnlyTouchesNewItems() {
+        add(0, 2);
+        playlist.assignSortKeys(0, 2);
+
+        PlaylistItem item = add(1, 1);
+        List<PlaylistItem> changed = playlist.assignSortKeys(1, 1);
+
+        assertEquals(1, changed.size());
+        assertSame(item, changed.get(0));
+        assertKeys(1024, 1536, 2048);
+        assertFalse(playlist.hasCrowdedSortKeys());
+    }
+
+    @Test
+    public void testRenumberWhenNoRoom() {
+        add(0, 2);
+        playlist.getItems().get(0).setSortKey(1);
+        playlist.getItems().get(1).setSortKey(2);
+
+        add(1, 1);
+        List<PlaylistItem> changed = playlist.assignSortKeys(1, 1);
+
+        assertEquals(3, changed.size());
+        assertKeys(1024, 2048, 3072);
+    }
+
+    @Test
+    public void testSpreadCrowdedKeys() {
+        add(0, 2);
+        playlist.assignSortKeys(0, 2);
+        assertTrue(playlist.spreadSortKeys().isEmpty());
+
+        // always in the same place, the space halves every time
+        while (!playlist.hasCrowdedSortKeys()) {
+            add(1, 1);
+            assertEquals(1, playlist.assignSortKeys(1, 1).size());
+        }
+        int size = playlist.getItems().size();
+        assertEquals(9, size);
+
+        List<PlaylistItem> changed = playlist.spreadSortKeys();
+        assertEquals(size, changed.size());
+        assertKeys(1024, 2048, 3072, 4096, 5120, 6144, 7168, 8192, 9216);
+        assertFalse(playlist.hasCrowdedSortKeys());
+        assertTrue(playlist.spreadSortKeys().isEmpty());
+    }
+
+    private PlaylistItem add(int index, int count) {
+        PlaylistItem item = null;
+        for (int i = 0; i < count; i++) {
+            item = new PlaylistItem(playlist);
+            playlist.getItems().add(index + i, item);
+        }
+        return item;
+    }
+
+    private void assertKeys(int... keys) {
+        List<PlaylistItem> items = playlist.getItems();
+        assertEquals(keys.length, items.size());
+        for (int i = 0; i < keys.length; i++) {
+            assertEquals(keys[i], items.get(i).getSortKey());
+        }
+    }
+}
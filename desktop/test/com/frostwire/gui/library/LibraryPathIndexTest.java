@@ -0,0 +1,131 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class LibraryPathIndexTest {
+
+    private static final String S = File.separator;
+    private static final String MUSIC = S + "music";
+
+    private LibraryPathIndex index;
+
+    @Before
+    public void setUp() {
+        index = new LibraryPathIndex();
+        index.add(path("Bossa", "Jobim - \u00c1gua de Beber.mp3"));
+        index.add(path("Bossa", "Jobim - Wave.mp3"));
+        index.add(path("Rock", "Queen - Bohemian Rhapsody.flac"));
+        index.add(path("Rock", "Live", "Queen - We Will Rock You.mp3"));
+        index.add(S + "videos" + S + "Queen live.mp4");
+    }
+
+    @Test
+    public void testFindAll() {
+        assertEquals(4, find(MUSIC).size());
+        assertEquals(2, find(path("Rock")).size());
+    }
+
+    @Test
+    public void testFindTokens() {
+        assertEquals(Collections.singletonList(path("Rock", "Queen - Bohemian Rhapsody.flac")), find(MUSIC, "rhapsod"));
+        // the token is inside a path token
+        assertEquals(Collections.singletonList(path("Rock", "Queen - Bohemian Rhapsody.flac")), find(MUSIC, "hemia"));
+        // all the tokens
+        assertEquals(Collections.singletonList(path("Rock", "Live", "Queen - We Will Rock You.mp3")), find(MUSIC, "queen", "live"));
+        // diacritics
+        assertEquals(Collections.singletonList(path("Bossa", "Jobim - \u00c1gua de Beber.mp3")), find(MUSIC, "agua"));
+        // only under the folder
+        assertEquals(2, find(MUSIC, "queen").size());
+        assertTrue(find(MUSIC, "zeppelin").isEmpty());
+    }
+
+    @Test
+    public void testShortTokens() {
+        // too short for the trigrams, checked against the whole path
+        assertEquals(Collections.singletonList(path("Bossa", "Jobim - Wave.mp3")), find(MUSIC, "wa", "e"));
+        // a token with a separator
+        assertEquals(Collections.singletonList(path("Bossa", "Jobim - Wave.mp3")), find(MUSIC, "wave.mp3"));
+    }
+
+    @Test
+    public void testRemove() {
+        index.remove(path("Bossa", "Jobim - Wave.mp3"));
+        assertEquals(1, find(MUSIC, "jobim").size());
+
+        // a folder, with all the files under it
+        index.remove(path("Rock"));
+        assertEquals(1, find(MUSIC).size());
+        assertTrue(find(MUSIC, "queen").isEmpty());
+        assertEquals(2, index.size());
+        assertTrue(index.contains(S + "videos" + S + "Queen live.mp4"));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        index.remove(path("Bossa", "Jobim - Wave.mp3"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        index.write(new DataOutputStream(bytes));
+
+        LibraryPathIndex loaded = new LibraryPathIndex();
+        loaded.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(4, loaded.size());
+        assertFalse(loaded.contains(path("Bossa", "Jobim - Wave.mp3")));
+        index = loaded;
+        assertEquals(Collections.singletonList(path("Bossa", "Jobim - \u00c1gua de Beber.mp3")), find(MUSIC, "jobim"));
+        assertEquals(2, find(MUSIC, "queen").size());
+
+        loaded.add(path("Bossa", "Jobim - Wave.mp3"));
+        assertEquals(2, find(MUSIC, "jobim").size());
+    }
+
+    private List<String> find(String dir, String... tokens) {
+        List<String> result = new ArrayList<>();
+        String[] t = tokens.length > 0 ? tokens : null;
+        for (String path : index.find(dir + S, t)) {
+            if (t == null || LibraryPathIndex.matches(path, t)) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    private static String path(String... names) {
+        StringBuilder sb = new StringBuilder(MUSIC);
+        for (String name : names) {
+            sb.append(S).append(name);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2017, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.limegroup.gnutella.gui;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author gubatron
+ * @author aldenml
+ */
+public class RefreshSchedulerTest {
+
+    private static final int INTERVAL = 50;
+
+    @Test
+    public void testHiddenNotRefreshed() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler();
+        FakeListener listener = new FakeListener(0, null);
+        FakeSource source = new FakeSource(false);
+        scheduler.add(listener, INTERVAL, source);
+
+        for (int i = 0; i < 3; i++) {
+            scheduler.tick();
+            Thread.sleep(INTERVAL + 10);
+        }
+
+        assertEquals(0, listener.refreshes);
+        // not even the version is asked for
+        assertEquals(0, source.versionCalls);
+
+        source.visible = true;
+        scheduler.tick();
+        assertEquals(1, listener.refreshes);
+    }
+
+    @Test
+    public void testUnchangedNotRefreshed() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler();
+        FakeListener listener = new FakeListener(0, null);
+        FakeSource source = new FakeSource(true);
+        scheduler.add(listener, INTERVAL, source);
+
+        scheduler.tick();
+        assertEquals(1, listener.refreshes);
+
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(INTERVAL + 10);
+            scheduler.tick();
+        }
+        assertEquals(1, listener.refreshes);
+
+        source.version++;
+        Thread.sleep(INTERVAL + 10);
+        scheduler.tick();
+        assertEquals(2, listener.refreshes);
+    }
+
+    @Test
+    public void testNotBeforeInterval() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler();
+        FakeListener listener = new FakeListener(0, null);
+        scheduler.add(listener, 10000, null);
+
+        scheduler.tick();
+        scheduler.tick();
+        assertEquals(1, listener.refreshes);
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        RefreshScheduler scheduler = new RefreshScheduler();
+        List<Integer> order = new ArrayList<>();
+        int n = 5;
+        for (int i = 0; i < n; i++) {
+            // 5ms each, no more than two fit in the 8ms of a tick
+            scheduler.add(new FakeListener(5, order, i), 10000, null);
+        }
+
+        int ticks = 0;
+        int before = 0;
+        while (order.size() < n && ticks < 2 * n) {
+            scheduler.tick();
+            int refreshed = order.size() - before;
+            assertTrue("refreshed " + refreshed, refreshed >= 1 && refreshed <= 2);
+            before = order.size();
+            ticks++;
+        }
+
+        assertTrue(ticks > 1);
+        // the listeners left out go first in the next tick, each one once
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    private static final class FakeListener implements RefreshListener {
+
+        private final long sleep;
+        private final List<Integer> order;
+        private final int id;
+
+        int refreshes;
+
+        FakeListener(long sleep, List<Integer> order, int id) {
+            this.sleep = sleep;
+            this.order = order;
+            this.id = id;
+        }
+
+        FakeListener(long sleep, List<Integer> order) {
+            this(sleep, order, 0);
+        }
+
+        @Override
+        public void refresh() {
+            refreshes++;
+            if (order != null) {
+                order.add(id);
+            }
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class FakeSource implements RefreshSource {
+
+        boolean visible;
+        long version;
+        int versionCalls;
+
+        FakeSource(boolean visible) {
+            this.visible = visible;
+        }
+
+        @Override
+        public long getVersion() {
+            versionCalls++;
+            return version;
+        }
+
+        @Override
+        public boolean isVisible() {
+            return visible;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.limewire.setting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class SettingsFactoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testCrashBeforeRenameKeepsOldFile() throws Exception {
+        File file = new File(folder.getRoot(), "test.props");
+        SettingsFactory sf = new SettingsFactory(file);
+        IntSetting setting = sf.createIntSetting("VALUE", 0);
+        setting.setValue(1);
+        sf.save();
+
+        setting.setValue(2);
+        Properties props = new Properties();
+        props.putAll(sf.getProperties());
+        // the process dies after writing the temporary file
+        File tmp = sf.writeTemp(props);
+        assertTrue(tmp.isFile());
+
+        assertEquals(1, new SettingsFactory(file).createIntSetting("VALUE", 0).getValue());
+
+        sf.commit(tmp);
+        assertFalse(tmp.exists());
+        assertEquals(2, new SettingsFactory(file).createIntSetting("VALUE", 0).getValue());
+    }
+
+    @Test
+    public void testSaveWithoutChanges() throws Exception {
+        File file = new File(folder.getRoot(), "test.props");
+        SettingsFactory sf = new SettingsFactory(file);
+        IntSetting setting = sf.createIntSetting("VALUE", 0);
+        setting.setValue(1);
+        sf.save();
+        assertFalse(sf.isDirty());
+        int writes = sf.getWriteCount();
+
+        sf.save();
+        setting.setValue(1);
+        sf.save();
+        assertEquals(writes, sf.getWriteCount());
+
+        setting.setValue(2);
+        assertTrue(sf.isDirty());
+        sf.save();
+        assertEquals(writes + 1, sf.getWriteCount());
+    }
+
+    @Test
+    public void testWriteBehindCoalesces() throws Exception {
+        File file = new File(folder.getRoot(), "test.props");
+        SettingsFactory sf = new SettingsFactory(file);
+        IntSetting setting = sf.createIntSetting("VALUE", 0);
+        sf.setWriteBehindDelay(1000);
+        int writes = sf.getWriteCount();
+
+        for (int i = 1; i <= 10000; i++) {
+            setting.setValue(i);
+        }
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sf.isDirty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertFalse(sf.isDirty());
+        // nothing else is scheduled after the write
+        Thread.sleep(1500);
+
+        assertEquals(writes + 1, sf.getWriteCount());
+        assertEquals(10000, new SettingsFactory(file).createIntSetting("VALUE", 0).getValue());
+    }
+}